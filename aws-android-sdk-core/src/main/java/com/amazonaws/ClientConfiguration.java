@@ -16,8 +16,10 @@
 package com.amazonaws;
 
 import com.amazonaws.http.IdleConnectionReaper;
+import com.amazonaws.retry.AdaptiveRateLimiter;
 import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryTokenBucket;
 import com.amazonaws.util.VersionInfoUtils;
 
 import java.net.InetAddress;
@@ -63,6 +65,24 @@ public class ClientConfiguration {
      */
     public static final boolean DEFAULT_USE_REAPER = true;
 
+    /**
+     * The default on whether to limit retries with a client-wide
+     * {@link RetryTokenBucket}
+     */
+    public static final boolean DEFAULT_USE_THROTTLE_RETRIES = false;
+
+    /**
+     * The default number of retries allowed by the {@link RetryTokenBucket}
+     * without any successful request in between
+     */
+    public static final int DEFAULT_MAX_CONSECUTIVE_RETRIES_BEFORE_THROTTLING = 100;
+
+    /**
+     * The default on whether to adapt the send rate to throttling responses
+     * with an {@link AdaptiveRateLimiter}
+     */
+    public static final boolean DEFAULT_USE_ADAPTIVE_RATE_LIMITING = false;
+
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -158,6 +178,25 @@ public class ClientConfiguration {
      */
     private boolean useReaper = DEFAULT_USE_REAPER;
 
+    /**
+     * Optional whether retries are limited by a {@link RetryTokenBucket}
+     * shared by all requests of a client.
+     */
+    private boolean useThrottleRetries = DEFAULT_USE_THROTTLE_RETRIES;
+
+    /**
+     * The number of retries allowed without any successful request in between,
+     * when retries are throttled.
+     */
+    private int maxConsecutiveRetriesBeforeThrottling =
+            DEFAULT_MAX_CONSECUTIVE_RETRIES_BEFORE_THROTTLING;
+
+    /**
+     * Optional whether the send rate to each endpoint is limited by an
+     * {@link AdaptiveRateLimiter} driven by throttling responses.
+     */
+    private boolean useAdaptiveRateLimiting = DEFAULT_USE_ADAPTIVE_RATE_LIMITING;
+
     /**
      * Optional override to control which signature algorithm should be used to
      * sign requests to the service. If not explicitly set, the client will
@@ -186,6 +225,9 @@ public class ClientConfiguration {
         this.socketTimeout = other.socketTimeout;
         this.userAgent = other.userAgent;
         this.useReaper = other.useReaper;
+        this.useThrottleRetries = other.useThrottleRetries;
+        this.maxConsecutiveRetriesBeforeThrottling = other.maxConsecutiveRetriesBeforeThrottling;
+        this.useAdaptiveRateLimiting = other.useAdaptiveRateLimiting;
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint = other.socketSendBufferSizeHint;
         this.signerOverride = other.signerOverride;
@@ -741,6 +783,117 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns whether retries are limited by a {@link RetryTokenBucket} shared
+     * by all requests of a client, so that retries stop once most requests
+     * fail and don't add to the load of a struggling service.
+     *
+     * @return whether retries are throttled
+     */
+    public boolean useThrottledRetries() {
+        return useThrottleRetries;
+    }
+
+    /**
+     * Sets whether retries are limited by a {@link RetryTokenBucket} shared by
+     * all requests of a client. The retry policy still decides which requests
+     * are retried; the bucket only vetoes retries once too many requests
+     * failed in a row.
+     *
+     * @param use whether retries are throttled
+     * @see #setMaxConsecutiveRetriesBeforeThrottling(int)
+     */
+    public void setUseThrottleRetries(boolean use) {
+        this.useThrottleRetries = use;
+    }
+
+    /**
+     * Sets whether retries are limited by a {@link RetryTokenBucket} shared by
+     * all requests of a client.
+     *
+     * @param use whether retries are throttled
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withThrottledRetries(boolean use) {
+        setUseThrottleRetries(use);
+        return this;
+    }
+
+    /**
+     * Returns the number of retries allowed without any successful request in
+     * between, when retries are throttled.
+     *
+     * @return the maximum number of consecutive retries
+     */
+    public int getMaxConsecutiveRetriesBeforeThrottling() {
+        return maxConsecutiveRetriesBeforeThrottling;
+    }
+
+    /**
+     * Sets the number of retries allowed without any successful request in
+     * between, when retries are throttled. This is the capacity of the
+     * {@link RetryTokenBucket} of a client.
+     *
+     * @param maxConsecutiveRetriesBeforeThrottling the maximum number of
+     *            consecutive retries, which must be positive
+     */
+    public void setMaxConsecutiveRetriesBeforeThrottling(int maxConsecutiveRetriesBeforeThrottling) {
+        if (maxConsecutiveRetriesBeforeThrottling <= 0) {
+            throw new IllegalArgumentException(
+                    "maxConsecutiveRetriesBeforeThrottling should be positive");
+        }
+        this.maxConsecutiveRetriesBeforeThrottling = maxConsecutiveRetriesBeforeThrottling;
+    }
+
+    /**
+     * Sets the number of retries allowed without any successful request in
+     * between, when retries are throttled.
+     *
+     * @param maxConsecutiveRetriesBeforeThrottling the maximum number of
+     *            consecutive retries, which must be positive
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withMaxConsecutiveRetriesBeforeThrottling(
+            int maxConsecutiveRetriesBeforeThrottling) {
+        setMaxConsecutiveRetriesBeforeThrottling(maxConsecutiveRetriesBeforeThrottling);
+        return this;
+    }
+
+    /**
+     * Returns whether the send rate to each endpoint is limited by an
+     * {@link AdaptiveRateLimiter}, which cuts the rate when the service
+     * throttles requests and raises it again afterwards.
+     *
+     * @return whether adaptive rate limiting is enabled
+     */
+    public boolean useAdaptiveRateLimiting() {
+        return useAdaptiveRateLimiting;
+    }
+
+    /**
+     * Sets whether the send rate to each endpoint is limited by an
+     * {@link AdaptiveRateLimiter} shared by all requests of a client. It helps
+     * writers converge to the provisioned throughput of a service such as
+     * DynamoDB or Kinesis instead of going through retry storms.
+     *
+     * @param use whether adaptive rate limiting is enabled
+     */
+    public void setUseAdaptiveRateLimiting(boolean use) {
+        this.useAdaptiveRateLimiting = use;
+    }
+
+    /**
+     * Sets whether the send rate to each endpoint is limited by an
+     * {@link AdaptiveRateLimiter} shared by all requests of a client.
+     *
+     * @param use whether adaptive rate limiting is enabled
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withAdaptiveRateLimiting(boolean use) {
+        setUseAdaptiveRateLimiting(use);
+        return this;
+    }
+
     /**
      * Returns the optional size hints (in bytes) for the low level TCP send and
      * receive buffers. This is an advanced option for advanced users who want
@@ -31,7 +31,9 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Signer implementation that signs requests with the AWS4 signing protocol.
@@ -46,6 +48,20 @@ public class AWS4Signer extends AbstractAWSSigner
 
     /** Seconds in a week, which is the max expiration time Sig-v4 accepts */
     private final static long MAX_EXPIRATION_TIME_IN_SECONDS = 60 * 60 * 24 * 7;
+
+    /** Maximum number of derived signing keys held in the signing key cache */
+    private static final int MAX_SIGNING_KEY_CACHE_SIZE = 300;
+
+    /** Initial buffer size for building a canonical request */
+    private static final int CANONICAL_REQUEST_INITIAL_CAPACITY = 512;
+
+    /**
+     * Cache of derived signing keys, shared by all signer instances. A signing
+     * key only depends on the secret key and the credential scope (date stamp,
+     * region and service), so it only changes once a day per access key.
+     */
+    private static final SigningKeyCache SIGNING_KEY_CACHE =
+            new SigningKeyCache(MAX_SIGNING_KEY_CACHE_SIZE);
     /**
      * Service name override for use when the endpoint can't be used to
      * determine the service name.
@@ -203,63 +219,116 @@ public class AWS4Signer extends AbstractAWSSigner
     }
 
     protected String getCanonicalizedHeaderString(Request<?> request) {
-        List<String> sortedHeaders = new ArrayList<String>();
-        sortedHeaders.addAll(request.getHeaders().keySet());
-        Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+        StringBuilder buffer = new StringBuilder();
+        appendCanonicalizedHeaders(buffer, request, getSortedSignedHeaders(request));
+        return buffer.toString();
+    }
 
+    protected String getSignedHeadersString(Request<?> request) {
         StringBuilder buffer = new StringBuilder();
-        for (String header : sortedHeaders) {
-            if (needsSign(header)) {
-                String key = header.toLowerCase().replaceAll("\\s+", " ");
-                String value = request.getHeaders().get(header);
+        appendSignedHeaders(buffer, getSortedSignedHeaders(request));
+        return buffer.toString();
+    }
 
-                buffer.append(key).append(":");
-                if (value != null) {
-                    buffer.append(value.replaceAll("\\s+", " "));
-                }
+    protected String getCanonicalRequest(Request<?> request, String contentSha256) {
+        /* This would url-encode the resource path for the first time */
+        String path = HttpUtils.appendUri(request.getEndpoint().getPath(),
+                request.getResourcePath());
 
-                buffer.append("\n");
-            }
+        // Sort the headers once and use the result for both the canonical
+        // headers and the signed headers sections.
+        List<String> signedHeaders = getSortedSignedHeaders(request);
+
+        StringBuilder canonicalRequest = new StringBuilder(CANONICAL_REQUEST_INITIAL_CAPACITY);
+        canonicalRequest.append(request.getHttpMethod().toString()).append('\n');
+        /*
+         * This would optionally double url-encode the resource path
+         */
+        canonicalRequest.append(getCanonicalizedResourcePath(path, doubleUrlEncode))
+                .append('\n');
+        canonicalRequest.append(getCanonicalizedQueryString(request)).append('\n');
+        appendCanonicalizedHeaders(canonicalRequest, request, signedHeaders);
+        canonicalRequest.append('\n');
+        appendSignedHeaders(canonicalRequest, signedHeaders);
+        canonicalRequest.append('\n');
+        canonicalRequest.append(contentSha256);
+
+        String result = canonicalRequest.toString();
+        if (log.isDebugEnabled()) {
+            log.debug("AWS4 Canonical Request: '\"" + result + "\"");
         }
-
-        return buffer.toString();
+        return result;
     }
 
-    protected String getSignedHeadersString(Request<?> request) {
-        List<String> sortedHeaders = new ArrayList<String>();
-        sortedHeaders.addAll(request.getHeaders().keySet());
+    /**
+     * Returns the names of the request headers that need to be signed, sorted
+     * case-insensitively.
+     */
+    private List<String> getSortedSignedHeaders(Request<?> request) {
+        Map<String, String> headers = request.getHeaders();
+        List<String> sortedHeaders = new ArrayList<String>(headers.size());
+        for (String header : headers.keySet()) {
+            if (needsSign(header)) {
+                sortedHeaders.add(header);
+            }
+        }
         Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+        return sortedHeaders;
+    }
 
-        StringBuilder buffer = new StringBuilder();
+    private void appendCanonicalizedHeaders(StringBuilder buffer, Request<?> request,
+            List<String> sortedHeaders) {
+        Map<String, String> headers = request.getHeaders();
         for (String header : sortedHeaders) {
-            if (needsSign(header)) {
-                if (buffer.length() > 0)
-                    buffer.append(";");
-                buffer.append(header.toLowerCase());
+            appendCompactedString(buffer, header.toLowerCase());
+            buffer.append(':');
+            String value = headers.get(header);
+            if (value != null) {
+                appendCompactedString(buffer, value);
             }
+            buffer.append('\n');
         }
+    }
 
-        return buffer.toString();
+    private void appendSignedHeaders(StringBuilder buffer, List<String> sortedHeaders) {
+        boolean first = true;
+        for (String header : sortedHeaders) {
+            if (!first) {
+                buffer.append(';');
+            }
+            buffer.append(header.toLowerCase());
+            first = false;
+        }
     }
 
-    protected String getCanonicalRequest(Request<?> request, String contentSha256) {
-        /* This would url-encode the resource path for the first time */
-        String path = HttpUtils.appendUri(request.getEndpoint().getPath(),
-                request.getResourcePath());
+    /**
+     * Appends the given string to the buffer with every run of whitespace
+     * characters replaced by a single space, which is equivalent to
+     * <code>replaceAll("\\s+", " ")</code> without compiling a pattern.
+     */
+    static void appendCompactedString(StringBuilder buffer, String value) {
+        boolean previousIsWhiteSpace = false;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (isWhiteSpace(ch)) {
+                if (!previousIsWhiteSpace) {
+                    buffer.append(' ');
+                    previousIsWhiteSpace = true;
+                }
+            } else {
+                buffer.append(ch);
+                previousIsWhiteSpace = false;
+            }
+        }
+    }
 
-        String canonicalRequest =
-                request.getHttpMethod().toString() + "\n" +
-                        /*
-                         * This would optionally double url-encode the resource
-                         * path
-                         */
-                        getCanonicalizedResourcePath(path, doubleUrlEncode) + "\n" +
-                        getCanonicalizedQueryString(request) + "\n" +
-                        getCanonicalizedHeaderString(request) + "\n" +
-                        getSignedHeadersString(request) + "\n" +
-                        contentSha256;
-        log.debug("AWS4 Canonical Request: '\"" + canonicalRequest + "\"");
-        return canonicalRequest;
+    /**
+     * Matches the characters of the <code>\\s</code> regex character class.
+     */
+    private static boolean isWhiteSpace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000b' || ch == '\f'
+                || ch == '\r';
     }
 
     protected String getStringToSign(String algorithm, String dateTime, String scope,
@@ -269,7 +338,9 @@ public class AWS4Signer extends AbstractAWSSigner
                         dateTime + "\n" +
                         scope + "\n" +
                         BinaryUtils.toHex(hash(canonicalRequest));
-        log.debug("AWS4 String to Sign: '\"" + stringToSign + "\"");
+        if (log.isDebugEnabled()) {
+            log.debug("AWS4 String to Sign: '\"" + stringToSign + "\"");
+        }
         return stringToSign;
     }
 
@@ -288,16 +359,49 @@ public class AWS4Signer extends AbstractAWSSigner
         String stringToSign = getStringToSign(algorithm, timeStamp, scope,
                 getCanonicalRequest(request, contentSha256));
 
+        byte[] kSigning = getSigningKey(sanitizedCredentials, dateStamp, regionName,
+                serviceName);
+
+        byte[] signature = sign(stringToSign, kSigning, SigningAlgorithm.HmacSHA256);
+        return new HeaderSigningResult(timeStamp, scope, kSigning, signature);
+    }
+
+    /**
+     * Returns the derived signing key for the given credentials and credential
+     * scope, reusing a previously derived key from the cache when possible.
+     */
+    protected final byte[] getSigningKey(AWSCredentials sanitizedCredentials,
+            String dateStamp, String regionName, String serviceName) {
+        String secretKey = sanitizedCredentials.getAWSSecretKey();
+        if (secretKey == null) {
+            return newSigningKey(secretKey, dateStamp, regionName, serviceName);
+        }
+
+        String cacheKey = sanitizedCredentials.getAWSAccessKeyId() + "/" + dateStamp + "/"
+                + regionName + "/" + serviceName;
+        synchronized (SIGNING_KEY_CACHE) {
+            SigningKey cached = SIGNING_KEY_CACHE.get(cacheKey);
+            if (cached != null && cached.getSecretKey().equals(secretKey)) {
+                return cached.getKSigning();
+            }
+        }
+
+        byte[] kSigning = newSigningKey(secretKey, dateStamp, regionName, serviceName);
+        synchronized (SIGNING_KEY_CACHE) {
+            SIGNING_KEY_CACHE.put(cacheKey, new SigningKey(secretKey, kSigning));
+        }
+        return kSigning;
+    }
+
+    private byte[] newSigningKey(String secretKey, String dateStamp, String regionName,
+            String serviceName) {
         // AWS4 uses a series of derived keys, formed by hashing different
         // pieces of data
-        byte[] kSecret = ("AWS4" + sanitizedCredentials.getAWSSecretKey()).getBytes();
+        byte[] kSecret = ("AWS4" + secretKey).getBytes();
         byte[] kDate = sign(dateStamp, kSecret, SigningAlgorithm.HmacSHA256);
         byte[] kRegion = sign(regionName, kDate, SigningAlgorithm.HmacSHA256);
         byte[] kService = sign(serviceName, kRegion, SigningAlgorithm.HmacSHA256);
-        byte[] kSigning = sign(TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
-
-        byte[] signature = sign(stringToSign.getBytes(), kSigning, SigningAlgorithm.HmacSHA256);
-        return new HeaderSigningResult(timeStamp, scope, kSigning, signature);
+        return sign(TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
     }
 
     protected final String getTimeStamp(long dateMilli) {
@@ -398,6 +502,50 @@ public class AWS4Signer extends AbstractAWSSigner
         }
     }
 
+    /**
+     * A derived signing key along with the secret key it was derived from, so
+     * that a rotated secret for the same access key is never served a stale
+     * signing key. The signing key must not be modified by callers.
+     */
+    private static final class SigningKey {
+
+        private final String secretKey;
+        private final byte[] kSigning;
+
+        SigningKey(String secretKey, byte[] kSigning) {
+            this.secretKey = secretKey;
+            this.kSigning = kSigning;
+        }
+
+        String getSecretKey() {
+            return secretKey;
+        }
+
+        byte[] getKSigning() {
+            return kSigning;
+        }
+    }
+
+    /**
+     * Bounded LRU cache of derived signing keys. Callers must synchronize on
+     * the cache instance.
+     */
+    private static final class SigningKeyCache extends LinkedHashMap<String, SigningKey> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        SigningKeyCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SigningKey> eldest) {
+            return size() > maxSize;
+        }
+    }
+
     @Override
     public void presignRequest(Request<?> request, AWSCredentials credentials,
             Date expiration) {
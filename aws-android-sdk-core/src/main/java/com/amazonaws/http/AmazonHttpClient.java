@@ -34,7 +34,9 @@ import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.internal.CRC32MismatchException;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.AdaptiveRateLimiter;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryTokenBucket;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
@@ -53,6 +55,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AmazonHttpClient {
 
@@ -88,6 +94,36 @@ public class AmazonHttpClient {
 
     private final HttpRequestFactory requestFactory = new HttpRequestFactory();
 
+    /**
+     * Runs the response handlers of asynchronous requests, created on first
+     * use.
+     */
+    private ExecutorService callbackExecutor;
+
+    /**
+     * The timer shared by the clients which don't have their own
+     * {@link RetryScheduler}, created on first use.
+     */
+    private static RetryScheduler sharedRetryScheduler;
+
+    /**
+     * Delays the retries of asynchronous requests, and those held back by a
+     * rate limiter; the shared one if null.
+     */
+    private volatile RetryScheduler retryScheduler;
+
+    /**
+     * Limits the retries of all requests of this client; null if retries
+     * aren't throttled.
+     */
+    private final RetryTokenBucket retryTokenBucket;
+
+    /**
+     * The adaptive rate limiters of the endpoints this client sends requests
+     * to, keyed by route; null if the send rate isn't limited.
+     */
+    private final Map<String, AdaptiveRateLimiter> rateLimiters;
+
     /**
      * Constructs a new AWS client using the specified client configuration
      * options (ex: max retry attempts, proxy settings, etc).
@@ -126,9 +162,7 @@ public class AmazonHttpClient {
      * @param httpClient client specific HttpClient
      */
     public AmazonHttpClient(ClientConfiguration config, HttpClient httpClient) {
-        this.config = config;
-        this.httpClient = httpClient;
-        this.requestMetricCollector = null;
+        this(config, httpClient, null);
     }
 
     /**
@@ -149,6 +183,12 @@ public class AmazonHttpClient {
         this.config = config;
         this.httpClient = httpClient;
         this.requestMetricCollector = requestMetricCollector;
+        this.retryTokenBucket = config.useThrottledRetries()
+                ? new RetryTokenBucket(config.getMaxConsecutiveRetriesBeforeThrottling())
+                : null;
+        this.rateLimiters = config.useAdaptiveRateLimiting()
+                ? new HashMap<String, AdaptiveRateLimiter>()
+                : null;
     }
 
     /**
@@ -204,6 +244,64 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Executes the request asynchronously and returns a future of the result.
+     * If the underlying http client is an {@link AsyncHttpClient}, no thread is
+     * blocked while waiting for the responses; otherwise the request is
+     * executed with {@link HttpClient#execute(HttpRequest)} on a separate
+     * thread. Either way, the response handlers, the request handlers and the
+     * retry logic run on a thread of this client, never on the calling thread
+     * or the I/O thread of the http client.
+     *
+     * @param request The AmazonWebServices request to send to the remote server
+     * @param responseHandler A response handler to accept a successful response
+     *            from the remote server
+     * @param errorResponseHandler A response handler to accept an unsuccessful
+     *            response from the remote server
+     * @param executionContext Additional information about the context of this
+     *            web service call
+     * @return a future which completes with the response, or with an
+     *         {@link AmazonClientException} or {@link AmazonServiceException}
+     */
+    public <T> ResponseFuture<Response<T>> executeAsync(final Request<?> request,
+            final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            final HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            final ExecutionContext executionContext) {
+        if (executionContext == null)
+            throw new AmazonClientException(
+                    "Internal SDK Error: No execution context parameter specified.");
+        final ResponseFuture<Response<T>> future = new ResponseFuture<Response<T>>();
+        if (!(httpClient instanceof AsyncHttpClient)) {
+            getCallbackExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(execute(request, responseHandler,
+                                errorResponseHandler, executionContext));
+                    } catch (AmazonClientException e) {
+                        future.completeExceptionally(e);
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    } catch (Error e) {
+                        future.completeExceptionally(new AmazonClientException(
+                                "Unexpected error: " + e.getMessage(), e));
+                    }
+                }
+            });
+            return future;
+        }
+
+        final AsyncExecution<T> execution = new AsyncExecution<T>(request, responseHandler,
+                errorResponseHandler, executionContext, future);
+        getCallbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                execution.start();
+            }
+        });
+        return future;
+    }
+
     void afterError(Request<?> request, Response<?> response,
             List<RequestHandler2> requestHandler2s, AmazonClientException e) {
         for (RequestHandler2 handler2 : requestHandler2s) {
@@ -274,6 +372,7 @@ public class AmazonHttpClient {
         // user-agent.
         setUserAgent(request);
         int requestCount = 0;
+        int retries = 0;
         URI redirectedURI = null;
         AmazonClientException retriedException = null;
 
@@ -285,6 +384,7 @@ public class AmazonHttpClient {
         originalHeaders.putAll(request.getHeaders());
 
         final AWSCredentials credentials = executionContext.getCredentials();
+        final AdaptiveRateLimiter rateLimiter = getRateLimiter(request.getEndpoint());
         Signer signer = null;
         HttpResponse httpResponse = null;
         HttpRequest httpRequest = null;
@@ -332,6 +432,17 @@ public class AmazonHttpClient {
                     }
                 }
 
+                // Wait for a send slot after any retry pause so the slot is
+                // used right away rather than sitting through the backoff
+                if (rateLimiter != null) {
+                    awsRequestMetrics.startEvent(Field.RateLimitPauseTime);
+                    try {
+                        rateLimiter.acquire();
+                    } finally {
+                        awsRequestMetrics.endEvent(Field.RateLimitPauseTime);
+                    }
+                }
+
                 // mark input stream if supported
                 InputStream content = httpRequest.getContent();
                 if (content != null) {
@@ -348,6 +459,7 @@ public class AmazonHttpClient {
                 }
 
                 retriedException = null;
+                captureConnectionPoolMetrics(awsRequestMetrics);
                 awsRequestMetrics.startEvent(Field.HttpRequestTime);
                 try {
                     httpResponse = httpClient.execute(httpRequest);
@@ -365,6 +477,7 @@ public class AmazonHttpClient {
                     T response = handleResponse(request, responseHandler,
                             httpResponse,
                             executionContext);
+                    releaseRetryCapacity(retries);
                     return new Response<T>(response, httpResponse);
                 } else if (isTemporaryRedirect(httpResponse)) {
                     /*
@@ -387,17 +500,22 @@ public class AmazonHttpClient {
                     awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
                     awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
                     awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                    if (rateLimiter != null && RetryUtils.isThrottlingException(ase)) {
+                        rateLimiter.onThrottle();
+                    }
 
                     if (!shouldRetry(request.getOriginalRequest(),
                             httpRequest.getContent(),
                             ase,
                             requestCount,
-                            config.getRetryPolicy())) {
+                            config.getRetryPolicy(),
+                            awsRequestMetrics)) {
                         throw ase;
                     }
 
                     // Cache the retryable exception
                     retriedException = ase;
+                    retries++;
                     /*
                      * Checking for clock skew error again because we don't want
                      * to set the global time offset for every service
@@ -423,12 +541,14 @@ public class AmazonHttpClient {
                         httpRequest.getContent(),
                         ace,
                         requestCount,
-                        config.getRetryPolicy())) {
+                        config.getRetryPolicy(),
+                        awsRequestMetrics)) {
                     throw ace;
                 }
 
                 // Cache the retryable exception
                 retriedException = ace;
+                retries++;
                 resetRequestAfterError(request, ioe);
             } catch (RuntimeException e) {
                 throw handleUnexpectedFailure(e, awsRequestMetrics);
@@ -455,6 +575,28 @@ public class AmazonHttpClient {
         } /* end while (true) */
     }
 
+    /**
+     * Captures the connection pool metrics of the underlying http client, if
+     * it maintains its own connection pool.
+     */
+    private void captureConnectionPoolMetrics(AWSRequestMetrics awsRequestMetrics) {
+        if (!awsRequestMetrics.isEnabled()) {
+            return;
+        }
+        ConnectionPoolStats stats = null;
+        if (httpClient instanceof PooledHttpClient) {
+            stats = ((PooledHttpClient) httpClient).getPoolStats();
+        } else if (httpClient instanceof NioHttpClient) {
+            stats = ((NioHttpClient) httpClient).getPoolStats();
+        }
+        if (stats != null) {
+            awsRequestMetrics.setCounter(Field.HttpClientPoolAvailableCount,
+                    stats.getAvailable());
+            awsRequestMetrics.setCounter(Field.HttpClientPoolLeasedCount, stats.getLeased());
+            awsRequestMetrics.setCounter(Field.HttpClientPoolPendingCount, stats.getPending());
+        }
+    }
+
     /**
      * Handles an unexpected failure, returning the Throwable instance as given.
      */
@@ -537,6 +679,93 @@ public class AmazonHttpClient {
      */
     public void shutdown() {
         httpClient.shutdown();
+        synchronized (this) {
+            if (callbackExecutor != null) {
+                callbackExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns the executor which runs the response handlers of asynchronous
+     * requests. Its threads are daemons so they don't keep the process alive.
+     */
+    synchronized ExecutorService getCallbackExecutor() {
+        if (callbackExecutor == null) {
+            callbackExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "aws-http-callback-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return callbackExecutor;
+    }
+
+    /**
+     * Sets the scheduler which delays the retries of requests executed with
+     * {@link #executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+     * , as well as the attempts held back by the adaptive rate limiter. By
+     * default they are delayed on a timer thread shared by all clients.
+     * The scheduler isn't shut down along with this client.
+     *
+     * @param retryScheduler the scheduler, or null to use the shared one
+     */
+    public void setRetryScheduler(RetryScheduler retryScheduler) {
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * Returns the scheduler which delays the retries of asynchronous requests.
+     */
+    RetryScheduler getRetryScheduler() {
+        RetryScheduler scheduler = retryScheduler;
+        if (scheduler != null) {
+            return scheduler;
+        }
+        synchronized (AmazonHttpClient.class) {
+            if (sharedRetryScheduler == null) {
+                sharedRetryScheduler = new ScheduledExecutorRetryScheduler();
+            }
+            return sharedRetryScheduler;
+        }
+    }
+
+    /**
+     * Returns the retry token bucket shared by all requests of this client, or
+     * null if retries aren't throttled. Its counters tell how many retries
+     * were avoided.
+     *
+     * @see ClientConfiguration#setUseThrottleRetries(boolean)
+     */
+    public RetryTokenBucket getRetryTokenBucket() {
+        return retryTokenBucket;
+    }
+
+    /**
+     * Returns the adaptive rate limiter shared by the requests of this client
+     * to the given endpoint, or null if the send rate isn't limited.
+     *
+     * @param endpoint the endpoint of the requests
+     * @see ClientConfiguration#setUseAdaptiveRateLimiting(boolean)
+     */
+    public AdaptiveRateLimiter getRateLimiter(URI endpoint) {
+        if (rateLimiters == null || endpoint == null) {
+            return null;
+        }
+        String route = PooledHttpClient.getRoute(endpoint);
+        synchronized (rateLimiters) {
+            AdaptiveRateLimiter rateLimiter = rateLimiters.get(route);
+            if (rateLimiter == null) {
+                rateLimiter = new AdaptiveRateLimiter();
+                rateLimiters.put(route, rateLimiter);
+            }
+            return rateLimiter;
+        }
     }
 
     /**
@@ -548,13 +777,16 @@ public class AmazonHttpClient {
      * @param exception The client/service exception from the failed request.
      * @param requestCount The number of times the current request has been
      *            attempted.
+     * @param awsRequestMetrics The metrics of the request, which count the
+     *            retries avoided by the retry token bucket.
      * @return True if the failed request should be retried.
      */
     private boolean shouldRetry(AmazonWebServiceRequest originalRequest,
             InputStream inputStream,
             AmazonClientException exception,
             int requestCount,
-            RetryPolicy retryPolicy) {
+            RetryPolicy retryPolicy,
+            AWSRequestMetrics awsRequestMetrics) {
         final int retries = requestCount - 1;
 
         int maxErrorRetry = config.getMaxErrorRetry();
@@ -581,9 +813,36 @@ public class AmazonHttpClient {
 
         // Pass all the context information to the RetryCondition and let it
         // decide whether it should be retried.
-        return retryPolicy.getRetryCondition().shouldRetry(originalRequest,
+        if (!retryPolicy.getRetryCondition().shouldRetry(originalRequest,
                 exception,
-                retries);
+                retries)) {
+            return false;
+        }
+
+        // Retries the policy allows still need capacity from the client-wide
+        // bucket, which runs dry when most requests fail.
+        if (retryTokenBucket != null && !retryTokenBucket.tryAcquire()) {
+            awsRequestMetrics.incrementCounter(Field.ThrottledRetryCount);
+            if (log.isDebugEnabled()) {
+                log.debug("Retry avoided because the retry token bucket is empty");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the capacity taken by the retries of a successful request to the
+     * retry token bucket, if retries are throttled.
+     *
+     * @param retries the number of retries allowed by
+     *            {@link #shouldRetry(AmazonWebServiceRequest, InputStream, AmazonClientException, int, RetryPolicy, AWSRequestMetrics)}
+     *            for the request
+     */
+    private void releaseRetryCapacity(int retries) {
+        if (retryTokenBucket != null) {
+            retryTokenBucket.release(retries);
+        }
     }
 
     private static boolean isTemporaryRedirect(HttpResponse response) {
@@ -726,6 +985,32 @@ public class AmazonHttpClient {
             AmazonClientException previousException,
             int requestCount,
             RetryPolicy retryPolicy) {
+        long delay = delayBeforeNextRetry(originalRequest, previousException, requestCount,
+                retryPolicy);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the back-off delay before the next attempt of a failed request.
+     *
+     * @param originalRequest The original service request that is being
+     *            executed.
+     * @param previousException Exception information for the previous attempt,
+     *            if any.
+     * @param requestCount current request count (including the next attempt
+     *            after the delay)
+     * @param retryPolicy The retry policy configured in this http client.
+     * @return the delay in milliseconds
+     */
+    private long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+            AmazonClientException previousException,
+            int requestCount,
+            RetryPolicy retryPolicy) {
         final int retries = requestCount // including next attempt
                 - 1 // number of attempted requests
                 - 1; // number of attempted retries
@@ -737,13 +1022,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     /**
@@ -796,6 +1075,351 @@ public class AmazonHttpClient {
         return (int) (diff / 1000);
     }
 
+    /**
+     * The state of a request executed with
+     * {@link AmazonHttpClient#executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+     * . It follows the same steps as
+     * {@link AmazonHttpClient#executeHelper(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+     * , but each attempt continues in a callback of the http client instead
+     * of a loop.
+     */
+    private final class AsyncExecution<T> implements ResponseCallback<HttpResponse> {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final ResponseFuture<Response<T>> future;
+        private final AWSRequestMetrics awsRequestMetrics;
+        private final Map<String, String> originalParameters = new LinkedHashMap<String, String>();
+        private final Map<String, String> originalHeaders = new HashMap<String, String>();
+        private List<RequestHandler2> requestHandler2s = Collections.emptyList();
+        private Signer signer;
+        private int requestCount;
+        /** Number of retries allowed after errors */
+        private int retries;
+        private URI redirectedURI;
+        private AmazonClientException retriedException;
+        private HttpRequest httpRequest;
+        private AdaptiveRateLimiter rateLimiter;
+        /** Whether the next attempt has already waited for the rate limiter */
+        private boolean rateLimitPassed;
+
+        AsyncExecution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext, ResponseFuture<Response<T>> future) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.future = future;
+            this.awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        }
+
+        void start() {
+            try {
+                requestHandler2s = requestHandler2s(request, executionContext);
+                awsRequestMetrics.addProperty(Field.ServiceName, request.getServiceName());
+                awsRequestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
+                setUserAgent(request);
+                originalParameters.putAll(request.getParameters());
+                originalHeaders.putAll(request.getHeaders());
+                rateLimiter = getRateLimiter(request.getEndpoint());
+            } catch (AmazonClientException e) {
+                fail(e);
+                return;
+            } catch (RuntimeException e) {
+                fail(handleUnexpectedFailure(e, awsRequestMetrics));
+                return;
+            }
+            attempt();
+        }
+
+        /**
+         * Signs and sends the request. The outcome is handled by
+         * {@link #onSuccess(HttpResponse)} or {@link #onError(Exception)}.
+         */
+        private void attempt() {
+            if (rateLimiter != null && !rateLimitPassed) {
+                long delay = rateLimiter.reserve();
+                if (delay > 0) {
+                    rateLimitPassed = true;
+                    attemptAfter(delay, Field.RateLimitPauseTime);
+                    return;
+                }
+            }
+            rateLimitPassed = false;
+            try {
+                ++requestCount;
+                awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
+                if (requestCount > 1) { // retry
+                    request.setParameters(originalParameters);
+                    request.setHeaders(originalHeaders);
+                }
+
+                AWSCredentials credentials = executionContext.getCredentials();
+                if (signer == null)
+                    signer = executionContext.getSignerByURI(request.getEndpoint());
+                if (signer != null && credentials != null) {
+                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
+                    try {
+                        signer.sign(request, credentials);
+                    } finally {
+                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
+                    }
+                }
+
+                if (requestLog.isDebugEnabled()) {
+                    requestLog.debug("Sending Request: " + request.toString());
+                }
+
+                httpRequest = requestFactory.createHttpRequest(request, config,
+                        executionContext);
+                if (redirectedURI != null) {
+                    httpRequest.setUri(redirectedURI);
+                }
+
+                // mark input stream if supported
+                InputStream content = httpRequest.getContent();
+                if (content != null && content.markSupported()) {
+                    if (requestCount > 1) { // retry
+                        content.reset();
+                    }
+                    content.mark(-1);
+                }
+
+                retriedException = null;
+                captureConnectionPoolMetrics(awsRequestMetrics);
+                awsRequestMetrics.startEvent(Field.HttpRequestTime);
+                ((AsyncHttpClient) httpClient).executeAsync(httpRequest).addCallback(this);
+            } catch (IOException ioe) {
+                if (retryAfter(ioe)) {
+                    retry();
+                }
+            } catch (AmazonClientException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(handleUnexpectedFailure(e, awsRequestMetrics));
+            } catch (Error e) {
+                fail(new AmazonClientException("Unexpected error: " + e.getMessage(),
+                        handleUnexpectedFailure(e, awsRequestMetrics)));
+            }
+        }
+
+        @Override
+        public void onSuccess(final HttpResponse httpResponse) {
+            awsRequestMetrics.endEvent(Field.HttpRequestTime);
+            continueOnCallbackExecutor(new Runnable() {
+                @Override
+                public void run() {
+                    handle(httpResponse);
+                }
+            });
+        }
+
+        @Override
+        public void onError(final Exception exception) {
+            awsRequestMetrics.endEvent(Field.HttpRequestTime);
+            continueOnCallbackExecutor(new Runnable() {
+                @Override
+                public void run() {
+                    if (exception instanceof IOException) {
+                        if (retryAfter((IOException) exception)) {
+                            retry();
+                        }
+                    } else if (exception instanceof RuntimeException) {
+                        fail((RuntimeException) exception);
+                    } else {
+                        fail(new AmazonClientException(exception.getMessage(), exception));
+                    }
+                }
+            });
+        }
+
+        private void continueOnCallbackExecutor(Runnable runnable) {
+            try {
+                getCallbackExecutor().execute(runnable);
+            } catch (RuntimeException e) {
+                // the client has been shut down
+                fail(new AmazonClientException("Unable to complete the request: "
+                        + e.getMessage(), e));
+            }
+        }
+
+        private void handle(HttpResponse httpResponse) {
+            boolean leaveHttpConnectionOpen = false;
+            boolean retry = false;
+            try {
+                if (isRequestSuccessful(httpResponse)) {
+                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                    leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
+                    T result = handleResponse(request, responseHandler, httpResponse,
+                            executionContext);
+                    complete(new Response<T>(result, httpResponse));
+                } else if (isTemporaryRedirect(httpResponse)) {
+                    String redirectedLocation = httpResponse.getHeaders().get("Location");
+                    log.debug("Redirecting to: " + redirectedLocation);
+                    redirectedURI = URI.create(redirectedLocation);
+                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
+                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+                    retry = true;
+                } else {
+                    leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
+                    AmazonServiceException ase = handleErrorResponse(request,
+                            errorResponseHandler, httpResponse);
+                    awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
+                    awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
+                    awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                    if (rateLimiter != null && RetryUtils.isThrottlingException(ase)) {
+                        rateLimiter.onThrottle();
+                    }
+
+                    if (!shouldRetry(request.getOriginalRequest(),
+                            httpRequest.getContent(),
+                            ase,
+                            requestCount,
+                            config.getRetryPolicy(),
+                            awsRequestMetrics)) {
+                        fail(ase);
+                        return;
+                    }
+
+                    retriedException = ase;
+                    retries++;
+                    if (RetryUtils.isClockSkewError(ase)) {
+                        int timeOffset = parseClockSkewOffset(httpResponse, ase);
+                        SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
+                    }
+                    resetRequestAfterError(request, ase);
+                    retry = true;
+                }
+            } catch (IOException ioe) {
+                retry = retryAfter(ioe);
+            } catch (AmazonClientException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(handleUnexpectedFailure(e, awsRequestMetrics));
+            } catch (Error e) {
+                fail(new AmazonClientException("Unexpected error: " + e.getMessage(),
+                        handleUnexpectedFailure(e, awsRequestMetrics)));
+            } finally {
+                if (!leaveHttpConnectionOpen) {
+                    try {
+                        if (httpResponse.getRawContent() != null) {
+                            httpResponse.getRawContent().close();
+                        }
+                    } catch (IOException e) {
+                        log.warn("Cannot close the response content.", e);
+                    }
+                }
+            }
+            if (retry) {
+                retry();
+            }
+        }
+
+        /**
+         * Runs the next attempt after the back-off delay of the retry policy.
+         * The delay is left to the {@link RetryScheduler}, so no thread is
+         * blocked in the meantime.
+         */
+        private void retry() {
+            long delay;
+            try {
+                delay = delayBeforeNextRetry(request.getOriginalRequest(),
+                        retriedException,
+                        requestCount + 1,
+                        config.getRetryPolicy());
+            } catch (RuntimeException e) {
+                fail(handleUnexpectedFailure(e, awsRequestMetrics));
+                return;
+            }
+            if (delay <= 0) {
+                attempt();
+            } else {
+                attemptAfter(delay, Field.RetryPauseTime);
+            }
+        }
+
+        /**
+         * Runs the next attempt once the {@link RetryScheduler} says the delay
+         * is over, timing the pause as the given event.
+         */
+        private void attemptAfter(long delay, final Field pauseEvent) {
+            awsRequestMetrics.startEvent(pauseEvent);
+            try {
+                getRetryScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        awsRequestMetrics.endEvent(pauseEvent);
+                        continueOnCallbackExecutor(new Runnable() {
+                            @Override
+                            public void run() {
+                                attempt();
+                            }
+                        });
+                    }
+                }, delay);
+            } catch (RuntimeException e) {
+                awsRequestMetrics.endEvent(pauseEvent);
+                fail(new AmazonClientException("Unable to schedule the request: "
+                        + e.getMessage(), e));
+            }
+        }
+
+        /**
+         * Records an I/O failure and decides whether to retry it. Fails the
+         * future if not.
+         */
+        private boolean retryAfter(IOException ioe) {
+            if (log.isInfoEnabled()) {
+                log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            }
+            awsRequestMetrics.incrementCounter(Field.Exception);
+            awsRequestMetrics.addProperty(Field.Exception, ioe);
+            awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+
+            AmazonClientException ace = new AmazonClientException(
+                    "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            try {
+                if (!shouldRetry(request.getOriginalRequest(),
+                        httpRequest == null ? null : httpRequest.getContent(),
+                        ace,
+                        requestCount,
+                        config.getRetryPolicy(),
+                        awsRequestMetrics)) {
+                    fail(ace);
+                    return false;
+                }
+                retriedException = ace;
+                retries++;
+                resetRequestAfterError(request, ioe);
+                return true;
+            } catch (AmazonClientException e) {
+                fail(e);
+                return false;
+            }
+        }
+
+        private void complete(Response<T> response) {
+            releaseRetryCapacity(retries);
+            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+            afterResponse(request, requestHandler2s, response, timingInfo);
+            future.complete(response);
+        }
+
+        private void fail(RuntimeException e) {
+            try {
+                if (e instanceof AmazonClientException) {
+                    afterError(request, null, requestHandler2s, (AmazonClientException) e);
+                }
+            } finally {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
     @Override
     protected void finalize() throws Throwable {
         this.shutdown();
@@ -88,6 +88,15 @@ public class ApacheHttpClient implements HttpClient {
 
     private HttpParams params = null;
 
+    /**
+     * Returns the length of the request content, or -1 if the request has no
+     * Content-Length header so HttpClient sends it chunked.
+     */
+    private static long getEntityLength(HttpRequest request) {
+        String length = request.getHeaders().get(HttpHeader.CONTENT_LENGTH);
+        return length == null || length.isEmpty() ? -1 : request.getContentLength();
+    }
+
     private HttpUriRequest createHttpRequest(HttpRequest request) {
         HttpUriRequest httpRequest;
         String method = request.getMethod();
@@ -95,7 +104,7 @@ public class ApacheHttpClient implements HttpClient {
             HttpPost postRequest = new HttpPost(request.getUri());
             if (request.getContent() != null) {
                 postRequest.setEntity(new InputStreamEntity(request.getContent(),
-                        request.getContentLength()));
+                        getEntityLength(request)));
             }
             httpRequest = postRequest;
         } else if (method.equals("GET")) {
@@ -104,7 +113,7 @@ public class ApacheHttpClient implements HttpClient {
             HttpPut putRequest = new HttpPut(request.getUri());
             if (request.getContent() != null) {
                 putRequest.setEntity(new InputStreamEntity(request.getContent(),
-                        request.getContentLength()));
+                        getEntityLength(request)));
             }
             httpRequest = putRequest;
         } else if (method.equals("DELETE")) {
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+/**
+ * An {@link HttpClient} which can send a request without blocking the calling
+ * thread while waiting for the response.
+ */
+public interface AsyncHttpClient extends HttpClient {
+
+    /**
+     * Sends a {@link HttpRequest} and returns immediately. The returned future
+     * completes with the {@link HttpResponse}, or with an
+     * {@link java.io.IOException} in case of a connection problem. Callbacks
+     * registered on the future may be invoked on the I/O thread of the
+     * client, so they must not block.
+     *
+     * @param request a HTTP request
+     * @return a future of the response
+     */
+    ResponseFuture<HttpResponse> executeAsync(HttpRequest request);
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+/**
+ * A snapshot of the state of the connection pool of a
+ * {@link PooledHttpClient}.
+ */
+public class ConnectionPoolStats {
+
+    private final int available;
+    private final int leased;
+    private final int pending;
+    private final long created;
+    private final long reused;
+
+    ConnectionPoolStats(int available, int leased, int pending, long created, long reused) {
+        this.available = available;
+        this.leased = leased;
+        this.pending = pending;
+        this.created = created;
+        this.reused = reused;
+    }
+
+    /**
+     * Returns the number of idle persistent connections.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * Returns the number of connections currently being used to execute
+     * requests.
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * Returns the number of requests blocked awaiting a free connection.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Returns the total number of connections opened by the pool, each of
+     * which paid for a TCP (and TLS) handshake.
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the total number of times an idle connection was reused for a
+     * request instead of opening a new one.
+     */
+    public long getReused() {
+        return reused;
+    }
+
+    @Override
+    public String toString() {
+        return "[available: " + available + "; leased: " + leased + "; pending: " + pending
+                + "; created: " + created + "; reused: " + reused + "]";
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of persistent HTTP connections, keyed by route
+ * ("scheme://host:port"). The number of connections, leased or idle, to a
+ * single route never exceeds the configured maximum; requests for a route at
+ * its limit wait for a connection to be released.
+ */
+class HttpConnectionPool {
+
+    static final Log log = LogFactory.getLog(HttpConnectionPool.class);
+
+    /**
+     * Opens new connections on behalf of the pool.
+     */
+    interface ConnectionFactory {
+        /**
+         * Opens a new connection to the given route.
+         *
+         * @param route route in the form of "scheme://host:port"
+         * @return a new connection
+         * @throws IOException if the connection can't be established
+         */
+        PooledConnection create(String route) throws IOException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxConnectionsPerRoute;
+    private final long leaseTimeoutMillis;
+    private final Map<String, RoutePool> routePools = new HashMap<String, RoutePool>();
+    private boolean isShutdown;
+    private long created;
+    private long reused;
+
+    /**
+     * @param connectionFactory factory to open new connections
+     * @param maxConnectionsPerRoute maximum number of connections to a route
+     * @param leaseTimeoutMillis maximum time to wait for a free connection, 0
+     *            to wait indefinitely
+     */
+    HttpConnectionPool(ConnectionFactory connectionFactory, int maxConnectionsPerRoute,
+            long leaseTimeoutMillis) {
+        if (maxConnectionsPerRoute <= 0) {
+            throw new IllegalArgumentException("maxConnectionsPerRoute must be positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    /**
+     * Leases a connection to the given route, reusing the most recently
+     * released idle connection if there is one, or opening a new one.
+     *
+     * @param route route in the form of "scheme://host:port"
+     * @return a connection which must be returned with
+     *         {@link #release(PooledConnection, boolean)}
+     * @throws IOException if no connection becomes available in time, or a
+     *             new connection can't be opened
+     */
+    PooledConnection lease(String route) throws IOException {
+        PooledConnection connection = reserve(route);
+        if (connection != null) {
+            if (!connection.isStale()) {
+                synchronized (this) {
+                    reused++;
+                }
+                return connection;
+            }
+            log.debug("Closing stale connection to " + route);
+            connection.close();
+        }
+
+        // The slot is reserved, open the connection outside of the lock.
+        try {
+            connection = connectionFactory.create(route);
+        } catch (IOException e) {
+            cancelReservation(route);
+            throw e;
+        } catch (RuntimeException e) {
+            cancelReservation(route);
+            throw e;
+        }
+        synchronized (this) {
+            created++;
+        }
+        return connection;
+    }
+
+    /**
+     * Returns an idle connection or reserves a slot for a new one.
+     *
+     * @return an idle connection, or null if a slot was reserved for a new
+     *         connection
+     */
+    private synchronized PooledConnection reserve(String route) throws IOException {
+        RoutePool routePool = getRoutePool(route);
+        long deadline = leaseTimeoutMillis > 0
+                ? System.currentTimeMillis() + leaseTimeoutMillis : 0;
+        while (true) {
+            if (isShutdown) {
+                throw new IOException("Connection pool shut down");
+            }
+            PooledConnection connection = routePool.available.pollLast();
+            if (connection != null) {
+                routePool.leased++;
+                return connection;
+            }
+            if (routePool.leased < maxConnectionsPerRoute) {
+                routePool.leased++;
+                return null;
+            }
+
+            long waitMillis = 0;
+            if (deadline > 0) {
+                waitMillis = deadline - System.currentTimeMillis();
+                if (waitMillis <= 0) {
+                    throw new IOException("Timeout waiting for connection from pool to "
+                            + route);
+                }
+            }
+            routePool.pending++;
+            try {
+                wait(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for connection from pool");
+            } finally {
+                routePool.pending--;
+            }
+        }
+    }
+
+    private synchronized void cancelReservation(String route) {
+        getRoutePool(route).leased--;
+        notifyAll();
+    }
+
+    /**
+     * Returns a leased connection to the pool.
+     *
+     * @param connection the connection to release
+     * @param reusable whether the connection can be used for another request;
+     *            if false it's closed
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        boolean close = !reusable;
+        synchronized (this) {
+            getRoutePool(connection.getRoute()).leased--;
+            if (reusable && !isShutdown) {
+                connection.setLastUsedMillis(System.currentTimeMillis());
+                getRoutePool(connection.getRoute()).available.addLast(connection);
+            } else {
+                close = true;
+            }
+            notifyAll();
+        }
+        if (close) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Opens connections to the given route ahead of time so that subsequent
+     * requests don't pay for the TCP and TLS handshakes. Never opens more
+     * connections than the route limit allows.
+     *
+     * @param route route in the form of "scheme://host:port"
+     * @param connections the number of idle connections wanted
+     * @return the number of connections opened
+     * @throws IOException if a connection can't be opened
+     */
+    int warmUp(String route, int connections) throws IOException {
+        int opened = 0;
+        while (true) {
+            synchronized (this) {
+                RoutePool routePool = getRoutePool(route);
+                if (isShutdown || routePool.available.size() >= connections
+                        || routePool.leased + routePool.available.size()
+                        >= maxConnectionsPerRoute) {
+                    return opened;
+                }
+                routePool.leased++;
+            }
+            PooledConnection connection;
+            try {
+                connection = connectionFactory.create(route);
+            } catch (IOException e) {
+                cancelReservation(route);
+                throw e;
+            }
+            synchronized (this) {
+                created++;
+            }
+            release(connection, true);
+            opened++;
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the given time.
+     *
+     * @param idleTime the idle time threshold
+     * @param unit the unit of the idle time
+     */
+    void closeIdleConnections(long idleTime, TimeUnit unit) {
+        long cutoff = System.currentTimeMillis() - unit.toMillis(idleTime);
+        List<PooledConnection> toClose = new ArrayList<PooledConnection>();
+        synchronized (this) {
+            for (RoutePool routePool : routePools.values()) {
+                Iterator<PooledConnection> iterator = routePool.available.iterator();
+                while (iterator.hasNext()) {
+                    PooledConnection connection = iterator.next();
+                    if (connection.getLastUsedMillis() <= cutoff) {
+                        iterator.remove();
+                        toClose.add(connection);
+                    }
+                }
+            }
+        }
+        for (PooledConnection connection : toClose) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Closes all idle connections to the given route, e.g. after one of them
+     * turned out to have been closed by the server.
+     */
+    void closeIdleConnections(String route) {
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            RoutePool routePool = getRoutePool(route);
+            toClose = new ArrayList<PooledConnection>(routePool.available);
+            routePool.available.clear();
+        }
+        for (PooledConnection connection : toClose) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Closes all idle connections and fails any further lease. Leased
+     * connections are closed when they are released.
+     */
+    void shutdown() {
+        List<PooledConnection> toClose = new ArrayList<PooledConnection>();
+        synchronized (this) {
+            isShutdown = true;
+            for (RoutePool routePool : routePools.values()) {
+                toClose.addAll(routePool.available);
+                routePool.available.clear();
+            }
+            notifyAll();
+        }
+        for (PooledConnection connection : toClose) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool state across all routes.
+     */
+    synchronized ConnectionPoolStats getStats() {
+        int available = 0;
+        int leased = 0;
+        int pending = 0;
+        for (RoutePool routePool : routePools.values()) {
+            available += routePool.available.size();
+            leased += routePool.leased;
+            pending += routePool.pending;
+        }
+        return new ConnectionPoolStats(available, leased, pending, created, reused);
+    }
+
+    private RoutePool getRoutePool(String route) {
+        RoutePool routePool = routePools.get(route);
+        if (routePool == null) {
+            routePool = new RoutePool();
+            routePools.put(route, routePool);
+        }
+        return routePool;
+    }
+
+    /**
+     * Connections to a single route. Idle connections are reused LIFO so that
+     * the least recently used ones age out.
+     */
+    private static final class RoutePool {
+        private final LinkedList<PooledConnection> available = new LinkedList<PooledConnection>();
+        private int leased;
+        private int pending;
+    }
+}
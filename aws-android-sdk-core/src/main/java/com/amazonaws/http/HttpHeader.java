@@ -5,12 +5,14 @@ public final class HttpHeader {
 
     public static final String ACCEPT = "Accept";
     public static final String AUTHORIZATION = "Authorization";
+    public static final String CONNECTION = "Connection";
     public static final String CONTENT_LENGTH = "Content-Length";
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String DATE = "Date";
     public static final String EXPECT = "Expect";
     public static final String HOST = "Host";
     public static final String LOCATION = "Location";
+    public static final String TRANSFER_ENCODING = "Transfer-Encoding";
     public static final String USER_AGENT = "User-Agent";
 
     // x-amz-content-sha256
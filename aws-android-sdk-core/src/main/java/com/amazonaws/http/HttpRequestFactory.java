@@ -15,7 +15,6 @@
 
 package com.amazonaws.http;
 
-import com.amazonaws.AmazonClientException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Request;
 import com.amazonaws.util.HttpUtils;
@@ -88,12 +87,10 @@ public class HttpRequestFactory {
 
         if (method.equals("POST") || method.equals("PUT")) {
             String len = request.getHeaders().get("Content-Length");
-            if (len == null || len.isEmpty()) {
-                if (is != null) {
-                    throw new AmazonClientException("Unknown content-length");
-                } else {
-                    request.addHeader("Content-Length", "0");
-                }
+            // Content of an unknown length is left without a Content-Length
+            // header, so that the HttpClient sends it chunked.
+            if ((len == null || len.isEmpty()) && is == null) {
+                request.addHeader("Content-Length", "0");
             }
         }
 
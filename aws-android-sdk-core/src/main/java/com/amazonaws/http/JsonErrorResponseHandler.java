@@ -19,6 +19,7 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonServiceException.ErrorType;
 import com.amazonaws.transform.JsonErrorUnmarshaller;
+import com.amazonaws.util.StringUtils;
 import com.amazonaws.util.json.JsonUtils;
 
 import java.io.BufferedReader;
@@ -177,7 +178,7 @@ public class JsonErrorResponseHandler implements HttpResponseHandler<AmazonServi
 
             // parse error body
             Map<String, String> map = JsonUtils.jsonToMap(new BufferedReader(new InputStreamReader(
-                    response.getContent())));
+                    response.getContent(), StringUtils.UTF8)));
 
             /*
              * Services using AWS JSON 1.1 protocol with HTTP binding send the
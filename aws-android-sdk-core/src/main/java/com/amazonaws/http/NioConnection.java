@@ -0,0 +1,460 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A non-blocking connection of {@link NioHttpClient}. It's only ever touched
+ * by the I/O thread of the client, and carries at most one request at a time:
+ * it connects, completes the TLS handshake if needed, writes the request,
+ * parses the response and reports the outcome back to the client.
+ */
+class NioConnection {
+
+    static final int CONNECTING = 0;
+    static final int HANDSHAKING = 1;
+    static final int WRITING = 2;
+    static final int READING = 3;
+    static final int IDLE = 4;
+    static final int CLOSED = 5;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    /** Room for the chunk size line and the CRLF around a chunk */
+    private static final int CHUNK_OVERHEAD = 16;
+
+    private final NioHttpClient client;
+    private final String route;
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private NioTransport transport;
+    private int state = CONNECTING;
+    private long deadline;
+    private long lastUsedMillis;
+    private int useCount;
+
+    private NioHttpClient.Exchange exchange;
+    private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE + CHUNK_OVERHEAD);
+    /** Request head too large for {@link #out}, written ahead of it */
+    private ByteBuffer pendingHead;
+    private final byte[] contentBuffer = new byte[BUFFER_SIZE];
+    private InputStream content;
+    /** File the content is read from, sent straight from the file if possible */
+    private FileChannel contentFile;
+    private boolean chunked;
+    private long contentRemaining;
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE * 2);
+    private NioResponseParser parser;
+
+    NioConnection(NioHttpClient client, String route, SocketChannel channel) {
+        this.client = client;
+        this.route = route;
+        this.channel = channel;
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    int getState() {
+        return state;
+    }
+
+    int getUseCount() {
+        return useCount;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    NioHttpClient.Exchange getExchange() {
+        return exchange;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Starts connecting on behalf of the given exchange, which is sent once
+     * the connection is established.
+     */
+    void connect(NioHttpClient.Exchange exchange, long connectionTimeoutMillis) {
+        this.exchange = exchange;
+        state = CONNECTING;
+        deadline = connectionTimeoutMillis > 0
+                ? System.currentTimeMillis() + connectionTimeoutMillis : 0;
+        updateInterest();
+    }
+
+    /**
+     * Sends the given exchange on this established connection.
+     */
+    void send(NioHttpClient.Exchange exchange) {
+        this.exchange = exchange;
+        useCount++;
+        HttpRequest request = exchange.getRequest();
+        StringBuilder head = new StringBuilder(256);
+        chunked = PooledHttpClient.appendRequestHead(request, head);
+        content = request.getContent();
+        contentRemaining = content == null || chunked ? 0 : request.getContentLength();
+        contentFile = null;
+
+        // The head is sent on its own if it doesn't fit the buffer.
+        out.clear();
+        ByteBuffer headBytes = out;
+        if (head.length() > out.capacity()) {
+            headBytes = ByteBuffer.allocate(head.length());
+        }
+        for (int i = 0; i < head.length(); i++) {
+            headBytes.put((byte) head.charAt(i));
+        }
+        headBytes.flip();
+        pendingHead = headBytes == out ? null : headBytes;
+        if (pendingHead != null) {
+            out.limit(0);
+        }
+
+        parser = new NioResponseParser("HEAD".equals(request.getMethod()));
+        state = WRITING;
+        touch();
+        try {
+            if (contentRemaining > 0) {
+                contentFile = RequestContentWriter.getFileChannel(content);
+            }
+            onWritable();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Handles the readiness reported by the selector.
+     */
+    void onReady(int readyOps) {
+        try {
+            if ((readyOps & SelectionKey.OP_CONNECT) != 0 && state == CONNECTING) {
+                if (channel.finishConnect()) {
+                    onConnected();
+                }
+                return;
+            }
+            if (state == HANDSHAKING) {
+                continueHandshake();
+                return;
+            }
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                if (state == WRITING) {
+                    onWritable();
+                } else {
+                    transport.flush();
+                }
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0 && state != CLOSED) {
+                onReadable();
+            }
+            if (state != CLOSED) {
+                updateInterest();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException("Unexpected failure: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Called when the connection attempt has completed.
+     */
+    void onConnected() throws IOException {
+        transport = client.createTransport(this);
+        state = HANDSHAKING;
+        continueHandshake();
+    }
+
+    /**
+     * Fails the exchange in flight, if any, with a timeout and closes the
+     * connection.
+     */
+    void timeout() {
+        if (state == IDLE) {
+            client.onIdleConnectionClosed(this);
+            return;
+        }
+        fail(new SocketTimeoutException(state == CONNECTING || state == HANDSHAKING
+                ? "connect timed out" : "Read timed out"));
+    }
+
+    /**
+     * Puts the connection back in the idle state after a request.
+     */
+    void idle(long idleTimeoutMillis) {
+        exchange = null;
+        content = null;
+        contentFile = null;
+        parser = null;
+        state = IDLE;
+        lastUsedMillis = System.currentTimeMillis();
+        deadline = lastUsedMillis + idleTimeoutMillis;
+        updateInterest();
+    }
+
+    void close() {
+        state = CLOSED;
+        if (key != null) {
+            key.cancel();
+        }
+        if (transport != null) {
+            transport.close();
+        } else {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+    private void continueHandshake() throws IOException {
+        // the connection timeout covers the TCP and TLS handshakes together
+        if (transport.handshake()) {
+            client.verifyHandshake(this, transport);
+            send(exchange);
+        } else {
+            updateInterest();
+        }
+    }
+
+    private void onWritable() throws IOException {
+        while (true) {
+            if (pendingHead != null) {
+                transport.write(pendingHead);
+                if (pendingHead.hasRemaining()) {
+                    break;
+                }
+                pendingHead = null;
+            }
+            if (out.hasRemaining()) {
+                int written = transport.write(out);
+                if (written > 0) {
+                    touch();
+                }
+                if (out.hasRemaining()) {
+                    break;
+                }
+            }
+            if (contentFile != null && !transferContent()) {
+                break;
+            }
+            if (!fillContent()) {
+                // the whole request is written
+                state = READING;
+                touch();
+                onReadable();
+                break;
+            }
+        }
+        if (state != CLOSED) {
+            updateInterest();
+        }
+    }
+
+    /**
+     * Sends the request content straight from its file while the transport
+     * allows it, falling back to {@link #fillContent()} otherwise.
+     *
+     * @return false if the channel has to become writable first
+     */
+    private boolean transferContent() throws IOException {
+        while (contentRemaining > 0) {
+            long position = contentFile.position();
+            long written = transport.transferFrom(contentFile, position, contentRemaining);
+            if (written > 0) {
+                RequestContentWriter.skipFully(content, written);
+                contentRemaining -= written;
+                touch();
+            } else if (written == 0 && position < contentFile.size()) {
+                return false;
+            } else {
+                // not supported by the transport, or the file is too short
+                break;
+            }
+        }
+        contentFile = null;
+        return true;
+    }
+
+    /**
+     * Reads the next piece of the request content into {@link #out}.
+     *
+     * @return false if there is no more content
+     */
+    private boolean fillContent() throws IOException {
+        if (content == null) {
+            return false;
+        }
+        out.clear();
+        if (chunked) {
+            int read = content.read(contentBuffer);
+            while (read == 0) {
+                read = content.read(contentBuffer);
+            }
+            if (read == -1) {
+                putAscii("0\r\n\r\n");
+                content = null;
+            } else {
+                putAscii(Integer.toHexString(read));
+                putAscii("\r\n");
+                out.put(contentBuffer, 0, read);
+                putAscii("\r\n");
+            }
+        } else {
+            if (contentRemaining == 0) {
+                content = null;
+                out.flip();
+                return false;
+            }
+            int read = content.read(contentBuffer, 0,
+                    (int) Math.min(contentBuffer.length, contentRemaining));
+            if (read == -1) {
+                throw new IOException("Request content ended " + contentRemaining
+                        + " bytes short of its Content-Length");
+            }
+            out.put(contentBuffer, 0, read);
+            contentRemaining -= read;
+        }
+        out.flip();
+        return true;
+    }
+
+    private void onReadable() throws IOException {
+        while (state == READING || state == IDLE) {
+            in.clear();
+            int read = transport.read(in);
+            if (read == 0) {
+                return;
+            }
+            if (read == -1) {
+                onEndOfStream();
+                return;
+            }
+            if (state == IDLE) {
+                // the server closed the connection or sent garbage
+                client.onIdleConnectionClosed(this);
+                return;
+            }
+            touch();
+            in.flip();
+            if (parser.parse(in)) {
+                // Anything left over would be an unsolicited response.
+                complete(parser.isKeepAlive() && !in.hasRemaining());
+                return;
+            }
+        }
+    }
+
+    private void onEndOfStream() throws IOException {
+        if (state == IDLE) {
+            client.onIdleConnectionClosed(this);
+            return;
+        }
+        if (state == READING && parser.endOfStream()) {
+            complete(false);
+            return;
+        }
+        throw new EOFException("The server failed to respond");
+    }
+
+    private void complete(boolean keepAlive) {
+        HttpResponse response = parser.getResponse();
+        NioHttpClient.Exchange completed = exchange;
+        client.onExchangeComplete(this, completed, response, keepAlive);
+    }
+
+    private void fail(IOException e) {
+        if (state == CLOSED) {
+            return;
+        }
+        NioHttpClient.Exchange failed = exchange;
+        // Only a request that got no response at all on a reused connection
+        // may have hit a connection the server had already closed. Once the
+        // whole request is written the server may have acted on it, so only
+        // idempotent requests are sent again.
+        boolean retryable = useCount > 1 && state != CONNECTING && state != HANDSHAKING
+                && (parser == null || !parser.hasReceivedData())
+                && !(e instanceof SocketTimeoutException)
+                && (state == WRITING || failed != null
+                        && PooledHttpClient.isIdempotent(failed.getRequest().getMethod()));
+        exchange = null;
+        client.onConnectionFailed(this, failed, e, retryable);
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out.put((byte) text.charAt(i));
+        }
+    }
+
+    private void touch() {
+        lastUsedMillis = System.currentTimeMillis();
+        int socketTimeout = client.getSocketTimeout();
+        deadline = socketTimeout > 0 ? lastUsedMillis + socketTimeout : 0;
+    }
+
+    private void updateInterest() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops;
+        switch (state) {
+            case CONNECTING:
+                ops = SelectionKey.OP_CONNECT;
+                break;
+            case HANDSHAKING:
+                ops = SelectionKey.OP_READ;
+                if (transport.hasPendingOutput()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                break;
+            case WRITING:
+                ops = SelectionKey.OP_WRITE;
+                break;
+            case READING:
+            case IDLE:
+                ops = SelectionKey.OP_READ;
+                if (transport.hasPendingOutput()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                break;
+            default:
+                ops = 0;
+                break;
+        }
+        key.interestOps(ops);
+    }
+}
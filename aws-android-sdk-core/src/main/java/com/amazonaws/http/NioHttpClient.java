@@ -0,0 +1,552 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
+
+import com.amazonaws.ClientConfiguration;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.TrustManager;
+
+/**
+ * An implementation of {@link AsyncHttpClient} on non-blocking NIO channels.
+ * A single I/O thread drives every connection of the client through a
+ * {@link Selector}, so the number of requests in flight isn't bounded by the
+ * number of threads. TLS is implemented with an {@link SSLEngine}.
+ * <p>
+ * Connections are kept alive and reused per endpoint, up to
+ * {@link ClientConfiguration#getMaxConnections()} connections per endpoint;
+ * further requests to the endpoint queue up until a connection is free. A
+ * request that fails on a reused connection before any response arrives is
+ * retried once on a new connection, provided its content can be reset and
+ * either it wasn't completely written or its method is idempotent.
+ * <p>
+ * Response bodies are buffered in memory, so this client is meant for API
+ * calls rather than large downloads. Request content is read on the I/O
+ * thread and should not block, e.g. in-memory or file streams. Host names are
+ * resolved on the I/O thread too. Proxy settings and the 'Expect:
+ * 100-continue' handshake are not supported.
+ */
+public class NioHttpClient implements AsyncHttpClient {
+
+    static final Log log = LogFactory.getLog(NioHttpClient.class);
+
+    /** Idle connections are closed after this time */
+    private static final long IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ClientConfiguration config;
+    private final SSLContext sslContext;
+    private final boolean verifyHostname;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final ConcurrentLinkedQueue<Exchange> submitted = new ConcurrentLinkedQueue<Exchange>();
+    private volatile boolean isShutdown;
+
+    // Only accessed by the I/O thread
+    private final Map<String, RouteState> routes = new HashMap<String, RouteState>();
+    private final Set<NioConnection> connections = new HashSet<NioConnection>();
+
+    // Snapshot of the pool for other threads
+    private volatile ConnectionPoolStats stats = new ConnectionPoolStats(0, 0, 0, 0, 0);
+    private long created;
+    private long reused;
+
+    /**
+     * Creates a new client, configured from the given client configuration,
+     * and starts its I/O thread.
+     *
+     * @param config client configuration
+     */
+    public NioHttpClient(ClientConfiguration config) {
+        this(config, System.getProperty(DISABLE_CERT_CHECKING_SYSTEM_PROPERTY) != null
+                ? getTrustAllSSLContext() : getDefaultSSLContext(),
+                System.getProperty(DISABLE_CERT_CHECKING_SYSTEM_PROPERTY) == null);
+    }
+
+    NioHttpClient(ClientConfiguration config, SSLContext sslContext, boolean verifyHostname) {
+        this.config = config;
+        this.sslContext = sslContext;
+        this.verifyHostname = verifyHostname;
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open a selector", e);
+        }
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "aws-nio-http-" + THREAD_COUNT.incrementAndGet());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    @Override
+    public ResponseFuture<HttpResponse> executeAsync(HttpRequest request) {
+        Exchange exchange = new Exchange(request);
+        if (isShutdown) {
+            exchange.future.completeExceptionally(new IOException("Client has been shut down"));
+            return exchange.future;
+        }
+        submitted.add(exchange);
+        if (isShutdown && submitted.remove(exchange)) {
+            // lost the race with the I/O thread shutting down
+            exchange.future.completeExceptionally(new IOException("Client has been shut down"));
+        }
+        selector.wakeup();
+        return exchange.future;
+    }
+
+    /**
+     * Sends the request and blocks until the response has arrived.
+     */
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        ResponseFuture<HttpResponse> future = executeAsync(request);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the state of the connection pool, as of the last
+     * event handled by the I/O thread.
+     *
+     * @return the connection pool statistics
+     */
+    public ConnectionPoolStats getPoolStats() {
+        return stats;
+    }
+
+    /**
+     * Stops the I/O thread and closes all connections. Requests in flight
+     * fail with an {@link IOException}.
+     */
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        selector.wakeup();
+    }
+
+    int getSocketTimeout() {
+        return config.getSocketTimeout();
+    }
+
+    private void loop() {
+        try {
+            while (!isShutdown) {
+                long timeout = checkDeadlines();
+                selector.select(timeout);
+                dispatchSubmitted();
+                Set<SelectionKey> selected = selector.selectedKeys();
+                for (SelectionKey key : selected) {
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isValid()) {
+                        connection.onReady(key.readyOps());
+                    }
+                }
+                selected.clear();
+                updateStats();
+            }
+        } catch (Throwable t) {
+            log.error("I/O thread of the http client failed", t);
+        } finally {
+            isShutdown = true;
+            closeAll();
+        }
+    }
+
+    /**
+     * Times out the connections past their deadline.
+     *
+     * @return the time until the next deadline, or 0 if there is none
+     */
+    private long checkDeadlines() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        List<NioConnection> expired = null;
+        for (NioConnection connection : connections) {
+            long deadline = connection.getDeadline();
+            if (deadline <= 0) {
+                continue;
+            }
+            if (deadline <= now) {
+                if (expired == null) {
+                    expired = new ArrayList<NioConnection>();
+                }
+                expired.add(connection);
+            } else {
+                next = Math.min(next, deadline);
+            }
+        }
+        if (expired != null) {
+            for (NioConnection connection : expired) {
+                connection.timeout();
+            }
+            updateStats();
+            // the timeouts may have opened new connections
+            return 1;
+        }
+        return next == Long.MAX_VALUE ? 0 : next - now;
+    }
+
+    private void dispatchSubmitted() {
+        Exchange exchange;
+        while ((exchange = submitted.poll()) != null) {
+            if (!exchange.future.isDone()) {
+                dispatch(exchange);
+            }
+        }
+    }
+
+    private void dispatch(Exchange exchange) {
+        RouteState route = getRouteState(exchange.route);
+        NioConnection connection = route.idle.pollLast();
+        if (connection != null) {
+            reused++;
+            connection.send(exchange);
+        } else if (route.open < config.getMaxConnections()) {
+            open(route, exchange);
+        } else {
+            route.waiting.add(exchange);
+        }
+    }
+
+    private void open(RouteState route, Exchange exchange) {
+        URI uri = URI.create(exchange.route);
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            Socket socket = channel.socket();
+            socket.setTcpNoDelay(true);
+            int sendBufferSizeHint = config.getSocketBufferSizeHints()[0];
+            int receiveBufferSizeHint = config.getSocketBufferSizeHints()[1];
+            if (sendBufferSizeHint > 0) {
+                socket.setSendBufferSize(sendBufferSizeHint);
+            }
+            if (receiveBufferSizeHint > 0) {
+                socket.setReceiveBufferSize(receiveBufferSizeHint);
+            }
+            if (config.getLocalAddress() != null) {
+                socket.bind(new InetSocketAddress(config.getLocalAddress(), 0));
+            }
+            NioConnection connection = new NioConnection(this, exchange.route, channel);
+            route.open++;
+            created++;
+            connections.add(connection);
+            connection.setKey(channel.register(selector, 0, connection));
+            InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort());
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(uri.getHost());
+            }
+            if (channel.connect(address)) {
+                connection.connect(exchange, config.getConnectionTimeout());
+                connection.onConnected();
+            } else {
+                connection.connect(exchange, config.getConnectionTimeout());
+            }
+        } catch (IOException e) {
+            NioConnection connection = findConnection(channel);
+            if (connection != null) {
+                onConnectionFailed(connection, exchange, e, false);
+            } else {
+                closeQuietly(channel);
+                exchange.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private NioConnection findConnection(SocketChannel channel) {
+        if (channel == null) {
+            return null;
+        }
+        SelectionKey key = channel.keyFor(selector);
+        return key == null ? null : (NioConnection) key.attachment();
+    }
+
+    /**
+     * Creates the transport of a connection once it's connected.
+     */
+    NioTransport createTransport(NioConnection connection) {
+        URI uri = URI.create(connection.getRoute());
+        if (!"https".equals(uri.getScheme())) {
+            return NioTransport.plain(connection.getChannel());
+        }
+        SSLEngine engine = sslContext.createSSLEngine(uri.getHost(), uri.getPort());
+        engine.setUseClientMode(true);
+        return new TlsNioTransport(connection.getChannel(), engine);
+    }
+
+    /**
+     * Verifies the server's certificate matches the host name, once the TLS
+     * handshake has completed.
+     */
+    void verifyHandshake(NioConnection connection, NioTransport transport) throws IOException {
+        if (!verifyHostname || !(transport instanceof TlsNioTransport)) {
+            return;
+        }
+        String host = URI.create(connection.getRoute()).getHost();
+        Certificate[] certificates = ((TlsNioTransport) transport).getEngine().getSession()
+                .getPeerCertificates();
+        if (certificates.length == 0 || !(certificates[0] instanceof X509Certificate)) {
+            throw new SSLPeerUnverifiedException("No server certificate for " + host);
+        }
+        // wildcard certificates need to match sub-domains for S3 virtual
+        // hosting
+        SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER.verify(host,
+                (X509Certificate) certificates[0]);
+    }
+
+    /**
+     * Called by a connection when the response to its exchange is complete.
+     */
+    void onExchangeComplete(NioConnection connection, Exchange exchange, HttpResponse response,
+            boolean keepAlive) {
+        RouteState route = getRouteState(connection.getRoute());
+        Exchange next = null;
+        if (keepAlive && !isShutdown) {
+            next = route.waiting.poll();
+            if (next != null) {
+                reused++;
+            } else {
+                connection.idle(IDLE_TIMEOUT_MILLIS);
+                route.idle.addLast(connection);
+            }
+        } else {
+            closeConnection(route, connection);
+        }
+        updateStats();
+        exchange.future.complete(response);
+        if (next != null) {
+            connection.send(next);
+        } else {
+            openForWaiting(route);
+        }
+    }
+
+    /**
+     * Called by a connection when it failed. The connection is closed.
+     */
+    void onConnectionFailed(NioConnection connection, Exchange exchange, IOException e,
+            boolean retryable) {
+        RouteState route = getRouteState(connection.getRoute());
+        closeConnection(route, connection);
+        if (exchange != null) {
+            if (retryable && !exchange.retried
+                    && PooledHttpClient.resetContent(exchange.request)) {
+                // The server most likely closed the connection while it was
+                // idle, and probably the other idle connections too.
+                log.debug("Retrying request on a new connection: " + e.getMessage());
+                exchange.retried = true;
+                closeIdleConnections(route);
+                dispatch(exchange);
+            } else {
+                updateStats();
+                exchange.future.completeExceptionally(e);
+            }
+        }
+        openForWaiting(route);
+    }
+
+    /**
+     * Called by an idle connection closed by the server, or idle for too long.
+     */
+    void onIdleConnectionClosed(NioConnection connection) {
+        RouteState route = getRouteState(connection.getRoute());
+        route.idle.remove(connection);
+        closeConnection(route, connection);
+        openForWaiting(route);
+    }
+
+    private void closeIdleConnections(RouteState route) {
+        while (!route.idle.isEmpty()) {
+            closeConnection(route, route.idle.poll());
+        }
+    }
+
+    private void closeConnection(RouteState route, NioConnection connection) {
+        if (connections.remove(connection)) {
+            route.open--;
+        }
+        connection.close();
+    }
+
+    private void openForWaiting(RouteState route) {
+        while (!isShutdown && !route.waiting.isEmpty()
+                && route.open < config.getMaxConnections()) {
+            Exchange exchange = route.waiting.poll();
+            if (!exchange.future.isDone()) {
+                open(route, exchange);
+            }
+        }
+    }
+
+    private void closeAll() {
+        IOException shutdown = new IOException("Client has been shut down");
+        for (NioConnection connection : new ArrayList<NioConnection>(connections)) {
+            Exchange exchange = connection.getExchange();
+            connection.close();
+            if (exchange != null) {
+                exchange.future.completeExceptionally(shutdown);
+            }
+        }
+        connections.clear();
+        for (RouteState route : routes.values()) {
+            for (Exchange exchange : route.waiting) {
+                exchange.future.completeExceptionally(shutdown);
+            }
+        }
+        routes.clear();
+        Exchange exchange;
+        while ((exchange = submitted.poll()) != null) {
+            exchange.future.completeExceptionally(shutdown);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // ignored
+        }
+        updateStats();
+    }
+
+    private void updateStats() {
+        int available = 0;
+        int leased = 0;
+        int pending = 0;
+        for (RouteState route : routes.values()) {
+            available += route.idle.size();
+            leased += route.open - route.idle.size();
+            pending += route.waiting.size();
+        }
+        stats = new ConnectionPoolStats(available, leased, pending, created, reused);
+    }
+
+    private RouteState getRouteState(String route) {
+        RouteState state = routes.get(route);
+        if (state == null) {
+            state = new RouteState();
+            routes.put(route, state);
+        }
+        return state;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+    private static SSLContext getDefaultSSLContext() {
+        try {
+            return SSLContext.getDefault();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to get the default SSL context", e);
+        }
+    }
+
+    private static SSLContext getTrustAllSSLContext() {
+        try {
+            SSLContext sc = SSLContext.getInstance("TLS");
+            sc.init(null, new TrustManager[] {
+                    new UrlHttpClient.TrustAllManager()
+            }, null);
+            return sc;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A request and the future of its response.
+     */
+    static final class Exchange {
+        private final HttpRequest request;
+        private final String route;
+        private final ResponseFuture<HttpResponse> future = new ResponseFuture<HttpResponse>();
+        private boolean retried;
+
+        Exchange(HttpRequest request) {
+            this.request = request;
+            this.route = PooledHttpClient.getRoute(request.getUri());
+        }
+
+        HttpRequest getRequest() {
+            return request;
+        }
+    }
+
+    /**
+     * Connections to a single route and the requests waiting for one. Idle
+     * connections are reused LIFO so that the least recently used ones age
+     * out.
+     */
+    private static final class RouteState {
+        private final LinkedList<NioConnection> idle = new LinkedList<NioConnection>();
+        private final LinkedList<Exchange> waiting = new LinkedList<Exchange>();
+        private int open;
+    }
+}
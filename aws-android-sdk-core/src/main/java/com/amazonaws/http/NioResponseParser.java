@@ -0,0 +1,319 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incrementally parses a HTTP/1.1 response from the bytes read off a
+ * non-blocking connection. The body is buffered in memory and handed out as
+ * the content of the {@link HttpResponse} once the whole response has arrived.
+ */
+class NioResponseParser {
+
+    /** Maximum size of the status line and headers */
+    private static final int MAX_HEAD_LENGTH = 64 * 1024;
+    /** Maximum length of a chunk size or trailer line */
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+    /** Upper bound of the initial body buffer sized from Content-Length */
+    private static final int MAX_INITIAL_BODY_BUFFER = 1024 * 1024;
+
+    private static final int HEAD = 0;
+    private static final int BODY_WITH_LENGTH = 1;
+    private static final int CHUNK_SIZE = 2;
+    private static final int CHUNK_DATA = 3;
+    private static final int CHUNK_END = 4;
+    private static final int TRAILERS = 5;
+    private static final int BODY_UNTIL_CLOSE = 6;
+    private static final int DONE = 7;
+
+    private final boolean headRequest;
+    private int state = HEAD;
+    private boolean receivedData;
+
+    private final ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+    /** Length of the current head line, excluding CR */
+    private int headLineLength;
+    private final StringBuilder line = new StringBuilder(16);
+
+    private String statusLine;
+    private int statusCode;
+    private Map<String, String> headers;
+    private boolean keepAlive;
+    private BodyBuffer body;
+    /** Bytes left in the body, or in the current chunk */
+    private long remaining;
+
+    /**
+     * @param headRequest whether the response is to a HEAD request, which
+     *            never has a body
+     */
+    NioResponseParser(boolean headRequest) {
+        this.headRequest = headRequest;
+    }
+
+    /**
+     * Consumes the bytes available in the given buffer, up to the end of the
+     * response.
+     *
+     * @return true if the response is complete; any bytes left in the buffer
+     *         don't belong to it
+     * @throws IOException if the response is malformed
+     */
+    boolean parse(ByteBuffer in) throws IOException {
+        if (in.hasRemaining()) {
+            receivedData = true;
+        }
+        while (state != DONE && in.hasRemaining()) {
+            switch (state) {
+                case HEAD:
+                    parseHead(in);
+                    break;
+                case BODY_WITH_LENGTH:
+                    copyBody(in);
+                    if (remaining == 0) {
+                        state = DONE;
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    String size = readLine(in);
+                    if (size != null) {
+                        startChunk(size);
+                    }
+                    break;
+                case CHUNK_DATA:
+                    copyBody(in);
+                    if (remaining == 0) {
+                        state = CHUNK_END;
+                    }
+                    break;
+                case CHUNK_END:
+                    if (readLine(in) != null) {
+                        state = CHUNK_SIZE;
+                    }
+                    break;
+                case TRAILERS:
+                    String trailer = readLine(in);
+                    if (trailer != null && trailer.length() == 0) {
+                        state = DONE;
+                    }
+                    break;
+                case BODY_UNTIL_CLOSE:
+                    remaining = in.remaining();
+                    copyBody(in);
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        return state == DONE;
+    }
+
+    /**
+     * Signals that the server closed the connection.
+     *
+     * @return true if that completed the response
+     * @throws EOFException if the response is incomplete
+     */
+    boolean endOfStream() throws EOFException {
+        if (state == BODY_UNTIL_CLOSE) {
+            state = DONE;
+            return true;
+        }
+        if (state == DONE) {
+            return true;
+        }
+        throw new EOFException(receivedData
+                ? "Premature end of response"
+                : "The server failed to respond");
+    }
+
+    /**
+     * Returns whether any part of the response has been received. A request
+     * is safe to retry on another connection only if nothing was received.
+     */
+    boolean hasReceivedData() {
+        return receivedData;
+    }
+
+    /**
+     * Returns whether the connection can be reused after this response.
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Returns the parsed response. Only valid once {@link #parse(ByteBuffer)}
+     * or {@link #endOfStream()} returned true.
+     */
+    HttpResponse getResponse() {
+        int reasonStart = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+        String statusText = reasonStart == -1 ? "" : statusLine.substring(reasonStart + 1);
+        HttpResponse.Builder builder = HttpResponse.builder()
+                .statusCode(statusCode)
+                .statusText(statusText);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            builder.content(body.toInputStream());
+        } else if (!headRequest) {
+            builder.content(new ByteArrayInputStream(new byte[0]));
+        }
+        return builder.build();
+    }
+
+    private void parseHead(ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            head.write(b);
+            if (head.size() > MAX_HEAD_LENGTH) {
+                throw new IOException("Response headers too long");
+            }
+            if (b == '\n') {
+                if (headLineLength == 0) {
+                    if (head.size() <= 2) {
+                        // tolerate empty lines ahead of the status line
+                        head.reset();
+                        continue;
+                    }
+                    endOfHead();
+                    return;
+                }
+                headLineLength = 0;
+            } else if (b != '\r') {
+                headLineLength++;
+            }
+        }
+    }
+
+    private void endOfHead() throws IOException {
+        InputStream in = new ByteArrayInputStream(head.toByteArray());
+        head.reset();
+        headLineLength = 0;
+        statusLine = PooledHttpClient.readLine(in);
+        statusCode = PooledHttpClient.parseStatusCode(statusLine);
+        headers = PooledHttpClient.readHeaders(in);
+        if (statusCode >= 100 && statusCode < 200) {
+            // skip interim responses such as 100 Continue
+            return;
+        }
+
+        keepAlive = PooledHttpClient.isKeepAlive(statusLine, headers);
+        String transferEncoding = PooledHttpClient.getHeader(headers,
+                HttpHeader.TRANSFER_ENCODING);
+        String contentLength = PooledHttpClient.getHeader(headers, HttpHeader.CONTENT_LENGTH);
+        if (headRequest || statusCode == 204 || statusCode == 304) {
+            state = DONE;
+        } else if (transferEncoding != null
+                && transferEncoding.toLowerCase(Locale.ENGLISH).contains("chunked")) {
+            body = new BodyBuffer(4096);
+            state = CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                remaining = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+            if (remaining < 0 || remaining > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported Content-Length: " + contentLength);
+            }
+            body = new BodyBuffer((int) Math.min(remaining, MAX_INITIAL_BODY_BUFFER));
+            state = remaining == 0 ? DONE : BODY_WITH_LENGTH;
+        } else {
+            keepAlive = false;
+            body = new BodyBuffer(4096);
+            state = BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private void startChunk(String sizeLine) throws IOException {
+        int extension = sizeLine.indexOf(';');
+        String size = extension >= 0 ? sizeLine.substring(0, extension) : sizeLine;
+        try {
+            remaining = Long.parseLong(size.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad chunk size: " + sizeLine);
+        }
+        if (remaining < 0 || body.size() + remaining > Integer.MAX_VALUE) {
+            throw new IOException("Bad chunk size: " + sizeLine);
+        }
+        state = remaining == 0 ? TRAILERS : CHUNK_DATA;
+    }
+
+    private void copyBody(ByteBuffer in) {
+        int length = (int) Math.min(in.remaining(), remaining);
+        body.write(in, length);
+        remaining -= length;
+    }
+
+    /**
+     * Reads a line terminated by LF, which may span several buffers.
+     *
+     * @return the line without CRLF, or null if it's incomplete
+     */
+    private String readLine(ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            char c = (char) (in.get() & 0xff);
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                String result = line.toString();
+                line.setLength(0);
+                return result;
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Line too long");
+            }
+            line.append(c);
+        }
+        return null;
+    }
+
+    /**
+     * A growable byte array which exposes its content as a stream without
+     * copying.
+     */
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+        BodyBuffer(int size) {
+            super(Math.max(size, 32));
+        }
+
+        void write(ByteBuffer in, int length) {
+            if (count + length > buf.length) {
+                byte[] grown = new byte[Math.max(buf.length * 2, count + length)];
+                System.arraycopy(buf, 0, grown, 0, count);
+                buf = grown;
+            }
+            in.get(buf, count, length);
+            count += length;
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Moves bytes between a non-blocking {@link SocketChannel} and the HTTP layer
+ * of {@link NioHttpClient}, either as is or through TLS. None of the methods
+ * block; a return value of 0 means the channel has to become readable or
+ * writable before progress can be made.
+ */
+abstract class NioTransport {
+
+    protected final SocketChannel channel;
+
+    NioTransport(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a transport which doesn't transform the bytes.
+     */
+    static NioTransport plain(SocketChannel channel) {
+        return new NioTransport(channel) {
+            @Override
+            boolean handshake() {
+                return true;
+            }
+
+            @Override
+            int read(ByteBuffer dst) throws IOException {
+                return channel.read(dst);
+            }
+
+            @Override
+            int write(ByteBuffer src) throws IOException {
+                return channel.write(src);
+            }
+
+            @Override
+            long transferFrom(FileChannel file, long position, long count)
+                    throws IOException {
+                return file.transferTo(position, count, channel);
+            }
+
+            @Override
+            boolean flush() {
+                return true;
+            }
+
+            @Override
+            boolean hasPendingOutput() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Advances the handshake of the transport, if it has one.
+     *
+     * @return true once the handshake is complete
+     */
+    abstract boolean handshake() throws IOException;
+
+    /**
+     * Reads bytes into the given buffer.
+     *
+     * @return the number of bytes read, possibly 0, or -1 at the end of the
+     *         stream
+     */
+    abstract int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * Writes bytes from the given buffer.
+     *
+     * @return the number of bytes consumed from the buffer, possibly 0
+     */
+    abstract int write(ByteBuffer src) throws IOException;
+
+    /**
+     * Writes bytes straight from a file, for transports which send them as
+     * is. The position of the file is left unchanged.
+     *
+     * @return the number of bytes written, possibly 0, or -1 if the transport
+     *         can't write from a file
+     */
+    long transferFrom(FileChannel file, long position, long count) throws IOException {
+        return -1;
+    }
+
+    /**
+     * Writes out bytes buffered by the transport.
+     *
+     * @return true if nothing is left in the buffer
+     */
+    abstract boolean flush() throws IOException;
+
+    /**
+     * Returns whether the transport holds bytes that are waiting for the
+     * channel to become writable.
+     */
+    abstract boolean hasPendingOutput();
+
+    /**
+     * Closes the transport and the channel.
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
+
+import com.amazonaws.ClientConfiguration;
+
+import org.apache.http.conn.ssl.SSLSocketFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+/**
+ * An implementation of {@link HttpClient} which speaks HTTP/1.1 over its own
+ * pool of persistent connections. Unlike {@link UrlHttpClient}, which depends
+ * on the platform's implicit keep-alive cache, the pool is explicitly sized
+ * with {@link ClientConfiguration#getMaxConnections()} per endpoint, idle
+ * connections are closed by the {@link IdleConnectionReaper} (if
+ * {@link ClientConfiguration#useReaper()} is set), connections can be opened
+ * ahead of time with {@link #warmUp(URI, int)} and the state of the pool is
+ * reported through {@link #getPoolStats()} and the request metrics.
+ * <p>
+ * Connections that have been closed by the server while idle are detected
+ * before they're reused; a request that fails on a reused connection before
+ * any response arrives is retried once on a new connection, provided its
+ * content can be reset and either it wasn't completely written or its method
+ * is idempotent. The 'Expect: 100-continue' handshake is not supported,
+ * so the Expect header is not sent. Proxy settings are not supported.
+ */
+public class PooledHttpClient implements HttpClient {
+
+    /** Maximum length of a status or header line */
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String HTTP_1_1 = "HTTP/1.1";
+
+    private final ClientConfiguration config;
+    private final HttpConnectionPool pool;
+    private final javax.net.ssl.SSLSocketFactory sslSocketFactory;
+    private final boolean verifyHostname;
+
+    /**
+     * Creates a new client with a connection pool configured from the given
+     * client configuration.
+     *
+     * @param config client configuration
+     */
+    public PooledHttpClient(final ClientConfiguration config) {
+        this.config = config;
+        if (System.getProperty(DISABLE_CERT_CHECKING_SYSTEM_PROPERTY) != null) {
+            sslSocketFactory = getTrustAllSSLSocketFactory();
+            verifyHostname = false;
+        } else {
+            sslSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+            verifyHostname = true;
+        }
+        pool = new HttpConnectionPool(new HttpConnectionPool.ConnectionFactory() {
+            @Override
+            public PooledConnection create(String route) throws IOException {
+                return connect(route);
+            }
+        }, config.getMaxConnections(), config.getConnectionTimeout());
+        if (config.useReaper()) {
+            IdleConnectionReaper.registerConnectionPool(pool);
+        }
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        String route = getRoute(request.getUri());
+        PooledConnection connection = pool.lease(route);
+        boolean retried = false;
+        while (true) {
+            boolean reused = connection.getUseCount() > 0;
+            boolean written = false;
+            String statusLine;
+            try {
+                connection.markUsed();
+                writeRequest(request, connection);
+                written = true;
+                statusLine = readLine(connection.getInputStream());
+            } catch (IOException e) {
+                pool.release(connection, false);
+                // Once the whole request is written the server may have
+                // acted on it, so only idempotent requests are sent again.
+                if (retried || !reused || e instanceof SocketTimeoutException
+                        || (written && !isIdempotent(request.getMethod()))
+                        || !resetContent(request)) {
+                    throw e;
+                }
+                // The server most likely closed the connection while it was
+                // idle, and probably the other idle connections too.
+                AmazonHttpClient.log.debug("Retrying request on a new connection: "
+                        + e.getMessage());
+                pool.closeIdleConnections(route);
+                retried = true;
+                connection = pool.lease(route);
+                continue;
+            }
+
+            try {
+                return readResponse(request, connection, statusLine);
+            } catch (IOException e) {
+                pool.release(connection, false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns whether a request with the given method may be sent more than
+     * once without changing its effect.
+     */
+    static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method)
+                || "DELETE".equals(method) || "OPTIONS".equals(method);
+    }
+
+    /**
+     * Opens connections to the given endpoint ahead of time, so that the
+     * first requests to it don't pay for the TCP and TLS handshakes. The pool
+     * never holds more than {@link ClientConfiguration#getMaxConnections()}
+     * connections to an endpoint.
+     *
+     * @param endpoint the endpoint to connect to, e.g.
+     *            https://dynamodb.us-east-1.amazonaws.com
+     * @param connections the number of idle connections wanted
+     * @return the number of connections opened
+     * @throws IOException if a connection can't be established
+     */
+    public int warmUp(URI endpoint, int connections) throws IOException {
+        return pool.warmUp(getRoute(endpoint), connections);
+    }
+
+    /**
+     * Closes the connections that have been idle longer than the given time.
+     *
+     * @param idleTime the idle time threshold
+     * @param unit the unit of the idle time
+     */
+    public void closeIdleConnections(long idleTime, TimeUnit unit) {
+        pool.closeIdleConnections(idleTime, unit);
+    }
+
+    /**
+     * Returns a snapshot of the state of the connection pool.
+     *
+     * @return the connection pool statistics
+     */
+    public ConnectionPoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    @Override
+    public void shutdown() {
+        IdleConnectionReaper.removeConnectionPool(pool);
+        pool.shutdown();
+    }
+
+    /**
+     * Returns the pool key, "scheme://host:port", of the given uri.
+     */
+    static String getRoute(URI uri) {
+        String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equals(scheme) ? 443 : 80;
+        }
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ENGLISH) + ":" + port;
+    }
+
+    PooledConnection connect(String route) throws IOException {
+        URI uri = URI.create(route);
+        String host = uri.getHost();
+        int port = uri.getPort();
+
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(config.getSocketTimeout());
+            int sendBufferSizeHint = config.getSocketBufferSizeHints()[0];
+            int receiveBufferSizeHint = config.getSocketBufferSizeHints()[1];
+            if (sendBufferSizeHint > 0) {
+                socket.setSendBufferSize(sendBufferSizeHint);
+            }
+            if (receiveBufferSizeHint > 0) {
+                socket.setReceiveBufferSize(receiveBufferSizeHint);
+            }
+            if (config.getLocalAddress() != null) {
+                socket.bind(new InetSocketAddress(config.getLocalAddress(), 0));
+            }
+            socket.connect(new InetSocketAddress(host, port), config.getConnectionTimeout());
+
+            if ("https".equals(uri.getScheme())) {
+                SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host,
+                        port, true);
+                socket = sslSocket;
+                sslSocket.startHandshake();
+                if (verifyHostname) {
+                    // wildcard certificates need to match sub-domains for S3
+                    // virtual hosting
+                    SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER.verify(host, sslSocket);
+                }
+            }
+            return new PooledConnection(route, socket);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        } catch (RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    void writeRequest(HttpRequest request, PooledConnection connection) throws IOException {
+        StringBuilder head = new StringBuilder(256);
+        boolean chunked = appendRequestHead(request, head);
+
+        InputStream content = request.getContent();
+        OutputStream out = connection.getOutputStream();
+        writeAscii(out, head);
+        if (content != null) {
+            if (chunked) {
+                writeChunked(content, out);
+            } else {
+                RequestContentWriter.writeFixedLength(content, out, request.getContentLength());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Appends the request line and headers of the given request, including
+     * the terminating empty line, to the given buffer.
+     *
+     * @return true if the content has to be sent with chunked transfer
+     *         encoding because its length is unknown
+     */
+    static boolean appendRequestHead(HttpRequest request, StringBuilder head) {
+        URI uri = request.getUri();
+        String path = uri.getRawPath();
+        if (path == null || path.length() == 0) {
+            path = "/";
+        }
+        head.append(request.getMethod()).append(' ').append(path);
+        if (uri.getRawQuery() != null) {
+            head.append('?').append(uri.getRawQuery());
+        }
+        head.append(' ').append(HTTP_1_1).append("\r\n");
+
+        String host = request.getHeaders().get(HttpHeader.HOST);
+        if (host == null) {
+            host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        }
+        appendHeader(head, HttpHeader.HOST, host);
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            String key = header.getKey();
+            // Framing headers are written below; 100-continue isn't supported.
+            if (key.equalsIgnoreCase(HttpHeader.CONTENT_LENGTH)
+                    || key.equalsIgnoreCase(HttpHeader.HOST)
+                    || key.equalsIgnoreCase(HttpHeader.EXPECT)
+                    || key.equalsIgnoreCase(HttpHeader.TRANSFER_ENCODING)) {
+                continue;
+            }
+            appendHeader(head, key, header.getValue());
+        }
+
+        String contentLength = request.getHeaders().get(HttpHeader.CONTENT_LENGTH);
+        boolean chunked = false;
+        if (contentLength != null && contentLength.length() > 0) {
+            appendHeader(head, HttpHeader.CONTENT_LENGTH, contentLength);
+        } else if (request.getContent() != null) {
+            chunked = true;
+            appendHeader(head, HttpHeader.TRANSFER_ENCODING, "chunked");
+        }
+        head.append("\r\n");
+        return chunked;
+    }
+
+    /**
+     * Reads the rest of the response following the given status line. On
+     * success the connection is owned by the response content, or has already
+     * been released if there is no content.
+     */
+    HttpResponse readResponse(HttpRequest request, PooledConnection connection,
+            String statusLine) throws IOException {
+        InputStream in = connection.getInputStream();
+        int statusCode = parseStatusCode(statusLine);
+        Map<String, String> headers = readHeaders(in);
+        // skip interim responses such as 100 Continue
+        while (statusCode >= 100 && statusCode < 200) {
+            statusLine = readLine(in);
+            statusCode = parseStatusCode(statusLine);
+            headers = readHeaders(in);
+        }
+
+        int reasonStart = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+        String statusText = reasonStart == -1 ? "" : statusLine.substring(reasonStart + 1);
+
+        HttpResponse.Builder builder = HttpResponse.builder()
+                .statusCode(statusCode)
+                .statusText(statusText);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+
+        boolean keepAlive = isKeepAlive(statusLine, headers);
+        String transferEncoding = getHeader(headers, HttpHeader.TRANSFER_ENCODING);
+        String contentLength = getHeader(headers, HttpHeader.CONTENT_LENGTH);
+        if ("HEAD".equals(request.getMethod()) || statusCode == 204 || statusCode == 304) {
+            pool.release(connection, keepAlive);
+            // HEAD method doesn't have a body
+            if (!"HEAD".equals(request.getMethod())) {
+                builder.content(new ByteArrayInputStream(new byte[0]));
+            }
+        } else if (transferEncoding != null
+                && transferEncoding.toLowerCase(Locale.ENGLISH).contains("chunked")) {
+            builder.content(PooledResponseInputStream.chunked(pool, connection, keepAlive));
+        } else if (contentLength != null) {
+            long length;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+            if (length == 0) {
+                pool.release(connection, keepAlive);
+                builder.content(new ByteArrayInputStream(new byte[0]));
+            } else {
+                builder.content(PooledResponseInputStream.withContentLength(pool, connection,
+                        length, keepAlive));
+            }
+        } else {
+            builder.content(PooledResponseInputStream.untilClose(pool, connection));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Rewinds the request content to the mark set by {@link AmazonHttpClient}
+     * so that the request can be sent again.
+     *
+     * @return false if the content can't be reset
+     */
+    static boolean resetContent(HttpRequest request) {
+        InputStream content = request.getContent();
+        if (content == null) {
+            return true;
+        }
+        if (!content.markSupported()) {
+            return false;
+        }
+        try {
+            content.reset();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static boolean isKeepAlive(String statusLine, Map<String, String> headers) {
+        String connection = getHeader(headers, HttpHeader.CONNECTION);
+        if (connection != null && connection.toLowerCase(Locale.ENGLISH).contains("close")) {
+            return false;
+        }
+        if (statusLine.startsWith(HTTP_1_1)) {
+            return true;
+        }
+        // HTTP/1.0 only keeps the connection alive on request
+        return connection != null
+                && connection.toLowerCase(Locale.ENGLISH).contains("keep-alive");
+    }
+
+    static int parseStatusCode(String statusLine) throws IOException {
+        // e.g. "HTTP/1.1 200 OK"
+        if (!statusLine.startsWith("HTTP/")) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        int start = statusLine.indexOf(' ');
+        if (start == -1 || statusLine.length() < start + 4) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    static Map<String, String> readHeaders(InputStream in) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        String line;
+        while ((line = readLine(in)).length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IOException("Invalid header: " + line);
+            }
+            String key = line.substring(0, colon).trim();
+            // No AWS service returns a list of header values, so it's safe to
+            // keep the first one.
+            if (!headers.containsKey(key)) {
+                headers.put(key, line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    static String getHeader(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a line terminated by LF (optionally preceded by CR) in ISO-8859-1.
+     *
+     * @throws EOFException if the stream ends before the line
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException(line.length() == 0
+                        ? "The server failed to respond"
+                        : "Unexpected end of stream");
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Line too long");
+            }
+            line.append((char) b);
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return line.toString();
+    }
+
+    private static void appendHeader(StringBuilder head, String key, String value) {
+        head.append(key).append(": ");
+        if (value != null) {
+            head.append(value);
+        }
+        head.append("\r\n");
+    }
+
+    private static void writeAscii(OutputStream out, CharSequence text) throws IOException {
+        int length = text.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        out.write(bytes);
+    }
+
+    private static void writeChunked(InputStream content, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            if (read == 0) {
+                continue;
+            }
+            writeAscii(out, Integer.toHexString(read) + "\r\n");
+            out.write(buffer, 0, read);
+            writeAscii(out, "\r\n");
+        }
+        writeAscii(out, "0\r\n\r\n");
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    private static javax.net.ssl.SSLSocketFactory getTrustAllSSLSocketFactory() {
+        try {
+            SSLContext sc = SSLContext.getInstance("TLS");
+            sc.init(null, new TrustManager[] {
+                    new UrlHttpClient.TrustAllManager()
+            }, null);
+            return sc.getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
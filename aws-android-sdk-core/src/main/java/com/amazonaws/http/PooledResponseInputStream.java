@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The body of a response read from a {@link PooledConnection}. It decodes the
+ * message framing (content length, chunked or close-delimited) and hands the
+ * connection back to the pool as soon as the body has been read to the end,
+ * so that the next request can reuse it. Closing the stream before the end
+ * discards the connection, unless only a few bytes are left to skip.
+ */
+class PooledResponseInputStream extends InputStream {
+
+    /** Maximum number of unread bytes skipped on close to keep a connection */
+    private static final long MAX_DRAIN_BYTES = 8 * 1024;
+
+    private static final int CONTENT_LENGTH = 0;
+    private static final int CHUNKED = 1;
+    private static final int UNTIL_CLOSE = 2;
+
+    private final HttpConnectionPool pool;
+    private final InputStream in;
+    private final int framing;
+    private final boolean keepAlive;
+    private PooledConnection connection;
+    /** Bytes left in the body, or in the current chunk */
+    private long remaining;
+    private boolean firstChunk = true;
+    private boolean eof;
+    private boolean closed;
+
+    private PooledResponseInputStream(HttpConnectionPool pool, PooledConnection connection,
+            int framing, long remaining, boolean keepAlive) {
+        this.pool = pool;
+        this.connection = connection;
+        this.in = connection.getInputStream();
+        this.framing = framing;
+        this.remaining = remaining;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Creates a stream over a body of the given length.
+     */
+    static PooledResponseInputStream withContentLength(HttpConnectionPool pool,
+            PooledConnection connection, long contentLength, boolean keepAlive) {
+        return new PooledResponseInputStream(pool, connection, CONTENT_LENGTH, contentLength,
+                keepAlive);
+    }
+
+    /**
+     * Creates a stream over a body with chunked transfer encoding.
+     */
+    static PooledResponseInputStream chunked(HttpConnectionPool pool,
+            PooledConnection connection, boolean keepAlive) {
+        return new PooledResponseInputStream(pool, connection, CHUNKED, 0, keepAlive);
+    }
+
+    /**
+     * Creates a stream over a body delimited by the server closing the
+     * connection. The connection is never reused.
+     */
+    static PooledResponseInputStream untilClose(HttpConnectionPool pool,
+            PooledConnection connection) {
+        return new PooledResponseInputStream(pool, connection, UNTIL_CLOSE, Long.MAX_VALUE,
+                false);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            if (framing == CHUNKED && remaining == 0) {
+                nextChunk();
+                if (eof) {
+                    return -1;
+                }
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                if (framing == UNTIL_CLOSE) {
+                    endOfBody();
+                    return -1;
+                }
+                throw new EOFException("Premature end of response body");
+            }
+            remaining -= read;
+            if (framing == CONTENT_LENGTH && remaining == 0) {
+                endOfBody();
+            }
+            return read;
+        } catch (IOException e) {
+            releaseConnection(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed || eof) {
+            return 0;
+        }
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (!eof) {
+            if (framing == CONTENT_LENGTH && remaining <= MAX_DRAIN_BYTES) {
+                // Cheaper to skip the rest than to open a new connection.
+                try {
+                    byte[] buffer = new byte[(int) Math.max(remaining, 1)];
+                    while (!eof && read(buffer, 0, buffer.length) != -1) {
+                        // discard
+                    }
+                } catch (IOException e) {
+                    // the connection has been released as unusable
+                }
+            }
+            releaseConnection(false);
+        }
+        closed = true;
+    }
+
+    private void nextChunk() throws IOException {
+        if (!firstChunk) {
+            // CRLF at the end of the previous chunk
+            PooledHttpClient.readLine(in);
+        }
+        firstChunk = false;
+        String line = PooledHttpClient.readLine(in);
+        int extension = line.indexOf(';');
+        if (extension >= 0) {
+            line = line.substring(0, extension);
+        }
+        try {
+            remaining = Long.parseLong(line.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad chunk size: " + line);
+        }
+        if (remaining < 0) {
+            throw new IOException("Bad chunk size: " + line);
+        }
+        if (remaining == 0) {
+            // skip the trailers
+            while (PooledHttpClient.readLine(in).length() > 0) {
+                // discard
+            }
+            endOfBody();
+        }
+    }
+
+    private void endOfBody() {
+        eof = true;
+        releaseConnection(keepAlive);
+    }
+
+    private void releaseConnection(boolean reusable) {
+        if (connection != null) {
+            pool.release(connection, reusable);
+            connection = null;
+        }
+    }
+}
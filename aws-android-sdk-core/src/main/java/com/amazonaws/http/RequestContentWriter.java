@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.internal.FileBackedInputStream;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes request content to the output of a connection. Content backed by a
+ * file, i.e. a plain {@link FileInputStream} or a
+ * {@link FileBackedInputStream}, is moved with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so the
+ * platform can send it without copying it through the Java heap; any other
+ * content is copied through a buffer.
+ */
+final class RequestContentWriter {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    /**
+     * Upper bound of a single transfer, so that an interrupted stream is
+     * noticed between two transfers.
+     */
+    private static final long MAX_TRANSFER_SIZE = 1024 * 1024;
+
+    private RequestContentWriter() {
+    }
+
+    /**
+     * Writes exactly the given number of bytes of the content.
+     *
+     * @throws IOException if the content ends before that
+     */
+    static void writeFixedLength(InputStream content, OutputStream out, long length)
+            throws IOException {
+        long remaining = length;
+        FileChannel file = getFileChannel(content);
+        if (file != null) {
+            remaining -= transfer(content, file, remaining, Channels.newChannel(out));
+        }
+        byte[] buffer = remaining > 0 ? new byte[(int) Math.min(BUFFER_SIZE, remaining)] : null;
+        while (remaining > 0) {
+            int read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Request content ended " + remaining
+                        + " bytes short of its Content-Length");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Writes the content up to its end, for connections that take care of
+     * the framing of content with an unknown length.
+     *
+     * @return the number of bytes written
+     */
+    static long writeAll(InputStream content, OutputStream out) throws IOException {
+        long written = 0;
+        FileChannel file = getFileChannel(content);
+        if (file != null) {
+            written = transfer(content, file, Long.MAX_VALUE, Channels.newChannel(out));
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            written += read;
+        }
+        return written;
+    }
+
+    /**
+     * Returns the channel of the file the content is read from, or null if
+     * the content isn't backed by a file.
+     */
+    static FileChannel getFileChannel(InputStream content) throws IOException {
+        if (content instanceof FileBackedInputStream) {
+            return ((FileBackedInputStream) content).getFileChannel();
+        }
+        // subclasses of FileInputStream may transform what they read
+        if (content != null && content.getClass() == FileInputStream.class) {
+            return ((FileInputStream) content).getChannel();
+        }
+        return null;
+    }
+
+    /**
+     * Transfers up to the given number of bytes from the current position of
+     * the file, and skips them on the content stream.
+     *
+     * @return the number of bytes transferred, which is less than requested
+     *         only at the end of the file
+     */
+    static long transfer(InputStream content, FileChannel file, long count,
+            WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long size = Math.min(count - transferred, MAX_TRANSFER_SIZE);
+            long written = file.transferTo(file.position(), size, target);
+            if (written <= 0) {
+                break;
+            }
+            skipFully(content, written);
+            transferred += written;
+        }
+        return transferred;
+    }
+
+    /**
+     * Skips the given number of bytes, which are known to be available.
+     */
+    static void skipFully(InputStream content, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = content.skip(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Failed to skip " + remaining
+                        + " bytes of transferred request content");
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+/**
+ * Callback interface for notification on the completion of a
+ * {@link ResponseFuture}.
+ *
+ * @param <T> the type of the result
+ */
+public interface ResponseCallback<T> {
+
+    /**
+     * Invoked when the operation has completed successfully.
+     *
+     * @param result the result of the operation
+     */
+    public void onSuccess(T result);
+
+    /**
+     * Invoked when the operation has failed or has been cancelled.
+     *
+     * @param exception the cause of the failure
+     */
+    public void onError(Exception exception);
+}
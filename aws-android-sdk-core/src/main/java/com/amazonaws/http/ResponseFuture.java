@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Future} which is completed explicitly by the producer of the
+ * result, and notifies callbacks registered with
+ * {@link #addCallback(ResponseCallback)} on completion. Callbacks run on the
+ * thread that completes the future, or on the registering thread if the future
+ * is already complete, so they should not block.
+ *
+ * @param <T> the type of the result
+ */
+public class ResponseFuture<T> implements Future<T> {
+
+    private static final Log log = LogFactory.getLog(ResponseFuture.class);
+
+    private final List<ResponseCallback<? super T>> callbacks =
+            new ArrayList<ResponseCallback<? super T>>(1);
+    private boolean done;
+    private boolean cancelled;
+    private T result;
+    private Exception exception;
+
+    /**
+     * Completes this future with the given result, unless it's already
+     * complete.
+     *
+     * @param result the result
+     * @return true if this call completed the future
+     */
+    public boolean complete(T result) {
+        List<ResponseCallback<? super T>> toNotify;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.result = result;
+            toNotify = finish();
+        }
+        for (ResponseCallback<? super T> callback : toNotify) {
+            notifySuccess(callback, result);
+        }
+        return true;
+    }
+
+    /**
+     * Completes this future with the given failure, unless it's already
+     * complete.
+     *
+     * @param exception the cause of the failure
+     * @return true if this call completed the future
+     */
+    public boolean completeExceptionally(Exception exception) {
+        if (exception == null) {
+            throw new IllegalArgumentException("exception cannot be null");
+        }
+        List<ResponseCallback<? super T>> toNotify;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.exception = exception;
+            toNotify = finish();
+        }
+        for (ResponseCallback<? super T> callback : toNotify) {
+            notifyError(callback, exception);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a callback to be notified when this future completes. If it's
+     * already complete, the callback is notified immediately.
+     *
+     * @param callback the callback
+     * @return this future
+     */
+    public ResponseFuture<T> addCallback(ResponseCallback<? super T> callback) {
+        boolean notifyNow;
+        synchronized (this) {
+            notifyNow = done;
+            if (!done) {
+                callbacks.add(callback);
+            }
+        }
+        if (notifyNow) {
+            if (exception == null) {
+                notifySuccess(callback, result);
+            } else {
+                notifyError(callback, exception);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Cancels this future. The operation producing the result isn't
+     * interrupted, but its result is discarded.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<ResponseCallback<? super T>> toNotify;
+        CancellationException cancellation = new CancellationException();
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            exception = cancellation;
+            toNotify = finish();
+        }
+        for (ResponseCallback<? super T> callback : toNotify) {
+            notifyError(callback, cancellation);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return result;
+    }
+
+    /**
+     * Marks this future done and returns the callbacks to notify. Must be
+     * called while holding the lock.
+     */
+    private List<ResponseCallback<? super T>> finish() {
+        done = true;
+        notifyAll();
+        List<ResponseCallback<? super T>> toNotify =
+                new ArrayList<ResponseCallback<? super T>>(callbacks);
+        callbacks.clear();
+        return toNotify;
+    }
+
+    private static <T> void notifySuccess(ResponseCallback<? super T> callback, T result) {
+        try {
+            callback.onSuccess(result);
+        } catch (RuntimeException e) {
+            log.warn("Response callback threw an exception", e);
+        }
+    }
+
+    private static void notifyError(ResponseCallback<?> callback, Exception exception) {
+        try {
+            callback.onError(exception);
+        } catch (RuntimeException e) {
+            log.warn("Response callback threw an exception", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+/**
+ * Runs the retries of asynchronous requests after their back-off delay, and
+ * the attempts held back by an adaptive rate limiter, so that no thread is
+ * blocked while a request waits.
+ *
+ * @see AmazonHttpClient#setRetryScheduler(RetryScheduler)
+ */
+public interface RetryScheduler {
+
+    /**
+     * Runs the given task once the delay has elapsed. The task may run on any
+     * thread, and must not be run on the calling thread.
+     *
+     * @param task the task to run
+     * @param delayMillis the delay in milliseconds
+     * @throws java.util.concurrent.RejectedExecutionException if the scheduler
+     *             has been shut down
+     */
+    void schedule(Runnable task, long delayMillis);
+
+    /**
+     * Stops the scheduler. Tasks which haven't run yet are dropped.
+     */
+    void shutdown();
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RetryScheduler} backed by a {@link ScheduledExecutorService}. The
+ * default instance uses a single daemon timer thread, which only hands the
+ * retries over to another executor and so is never busy for long.
+ */
+public class ScheduledExecutorRetryScheduler implements RetryScheduler {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructs a scheduler with its own timer thread.
+     */
+    public ScheduledExecutorRetryScheduler() {
+        this(new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "aws-http-retry-timer-"
+                        + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * Constructs a scheduler on top of the given executor.
+     *
+     * @param executor the executor running the retries, which is shut down
+     *            along with this scheduler
+     */
+    public ScheduledExecutorRetryScheduler(ScheduledExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
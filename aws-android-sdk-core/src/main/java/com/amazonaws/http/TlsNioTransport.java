@@ -0,0 +1,293 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * A {@link NioTransport} which encrypts the bytes with an {@link SSLEngine}.
+ * All buffers are kept in fill mode between calls. Delegated tasks of the
+ * engine, such as certificate validation, run on the calling thread.
+ * Renegotiation initiated by the server is not supported.
+ */
+class TlsNioTransport extends NioTransport {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private static final int UNWRAP_PROGRESS = 1;
+    private static final int UNWRAP_NEED_DATA = 0;
+    private static final int UNWRAP_CLOSED = -1;
+
+    private final SSLEngine engine;
+    /** Encrypted bytes read from the channel, waiting to be unwrapped */
+    private ByteBuffer netIn;
+    /** Encrypted bytes waiting to be written to the channel */
+    private ByteBuffer netOut;
+    /** Decrypted bytes waiting to be read */
+    private ByteBuffer appIn;
+    private boolean handshakeStarted;
+    private boolean handshakeComplete;
+    private boolean inboundClosed;
+
+    /**
+     * @param channel a connected channel
+     * @param engine an engine in client mode
+     */
+    TlsNioTransport(SocketChannel channel, SSLEngine engine) {
+        super(channel);
+        this.engine = engine;
+        int packetBufferSize = engine.getSession().getPacketBufferSize();
+        netIn = ByteBuffer.allocate(packetBufferSize);
+        netOut = ByteBuffer.allocate(packetBufferSize);
+        appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+    }
+
+    SSLEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    boolean handshake() throws IOException {
+        if (handshakeComplete) {
+            return true;
+        }
+        if (!handshakeStarted) {
+            engine.beginHandshake();
+            handshakeStarted = true;
+        }
+        while (true) {
+            if (!flush()) {
+                return false;
+            }
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    break;
+                case FINISHED:
+                case NOT_HANDSHAKING:
+                    handshakeComplete = true;
+                    return true;
+                default:
+                    // NEED_UNWRAP, and NEED_UNWRAP_AGAIN on newer platforms
+                    int status = unwrap();
+                    if (status == UNWRAP_NEED_DATA) {
+                        return false;
+                    }
+                    if (status == UNWRAP_CLOSED) {
+                        throw new EOFException("Connection closed during TLS handshake");
+                    }
+                    break;
+            }
+        }
+    }
+
+    @Override
+    int read(ByteBuffer dst) throws IOException {
+        while (true) {
+            if (appIn.position() > 0) {
+                appIn.flip();
+                int length = Math.min(appIn.remaining(), dst.remaining());
+                int limit = appIn.limit();
+                appIn.limit(appIn.position() + length);
+                dst.put(appIn);
+                appIn.limit(limit);
+                appIn.compact();
+                return length;
+            }
+            if (inboundClosed) {
+                return -1;
+            }
+            int status = unwrap();
+            handlePostHandshake();
+            if (status == UNWRAP_NEED_DATA) {
+                return 0;
+            }
+            if (status == UNWRAP_CLOSED) {
+                inboundClosed = true;
+            }
+        }
+    }
+
+    @Override
+    int write(ByteBuffer src) throws IOException {
+        if (!flush()) {
+            return 0;
+        }
+        int consumed = 0;
+        while (src.hasRemaining()) {
+            consumed += wrap(src);
+            handlePostHandshake();
+            if (!flush()) {
+                break;
+            }
+        }
+        return consumed;
+    }
+
+    @Override
+    boolean flush() throws IOException {
+        if (netOut.position() == 0) {
+            return true;
+        }
+        netOut.flip();
+        try {
+            channel.write(netOut);
+        } finally {
+            netOut.compact();
+        }
+        return netOut.position() == 0;
+    }
+
+    @Override
+    boolean hasPendingOutput() {
+        return netOut.position() > 0;
+    }
+
+    @Override
+    void close() {
+        // best effort close_notify, without waiting for the channel
+        try {
+            engine.closeOutbound();
+            if (!engine.isOutboundDone()) {
+                netOut.clear();
+                engine.wrap(EMPTY, netOut);
+                flush();
+            }
+        } catch (IOException e) {
+            // ignored
+        }
+        super.close();
+    }
+
+    /**
+     * Wraps bytes from the given buffer into {@link #netOut}.
+     *
+     * @return the number of bytes consumed
+     */
+    private int wrap(ByteBuffer src) throws IOException {
+        while (true) {
+            SSLEngineResult result = engine.wrap(src, netOut);
+            switch (result.getStatus()) {
+                case OK:
+                    if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks();
+                    }
+                    return result.bytesConsumed();
+                case BUFFER_OVERFLOW:
+                    if (netOut.position() > 0) {
+                        // let the caller flush first
+                        return result.bytesConsumed();
+                    }
+                    netOut = ByteBuffer.allocate(Math.max(netOut.capacity() * 2,
+                            engine.getSession().getPacketBufferSize()));
+                    break;
+                case CLOSED:
+                    throw new SSLException("TLS connection closed");
+                default:
+                    throw new SSLException("Unexpected wrap status " + result.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Unwraps bytes from {@link #netIn} into {@link #appIn}, reading more
+     * from the channel if needed.
+     */
+    private int unwrap() throws IOException {
+        while (true) {
+            netIn.flip();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, appIn);
+            } finally {
+                netIn.compact();
+            }
+            switch (result.getStatus()) {
+                case OK:
+                    if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks();
+                    }
+                    return UNWRAP_PROGRESS;
+                case BUFFER_UNDERFLOW:
+                    if (!netIn.hasRemaining()) {
+                        netIn = grow(netIn, engine.getSession().getPacketBufferSize());
+                    }
+                    int read = channel.read(netIn);
+                    if (read == -1) {
+                        return UNWRAP_CLOSED;
+                    }
+                    if (read == 0) {
+                        return UNWRAP_NEED_DATA;
+                    }
+                    break;
+                case BUFFER_OVERFLOW:
+                    appIn = grow(appIn, engine.getSession().getApplicationBufferSize());
+                    break;
+                case CLOSED:
+                    return UNWRAP_CLOSED;
+                default:
+                    throw new SSLException("Unexpected unwrap status " + result.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Answers handshake messages exchanged after the initial handshake, such
+     * as TLS 1.3 key updates.
+     */
+    private void handlePostHandshake() throws IOException {
+        while (true) {
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    flush();
+                    if (hasPendingOutput()) {
+                        return;
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int minimumCapacity) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, minimumCapacity));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -17,6 +17,7 @@ package com.amazonaws.http;
 
 import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.ClientConfiguration;
 
 import java.io.IOException;
@@ -49,6 +50,9 @@ import javax.net.ssl.X509TrustManager;
  */
 public class UrlHttpClient implements HttpClient {
 
+    /** Size of the chunks of content without a known length */
+    private static final int CHUNK_SIZE = 32 * 1024;
+
     private final ClientConfiguration config;
 
     public UrlHttpClient(ClientConfiguration config) {
@@ -110,7 +114,10 @@ public class UrlHttpClient implements HttpClient {
     }
 
     /**
-     * Writes the content (if any) of the request to the passed connection
+     * Writes the content (if any) of the request to the passed connection.
+     * Content with a known length is streamed in fixed length mode, and
+     * content without a Content-Length header is streamed with chunked
+     * transfer encoding, so it never has to be buffered by the connection.
      *
      * @param request
      * @param connection
@@ -118,17 +125,45 @@ public class UrlHttpClient implements HttpClient {
      */
     void writeContentToConnection(HttpRequest request, HttpURLConnection connection)
             throws IOException {
+        InputStream content = request.getContent();
         // Note: if DoOutput is set to true and method is GET, HttpUrlConnection
         // will silently change the method to POST.
-        if (request.getContent() != null && request.getContentLength() >= 0) {
-            connection.setDoOutput(true);
-            // This is for backward compatibility, because
-            // setFixedLengthStreamingMode(long) is available in API level 19.
-            connection.setFixedLengthStreamingMode((int) request.getContentLength());
-            OutputStream os = connection.getOutputStream();
-            write(request.getContent(), os);
-            os.flush();
-            os.close();
+        if (content == null) {
+            return;
+        }
+        connection.setDoOutput(true);
+        String contentLength = request.getHeaders().get(HttpHeader.CONTENT_LENGTH);
+        boolean chunked = contentLength == null || contentLength.isEmpty();
+        if (chunked) {
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+        } else {
+            setFixedLengthStreamingMode(connection, request.getContentLength());
+        }
+        OutputStream os = connection.getOutputStream();
+        if (chunked) {
+            RequestContentWriter.writeAll(content, os);
+        } else {
+            RequestContentWriter.writeFixedLength(content, os, request.getContentLength());
+        }
+        os.flush();
+        os.close();
+    }
+
+    /**
+     * Sets the fixed length streaming mode of the connection. The int
+     * overload is used when possible for backward compatibility, because
+     * setFixedLengthStreamingMode(long) is available from API level 19.
+     */
+    static void setFixedLengthStreamingMode(HttpURLConnection connection, long length) {
+        if (length <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) length);
+            return;
+        }
+        try {
+            connection.setFixedLengthStreamingMode(length);
+        } catch (NoSuchMethodError e) {
+            throw new AmazonClientException("Content-Length of " + length
+                    + " bytes requires API level 19 or above", e);
         }
     }
 
@@ -165,14 +200,6 @@ public class UrlHttpClient implements HttpClient {
         return connection;
     }
 
-    private void write(InputStream is, OutputStream os) throws IOException {
-        byte[] buf = new byte[1024 * 8];
-        int len;
-        while ((len = is.read(buf)) != -1) {
-            os.write(buf, 0, len);
-        }
-    }
-
     void configureConnection(HttpURLConnection connection) {
         // configure the connection
         connection.setConnectTimeout(config.getConnectionTimeout());
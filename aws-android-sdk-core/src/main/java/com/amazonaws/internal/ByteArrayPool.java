@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.internal;
+
+import java.util.ArrayDeque;
+
+/**
+ * A bounded pool of equally sized byte arrays, used as scratch buffers by
+ * code which would otherwise allocate a fresh buffer for every request.
+ * Arrays are handed out in no particular state and must not be used after
+ * they are released.
+ */
+public final class ByteArrayPool {
+
+    /** Size of the arrays of the shared pool */
+    public static final int DEFAULT_ARRAY_SIZE = 8 * 1024;
+    /** Maximum number of arrays kept by the shared pool */
+    public static final int DEFAULT_MAX_POOLED_ARRAYS = 32;
+
+    private static final ByteArrayPool SHARED = new ByteArrayPool(DEFAULT_ARRAY_SIZE,
+            DEFAULT_MAX_POOLED_ARRAYS);
+
+    private final int arraySize;
+    private final int maxPooledArrays;
+    private final ArrayDeque<byte[]> arrays = new ArrayDeque<byte[]>();
+
+    /**
+     * @param arraySize size of the arrays
+     * @param maxPooledArrays maximum number of released arrays kept for reuse
+     */
+    public ByteArrayPool(int arraySize, int maxPooledArrays) {
+        if (arraySize <= 0) {
+            throw new IllegalArgumentException("arraySize must be positive");
+        }
+        if (maxPooledArrays < 0) {
+            throw new IllegalArgumentException("maxPooledArrays can't be negative");
+        }
+        this.arraySize = arraySize;
+        this.maxPooledArrays = maxPooledArrays;
+    }
+
+    /**
+     * Returns the pool shared by the SDK.
+     */
+    public static ByteArrayPool getShared() {
+        return SHARED;
+    }
+
+    public int getArraySize() {
+        return arraySize;
+    }
+
+    /**
+     * Takes an array from the pool, or allocates one if the pool is empty.
+     */
+    public byte[] acquire() {
+        byte[] array;
+        synchronized (arrays) {
+            array = arrays.poll();
+        }
+        return array != null ? array : new byte[arraySize];
+    }
+
+    /**
+     * Gives an array back to the pool. Arrays of another size, and arrays
+     * beyond the capacity of the pool, are left to the garbage collector.
+     */
+    public void release(byte[] array) {
+        if (array == null || array.length != arraySize) {
+            return;
+        }
+        synchronized (arrays) {
+            if (arrays.size() < maxPooledArrays) {
+                arrays.push(array);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of arrays waiting to be reused.
+     */
+    public int getPooledCount() {
+        synchronized (arrays) {
+            return arrays.size();
+        }
+    }
+}
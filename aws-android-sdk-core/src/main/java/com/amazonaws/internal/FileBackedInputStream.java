@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.internal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implemented by input streams which return the bytes of a file as is, so
+ * that HTTP clients can send the remaining content straight from the file with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * instead of copying it through the stream.
+ * <p>
+ * Streams that transform, count or digest the bytes they return must not
+ * implement this interface, since the transferred bytes bypass them.
+ */
+public interface FileBackedInputStream {
+    /**
+     * Returns the channel of the underlying file, positioned at the next byte
+     * this stream would return. A caller which transfers bytes from the channel
+     * must then {@link java.io.InputStream#skip(long) skip} the same number of
+     * bytes on the stream, without moving the channel position itself.
+     *
+     * @return the channel of the file this stream reads from
+     * @throws IOException if the channel can't be obtained
+     */
+    public FileChannel getFileChannel() throws IOException;
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import com.amazonaws.AmazonClientException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An adaptive limit on the rate of requests sent to a service, which follows
+ * the additive increase / multiplicative decrease scheme of TCP congestion
+ * control. The limiter stays out of the way until the service throttles a
+ * request. The send rate is then cut to a fraction of the rate measured at
+ * the time, and raised by a fixed number of requests per second for every
+ * second without throttling. Writers sharing a limiter thus converge to the
+ * throughput the service allows, instead of oscillating between bursts and
+ * storms of throttled retries.
+ * <p>
+ * This class is thread-safe. A limiter is meant to be shared by all the
+ * requests sent to the same endpoint.
+ *
+ * @see com.amazonaws.ClientConfiguration#setUseAdaptiveRateLimiting(boolean)
+ * @see RetryUtils#isThrottlingException(com.amazonaws.AmazonServiceException)
+ */
+public class AdaptiveRateLimiter {
+
+    /** Default lowest send rate, in requests per second */
+    public static final double DEFAULT_MIN_RATE = 0.5;
+
+    /** Default factor applied to the send rate upon throttling */
+    public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+
+    /**
+     * Default number of requests per second added to the send rate for every
+     * second without throttling
+     */
+    public static final double DEFAULT_ADDITIVE_INCREASE = 2.0;
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double minRate;
+    private final double decreaseFactor;
+    private final double additiveIncrease;
+
+    /** Whether a throttling response has enabled the limit */
+    private boolean limiting;
+    /** Current limit, in requests per second */
+    private double rate;
+    /** Time at which the next request may be sent */
+    private long nextSendNanos;
+    /** Time up to which the additive increase has been applied */
+    private long lastIncreaseNanos;
+    /** Time of the last cut of the rate */
+    private long lastDecreaseNanos;
+
+    /** Start of the window over which the actual send rate is measured */
+    private long windowStartNanos;
+    private int sentInWindow;
+    /** Send rate measured over the last complete window */
+    private double measuredRate;
+
+    private long throttles;
+
+    /**
+     * Constructs a limiter with the default parameters.
+     */
+    public AdaptiveRateLimiter() {
+        this(DEFAULT_MIN_RATE, DEFAULT_DECREASE_FACTOR, DEFAULT_ADDITIVE_INCREASE);
+    }
+
+    /**
+     * Constructs a limiter.
+     *
+     * @param minRate the lowest send rate in requests per second, which must
+     *            be positive
+     * @param decreaseFactor the factor applied to the send rate upon
+     *            throttling, strictly between 0 and 1
+     * @param additiveIncrease the number of requests per second added to the
+     *            send rate for every second without throttling, which must be
+     *            positive
+     */
+    public AdaptiveRateLimiter(double minRate, double decreaseFactor, double additiveIncrease) {
+        if (minRate <= 0) {
+            throw new IllegalArgumentException("minRate must be positive");
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("decreaseFactor must be between 0 and 1");
+        }
+        if (additiveIncrease <= 0) {
+            throw new IllegalArgumentException("additiveIncrease must be positive");
+        }
+        this.minRate = minRate;
+        this.decreaseFactor = decreaseFactor;
+        this.additiveIncrease = additiveIncrease;
+        this.windowStartNanos = nanoTime();
+    }
+
+    /**
+     * Reserves the permission to send a request.
+     *
+     * @return the delay in milliseconds the caller has to wait before sending
+     *         the request, 0 if it can be sent right away
+     */
+    public synchronized long reserve() {
+        long now = nanoTime();
+        measure(now);
+        if (!limiting) {
+            return 0;
+        }
+        increase(now);
+        long sendNanos = Math.max(nextSendNanos, now);
+        nextSendNanos = sendNanos + (long) (SECOND_NANOS / rate);
+        return TimeUnit.NANOSECONDS.toMillis(sendNanos - now);
+    }
+
+    /**
+     * Waits until a request may be sent.
+     *
+     * @throws AmazonClientException if the thread is interrupted while waiting
+     */
+    public void acquire() {
+        long delay = reserve();
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reports a throttling response, which cuts the send rate. Throttles
+     * within a second of the last cut don't cut it again, since they mostly
+     * hit requests that were sent at the old rate.
+     */
+    public synchronized void onThrottle() {
+        long now = nanoTime();
+        throttles++;
+        if (limiting && now - lastDecreaseNanos < SECOND_NANOS) {
+            return;
+        }
+        double current = measuredRate(now);
+        if (limiting) {
+            increase(now);
+            current = Math.min(rate, current);
+        }
+        limiting = true;
+        rate = Math.max(minRate, current * decreaseFactor);
+        lastDecreaseNanos = now;
+        lastIncreaseNanos = now;
+    }
+
+    /**
+     * Returns whether a throttling response has enabled the limit.
+     */
+    public synchronized boolean isLimiting() {
+        return limiting;
+    }
+
+    /**
+     * Returns the current limit in requests per second, or
+     * {@link Double#POSITIVE_INFINITY} before the first throttling response.
+     */
+    public synchronized double getRate() {
+        if (!limiting) {
+            return Double.POSITIVE_INFINITY;
+        }
+        increase(nanoTime());
+        return rate;
+    }
+
+    /**
+     * Returns the number of throttling responses reported to this limiter.
+     */
+    public synchronized long getThrottleCount() {
+        return throttles;
+    }
+
+    /**
+     * Returns the current time in nanoseconds; overridden by tests.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Applies the additive increase for every full second since it was last
+     * applied.
+     */
+    private void increase(long now) {
+        long elapsed = now - lastIncreaseNanos;
+        if (elapsed >= SECOND_NANOS) {
+            long seconds = elapsed / SECOND_NANOS;
+            rate += seconds * additiveIncrease;
+            lastIncreaseNanos += seconds * SECOND_NANOS;
+        }
+    }
+
+    /**
+     * Counts a request in the measurement window, rolling it over every
+     * second. A window followed by an idle gap mostly measures the gap, so
+     * it's dropped rather than letting a burst after the gap be cut to
+     * almost nothing.
+     */
+    private void measure(long now) {
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= SECOND_NANOS) {
+            measuredRate = elapsed < 2 * SECOND_NANOS
+                    ? sentInWindow * (double) SECOND_NANOS / elapsed
+                    : 0;
+            windowStartNanos = now;
+            sentInWindow = 0;
+        }
+        sentInWindow++;
+    }
+
+    /**
+     * Returns the send rate measured recently, using the current window until
+     * a full one is available.
+     */
+    private double measuredRate(long now) {
+        if (measuredRate > 0) {
+            return measuredRate;
+        }
+        long elapsed = Math.max(now - windowStartNanos, SECOND_NANOS);
+        return sentInWindow * (double) SECOND_NANOS / elapsed;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+/**
+ * A client-wide budget for retries, which keeps retries from multiplying the
+ * load on a service during an outage. Every retry allowed by the
+ * {@link RetryPolicy} also has to take {@link #RETRY_COST} tokens from the
+ * bucket, and every successful request puts tokens back: the cost of its own
+ * retries, or {@link #SUCCESS_REFUND} if it succeeded at the first attempt.
+ * While failures outnumber successes the bucket drains, and once it's empty
+ * failed requests are no longer retried until successes refill it.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see com.amazonaws.ClientConfiguration#setUseThrottleRetries(boolean)
+ */
+public final class RetryTokenBucket {
+
+    /** Number of tokens taken by a retry */
+    public static final int RETRY_COST = 5;
+
+    /** Number of tokens put back by a request that succeeded without retries */
+    public static final int SUCCESS_REFUND = 1;
+
+    private final int capacity;
+    private int available;
+    private long retriesAcquired;
+    private long retriesAvoided;
+
+    /**
+     * Constructs a full bucket.
+     *
+     * @param maxConsecutiveRetries the number of retries the full bucket
+     *            allows without any successful request in between
+     */
+    public RetryTokenBucket(int maxConsecutiveRetries) {
+        if (maxConsecutiveRetries <= 0) {
+            throw new IllegalArgumentException(
+                    "Please provide a positive value for maxConsecutiveRetries.");
+        }
+        this.capacity = maxConsecutiveRetries * RETRY_COST;
+        this.available = capacity;
+    }
+
+    /**
+     * Takes the tokens for a retry, if there are enough of them.
+     *
+     * @return true if the request may be retried, false if the retry is
+     *         avoided
+     */
+    public synchronized boolean tryAcquire() {
+        if (available < RETRY_COST) {
+            retriesAvoided++;
+            return false;
+        }
+        available -= RETRY_COST;
+        retriesAcquired++;
+        return true;
+    }
+
+    /**
+     * Puts tokens back after a successful request.
+     *
+     * @param retries the number of retries the request acquired from this
+     *            bucket
+     */
+    public synchronized void release(int retries) {
+        int refund = retries > 0 ? retries * RETRY_COST : SUCCESS_REFUND;
+        available = Math.min(capacity, available + refund);
+    }
+
+    /**
+     * Returns the number of tokens of the full bucket.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of tokens currently in the bucket.
+     */
+    public synchronized int getAvailableCapacity() {
+        return available;
+    }
+
+    /**
+     * Returns the number of retries that were allowed by this bucket.
+     */
+    public synchronized long getRetriesAcquired() {
+        return retriesAcquired;
+    }
+
+    /**
+     * Returns the number of retries the retry policy allowed, but which were
+     * avoided because the bucket was empty.
+     */
+    public synchronized long getRetriesAvoided() {
+        return retriesAvoided;
+    }
+}
@@ -19,12 +19,15 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains the unmarshalling state for the parsing of an XML response. The
@@ -36,11 +39,31 @@ import java.util.Map;
  */
 public class StaxUnmarshallerContext {
 
+    /**
+     * Expressions parsed into their path segments. The expressions come from
+     * the generated unmarshallers, so there is a fixed set of them.
+     */
+    private static final Map<String, Expression> EXPRESSIONS =
+            new ConcurrentHashMap<String, Expression>();
+
     private int currentEventType;
     private final XmlPullParser xpp;
 
-    public final Deque<String> stack = new LinkedList<String>();
-    private String stackString = "";
+    /** Names of the elements enclosing the current position, by depth */
+    private String[] path = new String[16];
+    private int depth;
+
+    /**
+     * The paths of the elements enclosing the current position, innermost
+     * first, e.g. "/DescribeImagesResponse/imageSet" then
+     * "/DescribeImagesResponse". The paths are built when they're read.
+     *
+     * @deprecated The context tracks the current position by depth; use
+     *             {@link #getCurrentDepth()} and {@link #testExpression(String)}
+     *             instead. This view is read-only.
+     */
+    @Deprecated
+    public final Deque<String> stack = new PathStack();
 
     private Map<String, String> metadata = new HashMap<String, String>();
     private List<MetadataExpression> metadataExpressions = new ArrayList<MetadataExpression>();
@@ -114,7 +137,7 @@ public class StaxUnmarshallerContext {
      *         document being parsed.
      */
     public int getCurrentDepth() {
-        return stack.size();
+        return depth;
     }
 
     /**
@@ -145,16 +168,13 @@ public class StaxUnmarshallerContext {
         if (expression.equals("."))
             return true;
 
-        int index = -1;
-        while ((index = expression.indexOf("/", index + 1)) > -1) {
-            // Don't consider attributes a new depth level
-            if (expression.charAt(index + 1) != '@') {
-                startingStackDepth++;
-            }
+        Expression parsed = EXPRESSIONS.get(expression);
+        if (parsed == null) {
+            parsed = new Expression(expression);
+            EXPRESSIONS.put(expression, parsed);
         }
-
-        return (getCurrentDepth() == startingStackDepth
-        && stackString.endsWith("/" + expression));
+        return depth == startingStackDepth + parsed.depthIncrement
+                && parsed.matches(path, depth);
     }
 
     /**
@@ -248,13 +268,230 @@ public class StaxUnmarshallerContext {
         }
     }
 
+    /**
+     * A pseudo-xpath expression split into the element names it has to find
+     * at the end of the current path.
+     */
+    private static final class Expression {
+        /** Interned names, outermost first */
+        final String[] names;
+        /** Levels below the starting depth the expression matches at */
+        final int depthIncrement;
+        /** Attributes aren't tracked, so expressions naming one never match */
+        final boolean attribute;
+
+        Expression(String expression) {
+            names = expression.split("/", -1);
+            int increment = 0;
+            boolean hasAttribute = false;
+            for (int i = 0; i < names.length; i++) {
+                names[i] = names[i].intern();
+                if (names[i].startsWith("@")) {
+                    hasAttribute = true;
+                } else if (i > 0) {
+                    // Don't consider attributes a new depth level
+                    increment++;
+                }
+            }
+            depthIncrement = increment;
+            attribute = hasAttribute;
+        }
+
+        boolean matches(String[] path, int depth) {
+            if (attribute || names.length > depth) {
+                return false;
+            }
+            for (int i = 1; i <= names.length; i++) {
+                if (!names[names.length - i].equals(path[depth - i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Read-only view of {@link #path} as the stack of element paths it used
+     * to be kept as.
+     */
+    private final class PathStack extends AbstractCollection<String> implements Deque<String> {
+
+        /** Returns the path of the element at the given depth, from 1 */
+        private String pathAt(int elementDepth) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < elementDepth; i++) {
+                builder.append('/').append(path[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public int size() {
+            return depth;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new PathIterator(false);
+        }
+
+        @Override
+        public Iterator<String> descendingIterator() {
+            return new PathIterator(true);
+        }
+
+        @Override
+        public String peekFirst() {
+            return depth == 0 ? null : pathAt(depth);
+        }
+
+        @Override
+        public String peekLast() {
+            return depth == 0 ? null : pathAt(1);
+        }
+
+        @Override
+        public String peek() {
+            return peekFirst();
+        }
+
+        @Override
+        public String getFirst() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            return pathAt(depth);
+        }
+
+        @Override
+        public String getLast() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            return pathAt(1);
+        }
+
+        @Override
+        public String element() {
+            return getFirst();
+        }
+
+        @Override
+        public void addFirst(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addLast(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean offerFirst(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean offerLast(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String removeFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String removeLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String pollFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String pollLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeFirstOccurrence(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeLastOccurrence(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean offer(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String poll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void push(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String pop() {
+            throw new UnsupportedOperationException();
+        }
+
+        private final class PathIterator implements Iterator<String> {
+            private final boolean descending;
+            private int next;
+
+            PathIterator(boolean descending) {
+                this.descending = descending;
+                this.next = descending ? 1 : depth;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return descending ? next <= depth : next > 0;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String element = pathAt(next);
+                next += descending ? 1 : -1;
+                return element;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
     private void updateContext() {
         if (currentEventType == XmlPullParser.START_TAG) {
-            stackString += "/" + xpp.getName();
-            stack.push(stackString);
+            if (depth == path.length) {
+                String[] grown = new String[depth * 2];
+                System.arraycopy(path, 0, grown, 0, depth);
+                path = grown;
+            }
+            path[depth++] = xpp.getName();
         } else if (currentEventType == XmlPullParser.END_TAG) {
-            stack.pop();
-            stackString = stack.isEmpty() ? "" : stack.peek();
+            path[--depth] = null;
         }
     }
 }
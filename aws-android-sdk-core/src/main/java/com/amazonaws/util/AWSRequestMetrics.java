@@ -124,6 +124,15 @@ public class AWSRequestMetrics {
          */
         HttpClientPoolPendingCount,
         RetryPauseTime,
+        /**
+         * Number of retries allowed by the retry policy but avoided because
+         * the retry token bucket of the client was empty.
+         */
+        ThrottledRetryCount,
+        /**
+         * Time a request waited for the adaptive rate limiter of the client.
+         */
+        RateLimitPauseTime,
         // S3DownloadThroughput, // migrated to S3RequestMetric in the S3 clint
         // library
         // S3UploadThroughput, // migrated to S3RequestMetric in the S3 clint
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output stream which collects its bytes in a list of segments and hands
+ * them out as an {@link InputStream} without copying. Unlike
+ * {@link java.io.ByteArrayOutputStream}, it never copies what was written to
+ * grow, and there is no {@code toByteArray()} copy to get at the content: the
+ * stream returned by {@link #toInputStream()} reads the segments in place,
+ * knows its exact length and supports mark and reset, so it can be used as
+ * the content of a request that may be retried.
+ * <p>
+ * Not thread safe.
+ */
+public class SegmentedByteArrayOutputStream extends OutputStream {
+
+    /** Size of the first segment */
+    private static final int DEFAULT_INITIAL_SEGMENT_SIZE = 1024;
+    /** Segments double in size up to this size */
+    private static final int MAX_SEGMENT_SIZE = 256 * 1024;
+
+    private final List<byte[]> segments = new ArrayList<byte[]>();
+    private byte[] current;
+    /** Number of bytes used in the current segment */
+    private int position;
+    private int size;
+
+    public SegmentedByteArrayOutputStream() {
+        this(DEFAULT_INITIAL_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param initialSegmentSize size of the first segment, best set to the
+     *            expected size of the content
+     */
+    public SegmentedByteArrayOutputStream(int initialSegmentSize) {
+        if (initialSegmentSize <= 0) {
+            throw new IllegalArgumentException("initialSegmentSize must be positive");
+        }
+        current = new byte[initialSegmentSize];
+        segments.add(current);
+    }
+
+    @Override
+    public void write(int b) {
+        if (position == current.length) {
+            nextSegment();
+        }
+        current[position++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (size + (long) len > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Content exceeds 2 GB");
+        }
+        while (len > 0) {
+            if (position == current.length) {
+                nextSegment();
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(b, off, current, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a stream of the bytes written so far. The stream shares the
+     * segments with this output stream; bytes written afterwards aren't part
+     * of it.
+     */
+    public InputStream toInputStream() {
+        return new SegmentedInputStream(segments.toArray(new byte[segments.size()][]), size);
+    }
+
+    private void nextSegment() {
+        current = new byte[Math.min(current.length * 2, MAX_SEGMENT_SIZE)];
+        segments.add(current);
+        position = 0;
+    }
+
+    /**
+     * Reads a fixed number of bytes from a list of segments.
+     */
+    private static final class SegmentedInputStream extends InputStream {
+        private final byte[][] segments;
+        private final int length;
+        private int segment;
+        private int offset;
+        private int read;
+
+        private int markSegment;
+        private int markOffset;
+        private int markRead;
+
+        SegmentedInputStream(byte[][] segments, int length) {
+            this.segments = segments;
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (read == length) {
+                return -1;
+            }
+            if (offset == segments[segment].length) {
+                segment++;
+                offset = 0;
+            }
+            read++;
+            return segments[segment][offset++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (read == length) {
+                return -1;
+            }
+            int total = Math.min(len, length - read);
+            int remaining = total;
+            while (remaining > 0) {
+                if (offset == segments[segment].length) {
+                    segment++;
+                    offset = 0;
+                }
+                int n = Math.min(remaining, segments[segment].length - offset);
+                System.arraycopy(segments[segment], offset, b, off, n);
+                offset += n;
+                off += n;
+                remaining -= n;
+            }
+            read += total;
+            return total;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            int remaining = (int) Math.min(n, length - read);
+            int skipped = remaining;
+            while (remaining > 0) {
+                if (offset == segments[segment].length) {
+                    segment++;
+                    offset = 0;
+                }
+                int step = Math.min(remaining, segments[segment].length - offset);
+                offset += step;
+                remaining -= step;
+            }
+            read += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return length - read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            markSegment = segment;
+            markOffset = offset;
+            markRead = read;
+        }
+
+        @Override
+        public void reset() {
+            segment = markSegment;
+            offset = markOffset;
+            read = markRead;
+        }
+    }
+}
@@ -16,8 +16,13 @@
 package com.amazonaws.util.json;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.StringUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -33,6 +38,13 @@ public class JsonUtils {
 
     private static volatile AwsJsonFactory factory = new GsonFactory();
 
+    /**
+     * Whether JSON streams are handled by {@link Utf8JsonReader} and
+     * {@link Utf8JsonWriter}, which is the case until a JSON engine is set
+     * explicitly.
+     */
+    private static volatile boolean utf8Streams = true;
+
     /**
      * JSON engine
      */
@@ -73,6 +85,7 @@ public class JsonUtils {
             default:
                 throw new RuntimeException("Unsupported json engine");
         }
+        utf8Streams = false;
     }
 
     /**
@@ -85,6 +98,7 @@ public class JsonUtils {
             throw new IllegalArgumentException("factory can't be null");
         }
         JsonUtils.factory = factory;
+        utf8Streams = false;
     }
 
     /**
@@ -101,6 +115,21 @@ public class JsonUtils {
         return factory.getJsonReader(in);
     }
 
+    /**
+     * Gets a JSON reader of a UTF-8 encoded stream. Unless a JSON engine has
+     * been set, the stream is parsed straight from its bytes instead of going
+     * through the engine and an {@link InputStreamReader}.
+     *
+     * @param in UTF-8 encoded JSON
+     * @return a JSON reader
+     */
+    public static AwsJsonReader getJsonReader(InputStream in) {
+        if (utf8Streams) {
+            return new Utf8JsonReader(in);
+        }
+        return getJsonReader(new InputStreamReader(in, StringUtils.UTF8));
+    }
+
     /**
      * Gets a JSON writer. If no JSON engine is available, an
      * {@link AmazonClientException} will be thrown.
@@ -115,6 +144,22 @@ public class JsonUtils {
         return factory.getJsonWriter(out);
     }
 
+    /**
+     * Gets a JSON writer which encodes to a stream as UTF-8. Unless a JSON
+     * engine has been set, the JSON is encoded straight into the stream
+     * instead of going through the engine and an {@link OutputStreamWriter}.
+     * Closing the writer closes the stream.
+     *
+     * @param out stream the JSON is written to
+     * @return a JSON writer
+     */
+    public static AwsJsonWriter getJsonWriter(OutputStream out) {
+        if (utf8Streams) {
+            return new Utf8JsonWriter(out);
+        }
+        return getJsonWriter(new OutputStreamWriter(out, StringUtils.UTF8));
+    }
+
     /**
      * Convenient method to convert a JSON string to a map. Any object or array
      * will be discarded. Number and boolean are stored as string.
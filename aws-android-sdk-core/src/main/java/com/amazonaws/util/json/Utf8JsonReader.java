@@ -0,0 +1,714 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import com.amazonaws.util.StringUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A streaming {@link AwsJsonReader} which parses UTF-8 encoded JSON straight
+ * from the bytes of an {@link InputStream}, without a {@link java.io.Reader}
+ * in between. Strings are decoded from the byte buffer in a single pass and
+ * field names are looked up in a table of interned names shared by all
+ * readers, so the same name is never decoded twice and the generated
+ * unmarshallers compare it against their constants by identity.
+ * <p>
+ * It behaves like the Gson reader: numbers and booleans can be read as
+ * strings, and {@link #peek()} returns null at the end of the document.
+ */
+final class Utf8JsonReader implements AwsJsonReader {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** Number of slots of the name table, a power of two */
+    private static final int NAME_TABLE_SIZE = 1024;
+    /** Longest name, in bytes, kept in the name table */
+    private static final int MAX_TABLE_NAME_LENGTH = 64;
+    private static final AtomicReferenceArray<Name> NAME_TABLE =
+            new AtomicReferenceArray<Name>(NAME_TABLE_SIZE);
+
+    private static final byte[] TRUE = {
+            't', 'r', 'u', 'e'
+    };
+    private static final byte[] FALSE = {
+            'f', 'a', 'l', 's', 'e'
+    };
+    private static final byte[] NULL = {
+            'n', 'u', 'l', 'l'
+    };
+
+    // tokens, with the opening quote of strings and names consumed
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_BEGIN_OBJECT = 1;
+    private static final int PEEKED_END_OBJECT = 2;
+    private static final int PEEKED_BEGIN_ARRAY = 3;
+    private static final int PEEKED_END_ARRAY = 4;
+    private static final int PEEKED_TRUE = 5;
+    private static final int PEEKED_FALSE = 6;
+    private static final int PEEKED_NULL = 7;
+    private static final int PEEKED_STRING = 8;
+    private static final int PEEKED_NAME = 9;
+    private static final int PEEKED_NUMBER = 10;
+    private static final int PEEKED_EOF = 11;
+
+    // scopes
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+    private static final int CLOSED = 8;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private char[] chars = new char[64];
+
+    private int peeked = PEEKED_NONE;
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    /**
+     * @param in the UTF-8 encoded JSON
+     */
+    Utf8JsonReader(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("in can't be null");
+        }
+        this.in = in;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(PEEKED_BEGIN_ARRAY, AwsJsonToken.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(PEEKED_END_ARRAY, AwsJsonToken.END_ARRAY);
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(PEEKED_BEGIN_OBJECT, AwsJsonToken.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(PEEKED_END_OBJECT, AwsJsonToken.END_OBJECT);
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public boolean isContainer() throws IOException {
+        int p = peekToken();
+        return p == PEEKED_BEGIN_ARRAY || p == PEEKED_BEGIN_OBJECT;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        int p = peekToken();
+        return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY && p != PEEKED_EOF;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(PEEKED_NAME, AwsJsonToken.FIELD_NAME);
+        String name = readName();
+        peeked = PEEKED_NONE;
+        return name;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        String result;
+        switch (peekToken()) {
+            case PEEKED_STRING:
+                result = readString();
+                break;
+            case PEEKED_NUMBER:
+                result = readNumber();
+                break;
+            case PEEKED_TRUE:
+                result = "true";
+                break;
+            case PEEKED_FALSE:
+                result = "false";
+                break;
+            case PEEKED_NULL:
+                result = null;
+                break;
+            default:
+                throw new IllegalStateException("Expected a string but was " + peek());
+        }
+        peeked = PEEKED_NONE;
+        return result;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peekToken()) {
+                case PEEKED_BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case PEEKED_BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case PEEKED_END_ARRAY:
+                case PEEKED_END_OBJECT:
+                case PEEKED_EOF:
+                    if (depth == 0) {
+                        throw new IllegalStateException("Expected a value but was " + peek());
+                    }
+                    stackSize--;
+                    depth--;
+                    break;
+                case PEEKED_STRING:
+                case PEEKED_NAME:
+                    skipString();
+                    break;
+                case PEEKED_NUMBER:
+                    readNumber();
+                    break;
+                default:
+                    // literals are consumed by peeking
+                    break;
+            }
+            peeked = PEEKED_NONE;
+        } while (depth != 0);
+    }
+
+    @Override
+    public AwsJsonToken peek() throws IOException {
+        int p;
+        try {
+            p = peekToken();
+        } catch (EOFException e) {
+            return null;
+        }
+        switch (p) {
+            case PEEKED_BEGIN_OBJECT:
+                return AwsJsonToken.BEGIN_OBJECT;
+            case PEEKED_END_OBJECT:
+                return AwsJsonToken.END_OBJECT;
+            case PEEKED_BEGIN_ARRAY:
+                return AwsJsonToken.BEGIN_ARRAY;
+            case PEEKED_END_ARRAY:
+                return AwsJsonToken.END_ARRAY;
+            case PEEKED_TRUE:
+            case PEEKED_FALSE:
+                return AwsJsonToken.VALUE_BOOLEAN;
+            case PEEKED_NULL:
+                return AwsJsonToken.VALUE_NULL;
+            case PEEKED_STRING:
+                return AwsJsonToken.VALUE_STRING;
+            case PEEKED_NAME:
+                return AwsJsonToken.FIELD_NAME;
+            case PEEKED_NUMBER:
+                return AwsJsonToken.VALUE_NUMBER;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = PEEKED_NONE;
+        stack[0] = CLOSED;
+        stackSize = 1;
+        in.close();
+    }
+
+    private void expect(int token, AwsJsonToken expected) throws IOException {
+        if (peekToken() != token) {
+            throw new IllegalStateException("Expected " + expected + " but was " + peek());
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private int peekToken() throws IOException {
+        return peeked != PEEKED_NONE ? peeked : doPeek();
+    }
+
+    private int doPeek() throws IOException {
+        int scope = stack[stackSize - 1];
+        if (scope == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace(true);
+            pos++;
+            if (c == ']') {
+                return peeked = PEEKED_END_ARRAY;
+            }
+            if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace(true);
+            pos++;
+            if (c == '}') {
+                return peeked = PEEKED_END_OBJECT;
+            }
+            if (scope == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                c = nextNonWhitespace(true);
+                pos++;
+            }
+            if (c != '"') {
+                throw syntaxError("Expected name");
+            }
+            return peeked = PEEKED_NAME;
+        } else if (scope == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            int c = nextNonWhitespace(true);
+            pos++;
+            if (c != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespace(false) == -1) {
+                return peeked = PEEKED_EOF;
+            }
+            throw syntaxError("Expected end of document");
+        } else if (scope == CLOSED) {
+            throw new IllegalStateException("JsonReader is closed");
+        }
+
+        int c = nextNonWhitespace(true);
+        switch (c) {
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    pos++;
+                    return peeked = PEEKED_END_ARRAY;
+                }
+                throw syntaxError("Unexpected value");
+            case '"':
+                pos++;
+                return peeked = PEEKED_STRING;
+            case '{':
+                pos++;
+                return peeked = PEEKED_BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return peeked = PEEKED_BEGIN_ARRAY;
+            case 't':
+                readLiteral(TRUE);
+                return peeked = PEEKED_TRUE;
+            case 'f':
+                readLiteral(FALSE);
+                return peeked = PEEKED_FALSE;
+            case 'n':
+                readLiteral(NULL);
+                return peeked = PEEKED_NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return peeked = PEEKED_NUMBER;
+                }
+                throw syntaxError("Unexpected character");
+        }
+    }
+
+    /**
+     * Skips whitespace and returns the next byte without consuming it.
+     *
+     * @return the next byte, or -1 at the end of the stream unless
+     *         throwOnEof is set
+     */
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                if (throwOnEof) {
+                    throw new EOFException("End of input");
+                }
+                return -1;
+            }
+            int c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c & 0xff;
+            }
+        }
+    }
+
+    /**
+     * Makes sure at least the given number of bytes are available after the
+     * position, moving the unread bytes to the beginning of the buffer.
+     *
+     * @return false if the stream ended first or the bytes don't fit
+     */
+    private boolean fill(int minimum) throws IOException {
+        if (limit - pos >= minimum) {
+            return true;
+        }
+        if (minimum > buffer.length) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < minimum) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private void readLiteral(byte[] literal) throws IOException {
+        if (!fill(literal.length)) {
+            throw syntaxError("Unexpected character");
+        }
+        for (int i = 0; i < literal.length; i++) {
+            if (buffer[pos + i] != literal[i]) {
+                throw syntaxError("Unexpected character");
+            }
+        }
+        pos += literal.length;
+        if (pos < limit || fill(1)) {
+            int c = buffer[pos];
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                throw syntaxError("Unexpected character");
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a name. Names free of escapes which fit the buffer
+     * are resolved through the name table.
+     */
+    private String readName() throws IOException {
+        int i = pos;
+        while (true) {
+            if (i == limit) {
+                int offset = i - pos;
+                if (!fill(offset + 1)) {
+                    return readString().intern();
+                }
+                i = pos + offset;
+            }
+            byte b = buffer[i];
+            if (b == '"') {
+                String name = lookUpName(buffer, pos, i - pos);
+                pos = i + 1;
+                return name;
+            }
+            if (b == '\\') {
+                return readString().intern();
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Returns the interned name encoded by the given bytes, decoding it only
+     * if it isn't in the table yet.
+     */
+    static String lookUpName(byte[] bytes, int offset, int length) {
+        int hash = length;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_TABLE_SIZE - 1);
+        Name entry = NAME_TABLE.get(slot);
+        if (entry != null && entry.matches(bytes, offset, length)) {
+            return entry.name;
+        }
+        String name = new String(bytes, offset, length, StringUtils.UTF8);
+        if (length <= MAX_TABLE_NAME_LENGTH) {
+            name = name.intern();
+            // a racing thread may replace the entry; either one is valid
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, offset, copy, 0, length);
+            NAME_TABLE.set(slot, new Name(copy, name));
+        }
+        return name;
+    }
+
+    /**
+     * Reads the rest of a string, decoding UTF-8 and escapes.
+     */
+    private String readString() throws IOException {
+        int length = 0;
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+            // copy the run of plain ASCII in one go
+            int start = pos;
+            int end = Math.min(limit, start + chars.length - length);
+            while (pos < end) {
+                byte b = buffer[pos];
+                if (b == '"' || b == '\\' || b < 0) {
+                    break;
+                }
+                chars[length++] = (char) b;
+                pos++;
+            }
+            if (pos == end) {
+                if (length == chars.length) {
+                    growChars();
+                }
+                continue;
+            }
+            if (length + 2 > chars.length) {
+                growChars();
+            }
+            int b = buffer[pos++];
+            if (b == '"') {
+                return new String(chars, 0, length);
+            } else if (b == '\\') {
+                chars[length++] = readEscape();
+            } else {
+                length += Character.toChars(readMultiByte(b & 0xff), chars, length);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+            byte b = buffer[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                readEscape();
+            }
+        }
+    }
+
+    private void growChars() {
+        char[] grown = new char[chars.length * 2];
+        System.arraycopy(chars, 0, grown, 0, chars.length);
+        chars = grown;
+    }
+
+    private char readEscape() throws IOException {
+        if (pos == limit && !fill(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        byte escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                if (!fill(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit == -1) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Decodes the rest of a multi-byte UTF-8 sequence. Malformed sequences
+     * decode to U+FFFD, as they would with a {@link java.io.Reader}.
+     */
+    private int readMultiByte(int first) throws IOException {
+        int extra;
+        int codePoint;
+        int min;
+        if ((first & 0xe0) == 0xc0) {
+            extra = 1;
+            codePoint = first & 0x1f;
+            min = 0x80;
+        } else if ((first & 0xf0) == 0xe0) {
+            extra = 2;
+            codePoint = first & 0x0f;
+            min = 0x800;
+        } else if ((first & 0xf8) == 0xf0) {
+            extra = 3;
+            codePoint = first & 0x07;
+            min = 0x10000;
+        } else {
+            return 0xfffd;
+        }
+        if (!fill(extra)) {
+            throw syntaxError("Unterminated string");
+        }
+        for (int i = 0; i < extra; i++) {
+            int b = buffer[pos];
+            if ((b & 0xc0) != 0x80) {
+                // leave the byte to be decoded on its own
+                return 0xfffd;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3f);
+            pos++;
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE
+                && codePoint <= Character.MAX_SURROGATE)) {
+            return 0xfffd;
+        }
+        return codePoint;
+    }
+
+    /**
+     * Reads a number as it appears in the document.
+     */
+    private String readNumber() throws IOException {
+        int length = 0;
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                break;
+            }
+            int c = buffer[pos];
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.'
+                    && c != 'e' && c != 'E') {
+                break;
+            }
+            if (length == chars.length) {
+                growChars();
+            }
+            chars[length++] = (char) c;
+            pos++;
+        }
+        if (!isNumber(chars, length)) {
+            throw syntaxError("Malformed number");
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Checks the JSON number grammar:
+     * {@code -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?}
+     */
+    private static boolean isNumber(char[] number, int length) {
+        int i = 0;
+        if (i < length && number[i] == '-') {
+            i++;
+        }
+        int digits = i;
+        while (i < length && number[i] >= '0' && number[i] <= '9') {
+            i++;
+        }
+        if (i == digits || (number[digits] == '0' && i - digits > 1)) {
+            return false;
+        }
+        if (i < length && number[i] == '.') {
+            digits = ++i;
+            while (i < length && number[i] >= '0' && number[i] <= '9') {
+                i++;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        if (i < length && (number[i] == 'e' || number[i] == 'E')) {
+            i++;
+            if (i < length && (number[i] == '+' || number[i] == '-')) {
+                i++;
+            }
+            digits = i;
+            while (i < length && number[i] >= '0' && number[i] <= '9') {
+                i++;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " in JSON");
+    }
+
+    /**
+     * An entry of the name table.
+     */
+    private static final class Name {
+        final byte[] bytes;
+        final String name;
+
+        Name(byte[] bytes, String name) {
+            this.bytes = bytes;
+            this.name = name;
+        }
+
+        boolean matches(byte[] other, int offset, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != other[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
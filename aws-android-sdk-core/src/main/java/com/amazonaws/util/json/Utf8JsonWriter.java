@@ -0,0 +1,402 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import com.amazonaws.internal.ByteArrayPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * An {@link AwsJsonWriter} which encodes JSON as UTF-8 straight into an
+ * {@link OutputStream}, through a scratch buffer taken from the shared
+ * {@link ByteArrayPool} and given back on {@link #close()}. Binary values are
+ * Base64 encoded into the buffer as they are read, without an intermediate
+ * copy of the bytes or of their encoding.
+ * <p>
+ * The output is the same as the Gson writer's.
+ */
+final class Utf8JsonWriter implements AwsJsonWriter {
+
+    private static final byte[] BASE64 = {
+            'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+            'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+            'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+            'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
+    };
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    // scopes
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int count;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    /**
+     * @param out stream the UTF-8 encoded JSON is written to
+     */
+    Utf8JsonWriter(OutputStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException("out can't be null");
+        }
+        this.out = out;
+        this.buffer = ByteArrayPool.getShared().acquire();
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public AwsJsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        writeByte('[');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    @Override
+    public AwsJsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        writeByte('{');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    @Override
+    public AwsJsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        int scope = peekScope();
+        if (scope == NONEMPTY_OBJECT) {
+            writeByte(',');
+        } else if (scope != EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        writeString(name);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return value();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return value();
+        }
+        String string = value.toString();
+        if (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN")) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        writeAscii(string);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(Date value) throws IOException {
+        BigDecimal dateValue = BigDecimal.valueOf(value.getTime());
+        return value(dateValue.scaleByPowerOfTen(-3));
+    }
+
+    @Override
+    public AwsJsonWriter value(ByteBuffer value) throws IOException {
+        beforeValue();
+        writeByte('"');
+        int position = value.position();
+        int limit = value.limit();
+        if (value.hasArray()) {
+            int offset = value.arrayOffset();
+            writeBase64(value.array(), null, offset + position, offset + limit);
+        } else {
+            writeBase64(null, value, position, limit);
+        }
+        writeByte('"');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (buffer == null) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        flushBuffer();
+        ByteArrayPool.getShared().release(buffer);
+        buffer = null;
+        out.close();
+        if (stackSize > 1 || stack[0] != NONEMPTY_DOCUMENT) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private AwsJsonWriter close(int empty, int nonempty, char bracket) throws IOException {
+        int scope = peekScope();
+        if (scope != empty && scope != nonempty) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stackSize--;
+        writeByte(bracket);
+        return this;
+    }
+
+    private int peekScope() {
+        if (buffer == null) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+        return stack[stackSize - 1];
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * Writes the separator the next value needs in its scope.
+     */
+    private void beforeValue() throws IOException {
+        switch (peekScope()) {
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value.");
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                writeByte(',');
+                break;
+            case DANGLING_NAME:
+                writeByte(':');
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem.");
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void writeAscii(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            writeByte(ascii.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a quoted string, escaping the characters Gson escapes and
+     * encoding the rest as UTF-8. Unpaired surrogates are written as '?'.
+     */
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            // make room for the longest sequence, an escape of six bytes
+            if (buffer.length - count < 6) {
+                flushBuffer();
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buffer[count++] = (byte) c;
+                } else {
+                    writeEscape(c);
+                }
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xc0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c == 0x2028 || c == 0x2029) {
+                writeEscape(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xe0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) {
+        buffer[count++] = '\\';
+        switch (c) {
+            case '"':
+            case '\\':
+                buffer[count++] = (byte) c;
+                break;
+            case '\t':
+                buffer[count++] = 't';
+                break;
+            case '\b':
+                buffer[count++] = 'b';
+                break;
+            case '\n':
+                buffer[count++] = 'n';
+                break;
+            case '\r':
+                buffer[count++] = 'r';
+                break;
+            case '\f':
+                buffer[count++] = 'f';
+                break;
+            default:
+                buffer[count++] = 'u';
+                buffer[count++] = HEX[(c >> 12) & 0xf];
+                buffer[count++] = HEX[(c >> 8) & 0xf];
+                buffer[count++] = HEX[(c >> 4) & 0xf];
+                buffer[count++] = HEX[c & 0xf];
+                break;
+        }
+    }
+
+    /**
+     * Base64 encodes the given range of either the array or the buffer.
+     */
+    private void writeBase64(byte[] array, ByteBuffer byteBuffer, int from, int to)
+            throws IOException {
+        int i = from;
+        while (to - i >= 3) {
+            if (buffer.length - count < 4) {
+                flushBuffer();
+            }
+            int bits;
+            if (array != null) {
+                bits = (array[i] & 0xff) << 16 | (array[i + 1] & 0xff) << 8
+                        | (array[i + 2] & 0xff);
+            } else {
+                bits = (byteBuffer.get(i) & 0xff) << 16 | (byteBuffer.get(i + 1) & 0xff) << 8
+                        | (byteBuffer.get(i + 2) & 0xff);
+            }
+            buffer[count++] = BASE64[bits >>> 18];
+            buffer[count++] = BASE64[(bits >>> 12) & 0x3f];
+            buffer[count++] = BASE64[(bits >>> 6) & 0x3f];
+            buffer[count++] = BASE64[bits & 0x3f];
+            i += 3;
+        }
+        int remaining = to - i;
+        if (remaining > 0) {
+            if (buffer.length - count < 4) {
+                flushBuffer();
+            }
+            int first = (array != null ? array[i] : byteBuffer.get(i)) & 0xff;
+            int second = remaining == 2
+                    ? (array != null ? array[i + 1] : byteBuffer.get(i + 1)) & 0xff : 0;
+            int bits = first << 16 | second << 8;
+            buffer[count++] = BASE64[bits >>> 18];
+            buffer[count++] = BASE64[(bits >>> 12) & 0x3f];
+            buffer[count++] = remaining == 2 ? BASE64[(bits >>> 6) & 0x3f] : (byte) '=';
+            buffer[count++] = '=';
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -22,16 +22,22 @@ import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
+import com.amazonaws.util.StringUtils;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.net.URI;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
 
@@ -79,6 +85,124 @@ public class AWS4SignerTest {
                 request.getHeaders().get("Authorization"));
     }
 
+    @Test
+    public void testSigningKeyIsReusedForSameScope() throws Exception {
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.overrideDate(c.getTime());
+
+        AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        byte[] first = signer.getSigningKey(credentials, "19810216", "us-east-1", "demo");
+        byte[] second = signer.getSigningKey(credentials, "19810216", "us-east-1", "demo");
+        assertTrue(first == second);
+
+        // Signing with a cached key must produce the same signature.
+        Request<?> request = generateBasicRequest();
+        signer.sign(request, credentials);
+        String authorization = request.getHeaders().get("Authorization");
+        request = generateBasicRequest();
+        signer.sign(request, credentials);
+        assertEquals(authorization, request.getHeaders().get("Authorization"));
+
+        // A different secret for the same access key must not hit the cache.
+        AWSCredentials rotated = new BasicAWSCredentials("access", "rotated");
+        assertFalse(Arrays.equals(first,
+                signer.getSigningKey(rotated, "19810216", "us-east-1", "demo")));
+        request = generateBasicRequest();
+        signer.sign(request, rotated);
+        assertFalse(authorization.equals(request.getHeaders().get("Authorization")));
+
+        // Every component of the scope is part of the cache key.
+        assertFalse(Arrays.equals(first,
+                signer.getSigningKey(credentials, "19810217", "us-east-1", "demo")));
+        assertFalse(Arrays.equals(first,
+                signer.getSigningKey(credentials, "19810216", "us-west-2", "demo")));
+        assertFalse(Arrays.equals(first,
+                signer.getSigningKey(credentials, "19810216", "us-east-1", "other")));
+    }
+
+    @Test
+    public void testCanonicalizationMatchesRegexImplementation() {
+        Request<?> request = generateBasicRequest();
+        request.addHeader("X-Amz-Meta-Tabs", "a\t\tb \n c");
+        request.addHeader("x-amz-meta-Mixed", " leading and trailing  ");
+        request.addHeader("x-amz-meta-empty", "");
+        request.addHeader("x-amz-meta-null", null);
+        request.addHeader("Content-MD5", "1B2M2Y8AsgTpgAmY7PhCfg==");
+        request.addHeader("Content-Type", "not  signed");
+        request.addHeader("Date", "Mon,\u000b 16 Feb\f\r1981");
+
+        assertEquals(legacyCanonicalizedHeaderString(request),
+                signer.getCanonicalizedHeaderString(request));
+        assertEquals(legacySignedHeadersString(request),
+                signer.getSignedHeadersString(request));
+
+        String canonicalRequest = signer.getCanonicalRequest(request, "hash");
+        assertTrue(canonicalRequest.contains("\n" + legacyCanonicalizedHeaderString(request)
+                + "\n" + legacySignedHeadersString(request) + "\nhash"));
+    }
+
+    @Test
+    public void testHashMatchesEncodedBytes() throws Exception {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            longText.append((char) ('a' + i % 26));
+            if (i % 7 == 0) {
+                longText.append("\u00e9\u20ac\ud83d\ude00");
+            }
+        }
+        String[] texts = {
+                "", "plain ascii", "caf\u00e9 \u20ac", "emoji \ud83d\ude00",
+                "unpaired \ud83d end", "unpaired \ude00 end", longText.toString()
+        };
+        for (String text : texts) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] expected = md.digest(text.getBytes(StringUtils.UTF8));
+            assertTrue(text, Arrays.equals(expected, signer.hash(text)));
+        }
+    }
+
+    private static String legacyCanonicalizedHeaderString(Request<?> request) {
+        List<String> sortedHeaders = new ArrayList<String>();
+        sortedHeaders.addAll(request.getHeaders().keySet());
+        Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+
+        StringBuilder buffer = new StringBuilder();
+        for (String header : sortedHeaders) {
+            if (new AWS4Signer().needsSign(header)) {
+                String key = header.toLowerCase().replaceAll("\\s+", " ");
+                String value = request.getHeaders().get(header);
+
+                buffer.append(key).append(":");
+                if (value != null) {
+                    buffer.append(value.replaceAll("\\s+", " "));
+                }
+
+                buffer.append("\n");
+            }
+        }
+
+        return buffer.toString();
+    }
+
+    private static String legacySignedHeadersString(Request<?> request) {
+        List<String> sortedHeaders = new ArrayList<String>();
+        sortedHeaders.addAll(request.getHeaders().keySet());
+        Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+
+        StringBuilder buffer = new StringBuilder();
+        for (String header : sortedHeaders) {
+            if (new AWS4Signer().needsSign(header)) {
+                if (buffer.length() > 0)
+                    buffer.append(";");
+                buffer.append(header.toLowerCase());
+            }
+        }
+
+        return buffer.toString();
+    }
+
     @Test
     public void testCorrectHeadersAreSigned() {
         // Make sure neccesary headers are signed
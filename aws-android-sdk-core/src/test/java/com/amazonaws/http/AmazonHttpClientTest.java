@@ -16,8 +16,10 @@
 package com.amazonaws.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -36,7 +38,11 @@ import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.internal.CRC32MismatchException;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.AdaptiveRateLimiter;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryTokenBucket;
 import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.IOUtils;
 
 import org.easymock.Capture;
 import org.easymock.EasyMock;
@@ -50,7 +56,10 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class AmazonHttpClientTest {
     private HttpClient httpClient;
@@ -727,4 +736,325 @@ public class AmazonHttpClientTest {
         String userAgent = request.getHeaders().get("User-Agent");
         assertEquals("same user agent", targetUserAgent, userAgent);
     }
+
+    @Test
+    public void testExecuteAsyncRetriesAndRunsHandlerOffIoThread() throws Exception {
+        final List<String> handlerThreads = new ArrayList<String>();
+        StubHttpServer server = new StubHttpServer(new StubHttpServer.Handler() {
+            private int count;
+
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("Result");
+                if (count++ == 0) {
+                    response.statusCode = 500;
+                    response.statusText = "Internal Server Error";
+                }
+                return response;
+            }
+        });
+        ClientConfiguration config = new ClientConfiguration();
+        NioHttpClient nioHttpClient = new NioHttpClient(config);
+        AmazonHttpClient asyncClient = new AmazonHttpClient(config, nioHttpClient);
+        try {
+            Request<?> request = new DefaultRequest<String>("testsvc");
+            request.setHttpMethod(HttpMethodName.GET);
+            request.setEndpoint(server.getUri());
+
+            HttpResponseHandler<AmazonWebServiceResponse<String>> responseHandler =
+                    new HttpResponseHandler<AmazonWebServiceResponse<String>>() {
+                        @Override
+                        public AmazonWebServiceResponse<String> handle(HttpResponse response)
+                                throws Exception {
+                            handlerThreads.add(Thread.currentThread().getName());
+                            AmazonWebServiceResponse<String> awsResponse =
+                                    new AmazonWebServiceResponse<String>();
+                            awsResponse.setResult(IOUtils.toString(response.getContent()));
+                            return awsResponse;
+                        }
+
+                        @Override
+                        public boolean needsConnectionLeftOpen() {
+                            return false;
+                        }
+                    };
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler =
+                    new HttpResponseHandler<AmazonServiceException>() {
+                        @Override
+                        public AmazonServiceException handle(HttpResponse response) {
+                            AmazonServiceException ase = new AmazonServiceException("BOOM");
+                            ase.setErrorType(ErrorType.Service);
+                            return ase;
+                        }
+
+                        @Override
+                        public boolean needsConnectionLeftOpen() {
+                            return false;
+                        }
+                    };
+
+            ResponseFuture<Response<String>> future = asyncClient.executeAsync(request,
+                    responseHandler, errorResponseHandler, new ExecutionContext());
+
+            assertEquals("Result", future.get(10, TimeUnit.SECONDS).getAwsResponse());
+            assertEquals(2, server.getRequests().size());
+            assertEquals(1, handlerThreads.size());
+            assertTrue(handlerThreads.get(0).startsWith("aws-http-callback-"));
+        } finally {
+            asyncClient.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncWithBlockingHttpClient() throws Exception {
+        HttpResponse response = HttpResponse.builder().statusCode(200).statusText("OK")
+                .content(new ByteArrayInputStream(new byte[0])).build();
+        EasyMock.expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andReturn(response);
+        EasyMock.replay(httpClient);
+
+        Request<?> request = new DefaultRequest<String>("testsvc");
+        request.setEndpoint(URI.create("http://testsvc.region.amazonaws.com"));
+        HttpResponseHandler<AmazonWebServiceResponse<String>> responseHandler =
+                new HttpResponseHandler<AmazonWebServiceResponse<String>>() {
+                    @Override
+                    public AmazonWebServiceResponse<String> handle(HttpResponse response) {
+                        AmazonWebServiceResponse<String> awsResponse =
+                                new AmazonWebServiceResponse<String>();
+                        awsResponse.setResult("Result");
+                        return awsResponse;
+                    }
+
+                    @Override
+                    public boolean needsConnectionLeftOpen() {
+                        return false;
+                    }
+                };
+
+        ResponseFuture<Response<String>> future = client.executeAsync(request, responseHandler,
+                null, new ExecutionContext());
+        assertEquals("Result", future.get(10, TimeUnit.SECONDS).getAwsResponse());
+        EasyMock.verify(httpClient);
+    }
+
+    @Test
+    public void testExecuteAsyncDelaysRetriesOnScheduler() throws Exception {
+        StubHttpServer server = new StubHttpServer(failingHandler(2));
+        ClientConfiguration config = new ClientConfiguration()
+                .withRetryPolicy(new RetryPolicy(null, new RetryPolicy.BackoffStrategy() {
+                    @Override
+                    public long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                            AmazonClientException exception, int retriesAttempted) {
+                        return 100 * (retriesAttempted + 1);
+                    }
+                }, 3, false));
+        AmazonHttpClient asyncClient = new AmazonHttpClient(config, new NioHttpClient(config));
+        FakeRetryScheduler scheduler = new FakeRetryScheduler();
+        asyncClient.setRetryScheduler(scheduler);
+        try {
+            ResponseFuture<Response<String>> future = asyncClient.executeAsync(
+                    newRequest(server.getUri()), stringResponseHandler(),
+                    serviceErrorHandler(), new ExecutionContext());
+
+            // Nothing is sent again until the scheduler says the delay is over.
+            Runnable retry = scheduler.awaitTask();
+            assertEquals(1, server.getRequests().size());
+            assertFalse(future.isDone());
+            retry.run();
+            retry = scheduler.awaitTask();
+            assertEquals(2, server.getRequests().size());
+            retry.run();
+
+            assertEquals("Result", future.get(10, TimeUnit.SECONDS).getAwsResponse());
+            assertEquals(3, server.getRequests().size());
+            assertEquals(Arrays.asList(100L, 200L), scheduler.getDelays());
+        } finally {
+            asyncClient.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testThrottledRetriesStopWhenTokenBucketIsEmpty() throws Exception {
+        StubHttpServer server = new StubHttpServer(failingHandler(3));
+        ClientConfiguration config = new ClientConfiguration()
+                .withRetryPolicy(new RetryPolicy(null, new RetryPolicy.BackoffStrategy() {
+                    @Override
+                    public long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                            AmazonClientException exception, int retriesAttempted) {
+                        return 0;
+                    }
+                }, 3, false))
+                .withThrottledRetries(true)
+                .withMaxConsecutiveRetriesBeforeThrottling(1);
+        AmazonHttpClient throttledClient = new AmazonHttpClient(config);
+        RetryTokenBucket bucket = throttledClient.getRetryTokenBucket();
+        try {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    throttledClient.execute(newRequest(server.getUri()),
+                            stringResponseHandler(), serviceErrorHandler(),
+                            new ExecutionContext());
+                    fail("Expected the request to fail");
+                } catch (AmazonServiceException expected) {
+                    assertEquals(500, expected.getStatusCode());
+                }
+            }
+            // the first request got one retry, the second none
+            assertEquals(3, server.getRequests().size());
+            assertEquals(1, bucket.getRetriesAcquired());
+            assertEquals(2, bucket.getRetriesAvoided());
+            assertEquals(0, bucket.getAvailableCapacity());
+
+            throttledClient.execute(newRequest(server.getUri()), stringResponseHandler(),
+                    serviceErrorHandler(), new ExecutionContext());
+            assertEquals(RetryTokenBucket.SUCCESS_REFUND, bucket.getAvailableCapacity());
+        } finally {
+            throttledClient.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testThrottlingResponseEngagesRateLimiter() throws Exception {
+        StubHttpServer server = new StubHttpServer(failingHandler(1));
+        ClientConfiguration config = new ClientConfiguration()
+                .withRetryPolicy(new RetryPolicy(null, new RetryPolicy.BackoffStrategy() {
+                    @Override
+                    public long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                            AmazonClientException exception, int retriesAttempted) {
+                        return 0;
+                    }
+                }, 3, false))
+                .withAdaptiveRateLimiting(true);
+        AmazonHttpClient limitedClient = new AmazonHttpClient(config);
+        HttpResponseHandler<AmazonServiceException> throttlingErrorHandler =
+                new HttpResponseHandler<AmazonServiceException>() {
+                    @Override
+                    public AmazonServiceException handle(HttpResponse response) {
+                        AmazonServiceException ase = new AmazonServiceException("Slow down");
+                        ase.setErrorCode("ThrottlingException");
+                        ase.setErrorType(ErrorType.Client);
+                        return ase;
+                    }
+
+                    @Override
+                    public boolean needsConnectionLeftOpen() {
+                        return false;
+                    }
+                };
+        try {
+            AdaptiveRateLimiter rateLimiter = limitedClient.getRateLimiter(server.getUri());
+            assertFalse(rateLimiter.isLimiting());
+
+            Response<String> response = limitedClient.execute(newRequest(server.getUri()),
+                    stringResponseHandler(), throttlingErrorHandler, new ExecutionContext());
+            assertEquals("Result", response.getAwsResponse());
+            assertEquals(2, server.getRequests().size());
+            assertSame(rateLimiter, limitedClient.getRateLimiter(server.getUri()));
+            assertTrue(rateLimiter.isLimiting());
+            assertEquals(1, rateLimiter.getThrottleCount());
+        } finally {
+            limitedClient.shutdown();
+            server.stop();
+        }
+    }
+
+    private static Request<?> newRequest(URI endpoint) {
+        Request<?> request = new DefaultRequest<String>("testsvc");
+        request.setHttpMethod(HttpMethodName.GET);
+        request.setEndpoint(endpoint);
+        return request;
+    }
+
+    /**
+     * Returns a handler which fails the given number of requests with a 500
+     * error before it succeeds.
+     */
+    private static StubHttpServer.Handler failingHandler(final int failures) {
+        return new StubHttpServer.Handler() {
+            private int count;
+
+            @Override
+            public synchronized StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("Result");
+                if (count++ < failures) {
+                    response.statusCode = 500;
+                    response.statusText = "Internal Server Error";
+                }
+                return response;
+            }
+        };
+    }
+
+    private static HttpResponseHandler<AmazonWebServiceResponse<String>> stringResponseHandler() {
+        return new HttpResponseHandler<AmazonWebServiceResponse<String>>() {
+            @Override
+            public AmazonWebServiceResponse<String> handle(HttpResponse response)
+                    throws Exception {
+                AmazonWebServiceResponse<String> awsResponse =
+                        new AmazonWebServiceResponse<String>();
+                awsResponse.setResult(IOUtils.toString(response.getContent()));
+                return awsResponse;
+            }
+
+            @Override
+            public boolean needsConnectionLeftOpen() {
+                return false;
+            }
+        };
+    }
+
+    private static HttpResponseHandler<AmazonServiceException> serviceErrorHandler() {
+        return new HttpResponseHandler<AmazonServiceException>() {
+            @Override
+            public AmazonServiceException handle(HttpResponse response) {
+                AmazonServiceException ase = new AmazonServiceException("BOOM");
+                ase.setErrorType(ErrorType.Service);
+                return ase;
+            }
+
+            @Override
+            public boolean needsConnectionLeftOpen() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A {@link RetryScheduler} driven by the test instead of a clock: it
+     * records the delays and hands the tasks out to be run.
+     */
+    private static class FakeRetryScheduler implements RetryScheduler {
+        private final List<Long> delays = new ArrayList<Long>();
+        private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+        @Override
+        public synchronized void schedule(Runnable task, long delayMillis) {
+            delays.add(delayMillis);
+            tasks.add(task);
+            notifyAll();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        synchronized List<Long> getDelays() {
+            return new ArrayList<Long>(delays);
+        }
+
+        synchronized Runnable awaitTask() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10 * 1000;
+            while (tasks.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new AssertionError("No retry was scheduled");
+                }
+                wait(remaining);
+            }
+            return tasks.removeFirst();
+        }
+    }
 }
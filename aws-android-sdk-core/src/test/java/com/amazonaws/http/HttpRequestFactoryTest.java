@@ -17,15 +17,18 @@ package com.amazonaws.http;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
+import com.amazonaws.util.StringUtils;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.util.Map;
 
@@ -70,4 +73,20 @@ public class HttpRequestFactoryTest {
         Map<String, String> headers = httpRequest.getHeaders();
         assertEquals("accept encoding is gzip", "gzip", headers.get("Accept-Encoding"));
     }
+
+    @Test
+    public void testContentWithoutLength() {
+        request.setHttpMethod(HttpMethodName.PUT);
+        request.setContent(new ByteArrayInputStream("content".getBytes(StringUtils.UTF8)));
+        HttpRequest httpRequest = factory.createHttpRequest(request, clientConfiguration, context);
+        assertNull("sent chunked", httpRequest.getHeaders().get(HttpHeader.CONTENT_LENGTH));
+        assertNotNull(httpRequest.getContent());
+    }
+
+    @Test
+    public void testPutWithoutContent() {
+        request.setHttpMethod(HttpMethodName.PUT);
+        HttpRequest httpRequest = factory.createHttpRequest(request, clientConfiguration, context);
+        assertEquals("0", httpRequest.getHeaders().get(HttpHeader.CONTENT_LENGTH));
+    }
 }
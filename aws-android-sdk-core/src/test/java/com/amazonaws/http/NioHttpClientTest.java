@@ -0,0 +1,446 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+
+public class NioHttpClientTest {
+
+    private StubHttpServer server;
+    private NioHttpClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private static StubHttpServer.Handler echo() {
+        return new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                return StubHttpServer.Response.ok(request.method + " " + request.target + " "
+                        + request.getBodyAsString());
+            }
+        };
+    }
+
+    private static String toString(HttpResponse response) throws IOException {
+        InputStream content = response.getContent();
+        try {
+            return IOUtils.toString(content);
+        } finally {
+            content.close();
+        }
+    }
+
+    private String execute(HttpRequest request) throws IOException {
+        HttpResponse response = client.execute(request);
+        assertEquals(200, response.getStatusCode());
+        return toString(response);
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        server = new StubHttpServer(echo());
+        client = new NioHttpClient(new ClientConfiguration());
+        URI uri = server.getUri().resolve("/path?query=value");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("GET /path?query=value ", execute(new HttpRequest("GET", uri)));
+        }
+
+        assertEquals(1, server.getConnectionCount());
+        ConnectionPoolStats stats = client.getPoolStats();
+        assertEquals(1, stats.getAvailable());
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getCreated());
+        assertEquals(4, stats.getReused());
+    }
+
+    @Test
+    public void testManyConcurrentRequests() throws Exception {
+        server = new StubHttpServer(echo());
+        client = new NioHttpClient(new ClientConfiguration().withMaxConnections(4));
+        int requests = 500;
+        final CountDownLatch done = new CountDownLatch(requests);
+        final AtomicInteger failures = new AtomicInteger();
+        List<ResponseFuture<HttpResponse>> futures = new ArrayList<ResponseFuture<HttpResponse>>();
+        for (int i = 0; i < requests; i++) {
+            ResponseFuture<HttpResponse> future = client.executeAsync(new HttpRequest("GET",
+                    server.getUri().resolve("/" + i)));
+            future.addCallback(new ResponseCallback<HttpResponse>() {
+                @Override
+                public void onSuccess(HttpResponse result) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Exception exception) {
+                    failures.incrementAndGet();
+                    done.countDown();
+                }
+            });
+            futures.add(future);
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        for (int i = 0; i < requests; i++) {
+            assertEquals("GET /" + i + " ", toString(futures.get(i).get()));
+        }
+        assertTrue(server.getConnectionCount() <= 4);
+        assertEquals(0, client.getPoolStats().getPending());
+    }
+
+    @Test
+    public void testRequestContent() throws Exception {
+        server = new StubHttpServer(echo());
+        client = new NioHttpClient(new ClientConfiguration());
+        byte[] body = new byte[100 * 1024];
+        Arrays.fill(body, (byte) 'a');
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(body.length));
+        headers.put("x-amz-test", "value");
+
+        String echoed = execute(new HttpRequest("POST", server.getUri(), headers,
+                new ByteArrayInputStream(body)));
+        assertEquals("POST / " + new String(body, StringUtils.UTF8), echoed);
+        assertEquals("value", server.getRequests().get(0).headers.get("x-amz-test"));
+
+        // unknown length is sent chunked
+        echoed = execute(new HttpRequest("PUT", server.getUri(), null,
+                new ByteArrayInputStream("streamed".getBytes(StringUtils.UTF8))));
+        assertEquals("PUT / streamed", echoed);
+        assertEquals("chunked", server.getRequests().get(1).headers.get("transfer-encoding"));
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testFileContent() throws Exception {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                return StubHttpServer.Response.ok(String.valueOf(Arrays.hashCode(request.body)));
+            }
+        });
+        client = new NioHttpClient(new ClientConfiguration());
+        byte[] body = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        File file = File.createTempFile("NioHttpClientTest", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(body);
+        out.close();
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(body.length));
+
+        FileInputStream content = new FileInputStream(file);
+        try {
+            assertEquals(String.valueOf(Arrays.hashCode(body)),
+                    execute(new HttpRequest("PUT", server.getUri(), headers, content)));
+            assertEquals(body.length, content.getChannel().position());
+        } finally {
+            content.close();
+        }
+    }
+
+    @Test
+    public void testResponseFraming() throws Exception {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("body of "
+                        + request.target);
+                response.headers.put("x-amz-request-id", "id");
+                if (request.target.equals("/chunked")) {
+                    response.chunked = true;
+                } else if (request.target.equals("/close")) {
+                    response.contentLength = false;
+                    response.close = true;
+                } else if (request.target.equals("/empty")) {
+                    response.statusCode = 204;
+                    response.statusText = "No Content";
+                    response.body = new byte[0];
+                    response.contentLength = false;
+                }
+                return response;
+            }
+        });
+        client = new NioHttpClient(new ClientConfiguration());
+
+        assertEquals("body of /chunked", execute(new HttpRequest("GET",
+                server.getUri().resolve("/chunked"))));
+        assertEquals("body of /close", execute(new HttpRequest("GET",
+                server.getUri().resolve("/close"))));
+
+        HttpResponse head = client.execute(new HttpRequest("HEAD", server.getUri()));
+        assertEquals(200, head.getStatusCode());
+        assertEquals("id", head.getHeaders().get("x-amz-request-id"));
+        assertNull(head.getContent());
+
+        HttpResponse empty = client.execute(new HttpRequest("DELETE",
+                server.getUri().resolve("/empty")));
+        assertEquals(204, empty.getStatusCode());
+        assertEquals("No Content", empty.getStatusText());
+        assertEquals(-1, empty.getContent().read());
+
+        // the close-delimited response used up one connection
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void testStaleConnectionIsReplaced() throws Exception {
+        server = new StubHttpServer(echo());
+        client = new NioHttpClient(new ClientConfiguration());
+
+        execute(new HttpRequest("GET", server.getUri()));
+        server.closeConnections();
+
+        assertEquals("GET / ", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    /**
+     * Drops the second request it receives after reading all of it.
+     */
+    private static StubHttpServer.Handler dropSecondRequest() {
+        return new StubHttpServer.Handler() {
+            private int count;
+
+            @Override
+            public synchronized StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok(request.method);
+                response.drop = ++count == 2;
+                return response;
+            }
+        };
+    }
+
+    @Test
+    public void testWrittenRequestIsNotReplayed() throws Exception {
+        server = new StubHttpServer(dropSecondRequest());
+        client = new NioHttpClient(new ClientConfiguration());
+        execute(new HttpRequest("GET", server.getUri()));
+
+        byte[] body = "once".getBytes(StringUtils.UTF8);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(body.length));
+        try {
+            client.execute(new HttpRequest("POST", server.getUri(), headers,
+                    new ByteArrayInputStream(body)));
+            fail("expected the failure to be thrown");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(2, server.getRequests().size());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testWrittenIdempotentRequestIsRetried() throws Exception {
+        server = new StubHttpServer(dropSecondRequest());
+        client = new NioHttpClient(new ClientConfiguration());
+        execute(new HttpRequest("GET", server.getUri()));
+
+        assertEquals("GET", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals(3, server.getRequests().size());
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void testSocketTimeout() throws Exception {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("late");
+                response.delayMillis = 2000;
+                return response;
+            }
+        });
+        client = new NioHttpClient(new ClientConfiguration().withSocketTimeout(200));
+
+        long start = System.currentTimeMillis();
+        try {
+            client.execute(new HttpRequest("GET", server.getUri()));
+            fail("expected a timeout");
+        } catch (SocketTimeoutException e) {
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        }
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        client = new NioHttpClient(new ClientConfiguration());
+
+        ResponseFuture<HttpResponse> future = client.executeAsync(new HttpRequest("GET",
+                URI.create("http://127.0.0.1:" + port)));
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the connection to be refused");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testHttps() throws Exception {
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        KeyStore keyStore = loadKeyStore();
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(
+                KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, "changeit".toCharArray());
+        serverContext.init(kmf.getKeyManagers(), null, null);
+
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(keyStore);
+        clientContext.init(null, tmf.getTrustManagers(), null);
+
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = new StubHttpServer.Response();
+                response.body = request.body;
+                response.chunked = request.target.equals("/chunked");
+                return response;
+            }
+        }, serverContext);
+        client = new NioHttpClient(new ClientConfiguration(), clientContext, true);
+
+        byte[] body = new byte[200 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(body.length));
+        for (String path : new String[] {
+                "/", "/chunked"
+        }) {
+            HttpResponse response = client.execute(new HttpRequest("POST",
+                    server.getUri().resolve(path), headers, new ByteArrayInputStream(body)));
+            assertEquals(200, response.getStatusCode());
+            assertTrue(Arrays.equals(body, IOUtils.toByteArray(response.getContent())));
+        }
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testUntrustedCertificateIsRejected() throws Exception {
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(
+                KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(loadKeyStore(), "changeit".toCharArray());
+        serverContext.init(kmf.getKeyManagers(), null, null);
+        server = new StubHttpServer(echo(), serverContext);
+        // the default trust store doesn't know the self-signed certificate
+        client = new NioHttpClient(new ClientConfiguration());
+
+        try {
+            client.execute(new HttpRequest("GET", server.getUri()));
+            fail("expected the handshake to fail");
+        } catch (SSLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShutdownFailsRequests() throws Exception {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("late");
+                response.delayMillis = 5000;
+                return response;
+            }
+        });
+        client = new NioHttpClient(new ClientConfiguration());
+        ResponseFuture<HttpResponse> inFlight = client.executeAsync(new HttpRequest("GET",
+                server.getUri()));
+        Thread.sleep(100);
+        client.shutdown();
+
+        try {
+            inFlight.get(5, TimeUnit.SECONDS);
+            fail("expected the request to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            client.executeAsync(new HttpRequest("GET", server.getUri())).get();
+            fail("expected the request to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private static KeyStore loadKeyStore() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = NioHttpClientTest.class.getResourceAsStream("stub-server.jks");
+        try {
+            keyStore.load(in, "changeit".toCharArray());
+        } finally {
+            in.close();
+        }
+        return keyStore;
+    }
+}
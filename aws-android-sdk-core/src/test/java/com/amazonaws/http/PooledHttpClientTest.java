@@ -0,0 +1,386 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PooledHttpClientTest {
+
+    private StubHttpServer server;
+    private PooledHttpClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void start(StubHttpServer.Handler handler, ClientConfiguration config)
+            throws IOException {
+        server = new StubHttpServer(handler);
+        client = new PooledHttpClient(config.withReaper(false));
+    }
+
+    private static StubHttpServer.Handler echo() {
+        return new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                return StubHttpServer.Response.ok(request.method + " " + request.target + " "
+                        + request.getBodyAsString());
+            }
+        };
+    }
+
+    private String execute(HttpRequest request) throws IOException {
+        HttpResponse response = client.execute(request);
+        assertEquals(200, response.getStatusCode());
+        InputStream content = response.getContent();
+        try {
+            return IOUtils.toString(content);
+        } finally {
+            content.close();
+        }
+    }
+
+    private void awaitConnectionCount(int expected) throws InterruptedException {
+        // connections complete in the backlog before the server accepts them
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getConnectionCount() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, server.getConnectionCount());
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        start(echo(), new ClientConfiguration());
+        URI uri = server.getUri().resolve("/path?query=value");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("GET /path?query=value ", execute(new HttpRequest("GET", uri)));
+        }
+
+        assertEquals(1, server.getConnectionCount());
+        ConnectionPoolStats stats = client.getPoolStats();
+        assertEquals(1, stats.getAvailable());
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getCreated());
+        assertEquals(4, stats.getReused());
+    }
+
+    @Test
+    public void testRequestContentIsSent() throws Exception {
+        start(echo(), new ClientConfiguration());
+        byte[] body = "some content".getBytes(StringUtils.UTF8);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(body.length));
+        headers.put(HttpHeader.HOST, "example.com");
+        headers.put("x-amz-test", "value");
+        headers.put(HttpHeader.EXPECT, "100-continue");
+
+        assertEquals("POST / some content", execute(new HttpRequest("POST", server.getUri(),
+                headers, new ByteArrayInputStream(body))));
+
+        StubHttpServer.Request received = server.getRequests().get(0);
+        assertEquals("example.com", received.headers.get("host"));
+        assertEquals("value", received.headers.get("x-amz-test"));
+        assertEquals("12", received.headers.get("content-length"));
+        assertNull(received.headers.get("expect"));
+    }
+
+    @Test
+    public void testContentWithoutLengthIsChunked() throws Exception {
+        start(echo(), new ClientConfiguration());
+        byte[] body = "streamed content".getBytes(StringUtils.UTF8);
+
+        assertEquals("PUT / streamed content", execute(new HttpRequest("PUT", server.getUri(),
+                null, new ByteArrayInputStream(body))));
+        assertEquals("chunked", server.getRequests().get(0).headers.get("transfer-encoding"));
+    }
+
+    @Test
+    public void testChunkedResponse() throws Exception {
+        start(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response
+                        .ok("a chunked response body");
+                response.chunked = true;
+                return response;
+            }
+        }, new ClientConfiguration());
+
+        assertEquals("a chunked response body", execute(new HttpRequest("GET",
+                server.getUri())));
+        assertEquals("a chunked response body", execute(new HttpRequest("GET",
+                server.getUri())));
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testHeadAndNoContentResponses() throws Exception {
+        start(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("ignored");
+                if ("DELETE".equals(request.method)) {
+                    response.statusCode = 204;
+                    response.statusText = "No Content";
+                    response.body = new byte[0];
+                    response.contentLength = false;
+                }
+                response.headers.put("x-amz-request-id", "id");
+                return response;
+            }
+        }, new ClientConfiguration());
+
+        HttpResponse head = client.execute(new HttpRequest("HEAD", server.getUri()));
+        assertEquals(200, head.getStatusCode());
+        assertEquals("id", head.getHeaders().get("x-amz-request-id"));
+        assertEquals("7", head.getHeaders().get("Content-Length"));
+        assertNull(head.getContent());
+
+        HttpResponse delete = client.execute(new HttpRequest("DELETE", server.getUri()));
+        assertEquals(204, delete.getStatusCode());
+        assertEquals("No Content", delete.getStatusText());
+        assertEquals(-1, delete.getContent().read());
+
+        assertEquals(1, server.getConnectionCount());
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testConnectionCloseIsHonored() throws Exception {
+        start(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("bye");
+                response.close = true;
+                return response;
+            }
+        }, new ClientConfiguration());
+
+        assertEquals("bye", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals("bye", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals(2, server.getConnectionCount());
+        assertEquals(0, client.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void testCloseDelimitedResponse() throws Exception {
+        start(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("until close");
+                response.contentLength = false;
+                response.close = true;
+                return response;
+            }
+        }, new ClientConfiguration());
+
+        assertEquals("until close", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals(0, client.getPoolStats().getAvailable());
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testStaleConnectionIsReplaced() throws Exception {
+        start(echo(), new ClientConfiguration());
+
+        execute(new HttpRequest("GET", server.getUri()));
+        server.closeConnections();
+        // give the client side a moment to see the FIN
+        Thread.sleep(100);
+
+        assertEquals("GET / ", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    /**
+     * Drops the second request it receives after reading all of it.
+     */
+    private static StubHttpServer.Handler dropSecondRequest() {
+        return new StubHttpServer.Handler() {
+            private int count;
+
+            @Override
+            public synchronized StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok(request.method);
+                response.drop = ++count == 2;
+                return response;
+            }
+        };
+    }
+
+    @Test
+    public void testWrittenRequestIsNotReplayed() throws Exception {
+        start(dropSecondRequest(), new ClientConfiguration());
+        execute(new HttpRequest("GET", server.getUri()));
+
+        byte[] body = "once".getBytes(StringUtils.UTF8);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(body.length));
+        try {
+            client.execute(new HttpRequest("POST", server.getUri(), headers,
+                    new ByteArrayInputStream(body)));
+            fail("expected the failure to be thrown");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(2, server.getRequests().size());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testWrittenIdempotentRequestIsRetried() throws Exception {
+        start(dropSecondRequest(), new ClientConfiguration());
+        execute(new HttpRequest("GET", server.getUri()));
+
+        assertEquals("GET", execute(new HttpRequest("GET", server.getUri())));
+        assertEquals(3, server.getRequests().size());
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void testIsIdempotent() {
+        assertTrue(PooledHttpClient.isIdempotent("GET"));
+        assertTrue(PooledHttpClient.isIdempotent("PUT"));
+        assertTrue(PooledHttpClient.isIdempotent("DELETE"));
+        assertFalse(PooledHttpClient.isIdempotent("POST"));
+        assertFalse(PooledHttpClient.isIdempotent("PATCH"));
+    }
+
+    @Test
+    public void testUnreadContentClosedEarly() throws Exception {
+        final byte[] large = new byte[64 * 1024];
+        start(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                StubHttpServer.Response response = StubHttpServer.Response.ok("small");
+                if (request.target.equals("/large")) {
+                    response.body = large;
+                }
+                return response;
+            }
+        }, new ClientConfiguration());
+
+        // a small remainder is drained and the connection kept
+        HttpResponse response = client.execute(new HttpRequest("GET", server.getUri()));
+        response.getContent().read();
+        response.getContent().close();
+        assertEquals(1, client.getPoolStats().getAvailable());
+
+        // a large remainder is not worth reading, the connection is dropped
+        response = client.execute(new HttpRequest("GET", server.getUri().resolve("/large")));
+        response.getContent().read();
+        response.getContent().close();
+        assertEquals(0, client.getPoolStats().getAvailable());
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testMaxConnectionsPerRoute() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        start(echo(), new ClientConfiguration().withMaxConnections(1)
+                .withConnectionTimeout(200));
+
+        HttpResponse first = client.execute(new HttpRequest("GET", server.getUri()));
+        try {
+            client.execute(new HttpRequest("GET", server.getUri()));
+            fail("expected the pool to be exhausted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Timeout waiting for connection"));
+        }
+
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    execute(new HttpRequest("GET", server.getUri()));
+                    released.countDown();
+                } catch (IOException e) {
+                    // the latch is not released
+                }
+            }
+        };
+        waiter.start();
+        Thread.sleep(50);
+        assertEquals(1, client.getPoolStats().getPending());
+        IOUtils.toString(first.getContent());
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testWarmUpAndCloseIdleConnections() throws Exception {
+        start(echo(), new ClientConfiguration().withMaxConnections(3));
+
+        assertEquals(3, client.warmUp(server.getUri(), 5));
+        awaitConnectionCount(3);
+        assertEquals(3, client.getPoolStats().getAvailable());
+
+        execute(new HttpRequest("GET", server.getUri()));
+        assertEquals(3, server.getConnectionCount());
+
+        Thread.sleep(20);
+        client.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        assertEquals(0, client.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void testReaperRegistration() throws Exception {
+        IdleConnectionReaper.shutdown();
+        PooledHttpClient reaped = new PooledHttpClient(new ClientConfiguration());
+        assertEquals(1, IdleConnectionReaper.size());
+        reaped.shutdown();
+        assertEquals(0, IdleConnectionReaper.size());
+    }
+
+    @Test
+    public void testGetRoute() {
+        assertEquals("https://example.com:443",
+                PooledHttpClient.getRoute(URI.create("https://Example.com/path")));
+        assertEquals("http://example.com:80",
+                PooledHttpClient.getRoute(URI.create("http://example.com")));
+        assertEquals("http://example.com:8080",
+                PooledHttpClient.getRoute(URI.create("http://example.com:8080/")));
+    }
+}
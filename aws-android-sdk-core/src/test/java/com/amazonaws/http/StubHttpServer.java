@@ -0,0 +1,323 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * A minimal HTTP/1.1 server on the loopback interface for testing the HTTP
+ * clients. Every connection is served by its own thread and kept alive until
+ * the client closes it or a response asks for it to be closed. With an
+ * {@link SSLContext} it serves https instead of http.
+ */
+class StubHttpServer {
+
+    /**
+     * Produces the response for a request.
+     */
+    interface Handler {
+        Response handle(Request request) throws IOException;
+    }
+
+    static class Request {
+        final String method;
+        final String target;
+        /** Header names are lower case */
+        final Map<String, String> headers;
+        final byte[] body;
+
+        Request(String method, String target, Map<String, String> headers, byte[] body) {
+            this.method = method;
+            this.target = target;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        String getBodyAsString() {
+            return new String(body, StringUtils.UTF8);
+        }
+    }
+
+    static class Response {
+        int statusCode = 200;
+        String statusText = "OK";
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        byte[] body = new byte[0];
+        /** Whether to send the body with chunked transfer encoding */
+        boolean chunked;
+        /** Whether to send the Content-Length header */
+        boolean contentLength = true;
+        /** Whether to close the connection after the response */
+        boolean close;
+        /** Delay before the response is written */
+        long delayMillis;
+        /** Whether to close the connection instead of responding */
+        boolean drop;
+
+        static Response ok(String body) {
+            Response response = new Response();
+            response.body = body.getBytes(StringUtils.UTF8);
+            return response;
+        }
+    }
+
+    private final Handler handler;
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+    private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+    private volatile boolean stopped;
+
+    private final boolean https;
+
+    StubHttpServer(Handler handler) throws IOException {
+        this(handler, null);
+    }
+
+    StubHttpServer(Handler handler, SSLContext sslContext) throws IOException {
+        this.handler = handler;
+        this.https = sslContext != null;
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        this.serverSocket = https
+                ? sslContext.getServerSocketFactory().createServerSocket(0, 128, loopback)
+                : new ServerSocket(0, 128, loopback);
+        Thread acceptor = new Thread("stub-http-server-acceptor") {
+            @Override
+            public void run() {
+                accept();
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    URI getUri() {
+        return URI.create((https ? "https" : "http") + "://127.0.0.1:"
+                + serverSocket.getLocalPort());
+    }
+
+    /** Returns the number of connections accepted so far */
+    int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /** Returns the requests received so far */
+    List<Request> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<Request>(requests);
+        }
+    }
+
+    /** Closes every open connection from the server side */
+    void closeConnections() {
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                closeQuietly(socket);
+            }
+            sockets.clear();
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+        closeConnections();
+    }
+
+    private void accept() {
+        while (!stopped) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            connectionCount.incrementAndGet();
+            sockets.add(socket);
+            Thread worker = new Thread("stub-http-server-connection") {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            };
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (!stopped) {
+                Request request = readRequest(in);
+                if (request == null) {
+                    break;
+                }
+                requests.add(request);
+                Response response = handler.handle(request);
+                if (response.delayMillis > 0) {
+                    Thread.sleep(response.delayMillis);
+                }
+                if (response.drop) {
+                    break;
+                }
+                writeResponse(out, request, response);
+                if (response.close) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // the connection is closed below
+        } finally {
+            sockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private static Request readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return null;
+        }
+        String[] parts = requestLine.split(" ");
+        Map<String, String> headers = new HashMap<String, String>();
+        String line;
+        while ((line = readLine(in)) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH),
+                    line.substring(colon + 1).trim());
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equals(headers.get("transfer-encoding"))) {
+            while (true) {
+                int size = Integer.parseInt(readLine(in).trim(), 16);
+                if (size == 0) {
+                    readLine(in);
+                    break;
+                }
+                copy(in, body, size);
+                readLine(in);
+            }
+        } else if (headers.containsKey("content-length")) {
+            copy(in, body, Long.parseLong(headers.get("content-length")));
+        }
+        return new Request(parts[0], parts[1], headers, body.toByteArray());
+    }
+
+    private static void writeResponse(OutputStream out, Request request, Response response)
+            throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.statusCode).append(' ')
+                .append(response.statusText).append("\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (response.chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else if (response.contentLength) {
+            head.append("Content-Length: ").append(response.body.length).append("\r\n");
+        }
+        if (response.close) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StringUtils.UTF8));
+
+        if (!"HEAD".equals(request.method)) {
+            if (response.chunked) {
+                // split the body into two chunks to exercise the decoder
+                int half = response.body.length / 2;
+                writeChunk(out, response.body, 0, half);
+                writeChunk(out, response.body, half, response.body.length - half);
+                out.write("0\r\n\r\n".getBytes(StringUtils.UTF8));
+            } else {
+                out.write(response.body);
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeChunk(OutputStream out, byte[] body, int offset, int length)
+            throws IOException {
+        if (length == 0) {
+            return;
+        }
+        out.write((Integer.toHexString(length) + ";ext=1\r\n").getBytes(StringUtils.UTF8));
+        out.write(body, offset, length);
+        out.write("\r\n".getBytes(StringUtils.UTF8));
+    }
+
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[4096];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Unexpected end of request");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+}
@@ -23,12 +23,18 @@ import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -50,6 +56,7 @@ public class UrlHttpClientTest {
 
     private ClientConfiguration conf;
     private UrlHttpClient client;
+    private StubHttpServer server;
 
     @Before
     public void setup() {
@@ -58,6 +65,33 @@ public class UrlHttpClientTest {
 
     }
 
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void startEchoServer() throws IOException {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                return StubHttpServer.Response.ok(request.getBodyAsString());
+            }
+        });
+    }
+
+    private String execute(HttpRequest request) throws IOException {
+        HttpResponse response = client.execute(request);
+        assertEquals(200, response.getStatusCode());
+        InputStream content = response.getContent();
+        try {
+            return IOUtils.toString(content);
+        } finally {
+            content.close();
+        }
+    }
+
     @Test
     public void testApplyHeaders() throws ProtocolException, MalformedURLException,
             URISyntaxException {
@@ -158,6 +192,53 @@ public class UrlHttpClientTest {
         ByteArrayOutputStream connOs = (ByteArrayOutputStream) connection.getOutputStream();
         assertEquals(new String(connOs.toByteArray()), "Content");
     }
+
+    @Test
+    public void testContentWithoutLengthIsChunked() throws Exception {
+        startEchoServer();
+        byte[] body = "streamed content".getBytes(StringUtils.UTF8);
+
+        assertEquals("streamed content", execute(new HttpRequest("PUT", server.getUri(),
+                null, new ByteArrayInputStream(body))));
+        StubHttpServer.Request received = server.getRequests().get(0);
+        assertEquals("chunked", received.headers.get("transfer-encoding"));
+        assertNull(received.headers.get("content-length"));
+    }
+
+    @Test
+    public void testFileContentIsLimitedToContentLength() throws Exception {
+        startEchoServer();
+        File file = File.createTempFile("UrlHttpClientTest", ".txt");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("file content and more".getBytes(StringUtils.UTF8));
+        out.close();
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, "12");
+
+        FileInputStream content = new FileInputStream(file);
+        try {
+            assertEquals("file content", execute(new HttpRequest("PUT", server.getUri(),
+                    headers, content)));
+            assertEquals("position after the sent content", 12, content.getChannel().position());
+        } finally {
+            content.close();
+        }
+    }
+
+    @Test
+    public void testLongFixedLengthStreamingMode() throws Exception {
+        MockHttpURLConnection connection = new MockHttpURLConnection(
+                new URL("https://www.test.com"));
+        UrlHttpClient.setFixedLengthStreamingMode(connection, 7);
+        assertEquals(7, connection.fixedLength);
+        assertFalse(connection.longFixedLength);
+
+        long length = Integer.MAX_VALUE + 1L;
+        UrlHttpClient.setFixedLengthStreamingMode(connection, length);
+        assertEquals(length, connection.fixedLength);
+        assertTrue(connection.longFixedLength);
+    }
 }
 
 class MockHttpURLConnection extends HttpsURLConnection {
@@ -167,6 +248,8 @@ class MockHttpURLConnection extends HttpsURLConnection {
     InputStream errorStream;
     InputStream inputStream;
     OutputStream outputStream;
+    long fixedLength = -1;
+    boolean longFixedLength;
 
     Map<String, List<String>> headerFields;
 
@@ -178,6 +261,18 @@ class MockHttpURLConnection extends HttpsURLConnection {
         outputStream = os;
     }
 
+    @Override
+    public void setFixedLengthStreamingMode(int contentLength) {
+        fixedLength = contentLength;
+        longFixedLength = false;
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        fixedLength = contentLength;
+        longFixedLength = true;
+    }
+
     @Override
     public OutputStream getOutputStream() {
         return outputStream;
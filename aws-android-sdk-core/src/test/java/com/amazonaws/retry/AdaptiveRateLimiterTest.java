@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveRateLimiterTest {
+
+    /** A limiter on a clock that only moves when the test says so */
+    private static class FakeClockRateLimiter extends AdaptiveRateLimiter {
+        private long now;
+
+        void advance(long millis) {
+            now += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    }
+
+    /** Sends a request every 10 ms for a second, i.e. at 100 per second */
+    private static void sendAtHundredPerSecond(FakeClockRateLimiter limiter) {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.reserve());
+            limiter.advance(10);
+        }
+    }
+
+    @Test
+    public void testUnlimitedUntilThrottled() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.reserve());
+        }
+        assertFalse(limiter.isLimiting());
+        assertEquals(Double.POSITIVE_INFINITY, limiter.getRate(), 0);
+    }
+
+    @Test
+    public void testThrottleCutsMeasuredRate() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        sendAtHundredPerSecond(limiter);
+        limiter.onThrottle();
+
+        assertTrue(limiter.isLimiting());
+        assertEquals(50, limiter.getRate(), 0.01);
+        // requests are spread 20 ms apart
+        assertEquals(0, limiter.reserve());
+        assertEquals(20, limiter.reserve());
+        assertEquals(40, limiter.reserve());
+    }
+
+    @Test
+    public void testAdditiveIncreaseAfterThrottle() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        sendAtHundredPerSecond(limiter);
+        limiter.onThrottle();
+
+        limiter.advance(5500);
+        assertEquals(50 + 5 * AdaptiveRateLimiter.DEFAULT_ADDITIVE_INCREASE,
+                limiter.getRate(), 0.01);
+    }
+
+    @Test
+    public void testThrottlesRightAfterACutAreIgnored() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        sendAtHundredPerSecond(limiter);
+        limiter.onThrottle();
+        limiter.advance(100);
+        limiter.onThrottle();
+        limiter.onThrottle();
+        assertEquals(50, limiter.getRate(), 0.01);
+        assertEquals(3, limiter.getThrottleCount());
+
+        // cut to half of the rate measured since: 100 requests in 2.1 seconds
+        limiter.advance(1000);
+        limiter.onThrottle();
+        assertEquals(100 / 2.1 / 2, limiter.getRate(), 0.01);
+    }
+
+    @Test
+    public void testBurstAfterIdleIsMeasuredOnItsOwn() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        sendAtHundredPerSecond(limiter);
+        limiter.advance(60000);
+
+        // a burst of 50 requests in half a second, counted over a second
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, limiter.reserve());
+            limiter.advance(10);
+        }
+        limiter.onThrottle();
+        assertEquals(25, limiter.getRate(), 0.01);
+    }
+
+    @Test
+    public void testRateNeverDropsBelowMinimum() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        assertEquals(0, limiter.reserve());
+        for (int i = 0; i < 20; i++) {
+            limiter.onThrottle();
+            limiter.advance(1000);
+        }
+        assertTrue(limiter.getRate() >= AdaptiveRateLimiter.DEFAULT_MIN_RATE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDecreaseFactor() {
+        new AdaptiveRateLimiter(1, 1, 1);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RetryTokenBucketTest {
+
+    @Test
+    public void testDrainsAndRefills() {
+        RetryTokenBucket bucket = new RetryTokenBucket(2);
+        assertEquals(2 * RetryTokenBucket.RETRY_COST, bucket.getCapacity());
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(2, bucket.getRetriesAcquired());
+        assertEquals(2, bucket.getRetriesAvoided());
+        assertEquals(0, bucket.getAvailableCapacity());
+
+        // successes at the first attempt refill the bucket slowly
+        for (int i = 0; i < RetryTokenBucket.RETRY_COST - 1; i++) {
+            bucket.release(0);
+            assertFalse(bucket.tryAcquire());
+        }
+        bucket.release(0);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testSuccessfulRetriesReturnTheirCost() {
+        RetryTokenBucket bucket = new RetryTokenBucket(3);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        bucket.release(2);
+        assertEquals(bucket.getCapacity(), bucket.getAvailableCapacity());
+
+        // never above capacity
+        bucket.release(0);
+        bucket.release(5);
+        assertEquals(bucket.getCapacity(), bucket.getAvailableCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RetryTokenBucket(0);
+    }
+}
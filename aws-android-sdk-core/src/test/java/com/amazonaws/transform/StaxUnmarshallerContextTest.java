@@ -20,6 +20,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParser;
@@ -28,6 +29,8 @@ import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -105,6 +108,140 @@ public class StaxUnmarshallerContextTest {
         assertFalse("expression not match", context.testExpression("imageSet/item_id", 2));
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testStackView() throws Exception {
+        context = getContext(XML_STRING, null);
+        assertTrue(context.stack.isEmpty());
+        assertNull(context.stack.peek());
+
+        while (!context.testExpression("item", 3)) {
+            context.nextEvent();
+        }
+        assertEquals(3, context.stack.size());
+        assertEquals("/DescribeImagesResponse/imageSet/item", context.stack.peek());
+        assertEquals("/DescribeImagesResponse", context.stack.getLast());
+        assertEquals(Arrays.asList("/DescribeImagesResponse/imageSet/item",
+                "/DescribeImagesResponse/imageSet", "/DescribeImagesResponse"),
+                new ArrayList<String>(context.stack));
+
+        int event;
+        do {
+            event = context.nextEvent();
+        } while (event != XmlPullParser.END_TAG || context.getCurrentDepth() != 2);
+        assertEquals("/DescribeImagesResponse/imageSet", context.stack.peek());
+        try {
+            context.stack.pop();
+            fail("Expected the stack to be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testAttributeExpressionsNeverMatch() throws Exception {
+        context = getContext("<Item><Name encoding=\"base64\">bmFtZQ==</Name></Item>", null);
+        context.nextEvent();
+        context.nextEvent();
+        assertTrue(context.testExpression("Name", 2));
+        assertFalse(context.testExpression("Name/@encoding", 2));
+        assertFalse(context.testExpression("@encoding", 2));
+    }
+
+    @Test
+    public void testDeepDocument() throws Exception {
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            xml.append("<e").append(i).append('>');
+        }
+        for (int i = 99; i >= 0; i--) {
+            xml.append("</e").append(i).append('>');
+        }
+        context = getContext(xml.toString(), null);
+        for (int i = 0; i < 100; i++) {
+            context.nextEvent();
+        }
+        assertEquals(100, context.getCurrentDepth());
+        assertTrue(context.testExpression("e97/e98/e99", 98));
+        assertFalse(context.testExpression("e96/e98/e99", 98));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(XmlPullParser.END_TAG, context.nextEvent());
+        }
+        assertEquals(0, context.getCurrentDepth());
+    }
+
+    /**
+     * Walks a large DescribeInstances response the way the generated
+     * unmarshallers do, testing each element against the expressions of the
+     * enclosing unmarshaller.
+     */
+    @Test
+    public void testLargeDescribeInstancesResponse() throws Exception {
+        int instances = 2000;
+        StringBuilder xml = new StringBuilder("<DescribeInstancesResponse>"
+                + "<requestId>59dbff89-35bd-4eac-99ed-be587EXAMPLE</requestId>"
+                + "<reservationSet><item><reservationId>r-1</reservationId><instancesSet>");
+        for (int i = 0; i < instances; i++) {
+            xml.append("<item><instanceId>i-").append(i).append("</instanceId>")
+                    .append("<instanceState><code>16</code><name>running</name></instanceState>")
+                    .append("<placement><availabilityZone>us-east-1a</availabilityZone>")
+                    .append("</placement><tagSet><item><key>Name</key><value>web</value>")
+                    .append("</item></tagSet></item>");
+        }
+        xml.append("</instancesSet></item></reservationSet></DescribeInstancesResponse>");
+
+        context = getContext(xml.toString(), null);
+        int ids = 0;
+        int states = 0;
+        int tags = 0;
+        int event;
+        while ((event = context.nextEvent()) != XmlPullParser.END_DOCUMENT) {
+            if (event != XmlPullParser.START_TAG) {
+                continue;
+            }
+            if (context.testExpression("instancesSet/item/instanceId", 4)) {
+                ids++;
+            } else if (context.testExpression("instancesSet/item/instanceState/name", 4)) {
+                states++;
+            } else if (context.testExpression("tagSet/item/key", 6)) {
+                tags++;
+            }
+        }
+        assertEquals(instances, ids);
+        assertEquals(instances, states);
+        assertEquals(instances, tags);
+    }
+
+    @Test
+    public void testLargeReceiveMessageResponse() throws Exception {
+        int messages = 1000;
+        StringBuilder xml = new StringBuilder("<ReceiveMessageResponse><ReceiveMessageResult>");
+        for (int i = 0; i < messages; i++) {
+            xml.append("<Message><MessageId>").append(i).append("</MessageId>")
+                    .append("<Body>body</Body><Attribute><Name>SenderId</Name>")
+                    .append("<Value>195004372649</Value></Attribute></Message>");
+        }
+        xml.append("</ReceiveMessageResult><ResponseMetadata><RequestId>b6633655</RequestId>"
+                + "</ResponseMetadata></ReceiveMessageResponse>");
+
+        context = getContext(xml.toString(), null);
+        context.registerMetadataExpression("ResponseMetadata/RequestId", 2, "AWS_REQUEST_ID");
+        int bodies = 0;
+        int attributes = 0;
+        int event;
+        while ((event = context.nextEvent()) != XmlPullParser.END_DOCUMENT) {
+            if (event == XmlPullParser.START_TAG) {
+                if (context.testExpression("Message/Body", 3)) {
+                    bodies++;
+                } else if (context.testExpression("Attribute/Name", 4)) {
+                    attributes++;
+                }
+            }
+        }
+        assertEquals(messages, bodies);
+        assertEquals(messages, attributes);
+        assertEquals("b6633655", context.getMetadata().get("AWS_REQUEST_ID"));
+    }
+
     @Test
     public void testMetadata() throws Exception {
         String key = "AWS_REQUEST_ID";
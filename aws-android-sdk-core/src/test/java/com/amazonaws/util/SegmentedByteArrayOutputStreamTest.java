@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+public class SegmentedByteArrayOutputStreamTest {
+
+    @Test
+    public void testContentSpanningSegments() throws IOException {
+        byte[] bytes = new byte[1000000];
+        new Random(3).nextBytes(bytes);
+        SegmentedByteArrayOutputStream out = new SegmentedByteArrayOutputStream(10);
+        out.write(bytes[0]);
+        out.write(bytes, 1, 99);
+        out.write(bytes, 100, bytes.length - 100);
+        assertEquals(bytes.length, out.size());
+
+        InputStream in = out.toInputStream();
+        assertEquals(bytes.length, in.available());
+        assertArrayEquals(bytes, IOUtils.toByteArray(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testMarkAndReset() throws IOException {
+        SegmentedByteArrayOutputStream out = new SegmentedByteArrayOutputStream(4);
+        out.write("0123456789abcdef".getBytes(StringUtils.UTF8));
+        InputStream in = out.toInputStream();
+        assertTrue(in.markSupported());
+
+        assertEquals(3, in.skip(3));
+        in.mark(100);
+        byte[] read = new byte[6];
+        assertEquals(6, in.read(read));
+        assertEquals("345678", new String(read, StringUtils.UTF8));
+        in.reset();
+        assertEquals('3', in.read());
+        assertEquals(12, in.skip(100));
+        assertEquals(0, in.available());
+        in.reset();
+        assertEquals("3456789abcdef", IOUtils.toString(in));
+    }
+
+    @Test
+    public void testLaterWritesAreNotPartOfStream() throws IOException {
+        SegmentedByteArrayOutputStream out = new SegmentedByteArrayOutputStream();
+        out.write('a');
+        InputStream in = out.toInputStream();
+        out.write('b');
+        assertEquals("a", IOUtils.toString(in));
+        assertEquals("ab", IOUtils.toString(out.toInputStream()));
+    }
+}
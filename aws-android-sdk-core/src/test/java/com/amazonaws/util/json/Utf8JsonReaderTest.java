@@ -0,0 +1,248 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Utf8JsonReaderTest {
+
+    private static final String QUERY_RESPONSE = "{\"Count\":2,\"Items\":["
+            + "{\"Id\":{\"N\":\"101\"},\"Title\":{\"S\":\"Caf\\u00e9 \\\"Noir\\\"\"},"
+            + "\"Tags\":{\"SS\":[\"fran\u00e7ais\",\"\u65e5\u672c\u8a9e\",\"\ud83d\ude00\"]},"
+            + "\"InStock\":{\"BOOL\":true},\"Discontinued\":{\"NULL\":true},"
+            + "\"Blob\":{\"B\":\"AAECAwQ=\"}},"
+            + "{\"Id\":{\"N\":\"-1.5e+10\"},\"Title\":{\"S\":\"tab\\there\\nnewline\\/slash\"},"
+            + "\"Ratings\":{\"L\":[{\"N\":\"0\"},{\"N\":\"4.25\"}]},"
+            + "\"Meta\":{\"M\":{\"\u00e9t\u00e9\":{\"S\":\"\"},\"empty\":{\"M\":{}}}}}],"
+            + "\"LastEvaluatedKey\":{\"Id\":{\"N\":\"102\"}},"
+            + "\"ScannedCount\":2,\"ConsumedCapacity\":null}";
+
+    private static final String GET_RECORDS_RESPONSE = "{\n"
+            + "  \"MillisBehindLatest\": 2100,\n"
+            + "  \"NextShardIterator\": \"AAAAAAAAAAHsW8zCWf9164uy8Epue6WS3w6wmj4a4USt+CNvMd6uXQ+H\",\n"
+            + "  \"Records\": [\n"
+            + "    {\n"
+            + "      \"Data\": \"XzxkYXRhPl8w\",\n"
+            + "      \"PartitionKey\": \"partitionKey\",\n"
+            + "      \"ApproximateArrivalTimestamp\": 1.441215410867E9,\n"
+            + "      \"SequenceNumber\": \"21269319989652663814458848515492872193\"\n"
+            + "    },\n"
+            + "    {\n"
+            + "      \"Data\": \"XzxkYXRhPl8x\",\n"
+            + "      \"PartitionKey\": \"\u30d1\u30fc\u30c6\u30a3\u30b7\u30e7\u30f3\",\n"
+            + "      \"ApproximateArrivalTimestamp\": 1.441215410868E9,\n"
+            + "      \"SequenceNumber\": \"21269319989652663814458848515492872194\"\n"
+            + "    }\n"
+            + "  ]\n"
+            + "}\n";
+
+    @Test
+    public void testQueryResponseMatchesGson() throws IOException {
+        assertEquals(tokens(gsonReader(QUERY_RESPONSE)), tokens(utf8Reader(QUERY_RESPONSE)));
+    }
+
+    @Test
+    public void testGetRecordsResponseMatchesGson() throws IOException {
+        assertEquals(tokens(gsonReader(GET_RECORDS_RESPONSE)),
+                tokens(utf8Reader(GET_RECORDS_RESPONSE)));
+    }
+
+    @Test
+    public void testByteAtATime() throws IOException {
+        // every token, name and multi-byte character straddles a read
+        AwsJsonReader reader = new Utf8JsonReader(new TrickleInputStream(
+                QUERY_RESPONSE.getBytes(StringUtils.UTF8)));
+        assertEquals(tokens(gsonReader(QUERY_RESPONSE)), tokens(reader));
+    }
+
+    @Test
+    public void testLongStrings() throws IOException {
+        StringBuilder value = new StringBuilder();
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            value.append("\u00e9a\ud83d\ude00\\n");
+            name.append('n');
+        }
+        String json = "{\"" + name + "\":\"" + value + "\"}";
+        assertEquals(tokens(gsonReader(json)), tokens(utf8Reader(json)));
+    }
+
+    @Test
+    public void testNamesAreInterned() throws IOException {
+        AwsJsonReader reader = utf8Reader("{\"Items\":1,\"Ite\\u006dCount\":2}");
+        reader.beginObject();
+        assertSame("Items", reader.nextName());
+        reader.skipValue();
+        assertSame("ItemCount", reader.nextName());
+        reader.skipValue();
+        reader.endObject();
+
+        byte[] name = "LastEvaluatedKey".getBytes(StringUtils.UTF8);
+        assertSame(Utf8JsonReader.lookUpName(name, 0, name.length),
+                Utf8JsonReader.lookUpName(name.clone(), 0, name.length));
+    }
+
+    @Test
+    public void testNextStringOfLiterals() throws IOException {
+        AwsJsonReader reader = utf8Reader("[true,false,null,12,\"s\"]");
+        reader.beginArray();
+        assertEquals("true", reader.nextString());
+        assertEquals("false", reader.nextString());
+        assertNull(reader.nextString());
+        assertEquals("12", reader.nextString());
+        assertEquals("s", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertNull(reader.peek());
+    }
+
+    @Test
+    public void testSkipValue() throws IOException {
+        AwsJsonReader reader = utf8Reader("{\"a\":{\"b\":[1,{\"c\":\"]}\"}],\"d\":null},\"e\":1}");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        assertTrue(reader.isContainer());
+        reader.skipValue();
+        assertEquals("e", reader.nextName());
+        assertEquals("1", reader.nextString());
+        reader.endObject();
+    }
+
+    @Test
+    public void testEmptyDocument() throws IOException {
+        assertNull(utf8Reader("").peek());
+        assertNull(utf8Reader("  \n").peek());
+        assertTrue(JsonUtils.jsonToMap("").isEmpty());
+    }
+
+    @Test
+    public void testMalformedDocuments() {
+        String[] malformed = {
+                "{\"a\" 1}", "{\"a\":1,}", "[1 2]", "{\"a\":tru}", "[01]", "[1.]",
+                "[\"\\x\"]", "[\"unterminated", "{} {}", "{a:1}"
+        };
+        for (String json : malformed) {
+            try {
+                tokens(utf8Reader(json));
+                fail("Accepted " + json);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testWrongToken() throws IOException {
+        AwsJsonReader reader = utf8Reader("[1]");
+        try {
+            reader.beginObject();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("Expected BEGIN_OBJECT but was BEGIN_ARRAY", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testGetJsonReaderOfStream() throws IOException {
+        AwsJsonReader reader = JsonUtils.getJsonReader(
+                new ByteArrayInputStream("{\"k\":\"\u00e9\"}".getBytes(StringUtils.UTF8)));
+        reader.beginObject();
+        assertEquals("k", reader.nextName());
+        assertEquals("\u00e9", reader.nextString());
+        reader.endObject();
+    }
+
+    private static AwsJsonReader gsonReader(String json) {
+        return new GsonFactory().getJsonReader(new StringReader(json));
+    }
+
+    private static AwsJsonReader utf8Reader(String json) {
+        return new Utf8JsonReader(new ByteArrayInputStream(json.getBytes(StringUtils.UTF8)));
+    }
+
+    /**
+     * Walks the whole document and lists its tokens with their values.
+     */
+    private static List<String> tokens(AwsJsonReader reader) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        AwsJsonToken token;
+        while ((token = reader.peek()) != null) {
+            switch (token) {
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    tokens.add("[");
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    tokens.add("]");
+                    break;
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    tokens.add("{");
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    tokens.add("}");
+                    break;
+                case FIELD_NAME:
+                    tokens.add("name:" + reader.nextName());
+                    break;
+                default:
+                    tokens.add(token + ":" + reader.nextString());
+                    break;
+            }
+        }
+        reader.close();
+        return tokens;
+    }
+
+    /**
+     * Hands out one byte per read.
+     */
+    private static final class TrickleInputStream extends InputStream {
+        private final InputStream in;
+
+        TrickleInputStream(byte[] bytes) {
+            in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import com.amazonaws.internal.ByteArrayPool;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.SegmentedByteArrayOutputStream;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Random;
+
+public class Utf8JsonWriterTest {
+
+    private static final String TEXT = "plain \"quoted\" back\\slash /\t\b\n\r\f\u0000\u001f"
+            + " caf\u00e9 \u65e5\u672c \ud83d\ude00 \u2028\u2029 \u007f\u0080 <html>&'=";
+
+    @Test
+    public void testMatchesGson() throws IOException {
+        Random random = new Random(42);
+        for (int length = 0; length < 10; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            StringWriter gson = new StringWriter();
+            writeDocument(new GsonFactory().getJsonWriter(gson), bytes);
+            ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+            writeDocument(new Utf8JsonWriter(utf8), bytes);
+            assertEquals(gson.toString(), new String(utf8.toByteArray(), StringUtils.UTF8));
+        }
+    }
+
+    @Test
+    public void testUnpairedSurrogates() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Utf8JsonWriter(out).value("a\ud83db\ude00").close();
+        assertEquals("\"a?b?\"", new String(out.toByteArray(), StringUtils.UTF8));
+    }
+
+    @Test
+    public void testDirectAndSlicedByteBuffers() throws IOException {
+        byte[] bytes = new byte[100000];
+        new Random(7).nextBytes(bytes);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        ByteBuffer slice = ByteBuffer.wrap(bytes, 10, 1000).slice();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Utf8JsonWriter(out).beginArray().value(direct).value(slice).endArray().close();
+
+        byte[] sliced = new byte[1000];
+        System.arraycopy(bytes, 10, sliced, 0, sliced.length);
+        assertEquals("[\"" + BinaryUtils.toBase64(bytes) + "\",\""
+                + BinaryUtils.toBase64(sliced) + "\"]",
+                new String(out.toByteArray(), StringUtils.UTF8));
+        assertEquals("position untouched", 0, direct.position());
+    }
+
+    @Test
+    public void testNestingProblems() throws IOException {
+        AwsJsonWriter writer = new Utf8JsonWriter(new ByteArrayOutputStream());
+        try {
+            writer.name("a");
+            fail();
+        } catch (IllegalStateException expected) {
+            // names only go in objects
+        }
+        writer.beginObject();
+        try {
+            writer.endArray();
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            writer.close();
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Incomplete document", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testBufferReturnedToPool() throws IOException {
+        ByteArrayPool pool = ByteArrayPool.getShared();
+        AwsJsonWriter writer = new Utf8JsonWriter(new ByteArrayOutputStream());
+        int pooled = pool.getPooledCount();
+        writer.value("x").close();
+        assertEquals(Math.min(pooled + 1, ByteArrayPool.DEFAULT_MAX_POOLED_ARRAYS),
+                pool.getPooledCount());
+    }
+
+    /**
+     * Marshalling binary data allocates little beyond the encoded content,
+     * where the Gson writer also allocates a copy of the data, its Base64
+     * string and the growing output.
+     */
+    @Test
+    public void testBinaryValueAllocation() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported()
+                && allocations.isThreadAllocatedMemoryEnabled());
+
+        ByteBuffer data = ByteBuffer.wrap(new byte[3 * 1024 * 1024]);
+        int encodedLength = 4 * 1024 * 1024 + 4;
+        // warm up
+        marshall(data, encodedLength);
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        int size = marshall(data, encodedLength);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(encodedLength, size);
+        assertTrue("allocated " + allocated, allocated < encodedLength + 64 * 1024);
+    }
+
+    private static int marshall(ByteBuffer data, int expectedSize) throws IOException {
+        SegmentedByteArrayOutputStream content = new SegmentedByteArrayOutputStream(expectedSize);
+        new Utf8JsonWriter(content).beginArray().value(data).endArray().close();
+        return content.size();
+    }
+
+    private static void writeDocument(AwsJsonWriter writer, byte[] bytes) throws IOException {
+        writer.beginObject()
+                .name("string").value(TEXT)
+                .name(TEXT).value("name")
+                .name("null").value((String) null)
+                .name("nullValue").value()
+                .name("true").value(true)
+                .name("false").value(false)
+                .name("long").value(Long.MIN_VALUE)
+                .name("double").value(-1.5e-300)
+                .name("number").value(Integer.valueOf(42))
+                .name("date").value(new Date(1441215410867L))
+                .name("binary").value(ByteBuffer.wrap(bytes))
+                .name("array").beginArray()
+                .value("a").beginArray().endArray().beginObject().endObject().value(1L)
+                .endArray()
+                .name("empty").beginObject().endObject()
+                .endObject();
+        writer.close();
+    }
+}
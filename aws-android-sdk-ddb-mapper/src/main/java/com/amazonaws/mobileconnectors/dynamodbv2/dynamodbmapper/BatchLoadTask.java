@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Loads items by their keys with BatchGetItem calls, keeping up to a given
+ * number of calls in flight.
+ * <p>
+ * Every call takes up to {@link #MAX_KEYS_PER_BATCH_GET} keys. Unprocessed
+ * keys of a response go back to the front of their queues so that they ride
+ * along with the next call, after a jittered exponential backoff.
+ * <p>
+ * The items are handed to the {@link ItemHandler} as each response arrives,
+ * on the thread calling {@link #execute(Map)}, so nothing but the keys has
+ * to be kept for the whole load.
+ */
+class BatchLoadTask extends BatchPipeline<Map<String, AttributeValue>, BatchGetItemResult> {
+
+    /** The max number of keys allowed in a BatchGetItem request */
+    static final int MAX_KEYS_PER_BATCH_GET = 100;
+
+    /** The first backoff after unprocessed keys */
+    static final long BASE_BACKOFF_IN_MILLISECONDS = 100;
+
+    /**
+     * Receives the items loaded, as each response arrives.
+     */
+    static interface ItemHandler {
+        void handle(String tableName, List<Map<String, AttributeValue>> items);
+    }
+
+    private final AmazonDynamoDB db;
+    private final boolean consistentReads;
+    private final RequestMetricCollector requestMetricCollector;
+    private final ItemHandler handler;
+
+    private int emptyResponsesInARow;
+
+    BatchLoadTask(AmazonDynamoDB db, int concurrency, boolean consistentReads,
+            RequestMetricCollector requestMetricCollector, ItemHandler handler) {
+        this(db, concurrency, consistentReads, requestMetricCollector, handler,
+                BASE_BACKOFF_IN_MILLISECONDS);
+    }
+
+    BatchLoadTask(AmazonDynamoDB db, int concurrency, boolean consistentReads,
+            RequestMetricCollector requestMetricCollector, ItemHandler handler,
+            long baseBackoffMillis) {
+        super(concurrency, MAX_KEYS_PER_BATCH_GET, baseBackoffMillis);
+        this.db = db;
+        this.consistentReads = consistentReads;
+        this.requestMetricCollector = requestMetricCollector;
+        this.handler = handler;
+    }
+
+    /**
+     * Loads the items with the keys given.
+     *
+     * @param keys the keys of the items to load, per table
+     */
+    void execute(Map<String, List<Map<String, AttributeValue>>> keys) {
+        for (Entry<String, List<Map<String, AttributeValue>>> entry : keys.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+        sendAll();
+    }
+
+    @Override
+    BatchGetItemResult call(Map<String, List<Map<String, AttributeValue>>> batch) {
+        Map<String, KeysAndAttributes> requestItems = new LinkedHashMap<String, KeysAndAttributes>();
+        for (Entry<String, List<Map<String, AttributeValue>>> entry : batch.entrySet()) {
+            requestItems.put(entry.getKey(), new KeysAndAttributes()
+                    .withConsistentRead(consistentReads).withKeys(entry.getValue()));
+        }
+        BatchGetItemRequest request = new BatchGetItemRequest()
+                .withRequestItems(requestItems)
+                .withRequestMetricCollector(requestMetricCollector);
+        return db.batchGetItem(DynamoDBMapper.applyBatchOperationUserAgent(request));
+    }
+
+    /**
+     * Hands the items of a response over and queues its unprocessed keys.
+     */
+    @Override
+    long onCompleted(Map<String, List<Map<String, AttributeValue>>> batch,
+            BatchGetItemResult result) {
+        int loaded = 0;
+        Map<String, List<Map<String, AttributeValue>>> responses = result.getResponses();
+        if (responses != null) {
+            for (Entry<String, List<Map<String, AttributeValue>>> entry : responses.entrySet()) {
+                loaded += entry.getValue().size();
+                handler.handle(entry.getKey(), entry.getValue());
+            }
+        }
+
+        int unprocessed = 0;
+        Map<String, KeysAndAttributes> unprocessedKeys = result.getUnprocessedKeys();
+        if (unprocessedKeys != null) {
+            for (Entry<String, KeysAndAttributes> entry : unprocessedKeys.entrySet()) {
+                List<Map<String, AttributeValue>> keys = entry.getValue().getKeys();
+                requeue(entry.getKey(), keys);
+                unprocessed += keys.size();
+            }
+        }
+
+        if (unprocessed == 0) {
+            emptyResponsesInARow = 0;
+            resetBackoff();
+            return 0;
+        }
+        if (loaded == 0 && unprocessed == count(batch)) {
+            if (++emptyResponsesInARow > DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
+                throw new AmazonClientException(
+                        "Batch Get Item request to server hasn't received any data. "
+                                + "Please try again later.");
+            }
+        } else {
+            emptyResponsesInARow = 0;
+        }
+        return nextBackoff();
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import com.amazonaws.AmazonClientException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the items of a batch operation in calls of up to a given number of
+ * items, keeping up to a given number of calls in flight.
+ * <p>
+ * The items wait in one queue per table, and every call takes items from them
+ * in the order the tables were given. Items put back with
+ * {@link #requeue(String, List)} go to the front of their queues so that they
+ * ride along with the next call. A delay returned from the completion of a
+ * call holds back the next ones.
+ * <p>
+ * Everything but the calls themselves happens on the thread calling
+ * {@link #sendAll()}.
+ *
+ * @param <T> the type of the items
+ * @param <R> the type of the result of a call
+ */
+abstract class BatchPipeline<T, R> {
+
+    private final int concurrency;
+    private final int maxBatchSize;
+    private final long baseBackoffMillis;
+    private final Random random = new Random();
+
+    /** The items waiting to be sent, per table in the order given */
+    private final Map<String, Deque<T>> queues = new LinkedHashMap<String, Deque<T>>();
+
+    private int backoffAttempts;
+    private long callsSubmitted;
+
+    BatchPipeline(int concurrency, int maxBatchSize, long baseBackoffMillis) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+        this.maxBatchSize = maxBatchSize;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    /**
+     * Makes a single call with the items given. Runs on the executor.
+     */
+    abstract R call(Map<String, List<T>> batch) throws Exception;
+
+    /**
+     * Handles the result of a call.
+     *
+     * @return how long to back off before the next call, or 0
+     */
+    abstract long onCompleted(Map<String, List<T>> batch, R result);
+
+    /**
+     * Handles a call that threw. The exception is rethrown unless overridden.
+     *
+     * @return how long to back off before the next call, or 0
+     */
+    long onFailed(Map<String, List<T>> batch, Exception e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        throw new AmazonClientException(e.getMessage(), e);
+    }
+
+    /**
+     * Sends everything queued, until nothing is left to send or in flight.
+     */
+    final void sendAll() {
+        ExecutorService executorService = null;
+        Executor executor;
+        if (concurrency == 1) {
+            // Nothing to overlap, so the calls are made on this thread.
+            executor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        } else {
+            executorService = Executors.newFixedThreadPool(concurrency);
+            executor = executorService;
+        }
+
+        try {
+            run(new ExecutorCompletionService<R>(executor));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    private void run(CompletionService<R> completionService) throws InterruptedException {
+        Map<Future<R>, Map<String, List<T>>> inFlight =
+                new LinkedHashMap<Future<R>, Map<String, List<T>>>();
+        long notBefore = 0;
+        while (hasPendingItems() || !inFlight.isEmpty()) {
+            long now = System.currentTimeMillis();
+            while (inFlight.size() < concurrency && hasPendingItems() && now >= notBefore) {
+                final Map<String, List<T>> batch = nextBatch();
+                Future<R> future = completionService.submit(new Callable<R>() {
+                    @Override
+                    public R call() throws Exception {
+                        return BatchPipeline.this.call(batch);
+                    }
+                });
+                inFlight.put(future, batch);
+                callsSubmitted++;
+            }
+
+            Future<R> completed;
+            if (inFlight.isEmpty()) {
+                // Backing off, with nothing to wait for.
+                Thread.sleep(notBefore - now);
+                continue;
+            } else if (inFlight.size() < concurrency && hasPendingItems()) {
+                completed = completionService.poll(notBefore - now, TimeUnit.MILLISECONDS);
+            } else {
+                completed = completionService.take();
+            }
+            if (completed == null) {
+                continue;
+            }
+            Map<String, List<T>> batch = inFlight.remove(completed);
+
+            long delay;
+            try {
+                delay = onCompleted(batch, completed.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                delay = onFailed(batch, (Exception) cause);
+            }
+            if (delay > 0) {
+                notBefore = Math.max(notBefore, System.currentTimeMillis() + delay);
+            }
+        }
+    }
+
+    /**
+     * Queues items to send, after the ones already queued for their table.
+     */
+    final void add(String tableName, Collection<T> items) {
+        queue(tableName).addAll(items);
+    }
+
+    /**
+     * Puts items back at the front of their queue, in their original order.
+     */
+    final void requeue(String tableName, List<T> items) {
+        Deque<T> queue = queue(tableName);
+        for (int i = items.size() - 1; i >= 0; i--) {
+            queue.addFirst(items.get(i));
+        }
+        if (queue.isEmpty()) {
+            queues.remove(tableName);
+        }
+    }
+
+    boolean hasPendingItems() {
+        return !queues.isEmpty();
+    }
+
+    /**
+     * Takes the items of the next call off the queues.
+     */
+    Map<String, List<T>> nextBatch() {
+        Map<String, List<T>> batch = new LinkedHashMap<String, List<T>>();
+        int size = 0;
+        Iterator<Entry<String, Deque<T>>> tableIter = queues.entrySet().iterator();
+        while (tableIter.hasNext() && size < maxBatchSize) {
+            Entry<String, Deque<T>> table = tableIter.next();
+            Deque<T> queue = table.getValue();
+            List<T> items = new ArrayList<T>(Math.min(queue.size(), maxBatchSize - size));
+            while (!queue.isEmpty() && size < maxBatchSize) {
+                items.add(queue.removeFirst());
+                size++;
+            }
+            batch.put(table.getKey(), items);
+            if (queue.isEmpty()) {
+                tableIter.remove();
+            }
+        }
+        return batch;
+    }
+
+    private Deque<T> queue(String tableName) {
+        Deque<T> queue = queues.get(tableName);
+        if (queue == null) {
+            queue = new ArrayDeque<T>();
+            queues.put(tableName, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the next of a series of jittered exponential backoffs.
+     */
+    final long nextBackoff() {
+        return DynamoDBMapper.jitteredBackoff(random, baseBackoffMillis, ++backoffAttempts);
+    }
+
+    /**
+     * Starts the backoffs over, after a call that went through in full.
+     */
+    final void resetBackoff() {
+        backoffAttempts = 0;
+    }
+
+    final long getCallsSubmitted() {
+        return callsSubmitted;
+    }
+
+    static <T> int count(Map<String, List<T>> items) {
+        if (items == null) {
+            return 0;
+        }
+        int count = 0;
+        for (List<T> list : items.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+}
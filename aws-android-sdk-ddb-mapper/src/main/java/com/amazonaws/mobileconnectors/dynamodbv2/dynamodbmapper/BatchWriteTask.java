@@ -0,0 +1,233 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapper.FailedBatch;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.BatchWriteProgress;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.BatchWriteProgressListener;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Writes the items of a batch write with BatchWriteItem calls, keeping up to
+ * a given number of calls in flight.
+ * <p>
+ * Every call takes up to {@link DynamoDBMapper#MAX_ITEMS_PER_BATCH} items.
+ * Unprocessed items of a response, and the items of a throttled call, go back
+ * to the front of their queues so that they ride along with the next call,
+ * after a jittered exponential backoff. Calls rejected for being too large
+ * are split in two and sent again as they are.
+ * <p>
+ * Everything but the calls themselves happens on the thread calling
+ * {@link #execute(Map)}, so the progress listener is only ever called from
+ * there.
+ */
+class BatchWriteTask extends BatchPipeline<WriteRequest, BatchWriteItemResult> {
+
+    /** The first backoff after unprocessed items or a throttled call */
+    static final long BASE_BACKOFF_IN_MILLISECONDS = 100;
+
+    /**
+     * The number of calls in a row failing with a throttling error after
+     * which the items are given up on.
+     */
+    static final int MAX_THROTTLED_RETRIES = 5;
+
+    private final AmazonDynamoDB db;
+    private final BatchWriteProgressListener listener;
+
+    /** Halves of calls that were too large, sent again as they are */
+    private final Deque<Map<String, List<WriteRequest>>> splitBatches =
+            new ArrayDeque<Map<String, List<WriteRequest>>>();
+
+    private final List<FailedBatch> failedBatches = new ArrayList<FailedBatch>();
+
+    private int throttledInARow;
+    private long startMillis;
+    private long totalItems;
+    private long itemsWritten;
+    private long itemsFailed;
+    private long itemsRetried;
+    private long requestsThrottled;
+
+    BatchWriteTask(AmazonDynamoDB db, int concurrency, BatchWriteProgressListener listener) {
+        this(db, concurrency, listener, BASE_BACKOFF_IN_MILLISECONDS);
+    }
+
+    BatchWriteTask(AmazonDynamoDB db, int concurrency, BatchWriteProgressListener listener,
+            long baseBackoffMillis) {
+        super(concurrency, DynamoDBMapper.MAX_ITEMS_PER_BATCH, baseBackoffMillis);
+        this.db = db;
+        this.listener = listener;
+    }
+
+    /**
+     * Writes all the items given, returning the ones that couldn't be
+     * written.
+     *
+     * @param requestItems the items to write, per table
+     * @return the failed batches, with the exception causing each failure
+     */
+    List<FailedBatch> execute(Map<String, List<WriteRequest>> requestItems) {
+        startMillis = System.currentTimeMillis();
+        for (Entry<String, List<WriteRequest>> entry : requestItems.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+            totalItems += entry.getValue().size();
+        }
+        sendAll();
+        return failedBatches;
+    }
+
+    @Override
+    BatchWriteItemResult call(Map<String, List<WriteRequest>> batch) {
+        return db.batchWriteItem(DynamoDBMapper.applyBatchOperationUserAgent(
+                new BatchWriteItemRequest().withRequestItems(batch)));
+    }
+
+    /**
+     * Accounts for the items written, queueing the unprocessed ones.
+     */
+    @Override
+    long onCompleted(Map<String, List<WriteRequest>> batch, BatchWriteItemResult result) {
+        throttledInARow = 0;
+        Map<String, List<WriteRequest>> unprocessedItems = result.getUnprocessedItems();
+        int unprocessed = count(unprocessedItems);
+        itemsWritten += count(batch) - unprocessed;
+        long delay = 0;
+        if (unprocessed == 0) {
+            resetBackoff();
+        } else {
+            requeue(unprocessedItems);
+            itemsRetried += unprocessed;
+            delay = nextBackoff();
+        }
+        notifyListener();
+        return delay;
+    }
+
+    /**
+     * Splits calls that were too large and retries throttled ones, giving up
+     * on the items of any other failure.
+     */
+    @Override
+    long onFailed(Map<String, List<WriteRequest>> batch, Exception e) {
+        long delay = handleFailure(batch, e);
+        notifyListener();
+        return delay;
+    }
+
+    private long handleFailure(Map<String, List<WriteRequest>> batch, Exception e) {
+        int sent = count(batch);
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            if (RetryUtils.isRequestEntityTooLargeException(ase) && sent > 1) {
+                Map<String, List<WriteRequest>> firstHalf =
+                        new LinkedHashMap<String, List<WriteRequest>>();
+                Map<String, List<WriteRequest>> secondHalf =
+                        new LinkedHashMap<String, List<WriteRequest>>();
+                divideBatch(batch, firstHalf, secondHalf);
+                splitBatches.addFirst(secondHalf);
+                splitBatches.addFirst(firstHalf);
+                return 0;
+            }
+            if (RetryUtils.isThrottlingException(ase)) {
+                requestsThrottled++;
+                if (++throttledInARow <= MAX_THROTTLED_RETRIES) {
+                    requeue(batch);
+                    itemsRetried += sent;
+                    return nextBackoff();
+                }
+            }
+        }
+
+        FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(batch);
+        failedBatch.setException(e);
+        failedBatches.add(failedBatch);
+        itemsFailed += sent;
+        return 0;
+    }
+
+    private void notifyListener() {
+        if (listener != null) {
+            listener.progressChanged(getProgress());
+        }
+    }
+
+    @Override
+    boolean hasPendingItems() {
+        return !splitBatches.isEmpty() || super.hasPendingItems();
+    }
+
+    @Override
+    Map<String, List<WriteRequest>> nextBatch() {
+        if (!splitBatches.isEmpty()) {
+            return splitBatches.removeFirst();
+        }
+        return super.nextBatch();
+    }
+
+    private void requeue(Map<String, List<WriteRequest>> items) {
+        for (Entry<String, List<WriteRequest>> entry : items.entrySet()) {
+            requeue(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Divide the batch of objects to save into two smaller batches. Each
+     * contains half of the elements.
+     */
+    private static void divideBatch(Map<String, List<WriteRequest>> batch,
+            Map<String, List<WriteRequest>> firstHalfBatch,
+            Map<String, List<WriteRequest>> secondHalfBatch) {
+        List<Entry<String, WriteRequest>> all = new ArrayList<Entry<String, WriteRequest>>();
+        for (Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+            for (WriteRequest request : entry.getValue()) {
+                all.add(new AbstractMap.SimpleEntry<String, WriteRequest>(
+                        entry.getKey(), request));
+            }
+        }
+        int half = all.size() / 2;
+        for (int i = 0; i < all.size(); i++) {
+            Map<String, List<WriteRequest>> target = i < half ? firstHalfBatch : secondHalfBatch;
+            Entry<String, WriteRequest> item = all.get(i);
+            List<WriteRequest> requests = target.get(item.getKey());
+            if (requests == null) {
+                requests = new ArrayList<WriteRequest>();
+                target.put(item.getKey(), requests);
+            }
+            requests.add(item.getValue());
+        }
+    }
+
+    BatchWriteProgress getProgress() {
+        return new BatchWriteProgress(totalItems, itemsWritten, itemsFailed, getCallsSubmitted(),
+                itemsRetried, requestsThrottled, System.currentTimeMillis() - startMillis);
+    }
+}
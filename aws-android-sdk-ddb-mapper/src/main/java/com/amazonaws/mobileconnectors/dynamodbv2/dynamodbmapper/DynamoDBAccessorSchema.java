@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+/**
+ * Precompiled access to the mapped properties of a class, which the
+ * {@link DynamoDBMapper} uses instead of reflection when marshalling and
+ * unmarshalling objects of that class.
+ * <p>
+ * The mapper looks for a schema next to every class declaring a mapped
+ * getter: a class in the same package, named after it with a
+ * {@code DynamoDBSchema} suffix, with a public no-argument constructor. For
+ * instance, the schema of {@code com.example.Book} is
+ * {@code com.example.BookDynamoDBSchema}. Such classes would typically be
+ * generated at build time. Properties a schema doesn't provide an accessor
+ * for, and classes without a schema, are accessed through reflection.
+ *
+ * @param <T> the class the schema is for
+ */
+public interface DynamoDBAccessorSchema<T> {
+
+    /**
+     * Returns the accessor for the property behind the getter with the name
+     * given, or null to have the mapper use reflection for it.
+     */
+    public DynamoDBPropertyAccessor<T> getAccessor(String getterName);
+}
@@ -29,9 +29,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeAction;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
 import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
-import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
-import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
@@ -42,7 +40,6 @@ import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.GetItemResult;
-import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
 import com.amazonaws.services.dynamodbv2.model.PutItemResult;
 import com.amazonaws.services.dynamodbv2.model.PutRequest;
@@ -68,7 +65,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -425,7 +422,7 @@ public class DynamoDBMapper {
         Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
         for (Method keyGetter : reflector.getPrimaryKeyGetters(clazz)) {
             Object getterResult =
-                    ReflectionUtils.safeInvoke(keyGetter, keyObject);
+                    reflector.getValue(keyGetter, keyObject);
 
             AttributeValue keyAttributeValue =
                     converter.convert(keyGetter, getterResult);
@@ -490,7 +487,7 @@ public class DynamoDBMapper {
                                     + ". Use load(Object) for tables with more than a single hash and range key.");
                 }
                 seenHashKey = true;
-                ReflectionUtils.safeInvoke(reflector.getSetter(getter), keyObject, hashKey);
+                reflector.setValue(getter, keyObject, hashKey);
             } else if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)) {
                 if (seenRangeKey) {
                     throw new DynamoDBMappingException(
@@ -501,7 +498,7 @@ public class DynamoDBMapper {
                                     + ". Use load(Object) for tables with more than a single hash and range key.");
                 }
                 seenRangeKey = true;
-                ReflectionUtils.safeInvoke(reflector.getSetter(getter), keyObject, rangeKey);
+                reflector.setValue(getter, keyObject, rangeKey);
             }
         }
         if (!seenHashKey) {
@@ -541,7 +538,7 @@ public class DynamoDBMapper {
                             getter, DynamoDBIndexHashKey.class)) {
 
                 Object getterReturnResult =
-                        ReflectionUtils.safeInvoke(getter, obj);
+                        reflector.getValue(getter, obj);
 
                 if (getterReturnResult != null) {
                     conditions.put(
@@ -708,7 +705,7 @@ public class DynamoDBMapper {
          */
         boolean hashKeyGetterFound = false;
         for (Method method : keyGetters) {
-            Object getterResult = ReflectionUtils.safeInvoke(method, object);
+            Object getterResult = reflector.getValue(method, object);
             if (getterResult == null && reflector.isAssignableKey(method)) {
                 forcePut = true;
             }
@@ -990,7 +987,7 @@ public class DynamoDBMapper {
              * First handle keys
              */
             for (Method method : keyGetters) {
-                Object getterResult = ReflectionUtils.safeInvoke(method, object);
+                Object getterResult = reflector.getValue(method, object);
                 String attributeName = reflector.getAttributeName(method);
 
                 if (getterResult == null && reflector.isAssignableKey(method)) {
@@ -1027,7 +1024,7 @@ public class DynamoDBMapper {
                 if (keyGetters.contains(method))
                     continue;
 
-                Object getterResult = ReflectionUtils.safeInvoke(method, object);
+                Object getterResult = reflector.getValue(method, object);
                 String attributeName = reflector.getAttributeName(method);
 
                 /*
@@ -1304,7 +1301,7 @@ public class DynamoDBMapper {
             for (Method method : reflector.getRelevantGetters(clazz)) {
 
                 if (reflector.isVersionAttributeGetter(method)) {
-                    Object getterResult = ReflectionUtils.safeInvoke(method, object);
+                    Object getterResult = reflector.getValue(method, object);
                     String attributeName = reflector.getAttributeName(method);
 
                     ExpectedAttributeValue expected = new ExpectedAttributeValue();
@@ -1457,12 +1454,15 @@ public class DynamoDBMapper {
      *            version checks are performed</b>, as required by the
      *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
      *            API.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()} is
-     *            considered; if specified, all objects in the two parameter
-     *            lists will be considered to belong to the given table
-     *            override. In particular, this method <b>always acts as if
-     *            SaveBehavior.CLOBBER was specified</b> regardless of the value
-     *            of the config parameter.
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getBatchWriteConcurrency()} and
+     *            {@link DynamoDBMapperConfig#getBatchWriteProgressListener()}
+     *            are considered; if a table name override is specified, all
+     *            objects in the two parameter lists will be considered to
+     *            belong to the given table override. In particular, this
+     *            method <b>always acts as if SaveBehavior.CLOBBER was
+     *            specified</b> regardless of the value of the config
+     *            parameter.
      * @return A list of failed batches which includes the unprocessed items and
      *         the exceptions causing the failure.
      */
@@ -1470,13 +1470,12 @@ public class DynamoDBMapper {
             List<? extends Object> objectsToDelete, DynamoDBMapperConfig config) {
         config = mergeConfig(config);
 
-        List<FailedBatch> totalFailedBatches = new LinkedList<FailedBatch>();
-
-        HashMap<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
+        Map<String, List<WriteRequest>> requestItems =
+                new LinkedHashMap<String, List<WriteRequest>>();
 
         ItemConverter converter = getConverter(config);
 
-        List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
+        List<ValueUpdate> inMemoryUpdates = new ArrayList<ValueUpdate>();
         for (Object toWrite : objectsToWrite) {
             Class<?> clazz = toWrite.getClass();
             String tableName = getTableName(clazz, toWrite, config);
@@ -1486,7 +1485,7 @@ public class DynamoDBMapper {
             // Look at every getter and construct a value object for it
             for (Method method : reflector.getRelevantGetters(clazz)) {
                 Object getterResult =
-                        ReflectionUtils.safeInvoke(method, toWrite);
+                        reflector.getValue(method, toWrite);
 
                 String attributeName = reflector.getAttributeName(method);
 
@@ -1504,7 +1503,7 @@ public class DynamoDBMapper {
             }
 
             if (!requestItems.containsKey(tableName)) {
-                requestItems.put(tableName, new LinkedList<WriteRequest>());
+                requestItems.put(tableName, new ArrayList<WriteRequest>());
             }
 
             AttributeTransformer.Parameters<?> parameters =
@@ -1524,58 +1523,18 @@ public class DynamoDBMapper {
             Map<String, AttributeValue> key = getKey(converter, toDelete);
 
             if (!requestItems.containsKey(tableName)) {
-                requestItems.put(tableName, new LinkedList<WriteRequest>());
+                requestItems.put(tableName, new ArrayList<WriteRequest>());
             }
 
             requestItems.get(tableName).add(
                     new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
         }
 
-        // Break into chunks of 25 items and make service requests to DynamoDB
-        while (!requestItems.isEmpty()) {
-
-            HashMap<String, List<WriteRequest>> batch =
-                    new HashMap<String, List<WriteRequest>>();
-
-            int i = 0;
-
-            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet()
-                    .iterator();
-            while (tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH) {
-
-                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
-
-                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
-                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
-
-                while (writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH) {
-                    WriteRequest writeRequest = writeRequestIter.next();
-                    batch.get(tableRequest.getKey()).add(writeRequest);
-                    writeRequestIter.remove();
-                }
-
-                // If we've processed all the write requests for this table,
-                // remove it from the parent iterator.
-                if (!writeRequestIter.hasNext()) {
-                    tableIter.remove();
-                }
-            }
-
-            List<FailedBatch> failedBatches = writeOneBatch(batch);
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
-                    }
-                }
-            }
-        }
+        // Make service requests to DynamoDB in chunks of 25 items
+        Integer concurrency = config.getBatchWriteConcurrency();
+        List<FailedBatch> totalFailedBatches = new BatchWriteTask(db,
+                concurrency == null ? 1 : concurrency,
+                config.getBatchWriteProgressListener()).execute(requestItems);
 
         // Once the entire batch is processed, update assigned keys in memory
         for (ValueUpdate update : inMemoryUpdates) {
@@ -1591,38 +1550,7 @@ public class DynamoDBMapper {
      * beyond 1M).
      */
     List<FailedBatch> writeOneBatch(Map<String, List<WriteRequest>> batch) {
-
-        List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
-        Map<String, List<WriteRequest>> firstHalfBatch = new HashMap<String, List<WriteRequest>>();
-        Map<String, List<WriteRequest>> secondHalfBatch = new HashMap<String, List<WriteRequest>>();
-        FailedBatch failedBatch = callUntilCompletion(batch);
-
-        if (failedBatch != null) {
-            // If the exception is request entity too large, we divide the batch
-            // into smaller parts.
-
-            if (failedBatch.getException() instanceof AmazonServiceException
-                    && RetryUtils
-                            .isRequestEntityTooLargeException((AmazonServiceException) failedBatch
-                                    .getException())) {
-
-                // If only one item left, the item size must beyond 64k, which
-                // exceedes the limit.
-
-                if (computeFailedBatchSize(failedBatch) == 1) {
-                    failedBatches.add(failedBatch);
-                } else {
-                    divideBatch(batch, firstHalfBatch, secondHalfBatch);
-                    failedBatches.addAll(writeOneBatch(firstHalfBatch));
-                    failedBatches.addAll(writeOneBatch(secondHalfBatch));
-                }
-
-            } else {
-                failedBatches.add(failedBatch);
-            }
-
-        }
-        return failedBatches;
+        return new BatchWriteTask(db, 1, null).execute(batch);
     }
 
     /**
@@ -1639,74 +1567,6 @@ public class DynamoDBMapper {
         return false;
     }
 
-    /**
-     * Divide the batch of objects to save into two smaller batches. Each
-     * contains half of the elements.
-     */
-    private void divideBatch(Map<String, List<WriteRequest>> batch,
-            Map<String, List<WriteRequest>> firstHalfBatch,
-            Map<String, List<WriteRequest>> secondHalfBatch) {
-        for (String key : batch.keySet()) {
-
-            List<WriteRequest> requests = batch.get(key);
-
-            List<WriteRequest> firstHalfRequests = requests.subList(0, requests.size() / 2);
-
-            List<WriteRequest> secondHalfRequests = requests.subList(requests.size() / 2,
-                    requests.size());
-
-            firstHalfBatch.put(key, firstHalfRequests);
-
-            secondHalfBatch.put(key, secondHalfRequests);
-
-        }
-
-    }
-
-    /**
-     * Count the total number of unprocessed items in the failed batch.
-     */
-
-    private int computeFailedBatchSize(FailedBatch failedBatch) {
-
-        int count = 0;
-
-        for (String tableName : failedBatch.getUnprocessedItems().keySet()) {
-            count += failedBatch.getUnprocessedItems().get(tableName).size();
-        }
-        return count;
-    }
-
-    /**
-     * Continue trying to process the batch until it finishes or an exception
-     * occurs.
-     */
-
-    private FailedBatch callUntilCompletion(Map<String, List<WriteRequest>> batch) {
-        BatchWriteItemResult result = null;
-        int retries = 0;
-        FailedBatch failedBatch = null;
-        while (true) {
-            try {
-                result = db.batchWriteItem(applyBatchOperationUserAgent(
-                        new BatchWriteItemRequest().withRequestItems(batch)));
-            } catch (Exception e) {
-                failedBatch = new FailedBatch();
-                failedBatch.setUnprocessedItems(batch);
-                failedBatch.setException(e);
-                return failedBatch;
-            }
-            retries++;
-            batch = result.getUnprocessedItems();
-            if (batch.size() > 0) {
-                pauseExponentially(retries);
-            } else {
-                break;
-            }
-        }
-        return failedBatch;
-    }
-
     /**
      * Retrieves multiple items from multiple tables using their primary keys.
      *
@@ -1726,8 +1586,9 @@ public class DynamoDBMapper {
      *
      * @param itemsToGet Key objects, corresponding to the class to fetch, with
      *            their primary key values set.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()}
-     *            and {@link DynamoDBMapperConfig#getConsistentReads()} are
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()} and
+     *            {@link DynamoDBMapperConfig#getBatchLoadConcurrency()} are
      *            considered.
      * @return A map of the loaded objects. Each key in the map is the name of a
      *         DynamoDB table. Each value in the map is a list of objects that
@@ -1736,19 +1597,50 @@ public class DynamoDBMapper {
      *         mapping that table.
      */
     public Map<String, List<Object>> batchLoad(List<Object> itemsToGet, DynamoDBMapperConfig config) {
+        final Map<String, List<Object>> resultSet = new HashMap<String, List<Object>>();
+        batchLoad(itemsToGet, config, new BatchLoadCallback() {
+            @Override
+            public void onLoaded(String tableName, List<Object> objects) {
+                List<Object> tableObjects = resultSet.get(tableName);
+                if (tableObjects == null) {
+                    tableObjects = new ArrayList<Object>();
+                    resultSet.put(tableName, tableObjects);
+                }
+                tableObjects.addAll(objects);
+            }
+        });
+        return resultSet;
+    }
+
+    /**
+     * Retrieves multiple items from multiple tables using their primary keys,
+     * handing the loaded objects to the callback given as they arrive rather
+     * than keeping them all. The keys are requested 100 at a time, with up to
+     * {@link DynamoDBMapperConfig#getBatchLoadConcurrency()} requests in
+     * flight.
+     *
+     * @param itemsToGet Key objects, corresponding to the class to fetch, with
+     *            their primary key values set.
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()} and
+     *            {@link DynamoDBMapperConfig#getBatchLoadConcurrency()} are
+     *            considered.
+     * @param callback Receives the loaded objects, on the calling thread.
+     */
+    public void batchLoad(List<Object> itemsToGet, DynamoDBMapperConfig config,
+            final BatchLoadCallback callback) {
         config = mergeConfig(config);
         boolean consistentReads = (config.getConsistentReads() == ConsistentReads.CONSISTENT);
 
         if (itemsToGet == null || itemsToGet.isEmpty()) {
-            return new HashMap<String, List<Object>>();
+            return;
         }
 
-        Map<String, KeysAndAttributes> requestItems = new HashMap<String, KeysAndAttributes>();
-        Map<String, Class<?>> classesByTableName = new HashMap<String, Class<?>>();
-        Map<String, List<Object>> resultSet = new HashMap<String, List<Object>>();
-        int count = 0;
+        Map<String, List<Map<String, AttributeValue>>> keys =
+                new LinkedHashMap<String, List<Map<String, AttributeValue>>>();
+        final Map<String, Class<?>> classesByTableName = new HashMap<String, Class<?>>();
 
-        ItemConverter converter = getConverter(config);
+        final ItemConverter converter = getConverter(config);
 
         for (Object keyObject : itemsToGet) {
             Class<?> clazz = keyObject.getClass();
@@ -1756,32 +1648,31 @@ public class DynamoDBMapper {
             String tableName = getTableName(clazz, keyObject, config);
             classesByTableName.put(tableName, clazz);
 
-            if (!requestItems.containsKey(tableName)) {
-
-                requestItems.put(
-                        tableName,
-                        new KeysAndAttributes().withConsistentRead(consistentReads).withKeys(
-                                new LinkedList<Map<String, AttributeValue>>()));
-            }
-
-            requestItems.get(tableName).getKeys().add(
-                    getKey(converter, keyObject));
-
-            // Reach the maximum number which can be handled in a single
-            // batchGet
-            if (++count == 100) {
-                processBatchGetRequest(classesByTableName, requestItems, resultSet, config,
-                        converter);
-                requestItems.clear();
-                count = 0;
+            List<Map<String, AttributeValue>> tableKeys = keys.get(tableName);
+            if (tableKeys == null) {
+                tableKeys = new ArrayList<Map<String, AttributeValue>>();
+                keys.put(tableName, tableKeys);
             }
-        }
-
-        if (count > 0) {
-            processBatchGetRequest(classesByTableName, requestItems, resultSet, config, converter);
-        }
-
-        return resultSet;
+            tableKeys.add(getKey(converter, keyObject));
+        }
+
+        final DynamoDBMapperConfig finalConfig = config;
+        Integer concurrency = config.getBatchLoadConcurrency();
+        new BatchLoadTask(db, concurrency == null ? 1 : concurrency, consistentReads,
+                config.getRequestMetricCollector(), new BatchLoadTask.ItemHandler() {
+                    @Override
+                    public void handle(String tableName,
+                            List<Map<String, AttributeValue>> items) {
+                        Class<?> clazz = classesByTableName.get(tableName);
+                        List<Object> objects = new ArrayList<Object>(items.size());
+                        for (Map<String, AttributeValue> item : items) {
+                            AttributeTransformer.Parameters<?> parameters =
+                                    toParameters(item, clazz, tableName, finalConfig);
+                            objects.add(privateMarshallIntoObject(converter, parameters));
+                        }
+                        callback.onLoaded(tableName, objects);
+                    }
+                }).execute(keys);
     }
 
     /**
@@ -1809,8 +1700,9 @@ public class DynamoDBMapper {
      *
      * @param itemsToGet Map from class to load to list of primary key
      *            attributes.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()}
-     *            and {@link DynamoDBMapperConfig#getConsistentReads()} are
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()} and
+     *            {@link DynamoDBMapperConfig#getBatchLoadConcurrency()} are
      *            considered.
      * @return A map of the loaded objects. Each key in the map is the name of a
      *         DynamoDB table. Each value in the map is a list of objects that
@@ -1835,67 +1727,6 @@ public class DynamoDBMapper {
         return batchLoad(keys, config);
     }
 
-    /**
-     * @param config never null
-     */
-    private void processBatchGetRequest(
-            final Map<String, Class<?>> classesByTableName,
-            final Map<String, KeysAndAttributes> requestItems,
-            final Map<String, List<Object>> resultSet,
-            final DynamoDBMapperConfig config,
-            final ItemConverter converter) {
-
-        BatchGetItemResult batchGetItemResult = null;
-        BatchGetItemRequest batchGetItemRequest = new BatchGetItemRequest()
-                .withRequestMetricCollector(config.getRequestMetricCollector());
-        batchGetItemRequest.setRequestItems(requestItems);
-
-        int retries = 0;
-
-        do {
-            if (batchGetItemResult != null) {
-                retries++;
-
-                pauseExponentially(retries);
-                if (retries > BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
-                    throw new AmazonClientException(
-                            "Batch Get Item request to server hasn't received any data. "
-                                    + "Please try again later.");
-                }
-
-                batchGetItemRequest.setRequestItems(
-                        batchGetItemResult.getUnprocessedKeys());
-            }
-
-            batchGetItemResult = db.batchGetItem(
-                    applyBatchOperationUserAgent(batchGetItemRequest));
-
-            Map<String, List<Map<String, AttributeValue>>> responses = batchGetItemResult
-                    .getResponses();
-            for (String tableName : responses.keySet()) {
-                List<Object> objects = null;
-                if (resultSet.get(tableName) != null) {
-                    objects = resultSet.get(tableName);
-                } else {
-                    objects = new LinkedList<Object>();
-                }
-
-                Class<?> clazz = classesByTableName.get(tableName);
-
-                for (Map<String, AttributeValue> item : responses.get(tableName)) {
-                    AttributeTransformer.Parameters<?> parameters =
-                            toParameters(item, clazz, tableName, config);
-                    objects.add(privateMarshallIntoObject(converter, parameters));
-                }
-
-                resultSet.put(tableName, objects);
-            }
-            // To see whether there are unprocessed keys.
-        } while (batchGetItemResult.getUnprocessedKeys() != null
-                && batchGetItemResult.getUnprocessedKeys().size() > 0);
-
-    }
-
     private final class ValueUpdate {
 
         private final Method method;
@@ -1918,7 +1749,7 @@ public class DynamoDBMapper {
         public void apply() {
             Method setter = reflector.getSetter(method);
             Object pojo = converter.unconvert(method, setter, newValue);
-            ReflectionUtils.safeInvoke(setter, target, pojo);
+            reflector.setValue(method, target, pojo);
         }
     }
 
@@ -2024,9 +1855,12 @@ public class DynamoDBMapper {
 
     /**
      * Scans through an Amazon DynamoDB table on logically partitioned segments
-     * in parallel. This method will create a thread pool of the specified size,
-     * and each thread will issue scan requests for its assigned segment,
-     * following the returned continuation token, until the end of its segment.
+     * in parallel. Unless the config supplies an executor, this method will
+     * create a thread pool for the scan, and each thread will issue scan
+     * requests for its assigned segment, following the returned continuation
+     * token, until the end of its segment. The config also controls how many
+     * pages the segments read ahead, and how much capacity per second the
+     * scan may consume.
      * Callers should be responsible for setting the appropriate number of total
      * segments. More scan segments would result in better performance but more
      * consumed capacity of the table. The results are returned in one
@@ -2065,7 +1899,12 @@ public class DynamoDBMapper {
         // segment number.
         List<ScanRequest> parallelScanRequests = createParallelScanRequestsFromExpression(clazz,
                 scanExpression, totalSegments, config);
-        ParallelScanTask parallelScanTask = new ParallelScanTask(this, db, parallelScanRequests);
+        Integer readAheadPages = config.getParallelScanReadAheadPages();
+        ParallelScanTask parallelScanTask = new ParallelScanTask(db, parallelScanRequests,
+                config.getParallelScanExecutor(),
+                readAheadPages == null ? 0 : readAheadPages,
+                config.getParallelScanMaxReadAheadPages(),
+                config.getParallelScanCapacityPerSecond());
 
         return new PaginatedParallelScanList<T>(this, clazz, db, parallelScanTask,
                 config.getPaginationLoadingStrategy(), config);
@@ -2904,23 +2743,18 @@ public class DynamoDBMapper {
         return schema.getConverter(params);
     }
 
-    private void pauseExponentially(int retries) {
-        if (retries == 0) {
-            return;
-        }
-
-        Random random = new Random();
-        long delay = 0;
-        long scaleFactor = 500 + random.nextInt(100);
-        delay = (long) (Math.pow(2, retries) * scaleFactor);
-        delay = Math.min(delay, MAX_BACKOFF_IN_MILLISECONDS);
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+    /**
+     * Returns a random delay between half and all of an exponentially growing
+     * limit, so that concurrent calls backing off don't all come back at once.
+     *
+     * @param random the source of the jitter
+     * @param baseMillis the limit of the first attempt is twice this
+     * @param attempts the number of attempts backing off in a row, from 1
+     */
+    static long jitteredBackoff(Random random, long baseMillis, int attempts) {
+        long limit = baseMillis << Math.min(attempts, 20);
+        limit = Math.min(limit, MAX_BACKOFF_IN_MILLISECONDS);
+        return limit / 2 + (long) (random.nextDouble() * (limit / 2));
     }
 
     /**
@@ -2986,6 +2820,22 @@ public class DynamoDBMapper {
         return request;
     }
 
+    /**
+     * Receives the objects loaded by
+     * {@link DynamoDBMapper#batchLoad(List, DynamoDBMapperConfig, BatchLoadCallback)}
+     * as the responses arrive.
+     */
+    public static interface BatchLoadCallback {
+
+        /**
+         * Called with the objects of one response loaded from a table.
+         *
+         * @param tableName the name of the table the objects were loaded from
+         * @param objects the objects loaded, of the class mapping the table
+         */
+        public void onLoaded(String tableName, List<Object> objects);
+    }
+
     /**
      * The return type of batchWrite, batchDelete and batchSave. It contains the
      * information about the unprocessed items and the exception causing the
@@ -17,6 +17,8 @@ package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import com.amazonaws.metrics.RequestMetricCollector;
 
+import java.util.concurrent.Executor;
+
 /**
  * Immutable configuration object for service call behavior. An instance of this
  * configuration is supplied to every {@link DynamoDBMapper} at construction; if
@@ -52,6 +54,14 @@ public class DynamoDBMapperConfig {
         private PaginationLoadingStrategy paginationLoadingStrategy;
         private RequestMetricCollector requestMetricCollector;
         private ConversionSchema conversionSchema;
+        private Integer batchWriteConcurrency;
+        private BatchWriteProgressListener batchWriteProgressListener;
+        private Integer batchLoadConcurrency;
+        private Integer prefetchPageCount;
+        private Executor parallelScanExecutor;
+        private Integer parallelScanReadAheadPages;
+        private Integer parallelScanMaxReadAheadPages;
+        private Double parallelScanCapacityPerSecond;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -65,6 +75,14 @@ public class DynamoDBMapperConfig {
             paginationLoadingStrategy = DEFAULT.getPaginationLoadingStrategy();
             requestMetricCollector = DEFAULT.getRequestMetricCollector();
             conversionSchema = DEFAULT.getConversionSchema();
+            batchWriteConcurrency = DEFAULT.getBatchWriteConcurrency();
+            batchWriteProgressListener = DEFAULT.getBatchWriteProgressListener();
+            batchLoadConcurrency = DEFAULT.getBatchLoadConcurrency();
+            prefetchPageCount = DEFAULT.getPrefetchPageCount();
+            parallelScanExecutor = DEFAULT.getParallelScanExecutor();
+            parallelScanReadAheadPages = DEFAULT.getParallelScanReadAheadPages();
+            parallelScanMaxReadAheadPages = DEFAULT.getParallelScanMaxReadAheadPages();
+            parallelScanCapacityPerSecond = DEFAULT.getParallelScanCapacityPerSecond();
         }
 
         /**
@@ -255,6 +273,239 @@ public class DynamoDBMapperConfig {
             return this;
         }
 
+        /**
+         * @return the currently-configured number of BatchWriteItem calls in
+         *         flight
+         */
+        public Integer getBatchWriteConcurrency() {
+            return batchWriteConcurrency;
+        }
+
+        /**
+         * @param value the new number of BatchWriteItem calls a batch write
+         *            keeps in flight, at least 1
+         */
+        public void setBatchWriteConcurrency(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "The batch write concurrency must be at least 1");
+            }
+            batchWriteConcurrency = value;
+        }
+
+        /**
+         * @param value the new number of BatchWriteItem calls a batch write
+         *            keeps in flight, at least 1
+         * @return this builder
+         */
+        public Builder withBatchWriteConcurrency(Integer value) {
+            setBatchWriteConcurrency(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured batch write progress listener
+         */
+        public BatchWriteProgressListener getBatchWriteProgressListener() {
+            return batchWriteProgressListener;
+        }
+
+        /**
+         * @param value the new batch write progress listener
+         */
+        public void setBatchWriteProgressListener(BatchWriteProgressListener value) {
+            batchWriteProgressListener = value;
+        }
+
+        /**
+         * @param value the new batch write progress listener
+         * @return this builder
+         */
+        public Builder withBatchWriteProgressListener(BatchWriteProgressListener value) {
+            setBatchWriteProgressListener(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured number of BatchGetItem calls in
+         *         flight
+         */
+        public Integer getBatchLoadConcurrency() {
+            return batchLoadConcurrency;
+        }
+
+        /**
+         * @param value the new number of BatchGetItem calls a batch load keeps
+         *            in flight, at least 1
+         */
+        public void setBatchLoadConcurrency(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "The batch load concurrency must be at least 1");
+            }
+            batchLoadConcurrency = value;
+        }
+
+        /**
+         * @param value the new number of BatchGetItem calls a batch load keeps
+         *            in flight, at least 1
+         * @return this builder
+         */
+        public Builder withBatchLoadConcurrency(Integer value) {
+            setBatchLoadConcurrency(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured number of pages fetched ahead in
+         *         ITERATION_PREFETCH mode
+         */
+        public Integer getPrefetchPageCount() {
+            return prefetchPageCount;
+        }
+
+        /**
+         * @param value the new number of pages a paginated list fetches ahead
+         *            of the iterator in ITERATION_PREFETCH mode, at least 1
+         */
+        public void setPrefetchPageCount(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "The prefetch page count must be at least 1");
+            }
+            prefetchPageCount = value;
+        }
+
+        /**
+         * @param value the new number of pages a paginated list fetches ahead
+         *            of the iterator in ITERATION_PREFETCH mode, at least 1
+         * @return this builder
+         */
+        public Builder withPrefetchPageCount(Integer value) {
+            setPrefetchPageCount(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured executor running the requests of
+         *         parallel scans
+         */
+        public Executor getParallelScanExecutor() {
+            return parallelScanExecutor;
+        }
+
+        /**
+         * @param value the new executor running the requests of parallel
+         *            scans, which is shared by the scans and never shut down
+         *            by the mapper, or null for a thread pool per scan
+         */
+        public void setParallelScanExecutor(Executor value) {
+            parallelScanExecutor = value;
+        }
+
+        /**
+         * @param value the new executor running the requests of parallel
+         *            scans, which is shared by the scans and never shut down
+         *            by the mapper, or null for a thread pool per scan
+         * @return this builder
+         */
+        public Builder withParallelScanExecutor(Executor value) {
+            setParallelScanExecutor(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured number of pages each segment of a
+         *         parallel scan fetches ahead
+         */
+        public Integer getParallelScanReadAheadPages() {
+            return parallelScanReadAheadPages;
+        }
+
+        /**
+         * @param value the new number of pages each segment of a parallel scan
+         *            fetches ahead of the results being read, at least 0
+         */
+        public void setParallelScanReadAheadPages(Integer value) {
+            if (value != null && value < 0) {
+                throw new IllegalArgumentException(
+                        "The parallel scan read ahead pages must not be negative");
+            }
+            parallelScanReadAheadPages = value;
+        }
+
+        /**
+         * @param value the new number of pages each segment of a parallel scan
+         *            fetches ahead of the results being read, at least 0
+         * @return this builder
+         */
+        public Builder withParallelScanReadAheadPages(Integer value) {
+            setParallelScanReadAheadPages(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured limit on the pages a parallel scan
+         *         fetches ahead across all its segments
+         */
+        public Integer getParallelScanMaxReadAheadPages() {
+            return parallelScanMaxReadAheadPages;
+        }
+
+        /**
+         * @param value the new limit on the pages a parallel scan fetches ahead
+         *            across all its segments, at least 0, or null for no limit
+         */
+        public void setParallelScanMaxReadAheadPages(Integer value) {
+            if (value != null && value < 0) {
+                throw new IllegalArgumentException(
+                        "The parallel scan max read ahead pages must not be negative");
+            }
+            parallelScanMaxReadAheadPages = value;
+        }
+
+        /**
+         * @param value the new limit on the pages a parallel scan fetches ahead
+         *            across all its segments, at least 0, or null for no limit
+         * @return this builder
+         */
+        public Builder withParallelScanMaxReadAheadPages(Integer value) {
+            setParallelScanMaxReadAheadPages(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured capacity units per second a
+         *         parallel scan aims to consume
+         */
+        public Double getParallelScanCapacityPerSecond() {
+            return parallelScanCapacityPerSecond;
+        }
+
+        /**
+         * @param value the new read capacity units per second a parallel scan
+         *            aims to consume across all its segments, or null for no
+         *            limit
+         */
+        public void setParallelScanCapacityPerSecond(Double value) {
+            if (value != null && !(value > 0)) {
+                throw new IllegalArgumentException(
+                        "The parallel scan capacity per second must be positive");
+            }
+            parallelScanCapacityPerSecond = value;
+        }
+
+        /**
+         * @param value the new read capacity units per second a parallel scan
+         *            aims to consume across all its segments, or null for no
+         *            limit
+         * @return this builder
+         */
+        public Builder withParallelScanCapacityPerSecond(Double value) {
+            setParallelScanCapacityPerSecond(value);
+            return this;
+        }
+
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
          *
@@ -269,7 +520,15 @@ public class DynamoDBMapperConfig {
                     objectTableNameResolver,
                     paginationLoadingStrategy,
                     requestMetricCollector,
-                    conversionSchema);
+                    conversionSchema,
+                    batchWriteConcurrency,
+                    batchWriteProgressListener,
+                    batchLoadConcurrency,
+                    prefetchPageCount,
+                    parallelScanExecutor,
+                    parallelScanReadAheadPages,
+                    parallelScanMaxReadAheadPages,
+                    parallelScanCapacityPerSecond);
         }
     }
 
@@ -360,7 +619,18 @@ public class DynamoDBMapperConfig {
          * Paginated list will eagerly load all the paginated results from
          * DynamoDB as soon as the list is initialized.
          */
-        EAGER_LOADING
+        EAGER_LOADING,
+
+        /**
+         * Like ITERATION_ONLY, only supports reading the paginated list once
+         * through its iterator, and keeps a bounded window of pages in memory.
+         * In addition, the next pages are fetched on a background thread while
+         * the caller processes the current one, so iterating spends less time
+         * waiting on DynamoDB. At most
+         * {@link DynamoDBMapperConfig#getPrefetchPageCount()} pages are held
+         * ahead of the iterator.
+         */
+        ITERATION_PREFETCH
     }
 
     /**
@@ -473,6 +743,106 @@ public class DynamoDBMapperConfig {
 
     }
 
+    /**
+     * Receives the progress of {@link DynamoDBMapper#batchWrite(java.util.List,
+     * java.util.List, DynamoDBMapperConfig)} calls. It's called on the thread
+     * that called the mapper, once after every BatchWriteItem response.
+     */
+    public static interface BatchWriteProgressListener {
+
+        /**
+         * Called after every BatchWriteItem response.
+         *
+         * @param progress the progress of the whole batch write so far
+         */
+        public void progressChanged(BatchWriteProgress progress);
+    }
+
+    /**
+     * A snapshot of the progress of a batch write.
+     */
+    public static final class BatchWriteProgress {
+
+        private final long totalItems;
+        private final long itemsWritten;
+        private final long itemsFailed;
+        private final long requestsSent;
+        private final long itemsRetried;
+        private final long requestsThrottled;
+        private final long elapsedMillis;
+
+        BatchWriteProgress(long totalItems, long itemsWritten, long itemsFailed,
+                long requestsSent, long itemsRetried, long requestsThrottled,
+                long elapsedMillis) {
+            this.totalItems = totalItems;
+            this.itemsWritten = itemsWritten;
+            this.itemsFailed = itemsFailed;
+            this.requestsSent = requestsSent;
+            this.itemsRetried = itemsRetried;
+            this.requestsThrottled = requestsThrottled;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Returns the number of items to save and delete.
+         */
+        public long getTotalItems() {
+            return totalItems;
+        }
+
+        /**
+         * Returns the number of items written so far.
+         */
+        public long getItemsWritten() {
+            return itemsWritten;
+        }
+
+        /**
+         * Returns the number of items given up on, returned as failed
+         * batches.
+         */
+        public long getItemsFailed() {
+            return itemsFailed;
+        }
+
+        /**
+         * Returns the number of BatchWriteItem calls made so far.
+         */
+        public long getRequestsSent() {
+            return requestsSent;
+        }
+
+        /**
+         * Returns the number of unprocessed or throttled items that were sent
+         * again.
+         */
+        public long getItemsRetried() {
+            return itemsRetried;
+        }
+
+        /**
+         * Returns the number of BatchWriteItem calls that failed with a
+         * throttling error.
+         */
+        public long getRequestsThrottled() {
+            return requestsThrottled;
+        }
+
+        /**
+         * Returns the time since the batch write started, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns the number of items written per second so far.
+         */
+        public double getItemsPerSecond() {
+            return elapsedMillis == 0 ? 0 : itemsWritten * 1000.0 / elapsedMillis;
+        }
+    }
+
     /**
      * Default implementation of {@link TableNameResolver} that mimics the
      * behavior of DynamoDBMapper before the addition of
@@ -511,6 +881,14 @@ public class DynamoDBMapperConfig {
     private final PaginationLoadingStrategy paginationLoadingStrategy;
     private final RequestMetricCollector requestMetricCollector;
     private final ConversionSchema conversionSchema;
+    private final Integer batchWriteConcurrency;
+    private final BatchWriteProgressListener batchWriteProgressListener;
+    private final Integer batchLoadConcurrency;
+    private final Integer prefetchPageCount;
+    private final Executor parallelScanExecutor;
+    private final Integer parallelScanReadAheadPages;
+    private final Integer parallelScanMaxReadAheadPages;
+    private final Double parallelScanCapacityPerSecond;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -578,7 +956,15 @@ public class DynamoDBMapperConfig {
                 null,
                 paginationLoadingStrategy,
                 requestMetricCollector,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null);
     }
 
     private DynamoDBMapperConfig(
@@ -589,7 +975,15 @@ public class DynamoDBMapperConfig {
             ObjectTableNameResolver objectTableNameResolver,
             PaginationLoadingStrategy paginationLoadingStrategy,
             RequestMetricCollector requestMetricCollector,
-            ConversionSchema conversionSchema) {
+            ConversionSchema conversionSchema,
+            Integer batchWriteConcurrency,
+            BatchWriteProgressListener batchWriteProgressListener,
+            Integer batchLoadConcurrency,
+            Integer prefetchPageCount,
+            Executor parallelScanExecutor,
+            Integer parallelScanReadAheadPages,
+            Integer parallelScanMaxReadAheadPages,
+            Double parallelScanCapacityPerSecond) {
 
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
@@ -599,6 +993,14 @@ public class DynamoDBMapperConfig {
         this.paginationLoadingStrategy = paginationLoadingStrategy;
         this.requestMetricCollector = requestMetricCollector;
         this.conversionSchema = conversionSchema;
+        this.batchWriteConcurrency = batchWriteConcurrency;
+        this.batchWriteProgressListener = batchWriteProgressListener;
+        this.batchLoadConcurrency = batchLoadConcurrency;
+        this.prefetchPageCount = prefetchPageCount;
+        this.parallelScanExecutor = parallelScanExecutor;
+        this.parallelScanReadAheadPages = parallelScanReadAheadPages;
+        this.parallelScanMaxReadAheadPages = parallelScanMaxReadAheadPages;
+        this.parallelScanCapacityPerSecond = parallelScanCapacityPerSecond;
     }
 
     /**
@@ -606,7 +1008,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(SaveBehavior saveBehavior) {
         this(saveBehavior, null, null, null, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -615,7 +1018,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ConsistentReads consistentReads) {
         this(null, consistentReads, null, null, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -623,7 +1027,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameOverride tableNameOverride) {
         this(null, null, tableNameOverride, null, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -632,7 +1037,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver) {
         this(null, null, null, tableNameResolver, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -641,7 +1047,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, null, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -651,7 +1058,8 @@ public class DynamoDBMapperConfig {
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver,
             ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, tableNameResolver, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -662,14 +1070,16 @@ public class DynamoDBMapperConfig {
             PaginationLoadingStrategy paginationLoadingStrategy) {
 
         this(null, null, null, null, null, paginationLoadingStrategy, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
      * Constructs a new configuration object with the conversion schema given.
      */
     public DynamoDBMapperConfig(ConversionSchema conversionSchema) {
-        this(null, null, null, null, null, null, null, conversionSchema);
+        this(null, null, null, null, null, null, null, conversionSchema, null, null, null, null,
+                null, null, null, null);
     }
 
     /**
@@ -699,6 +1109,14 @@ public class DynamoDBMapperConfig {
                     defaults.getPaginationLoadingStrategy();
             this.requestMetricCollector = defaults.getRequestMetricCollector();
             this.conversionSchema = defaults.getConversionSchema();
+            this.batchWriteConcurrency = defaults.getBatchWriteConcurrency();
+            this.batchWriteProgressListener = defaults.getBatchWriteProgressListener();
+            this.batchLoadConcurrency = defaults.getBatchLoadConcurrency();
+            this.prefetchPageCount = defaults.getPrefetchPageCount();
+            this.parallelScanExecutor = defaults.getParallelScanExecutor();
+            this.parallelScanReadAheadPages = defaults.getParallelScanReadAheadPages();
+            this.parallelScanMaxReadAheadPages = defaults.getParallelScanMaxReadAheadPages();
+            this.parallelScanCapacityPerSecond = defaults.getParallelScanCapacityPerSecond();
 
         } else {
 
@@ -736,6 +1154,42 @@ public class DynamoDBMapperConfig {
                     ? defaults.getConversionSchema()
                     : overrides.getConversionSchema();
 
+            this.batchWriteConcurrency = (overrides.getBatchWriteConcurrency() == null)
+                    ? defaults.getBatchWriteConcurrency()
+                    : overrides.getBatchWriteConcurrency();
+
+            this.batchWriteProgressListener =
+                    (overrides.getBatchWriteProgressListener() == null)
+                            ? defaults.getBatchWriteProgressListener()
+                            : overrides.getBatchWriteProgressListener();
+
+            this.batchLoadConcurrency = (overrides.getBatchLoadConcurrency() == null)
+                    ? defaults.getBatchLoadConcurrency()
+                    : overrides.getBatchLoadConcurrency();
+
+            this.prefetchPageCount = (overrides.getPrefetchPageCount() == null)
+                    ? defaults.getPrefetchPageCount()
+                    : overrides.getPrefetchPageCount();
+
+            this.parallelScanExecutor = (overrides.getParallelScanExecutor() == null)
+                    ? defaults.getParallelScanExecutor()
+                    : overrides.getParallelScanExecutor();
+
+            this.parallelScanReadAheadPages =
+                    (overrides.getParallelScanReadAheadPages() == null)
+                            ? defaults.getParallelScanReadAheadPages()
+                            : overrides.getParallelScanReadAheadPages();
+
+            this.parallelScanMaxReadAheadPages =
+                    (overrides.getParallelScanMaxReadAheadPages() == null)
+                            ? defaults.getParallelScanMaxReadAheadPages()
+                            : overrides.getParallelScanMaxReadAheadPages();
+
+            this.parallelScanCapacityPerSecond =
+                    (overrides.getParallelScanCapacityPerSecond() == null)
+                            ? defaults.getParallelScanCapacityPerSecond()
+                            : overrides.getParallelScanCapacityPerSecond();
+
         }
     }
 
@@ -812,6 +1266,69 @@ public class DynamoDBMapperConfig {
         return conversionSchema;
     }
 
+    /**
+     * Returns the number of BatchWriteItem calls a batch write keeps in
+     * flight.
+     */
+    public Integer getBatchWriteConcurrency() {
+        return batchWriteConcurrency;
+    }
+
+    /**
+     * Returns the listener receiving the progress of batch writes, or null if
+     * not specified.
+     */
+    public BatchWriteProgressListener getBatchWriteProgressListener() {
+        return batchWriteProgressListener;
+    }
+
+    /**
+     * Returns the number of BatchGetItem calls a batch load keeps in flight.
+     */
+    public Integer getBatchLoadConcurrency() {
+        return batchLoadConcurrency;
+    }
+
+    /**
+     * Returns the number of pages a paginated list fetches ahead of its
+     * iterator in ITERATION_PREFETCH mode.
+     */
+    public Integer getPrefetchPageCount() {
+        return prefetchPageCount;
+    }
+
+    /**
+     * Returns the executor running the requests of parallel scans, or null if
+     * each scan uses a thread pool of its own.
+     */
+    public Executor getParallelScanExecutor() {
+        return parallelScanExecutor;
+    }
+
+    /**
+     * Returns the number of pages each segment of a parallel scan fetches
+     * ahead of the results being read.
+     */
+    public Integer getParallelScanReadAheadPages() {
+        return parallelScanReadAheadPages;
+    }
+
+    /**
+     * Returns the limit on the pages a parallel scan fetches ahead across all
+     * its segments, or null if not limited.
+     */
+    public Integer getParallelScanMaxReadAheadPages() {
+        return parallelScanMaxReadAheadPages;
+    }
+
+    /**
+     * Returns the read capacity units per second a parallel scan aims to
+     * consume, or null if not limited.
+     */
+    public Double getParallelScanCapacityPerSecond() {
+        return parallelScanCapacityPerSecond;
+    }
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
      * consistent reads, with no table name override and lazy-loading strategy.
@@ -824,5 +1341,13 @@ public class DynamoDBMapperConfig {
             null, // ObjectTableNameResolver
             PaginationLoadingStrategy.LAZY_LOADING,
             null, // RequestMetricCollector
-            ConversionSchemas.DEFAULT);
+            ConversionSchemas.DEFAULT,
+            1, // BatchWriteConcurrency
+            null, // BatchWriteProgressListener
+            1, // BatchLoadConcurrency
+            2, // PrefetchPageCount
+            null, // ParallelScanExecutor
+            0, // ParallelScanReadAheadPages
+            null, // ParallelScanMaxReadAheadPages
+            null); // ParallelScanCapacityPerSecond
 }
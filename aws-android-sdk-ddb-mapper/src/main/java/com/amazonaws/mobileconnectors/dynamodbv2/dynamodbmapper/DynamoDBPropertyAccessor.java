@@ -0,0 +1,36 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+/**
+ * Reads and writes one mapped property of an object without going through
+ * reflection. Accessors are handed to the {@link DynamoDBMapper} by a
+ * {@link DynamoDBAccessorSchema}.
+ *
+ * @param <T> the class declaring the property
+ */
+public interface DynamoDBPropertyAccessor<T> {
+
+    /**
+     * Returns the value of the property, as its getter would.
+     */
+    public Object get(T object);
+
+    /**
+     * Sets the property to the value given, as its setter would.
+     */
+    public void set(T object, Object value);
+}
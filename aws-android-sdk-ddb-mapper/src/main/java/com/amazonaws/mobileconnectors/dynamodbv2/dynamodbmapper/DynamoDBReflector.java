@@ -16,14 +16,13 @@
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Reflection assistant for {@link DynamoDBMapper}
@@ -31,39 +30,113 @@ import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 class DynamoDBReflector {
 
     /*
-     * Several caches for performance. Collectively, they can make this class
-     * over twice as fast.
+     * Everything the mapper needs to know about a class is worked out once
+     * and kept in an immutable model, so that reading it back on the hot
+     * marshalling paths never takes a lock. Racing threads may both build a
+     * model, only the first one published is kept.
      */
-    private final Map<Class<?>, Collection<Method>> getterCache = new HashMap<Class<?>, Collection<Method>>();
-    private final Map<Class<?>, Method> primaryHashKeyGetterCache = new HashMap<Class<?>, Method>();
-    private final Map<Class<?>, Method> primaryRangeKeyGetterCache = new HashMap<Class<?>, Method>();
+    private final ConcurrentMap<Class<?>, ClassModel> classModels =
+            new ConcurrentHashMap<Class<?>, ClassModel>();
 
     /*
-     * All caches keyed by a Method use the getter for a particular mapped
-     * property
+     * The properties of every mapped getter, keyed by the getter. Filled in
+     * as class models are built, and on demand for getters that aren't part
+     * of one.
      */
-    private final Map<Method, Method> setterCache = new HashMap<Method, Method>();
+    private final ConcurrentMap<Method, PropertyModel> propertyModels =
+            new ConcurrentHashMap<Method, PropertyModel>();
 
-    private final Map<Method, String> attributeNameCache = new HashMap<Method, String>();
+    /*
+     * The accessor schemas of the classes declaring mapped getters, or
+     * NO_SCHEMA for classes without one.
+     */
+    private final ConcurrentMap<Class<?>, DynamoDBAccessorSchema<Object>> accessorSchemas =
+            new ConcurrentHashMap<Class<?>, DynamoDBAccessorSchema<Object>>();
 
-    private final Map<Method, Boolean> versionAttributeGetterCache = new HashMap<Method, Boolean>();
-    private final Map<Method, Boolean> autoGeneratedKeyGetterCache = new HashMap<Method, Boolean>();
+    /** The suffix naming the accessor schema of a class */
+    static final String SCHEMA_SUFFIX = "DynamoDBSchema";
 
-    private final ReentrantReadWriteLock readWriteLockAttrName = new ReentrantReadWriteLock();
-    private final ReadLock readLockAttrName = readWriteLockAttrName.readLock();
-    private final WriteLock writeLockAttrName = readWriteLockAttrName.writeLock();
+    private static final DynamoDBAccessorSchema<Object> NO_SCHEMA =
+            new DynamoDBAccessorSchema<Object>() {
+                @Override
+                public DynamoDBPropertyAccessor<Object> getAccessor(String getterName) {
+                    return null;
+                }
+            };
 
     /**
      * Returns the set of getter methods which are relevant when marshalling or
      * unmarshalling an object.
      */
     Collection<Method> getRelevantGetters(Class<?> clazz) {
-        synchronized (getterCache) {
-            if (!getterCache.containsKey(clazz)) {
-                List<Method> relevantGetters = findRelevantGetters(clazz);
-                getterCache.put(clazz, relevantGetters);
+        return getClassModel(clazz).relevantGetters;
+    }
+
+    private ClassModel getClassModel(Class<?> clazz) {
+        ClassModel model = classModels.get(clazz);
+        if (model == null) {
+            model = new ClassModel(findRelevantGetters(clazz));
+            ClassModel existing = classModels.putIfAbsent(clazz, model);
+            if (existing != null) {
+                model = existing;
+            }
+        }
+        return model;
+    }
+
+    private PropertyModel getPropertyModel(Method getter) {
+        PropertyModel model = propertyModels.get(getter);
+        if (model == null) {
+            model = new PropertyModel(getter,
+                    getAccessorSchema(getter.getDeclaringClass()));
+            PropertyModel existing = propertyModels.putIfAbsent(getter, model);
+            if (existing != null) {
+                model = existing;
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns the accessor schema of the class given, or {@link #NO_SCHEMA}
+     * if it doesn't have one.
+     */
+    private DynamoDBAccessorSchema<Object> getAccessorSchema(Class<?> clazz) {
+        DynamoDBAccessorSchema<Object> schema = accessorSchemas.get(clazz);
+        if (schema == null) {
+            schema = findAccessorSchema(clazz);
+            DynamoDBAccessorSchema<Object> existing = accessorSchemas.putIfAbsent(clazz, schema);
+            if (existing != null) {
+                schema = existing;
             }
-            return getterCache.get(clazz);
+        }
+        return schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DynamoDBAccessorSchema<Object> findAccessorSchema(Class<?> clazz) {
+        Class<?> schemaClass;
+        try {
+            schemaClass = Class.forName(clazz.getName() + SCHEMA_SUFFIX, true,
+                    clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return NO_SCHEMA;
+        } catch (LinkageError e) {
+            return NO_SCHEMA;
+        }
+
+        if (!DynamoDBAccessorSchema.class.isAssignableFrom(schemaClass)) {
+            throw new DynamoDBMappingException("Class " + schemaClass
+                    + " must implement " + DynamoDBAccessorSchema.class);
+        }
+        try {
+            return (DynamoDBAccessorSchema<Object>) schemaClass.newInstance();
+        } catch (InstantiationException e) {
+            throw new DynamoDBMappingException(
+                    "Couldn't instantiate accessor schema " + schemaClass, e);
+        } catch (IllegalAccessException e) {
+            throw new DynamoDBMappingException(
+                    "Couldn't instantiate accessor schema " + schemaClass, e);
         }
     }
 
@@ -100,38 +173,15 @@ class DynamoDBReflector {
      * given, or null if the class doesn't have one.
      */
     <T> Method getPrimaryRangeKeyGetter(Class<T> clazz) {
-        synchronized (primaryRangeKeyGetterCache) {
-            if (!primaryRangeKeyGetterCache.containsKey(clazz)) {
-                Method rangeKeyMethod = null;
-                for (Method method : getRelevantGetters(clazz)) {
-                    if (method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method,
-                                    DynamoDBRangeKey.class)) {
-                        rangeKeyMethod = method;
-                        break;
-                    }
-                }
-                primaryRangeKeyGetterCache.put(clazz, rangeKeyMethod);
-            }
-            return primaryRangeKeyGetterCache.get(clazz);
-        }
+        return getClassModel(clazz).rangeKeyGetter;
     }
 
     /**
      * Returns all annotated {@link DynamoDBHashKey} and
-     * {@link DynamoDBRangeKey} getters for the class given, throwing an
-     * exception if there isn't one. TODO: caching
+     * {@link DynamoDBRangeKey} getters for the class given.
      */
     <T> Collection<Method> getPrimaryKeyGetters(Class<T> clazz) {
-        List<Method> keyGetters = new LinkedList<Method>();
-        for (Method getter : getRelevantGetters(clazz)) {
-            if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class)
-                    || ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)) {
-                keyGetters.add(getter);
-            }
-        }
-
-        return keyGetters;
+        return getClassModel(clazz).keyGetters;
     }
 
     /**
@@ -139,21 +189,7 @@ class DynamoDBReflector {
      * throwing an exception if there isn't one.
      */
     <T> Method getPrimaryHashKeyGetter(Class<T> clazz) {
-        Method hashKeyMethod;
-        synchronized (primaryHashKeyGetterCache) {
-            if (!primaryHashKeyGetterCache.containsKey(clazz)) {
-                for (Method method : getRelevantGetters(clazz)) {
-                    if (method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method,
-                                    DynamoDBHashKey.class)) {
-                        primaryHashKeyGetterCache.put(clazz, method);
-                        break;
-                    }
-                }
-            }
-            hashKeyMethod = primaryHashKeyGetterCache.get(clazz);
-        }
-
+        Method hashKeyMethod = getClassModel(clazz).hashKeyGetter;
         if (hashKeyMethod == null) {
             throw new DynamoDBMappingException(
                     "Public, zero-parameter hash key property must be annotated with "
@@ -178,99 +214,92 @@ class DynamoDBReflector {
      * Returns the attribute name corresponding to the given getter method.
      */
     String getAttributeName(Method getter) {
+        return getPropertyModel(getter).attributeName;
+    }
+
+    private static String findAttributeName(Method getter) {
         String attributeName;
-        readLockAttrName.lock();
-        try {
-            attributeName = attributeNameCache.get(getter);
-        } finally {
-            readLockAttrName.unlock();
-        }
-        if (attributeName != null)
-            return attributeName;
         DynamoDBHashKey hashKeyAnnotation = ReflectionUtils.getAnnotationFromGetterOrField(getter,
                 DynamoDBHashKey.class);
         if (hashKeyAnnotation != null) {
             attributeName = hashKeyAnnotation.attributeName();
             if (attributeName != null && attributeName.length() > 0)
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBIndexHashKey indexHashKey = ReflectionUtils.getAnnotationFromGetterOrField(getter,
                 DynamoDBIndexHashKey.class);
         if (indexHashKey != null) {
             attributeName = indexHashKey.attributeName();
             if (attributeName != null && attributeName.length() > 0)
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBRangeKey rangeKey = ReflectionUtils.getAnnotationFromGetterOrField(getter,
                 DynamoDBRangeKey.class);
         if (rangeKey != null) {
             attributeName = rangeKey.attributeName();
             if (attributeName != null && attributeName.length() > 0)
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBIndexRangeKey indexRangeKey = ReflectionUtils.getAnnotationFromGetterOrField(
                 getter, DynamoDBIndexRangeKey.class);
         if (indexRangeKey != null) {
             attributeName = indexRangeKey.attributeName();
             if (attributeName != null && attributeName.length() > 0)
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBAttribute attribute = ReflectionUtils.getAnnotationFromGetterOrField(getter,
                 DynamoDBAttribute.class);
         if (attribute != null) {
             attributeName = attribute.attributeName();
             if (attributeName != null && attributeName.length() > 0)
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         DynamoDBVersionAttribute version = ReflectionUtils.getAnnotationFromGetterOrField(getter,
                 DynamoDBVersionAttribute.class);
         if (version != null) {
             attributeName = version.attributeName();
             if (attributeName != null && attributeName.length() > 0)
-                return cacheAttributeName(getter, attributeName);
+                return attributeName;
         }
         // Default to the camel-cased field name of the getter method, inferred
         // according to the Java naming convention.
-        attributeName = ReflectionUtils.getFieldNameByGetter(getter, true);
-        return cacheAttributeName(getter, attributeName);
+        return ReflectionUtils.getFieldNameByGetter(getter, true);
     }
 
-    private String cacheAttributeName(Method getter, String attributeName) {
-        writeLockAttrName.lock();
-        try {
-            attributeNameCache.put(getter, attributeName);
-        } finally {
-            writeLockAttrName.unlock();
+    /**
+     * Returns the setter corresponding to the getter given, throwing an
+     * exception if no such setter exists.
+     */
+    Method getSetter(Method getter) {
+        PropertyModel model = getPropertyModel(getter);
+        if (model.setter == null) {
+            throw missingSetter(model.setterError);
         }
-        return attributeName;
+        return model.setter;
     }
 
     /**
-     * Returns the setter corresponding to the getter given, or null if no such
-     * setter exists.
+     * Returns a fresh copy of the exception recorded for a missing setter, so
+     * that its stack trace points at the caller.
      */
-    Method getSetter(Method getter) {
-        synchronized (setterCache) {
-            if (!setterCache.containsKey(getter)) {
-                String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
-                String setterName = "set" + fieldName;
-                Method setter = null;
-                try {
-                    setter = getter.getDeclaringClass().getMethod(setterName,
-                            getter.getReturnType());
-                } catch (NoSuchMethodException e) {
-                    throw new DynamoDBMappingException(
-                            "Expected a public, one-argument method called " + setterName
-                                    + " on class " + getter.getDeclaringClass(), e);
-                } catch (SecurityException e) {
-                    throw new DynamoDBMappingException(
-                            "No access to public, one-argument method called " + setterName
-                                    + " on class " + getter.getDeclaringClass(), e);
-                }
-                setterCache.put(getter, setter);
-            }
-            return setterCache.get(getter);
-        }
+    private static DynamoDBMappingException missingSetter(DynamoDBMappingException error) {
+        return new DynamoDBMappingException(error.getMessage(), error.getCause());
+    }
+
+    /**
+     * Returns the value of the property behind the getter given, through the
+     * accessor schema of its class if there is one.
+     */
+    Object getValue(Method getter, Object object) {
+        return getPropertyModel(getter).accessor.get(object);
+    }
+
+    /**
+     * Sets the property behind the getter given, through the accessor schema
+     * of its class if there is one.
+     */
+    void setValue(Method getter, Object object, Object value) {
+        getPropertyModel(getter).accessor.set(object, value);
     }
 
     /**
@@ -278,36 +307,14 @@ class DynamoDBReflector {
      * version attribute.
      */
     boolean isVersionAttributeGetter(Method getter) {
-        synchronized (versionAttributeGetterCache) {
-            if (!versionAttributeGetterCache.containsKey(getter)) {
-                versionAttributeGetterCache.put(
-                        getter,
-                        getter.getName().startsWith("get")
-                                && getter.getParameterTypes().length == 0
-                                && ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                        DynamoDBVersionAttribute.class));
-            }
-            return versionAttributeGetterCache.get(getter);
-        }
+        return getPropertyModel(getter).isVersionAttribute;
     }
 
     /**
      * Returns whether the method given is an assignable key getter.
      */
     boolean isAssignableKey(Method getter) {
-        synchronized (autoGeneratedKeyGetterCache) {
-            if (!autoGeneratedKeyGetterCache.containsKey(getter)) {
-                autoGeneratedKeyGetterCache.put(
-                        getter,
-                        ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                DynamoDBAutoGeneratedKey.class)
-                                && (ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                        DynamoDBHashKey.class) ||
-                                ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                        DynamoDBRangeKey.class)));
-            }
-            return autoGeneratedKeyGetterCache.get(getter);
-        }
+        return getPropertyModel(getter).isAssignableKey;
     }
 
     /**
@@ -322,11 +329,11 @@ class DynamoDBReflector {
      * one.
      */
     String getPrimaryRangeKeyName(Class<?> clazz) {
-        Method primaryRangeKeyGetter = getPrimaryHashKeyGetter(clazz);
+        Method primaryRangeKeyGetter = getPrimaryRangeKeyGetter(clazz);
         return primaryRangeKeyGetter == null ?
                 null
                 :
-                getAttributeName(getPrimaryRangeKeyGetter(clazz));
+                getAttributeName(primaryRangeKeyGetter);
     }
 
     /**
@@ -336,4 +343,140 @@ class DynamoDBReflector {
     boolean hasPrimaryRangeKey(Class<?> clazz) {
         return getPrimaryRangeKeyGetter(clazz) != null;
     }
+
+    /**
+     * The mapping metadata of a class. Immutable once built.
+     */
+    private final class ClassModel {
+        private final Collection<Method> relevantGetters;
+        private final Collection<Method> keyGetters;
+        private final Method hashKeyGetter;
+        private final Method rangeKeyGetter;
+
+        private ClassModel(List<Method> getters) {
+            List<Method> keys = new ArrayList<Method>();
+            Method hashKey = null;
+            Method rangeKey = null;
+            for (Method getter : getters) {
+                // Work out the properties of every getter up front.
+                getPropertyModel(getter);
+
+                boolean isHashKey = ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                        DynamoDBHashKey.class);
+                boolean isRangeKey = ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                        DynamoDBRangeKey.class);
+                if (isHashKey || isRangeKey) {
+                    keys.add(getter);
+                }
+                if (isHashKey && hashKey == null) {
+                    hashKey = getter;
+                }
+                if (isRangeKey && rangeKey == null) {
+                    rangeKey = getter;
+                }
+            }
+            relevantGetters = Collections.unmodifiableList(new ArrayList<Method>(getters));
+            keyGetters = Collections.unmodifiableList(keys);
+            hashKeyGetter = hashKey;
+            rangeKeyGetter = rangeKey;
+        }
+    }
+
+    /**
+     * The mapping metadata of the property behind a getter. Immutable once
+     * built.
+     */
+    private static final class PropertyModel {
+        private final String attributeName;
+        private final Method setter;
+        /** Why there is no setter, rethrown when one is asked for */
+        private final DynamoDBMappingException setterError;
+        private final boolean isVersionAttribute;
+        private final boolean isAssignableKey;
+        private final DynamoDBPropertyAccessor<Object> accessor;
+
+        private PropertyModel(Method getter, DynamoDBAccessorSchema<Object> schema) {
+            attributeName = findAttributeName(getter);
+
+            String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
+            String setterName = "set" + fieldName;
+            Method foundSetter = null;
+            DynamoDBMappingException error = null;
+            try {
+                foundSetter = getter.getDeclaringClass().getMethod(setterName,
+                        getter.getReturnType());
+            } catch (NoSuchMethodException e) {
+                error = new DynamoDBMappingException(
+                        "Expected a public, one-argument method called " + setterName
+                                + " on class " + getter.getDeclaringClass(), e);
+            } catch (SecurityException e) {
+                error = new DynamoDBMappingException(
+                        "No access to public, one-argument method called " + setterName
+                                + " on class " + getter.getDeclaringClass(), e);
+            }
+            setter = foundSetter;
+            setterError = error;
+
+            isVersionAttribute = getter.getName().startsWith("get")
+                    && getter.getParameterTypes().length == 0
+                    && ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                            DynamoDBVersionAttribute.class);
+            isAssignableKey = ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                    DynamoDBAutoGeneratedKey.class)
+                    && (ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                            DynamoDBHashKey.class) ||
+                    ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                            DynamoDBRangeKey.class));
+
+            DynamoDBPropertyAccessor<Object> schemaAccessor =
+                    schema.getAccessor(getter.getName());
+            accessor = schemaAccessor != null
+                    ? schemaAccessor
+                    : new ReflectionAccessor(getter, setter, setterError);
+        }
+    }
+
+    /**
+     * Accesses a property through its getter and setter methods, for
+     * properties without a precompiled accessor.
+     */
+    private static final class ReflectionAccessor implements DynamoDBPropertyAccessor<Object> {
+        private final Method getter;
+        private final Method setter;
+        private final DynamoDBMappingException setterError;
+
+        private ReflectionAccessor(Method getter, Method setter,
+                DynamoDBMappingException setterError) {
+            this.getter = getter;
+            this.setter = setter;
+            this.setterError = setterError;
+            // Skips the access check on every invocation.
+            makeAccessible(getter);
+            makeAccessible(setter);
+        }
+
+        @Override
+        public Object get(Object object) {
+            return ReflectionUtils.safeInvoke(getter, object);
+        }
+
+        @Override
+        public void set(Object object, Object value) {
+            if (setter == null) {
+                throw missingSetter(setterError);
+            }
+            ReflectionUtils.safeInvoke(setter, object, value);
+        }
+
+        private static void makeAccessible(Method method) {
+            if (method == null) {
+                return;
+            }
+            try {
+                method.setAccessible(true);
+            } catch (SecurityException e) {
+                // invoke with the access check then
+            }
+        }
+    }
 }
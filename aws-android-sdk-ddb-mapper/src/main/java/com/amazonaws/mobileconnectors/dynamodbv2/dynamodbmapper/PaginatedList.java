@@ -15,6 +15,7 @@
 
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 
@@ -26,6 +27,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unmodifiable list supporting paginated result sets from Amazon DynamoDB.
@@ -43,6 +49,11 @@ public abstract class PaginatedList<T> implements List<T> {
 
     private static final String ITERATION_ONLY_UNSUPPORTED_OPERATION_MESSAGE = " is not supported when using ITERATION_ONLY configuration.";
 
+    private static final String ITERATION_PREFETCH_UNSUPPORTED_OPERATION_MESSAGE = " is not supported when using ITERATION_PREFETCH configuration.";
+
+    /** How long an idle prefetch thread is kept alive */
+    private static final long PREFETCH_KEEP_ALIVE_SECONDS = 30;
+
     /**
      * Reference to the DynamoDB mapper for marshalling DynamoDB attributes back
      * into objects
@@ -76,10 +87,17 @@ public abstract class PaginatedList<T> implements List<T> {
 
     /**
      * Keeps track on whether an iterator of the list has been retrieved. Only
-     * updated and checked when the list is in ITERATION_ONLY mode.
+     * updated and checked when the list is in ITERATION_ONLY or
+     * ITERATION_PREFETCH mode.
      */
     private boolean iterationStarted = false;
 
+    /** The number of pages fetched ahead of the iterator in ITERATION_PREFETCH mode */
+    private final int prefetchPageCount;
+
+    /** Fetches the pages ahead of the iterator, only set in ITERATION_PREFETCH mode */
+    private PagePrefetcher prefetcher;
+
     /**
      * Constructs a PaginatedList instance using the default
      * PaginationLoadingStrategy
@@ -103,11 +121,33 @@ public abstract class PaginatedList<T> implements List<T> {
      */
     public PaginatedList(DynamoDBMapper mapper, Class<T> clazz, AmazonDynamoDB dynamo,
             PaginationLoadingStrategy paginationLoadingStrategy) {
+        this(mapper, clazz, dynamo, paginationLoadingStrategy, null);
+    }
+
+    /**
+     * Constructs a PaginatedList instance.
+     *
+     * @param mapper The mapper for marshalling DynamoDB attributes into
+     *            objects.
+     * @param clazz The class of the annotated model.
+     * @param dynamo The DynamoDB client for making low-level request calls.
+     * @param paginationLoadingStrategy The strategy used for loading paginated
+     *            results. If null value is provided, LAZY_LOADING will be set
+     *            by default.
+     * @param prefetchPageCount The number of pages fetched ahead of the
+     *            iterator in ITERATION_PREFETCH mode. If null value is
+     *            provided, the count of {@link DynamoDBMapperConfig#DEFAULT}
+     *            will be used.
+     */
+    protected PaginatedList(DynamoDBMapper mapper, Class<T> clazz, AmazonDynamoDB dynamo,
+            PaginationLoadingStrategy paginationLoadingStrategy, Integer prefetchPageCount) {
         this.mapper = mapper;
         this.clazz = clazz;
         this.dynamo = dynamo;
         this.paginationLoadingStrategy = paginationLoadingStrategy == null ?
                 PaginationLoadingStrategy.LAZY_LOADING : paginationLoadingStrategy;
+        this.prefetchPageCount = prefetchPageCount == null ?
+                DynamoDBMapperConfig.DEFAULT.getPrefetchPageCount() : prefetchPageCount;
 
         this.allResults = new ArrayList<T>();
 
@@ -146,7 +186,16 @@ public abstract class PaginatedList<T> implements List<T> {
      * value of true guarantees that nextResults is non-empty.
      */
     private boolean nextResultsAvailable() {
-        return !nextResults.isEmpty() || loadNextResults();
+        if (!nextResults.isEmpty()) {
+            return true;
+        }
+        // Waits outside the lock of the list, which the subclasses take to
+        // fetch a page.
+        PagePrefetcher pagePrefetcher = prefetcher;
+        if (pagePrefetcher != null) {
+            return pagePrefetcher.takeNextPage(nextResults);
+        }
+        return loadNextResults();
     }
 
     /**
@@ -202,8 +251,120 @@ public abstract class PaginatedList<T> implements List<T> {
      */
     @Override
     public Iterator<T> iterator() {
-        return new PaginatedListIterator(
-                paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_ONLY);
+        return new PaginatedListIterator(isIterationOnly());
+    }
+
+    private boolean isIterationOnly() {
+        return paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_ONLY
+                || paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_PREFETCH;
+    }
+
+    /**
+     * Fetches the pages after the current one on a background thread, keeping
+     * at most {@link #prefetchPageCount} of them buffered. Pages are fetched
+     * one at a time since each one starts where the previous ended, and the
+     * thread exits once it has been idle for a while, so an abandoned
+     * iteration doesn't leak it.
+     */
+    private final class PagePrefetcher implements Runnable {
+
+        private final ThreadPoolExecutor executor;
+
+        /** Fetched pages waiting for the iterator, none of them empty */
+        private final LinkedList<List<T>> pages = new LinkedList<List<T>>();
+
+        private boolean fetching;
+
+        private boolean endOfResults;
+
+        /** The failure of the last fetch, thrown to the iterator once */
+        private RuntimeException failure;
+
+        PagePrefetcher() {
+            executor = new ThreadPoolExecutor(0, 1,
+                    PREFETCH_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "dynamodb-mapper-prefetch");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+
+        synchronized void start() {
+            endOfResults = atEndOfResults();
+            fetchIfNeeded();
+        }
+
+        /**
+         * Waits for the next non-empty page and adds its items to the given
+         * list.
+         *
+         * @return false if there are no more results
+         */
+        synchronized boolean takeNextPage(List<T> results) {
+            while (true) {
+                if (!pages.isEmpty()) {
+                    results.addAll(pages.removeFirst());
+                    fetchIfNeeded();
+                    return true;
+                }
+                if (failure != null) {
+                    // The next call retries the page that failed.
+                    RuntimeException e = failure;
+                    failure = null;
+                    throw e;
+                }
+                if (endOfResults) {
+                    executor.shutdown();
+                    return false;
+                }
+                fetchIfNeeded();
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AmazonClientException(e.getMessage(), e);
+                }
+            }
+        }
+
+        private void fetchIfNeeded() {
+            if (!fetching && !endOfResults && failure == null
+                    && pages.size() < prefetchPageCount) {
+                fetching = true;
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<T> page = null;
+            boolean end = false;
+            RuntimeException error = null;
+            try {
+                page = fetchNextPage();
+                end = atEndOfResults();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            synchronized (this) {
+                fetching = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    if (!page.isEmpty()) {
+                        pages.add(page);
+                    }
+                    endOfResults = end;
+                    fetchIfNeeded();
+                }
+                notifyAll();
+            }
+        }
     }
 
     private class PaginatedListIterator implements Iterator<T> {
@@ -231,13 +392,20 @@ public abstract class PaginatedList<T> implements List<T> {
                 synchronized (PaginatedList.this) {
                     if (iterationStarted) {
                         throw new UnsupportedOperationException(
-                                "The list could only be iterated once in ITERATION_ONLY mode.");
+                                "The list could only be iterated once in "
+                                        + paginationLoadingStrategy + " mode.");
                     }
                     iterationStarted = true;
                 }
 
                 allResultsCopy = null; // not needed for ITERATION_ONLY mode
                 innerIterator = allResults.iterator();
+
+                if (paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_PREFETCH) {
+                    PagePrefetcher pagePrefetcher = new PagePrefetcher();
+                    prefetcher = pagePrefetcher;
+                    pagePrefetcher.start();
+                }
             }
             else {
                 /*
@@ -509,5 +677,9 @@ public abstract class PaginatedList<T> implements List<T> {
             throw new UnsupportedOperationException(methodSignature
                     + ITERATION_ONLY_UNSUPPORTED_OPERATION_MESSAGE);
         }
+        if (this.paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_PREFETCH) {
+            throw new UnsupportedOperationException(methodSignature
+                    + ITERATION_PREFETCH_UNSUPPORTED_OPERATION_MESSAGE);
+        }
     };
 }
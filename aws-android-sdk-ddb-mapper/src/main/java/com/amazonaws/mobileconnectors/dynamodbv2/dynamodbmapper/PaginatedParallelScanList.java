@@ -53,7 +53,8 @@ public class PaginatedParallelScanList<T> extends PaginatedList<T> {
             ParallelScanTask parallelScanTask,
             PaginationLoadingStrategy paginationLoadingStrategy,
             DynamoDBMapperConfig config) {
-        super(mapper, clazz, dynamo, paginationLoadingStrategy);
+        super(mapper, clazz, dynamo, paginationLoadingStrategy,
+                config == null ? null : config.getPrefetchPageCount());
 
         this.parallelScanTask = parallelScanTask;
         this.config = config;
@@ -68,6 +69,13 @@ public class PaginatedParallelScanList<T> extends PaginatedList<T> {
         }
     }
 
+    /**
+     * Returns a snapshot of the progress of the scan on each segment.
+     */
+    public List<ParallelScanTask.SegmentProgress> getSegmentProgress() {
+        return parallelScanTask.getSegmentProgress();
+    }
+
     @Override
     protected boolean atEndOfResults() {
         return parallelScanTask.isAllSegmentScanFinished();
@@ -17,6 +17,7 @@ package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
 
@@ -24,12 +25,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Scans the segments of a parallel scan, handing out one page of every
+ * unfinished segment per batch. A segment requests its next page once the
+ * previous one has been handed out, or earlier when it is allowed to read
+ * ahead. Pages read ahead are limited per segment and across all segments,
+ * and the requests can be paced to consume a target number of capacity units
+ * per second.
+ */
 public class ParallelScanTask {
 
     /**
@@ -40,23 +48,36 @@ public class ParallelScanTask {
     private final int totalSegments;
 
     /**
-     * Cache all the future tasks, so that we can extract the exception when we
-     * see failed segment scan.
+     * The state of the scan on each segment. Guarded by, and used as the
+     * monitor for, {@link #lock}.
      */
-    private final List<Future<ScanResult>> segmentScanFutureTasks;
+    private final Segment[] segments;
 
-    /**
-     * Cache all the most recent ScanResult on each segment.
-     */
-    private final List<ScanResult> segmentScanResults;
+    private final Object lock = new Object();
 
-    /**
-     * The current state of the scan on each segment. Used as the monitor for
-     * synchronization.
-     */
-    private final List<SegmentScanState> segmentScanStates;
+    private final Executor executor;
+
+    /** The thread pool created for this scan, if no executor was given */
+    private final ExecutorService ownExecutorService;
+
+    /** Pages each segment may fetch ahead of the batches handed out */
+    private final int readAheadPages;
+
+    /** Pages all segments together may fetch ahead of the batches */
+    private final int maxReadAheadPages;
 
-    private ExecutorService executorService;
+    /** Capacity units to consume per second, or 0 for no limit */
+    private final double capacityPerSecond;
+
+    /** Where the next segment to schedule is looked for */
+    private int nextSegmentToSchedule;
+
+    /** When the next request may start to keep to capacityPerSecond */
+    private long nextRequestMillis;
+
+    private double totalConsumedCapacity;
+
+    private long pagesWithConsumedCapacity;
 
     private final AmazonDynamoDB dynamo;
 
@@ -67,20 +88,47 @@ public class ParallelScanTask {
     }
 
     ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
+        this(dynamo, parallelScanRequests, null, 0, null, null);
+    }
+
+    /**
+     * @param dynamo The client the scan requests are sent with.
+     * @param parallelScanRequests The request of each segment.
+     * @param executor The executor running the requests, or null to create a
+     *            thread pool for this scan.
+     * @param readAheadPages The number of pages each segment fetches ahead of
+     *            the batches handed out.
+     * @param maxReadAheadPages The number of pages all segments together
+     *            fetch ahead of the batches, or null for no limit.
+     * @param capacityPerSecond The capacity units per second the scan aims to
+     *            consume, or null for no limit.
+     */
+    ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests,
+            Executor executor, int readAheadPages, Integer maxReadAheadPages,
+            Double capacityPerSecond) {
         this.dynamo = dynamo;
         this.parallelScanRequests = parallelScanRequests;
         this.totalSegments = parallelScanRequests.size();
-        executorService = Executors.newCachedThreadPool();
-
-        // Create synchronized views of the list to guarantee any changes are
-        // visible across all threads.
-        segmentScanFutureTasks = Collections.synchronizedList(new ArrayList<Future<ScanResult>>(
-                totalSegments));
-        segmentScanResults = Collections.synchronizedList(new ArrayList<ScanResult>(totalSegments));
-        segmentScanStates = Collections.synchronizedList(new ArrayList<SegmentScanState>(
-                totalSegments));
+        if (executor == null) {
+            ownExecutorService = Executors.newCachedThreadPool();
+            this.executor = ownExecutorService;
+        } else {
+            ownExecutorService = null;
+            this.executor = executor;
+        }
+        this.readAheadPages = readAheadPages;
+        this.maxReadAheadPages = maxReadAheadPages == null
+                ? Integer.MAX_VALUE : maxReadAheadPages;
+        this.capacityPerSecond = capacityPerSecond == null ? 0 : capacityPerSecond;
 
-        initSegmentScanStates();
+        segments = new Segment[totalSegments];
+        for (int segment = 0; segment < totalSegments; segment++) {
+            segments[segment] = new Segment(segment);
+            ScanRequest request = parallelScanRequests.get(segment);
+            if (this.capacityPerSecond > 0 && request.getReturnConsumedCapacity() == null) {
+                request.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+            }
+        }
     }
 
     String getTableName() {
@@ -88,150 +136,200 @@ public class ParallelScanTask {
     }
 
     public boolean isAllSegmentScanFinished() {
-        synchronized (segmentScanStates) {
-            for (int segment = 0; segment < totalSegments; segment++) {
-                if (segmentScanStates.get(segment) != SegmentScanState.SegmentScanCompleted)
+        synchronized (lock) {
+            for (Segment segment : segments) {
+                if (!segment.isExhausted())
                     return false;
             }
             // Shut down if all data have been scanned and loaded.
-            executorService.shutdown();
+            if (ownExecutorService != null) {
+                ownExecutorService.shutdown();
+            }
             return true;
         }
     }
 
+    /**
+     * Returns the next page of every segment, with null in place of the
+     * segments that were already scanned completely.
+     */
     public List<ScanResult> getNextBatchOfScanResults() throws AmazonClientException {
-        /**
-         * Kick-off all the parallel scan tasks.
-         */
-        startScanNextPages();
-        /**
-         * Wait till all the tasks have finished.
-         */
-        synchronized (segmentScanStates) {
-            while (segmentScanStates.contains(SegmentScanState.Waiting)
-                    || segmentScanStates.contains(SegmentScanState.Scanning)) {
-                try {
-                    segmentScanStates.wait();
-                } catch (InterruptedException ie) {
-                    throw new AmazonClientException("Parallel scan interrupted by other thread.",
-                            ie);
+        synchronized (lock) {
+            for (Segment segment : segments) {
+                segment.owed = !segment.isExhausted();
+            }
+            schedule();
+
+            List<ScanResult> scanResults = new LinkedList<ScanResult>();
+            for (Segment segment : segments) {
+                if (!segment.owed) {
+                    scanResults.add(null);
+                    continue;
                 }
+                while (segment.pages.isEmpty() && segment.failure == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new AmazonClientException(
+                                "Parallel scan interrupted by other thread.", ie);
+                    }
+                }
+                if (segment.pages.isEmpty()) {
+                    throw segmentFailure(segment);
+                }
+                scanResults.add(segment.pages.removeFirst());
+                segment.owed = false;
+                schedule();
             }
-            /**
-             * Keep the lock on segmentScanStates until all the cached results
-             * are marshaled and returned.
-             */
-            return marshalParallelScanResults();
+            return scanResults;
         }
+    }
 
+    /**
+     * Returns a snapshot of the progress of each segment.
+     */
+    public List<SegmentProgress> getSegmentProgress() {
+        synchronized (lock) {
+            List<SegmentProgress> progress = new ArrayList<SegmentProgress>(totalSegments);
+            for (Segment segment : segments) {
+                progress.add(new SegmentProgress(segment));
+            }
+            return Collections.unmodifiableList(progress);
+        }
     }
 
-    private void startScanNextPages() {
-        for (int segment = 0; segment < totalSegments; segment++) {
-            final int currentSegment = segment;
-            final SegmentScanState currentSegmentState = segmentScanStates.get(currentSegment);
-            /**
-             * Assert: Should never see any task in state of "Scanning" when
-             * starting a new batch.
-             */
-            if (currentSegmentState == SegmentScanState.Scanning) {
-                throw new AmazonClientException(
-                        "Should never see a 'Scanning' state when starting parallel scans.");
+    /**
+     * Starts fetching the next page of every segment that needs one and is
+     * within the read ahead limits. Must hold the lock.
+     */
+    private void schedule() {
+        int readAhead = 0;
+        for (Segment segment : segments) {
+            readAhead += segment.getReadAheadPages();
+        }
+        for (int i = 0; i < totalSegments; i++) {
+            Segment segment = segments[(nextSegmentToSchedule + i) % totalSegments];
+            if (segment.fetching || segment.completed || segment.failure != null) {
+                continue;
             }
-            /**
-             * Skip any failed or completed segment, and clear the corresponding
-             * cached result.
-             */
-            else if (currentSegmentState == SegmentScanState.Failed
-                    || currentSegmentState == SegmentScanState.SegmentScanCompleted) {
-                segmentScanResults.set(currentSegment, null);
+            int wanted = segment.owed ? readAheadPages + 1 : readAheadPages;
+            if (segment.pages.size() >= wanted) {
                 continue;
             }
-            /**
-             * Otherwise, submit a new future task and save it in
-             * segmentScanFutureTasks.
-             */
-            else {
-                // Update the state to "Scanning" and notify any waiting thread.
-                synchronized (segmentScanStates) {
-                    segmentScanStates.set(currentSegment, SegmentScanState.Scanning);
-                    segmentScanStates.notifyAll();
+            // The page of the batch being handed out is always fetched.
+            if (!segment.owed || !segment.pages.isEmpty()) {
+                if (readAhead >= maxReadAheadPages) {
+                    continue;
                 }
-                Future<ScanResult> futureTask = executorService.submit(new Callable<ScanResult>() {
-                    @Override
-                    public ScanResult call() throws Exception {
-                        try {
-                            if (currentSegmentState == SegmentScanState.HasNextPage) {
-                                return scanNextPageOfSegment(currentSegment, true);
-                            }
-                            else if (currentSegmentState == SegmentScanState.Waiting) {
-                                return scanNextPageOfSegment(currentSegment, false);
-                            }
-                            else {
-                                throw new AmazonClientException(
-                                        "Should not start a new future task");
-                            }
-                        } catch (Exception e) {
-                            synchronized (segmentScanStates) {
-                                segmentScanStates.set(currentSegment, SegmentScanState.Failed);
-                                segmentScanStates.notifyAll();
-                            }
-                            throw e;
-                        }
-                    }
-                });
-                // Cache the future task (for getting the Exceptions in the
-                // working thread).
-                segmentScanFutureTasks.set(currentSegment, futureTask);
+                readAhead++;
             }
+            startFetch(segment);
         }
+        nextSegmentToSchedule = (nextSegmentToSchedule + 1) % totalSegments;
     }
 
-    private List<ScanResult> marshalParallelScanResults() {
-        List<ScanResult> scanResults = new LinkedList<ScanResult>();
-        for (int segment = 0; segment < totalSegments; segment++) {
-            SegmentScanState currentSegmentState = segmentScanStates.get(segment);
-            /**
-             * Rethrow the exception from any failed segment scan.
-             */
-            if (currentSegmentState == SegmentScanState.Failed) {
-                try {
-                    segmentScanFutureTasks.get(segment).get();
-                    throw new AmazonClientException("No Exception found in the failed scan task.");
-                } catch (ExecutionException ee) {
-                    if (ee.getCause() instanceof AmazonClientException) {
-                        throw (AmazonClientException) (ee.getCause());
-                    } else {
-                        throw new AmazonClientException(
-                                "Internal error during the scan on segment #" + segment + ".",
-                                ee.getCause());
-                    }
-                } catch (Exception e) {
-                    throw new AmazonClientException("Error during the scan on segment #" + segment
-                            + ".", e);
+    private void startFetch(final Segment segment) {
+        segment.fetching = true;
+        final long startMillis = reserveRequestStart();
+        final double estimatedCapacity = estimatedCapacityPerPage();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fetch(segment, startMillis, estimatedCapacity);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            segment.fetching = false;
+            segment.failure = e;
+            lock.notifyAll();
+        }
+    }
+
+    private void fetch(Segment segment, long startMillis, double estimatedCapacity) {
+        ScanResult scanResult = null;
+        Exception failure = null;
+        try {
+            long delay = startMillis - System.currentTimeMillis();
+            if (delay > 0) {
+                Thread.sleep(delay);
             }
-            /**
-             * Get the ScanResult from cache if the segment scan has finished.
-             */
-            else if (currentSegmentState == SegmentScanState.HasNextPage
-                    || currentSegmentState == SegmentScanState.SegmentScanCompleted) {
-                ScanResult scanResult = segmentScanResults.get(segment);
-                scanResults.add(scanResult);
-            }
-            else if (currentSegmentState == SegmentScanState.Waiting
-                    || currentSegmentState == SegmentScanState.Scanning) {
-                throw new AmazonClientException(
-                        "Should never see a 'Scanning' or 'Waiting' state when marshalling parallel scan results.");
+            scanResult = scanNextPageOfSegment(segment.segment, segment.lastResult != null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new AmazonClientException(e.getMessage(), e);
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        synchronized (lock) {
+            segment.fetching = false;
+            if (failure != null) {
+                segment.failure = failure;
+            } else {
+                segment.pages.add(scanResult);
+                segment.completed = scanResult.getLastEvaluatedKey() == null;
+                segment.recordPage(scanResult);
+                if (scanResult.getConsumedCapacity() != null
+                        && scanResult.getConsumedCapacity().getCapacityUnits() != null) {
+                    recordConsumedCapacity(estimatedCapacity,
+                            scanResult.getConsumedCapacity().getCapacityUnits());
+                }
+                schedule();
             }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Reserves the start of a request, which is delayed while the scan is
+     * ahead of its capacity per second. Must hold the lock.
+     */
+    private long reserveRequestStart() {
+        long now = System.currentTimeMillis();
+        if (capacityPerSecond <= 0) {
+            return now;
+        }
+        long start = Math.max(now, nextRequestMillis);
+        nextRequestMillis = start + capacityMillis(estimatedCapacityPerPage());
+        return start;
+    }
+
+    /**
+     * Accounts for the capacity a request consumed in place of the estimate
+     * it reserved. Must hold the lock.
+     */
+    private void recordConsumedCapacity(double estimatedCapacity, double consumedCapacity) {
+        totalConsumedCapacity += consumedCapacity;
+        pagesWithConsumedCapacity++;
+        if (capacityPerSecond > 0) {
+            nextRequestMillis += capacityMillis(consumedCapacity - estimatedCapacity);
+        }
+    }
+
+    private double estimatedCapacityPerPage() {
+        return pagesWithConsumedCapacity == 0
+                ? 0 : totalConsumedCapacity / pagesWithConsumedCapacity;
+    }
+
+    private long capacityMillis(double capacity) {
+        return (long) (capacity * 1000 / capacityPerSecond);
+    }
+
+    private AmazonClientException segmentFailure(Segment segment) {
+        Exception failure = segment.failure;
+        if (failure instanceof AmazonClientException) {
+            return (AmazonClientException) failure;
         }
-        return scanResults;
+        return new AmazonClientException(
+                "Internal error during the scan on segment #" + segment.segment + ".", failure);
     }
 
     ScanResult scanNextPageOfSegment(int currentSegment, boolean checkLastEvaluatedKey) {
         ScanRequest segmentScanRequest = parallelScanRequests.get(currentSegment);
         if (checkLastEvaluatedKey) {
-            ScanResult lastScanResult = segmentScanResults.get(currentSegment);
+            ScanResult lastScanResult = segments[currentSegment].lastResult;
             segmentScanRequest.setExclusiveStartKey(lastScanResult.getLastEvaluatedKey());
         } else {
             segmentScanRequest.setExclusiveStartKey(null);
@@ -239,55 +337,157 @@ public class ParallelScanTask {
         ScanResult scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(segmentScanRequest));
 
         /**
-         * Cache the scan result in segmentScanResults. We should never try to
-         * get these scan results by calling get() on the cached future tasks.
+         * Keep the scan result for the request of the next page. A segment
+         * only ever has one request in flight.
          */
-        segmentScanResults.set(currentSegment, scanResult);
+        segments[currentSegment].lastResult = scanResult;
+        return scanResult;
+    }
+
+    /**
+     * The state of the scan on a segment.
+     */
+    private static final class Segment {
+
+        private final int segment;
+
+        /** Fetched pages waiting to be handed out */
+        private final LinkedList<ScanResult> pages = new LinkedList<ScanResult>();
+
+        /** Whether the batch being handed out waits for a page of this segment */
+        private boolean owed;
+
+        private boolean fetching;
+
+        /** Whether the last page of the segment has been fetched */
+        private boolean completed;
+
+        private Exception failure;
+
+        /** The most recent page, whose last evaluated key the next one starts at */
+        private volatile ScanResult lastResult;
+
+        private int pagesScanned;
+
+        private long itemsScanned;
+
+        private long itemsReturned;
+
+        private double consumedCapacity;
+
+        Segment(int segment) {
+            this.segment = segment;
+        }
+
+        boolean isExhausted() {
+            return completed && pages.isEmpty();
+        }
 
         /**
-         * Update the state and notify any waiting thread.
+         * Returns the pages fetched or being fetched ahead of the batch being
+         * handed out.
          */
-        synchronized (segmentScanStates) {
-            if (null == scanResult.getLastEvaluatedKey())
-                segmentScanStates.set(currentSegment, SegmentScanState.SegmentScanCompleted);
-            else
-                segmentScanStates.set(currentSegment, SegmentScanState.HasNextPage);
-            segmentScanStates.notifyAll();
+        int getReadAheadPages() {
+            int pagesAhead = pages.size() + (fetching ? 1 : 0) - (owed ? 1 : 0);
+            return Math.max(pagesAhead, 0);
         }
-        return scanResult;
-    }
 
-    private void initSegmentScanStates() {
-        for (int segment = 0; segment < totalSegments; segment++) {
-            segmentScanFutureTasks.add(null);
-            segmentScanResults.add(null);
-            segmentScanStates.add(SegmentScanState.Waiting);
+        void recordPage(ScanResult scanResult) {
+            pagesScanned++;
+            if (scanResult.getScannedCount() != null) {
+                itemsScanned += scanResult.getScannedCount();
+            }
+            if (scanResult.getCount() != null) {
+                itemsReturned += scanResult.getCount();
+            }
+            if (scanResult.getConsumedCapacity() != null
+                    && scanResult.getConsumedCapacity().getCapacityUnits() != null) {
+                consumedCapacity += scanResult.getConsumedCapacity().getCapacityUnits();
+            }
         }
     }
 
     /**
-     * Enumeration of the possible states of the scan on a segment.
+     * A snapshot of the progress of the scan on one segment.
      */
-    private static enum SegmentScanState {
+    public static final class SegmentProgress {
+
+        private final int segment;
+        private final int pagesScanned;
+        private final long itemsScanned;
+        private final long itemsReturned;
+        private final double consumedCapacity;
+        private final int pagesBuffered;
+        private final boolean completed;
+        private final boolean failed;
+
+        private SegmentProgress(Segment segment) {
+            this.segment = segment.segment;
+            this.pagesScanned = segment.pagesScanned;
+            this.itemsScanned = segment.itemsScanned;
+            this.itemsReturned = segment.itemsReturned;
+            this.consumedCapacity = segment.consumedCapacity;
+            this.pagesBuffered = segment.pages.size();
+            this.completed = segment.completed;
+            this.failed = segment.failure != null;
+        }
+
         /**
-         * The scan on the segment is waiting for resources to execute and has
-         * not started yet.
+         * Returns the number of the segment.
          */
-        Waiting,
+        public int getSegment() {
+            return segment;
+        }
 
-        /** The scan is in process, and hasn't finished yet. */
-        Scanning,
+        /**
+         * Returns the number of pages fetched from the segment so far.
+         */
+        public int getPagesScanned() {
+            return pagesScanned;
+        }
 
-        /** The scan has already failed. */
-        Failed,
+        /**
+         * Returns the number of items scanned in the segment so far, before
+         * any scan filter was applied.
+         */
+        public long getItemsScanned() {
+            return itemsScanned;
+        }
 
         /**
-         * The scan on the current page has finished, but there are more pages
-         * in the segment to be scanned.
+         * Returns the number of items the scan of the segment returned so far.
          */
-        HasNextPage,
+        public long getItemsReturned() {
+            return itemsReturned;
+        }
 
-        /** The scan on the whole segment has completed. */
-        SegmentScanCompleted,
+        /**
+         * Returns the capacity units the scan of the segment consumed so far,
+         * as reported by DynamoDB when the requests ask for it.
+         */
+        public double getConsumedCapacity() {
+            return consumedCapacity;
+        }
+
+        /**
+         * Returns the number of fetched pages not handed out yet.
+         */
+        public int getPagesBuffered() {
+            return pagesBuffered;
+        }
+
+        /**
+         * Returns whether the last page of the segment has been fetched.
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * Returns whether the scan of the segment failed.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
     }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchLoadTaskTest {
+
+    private static final String TABLE = "testTable";
+
+    /**
+     * Answers BatchGetItem calls, standing in for the service.
+     */
+    private interface BatchGetAnswer {
+        BatchGetItemResult answer(List<Map<String, AttributeValue>> keys) throws Exception;
+    }
+
+    private final List<Integer> requestSizes =
+            Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+    private final BatchLoadTask.ItemHandler handler = new BatchLoadTask.ItemHandler() {
+        @Override
+        public void handle(String tableName, List<Map<String, AttributeValue>> items) {
+            for (Map<String, AttributeValue> item : items) {
+                loaded.add(item.get("id").getS());
+            }
+        }
+    };
+
+    @Test
+    public void testKeysAreRequestedInChunks() {
+        AmazonDynamoDB client = fakeClient(new BatchGetAnswer() {
+            @Override
+            public BatchGetItemResult answer(List<Map<String, AttributeValue>> keys) {
+                return found(keys);
+            }
+        });
+
+        new BatchLoadTask(client, 1, false, null, handler, 1).execute(table(keys(250)));
+
+        assertEquals(Arrays.asList(100, 100, 50), requestSizes);
+        assertEquals(250, loaded.size());
+    }
+
+    @Test
+    public void testUnprocessedKeysRideAlongConcurrently() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        AmazonDynamoDB client = fakeClient(new BatchGetAnswer() {
+            @Override
+            public BatchGetItemResult answer(List<Map<String, AttributeValue>> keys)
+                    throws Exception {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                Thread.sleep(50);
+                inFlight.decrementAndGet();
+                // The first call leaves half of its keys unprocessed.
+                if (calls.incrementAndGet() == 1) {
+                    int half = keys.size() / 2;
+                    BatchGetItemResult result = found(keys.subList(0, half));
+                    Map<String, KeysAndAttributes> unprocessed =
+                            new HashMap<String, KeysAndAttributes>();
+                    unprocessed.put(TABLE, new KeysAndAttributes().withKeys(
+                            new ArrayList<Map<String, AttributeValue>>(
+                                    keys.subList(half, keys.size()))));
+                    return result.withUnprocessedKeys(unprocessed);
+                }
+                return found(keys);
+            }
+        });
+
+        new BatchLoadTask(client, 3, false, null, handler, 1).execute(table(keys(400)));
+
+        assertEquals(400, loaded.size());
+        assertEquals(400, new HashSet<String>(loaded).size());
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= 3);
+        for (int size : requestSizes) {
+            assertTrue(size <= BatchLoadTask.MAX_KEYS_PER_BATCH_GET);
+        }
+    }
+
+    @Test
+    public void testGivesUpWithoutProgress() {
+        AmazonDynamoDB client = fakeClient(new BatchGetAnswer() {
+            @Override
+            public BatchGetItemResult answer(List<Map<String, AttributeValue>> keys) {
+                Map<String, KeysAndAttributes> unprocessed =
+                        new HashMap<String, KeysAndAttributes>();
+                unprocessed.put(TABLE, new KeysAndAttributes().withKeys(keys));
+                return new BatchGetItemResult()
+                        .withResponses(new HashMap<String, List<Map<String, AttributeValue>>>())
+                        .withUnprocessedKeys(unprocessed);
+            }
+        });
+
+        try {
+            new BatchLoadTask(client, 1, false, null, handler, 1).execute(table(keys(3)));
+            fail("Expected an AmazonClientException");
+        } catch (AmazonClientException e) {
+            assertTrue(e.getMessage().contains("hasn't received any data"));
+        }
+        assertEquals(DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS + 1,
+                requestSizes.size());
+    }
+
+    private AmazonDynamoDB fakeClient(final BatchGetAnswer answer) {
+        // EasyMock serializes the calls to a mock, so this needs a fake.
+        return (AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(), new Class<?>[] {
+                    AmazonDynamoDB.class
+                }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if (!"batchGetItem".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        BatchGetItemRequest request = (BatchGetItemRequest) args[0];
+                        List<Map<String, AttributeValue>> keys =
+                                request.getRequestItems().get(TABLE).getKeys();
+                        requestSizes.add(keys.size());
+                        return answer.answer(keys);
+                    }
+                });
+    }
+
+    private static BatchGetItemResult found(List<Map<String, AttributeValue>> keys) {
+        Map<String, List<Map<String, AttributeValue>>> responses =
+                new HashMap<String, List<Map<String, AttributeValue>>>();
+        responses.put(TABLE, new ArrayList<Map<String, AttributeValue>>(keys));
+        return new BatchGetItemResult().withResponses(responses);
+    }
+
+    private static List<Map<String, AttributeValue>> keys(int count) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<Map<String, AttributeValue>>();
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+            key.put("id", new AttributeValue().withS("key" + i));
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private static Map<String, List<Map<String, AttributeValue>>> table(
+            List<Map<String, AttributeValue>> keys) {
+        Map<String, List<Map<String, AttributeValue>>> keysByTable =
+                new LinkedHashMap<String, List<Map<String, AttributeValue>>>();
+        keysByTable.put(TABLE, keys);
+        return keysByTable;
+    }
+}
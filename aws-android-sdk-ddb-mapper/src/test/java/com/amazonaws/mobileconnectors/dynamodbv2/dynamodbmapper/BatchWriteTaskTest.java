@@ -0,0 +1,188 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapper.FailedBatch;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.BatchWriteProgress;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.BatchWriteProgressListener;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchWriteTaskTest {
+
+    private static final String TABLE = "testTable";
+
+    private AmazonDynamoDB mockClient;
+    private final List<BatchWriteItemRequest> requests =
+            Collections.synchronizedList(new ArrayList<BatchWriteItemRequest>());
+    private BatchWriteProgress lastProgress;
+    private final BatchWriteProgressListener listener = new BatchWriteProgressListener() {
+        @Override
+        public void progressChanged(BatchWriteProgress progress) {
+            lastProgress = progress;
+        }
+    };
+
+    @Before
+    public void setup() {
+        mockClient = EasyMock.createMock(AmazonDynamoDB.class);
+        requests.clear();
+        lastProgress = null;
+    }
+
+    @Test
+    public void testUnprocessedItemsRideAlongWithTheNextBatch() {
+        final List<WriteRequest> items = items(30);
+        EasyMock.expect(mockClient.batchWriteItem(anyObject(BatchWriteItemRequest.class)))
+                .andAnswer(new IAnswer<BatchWriteItemResult>() {
+                    @Override
+                    public BatchWriteItemResult answer() {
+                        BatchWriteItemRequest request = record();
+                        List<WriteRequest> sent = request.getRequestItems().get(TABLE);
+                        // The last five items of the first call are left
+                        // unprocessed.
+                        Map<String, List<WriteRequest>> unprocessed =
+                                new HashMap<String, List<WriteRequest>>();
+                        if (requests.size() == 1) {
+                            unprocessed.put(TABLE, new ArrayList<WriteRequest>(
+                                    sent.subList(20, 25)));
+                        }
+                        return new BatchWriteItemResult().withUnprocessedItems(unprocessed);
+                    }
+                }).times(2);
+        EasyMock.replay(mockClient);
+
+        List<FailedBatch> failed = new BatchWriteTask(mockClient, 1, listener, 1)
+                .execute(table(items));
+
+        EasyMock.verify(mockClient);
+        assertTrue(failed.isEmpty());
+        List<WriteRequest> second = requests.get(1).getRequestItems().get(TABLE);
+        assertEquals(10, second.size());
+        assertEquals(items.subList(20, 30), second);
+        assertEquals(30, lastProgress.getItemsWritten());
+        assertEquals(5, lastProgress.getItemsRetried());
+        assertEquals(2, lastProgress.getRequestsSent());
+    }
+
+    @Test
+    public void testCallsInFlightConcurrently() {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        // EasyMock serializes the calls to a mock, so this needs a fake.
+        AmazonDynamoDB client = (AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(), new Class<?>[] {
+                    AmazonDynamoDB.class
+                }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if (!"batchWriteItem".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        calls.incrementAndGet();
+                        int current = inFlight.incrementAndGet();
+                        synchronized (maxInFlight) {
+                            maxInFlight.set(Math.max(maxInFlight.get(), current));
+                        }
+                        Thread.sleep(50);
+                        inFlight.decrementAndGet();
+                        return new BatchWriteItemResult().withUnprocessedItems(
+                                new HashMap<String, List<WriteRequest>>());
+                    }
+                });
+
+        List<FailedBatch> failed = new BatchWriteTask(client, 4, listener, 1)
+                .execute(table(items(200)));
+
+        assertTrue(failed.isEmpty());
+        assertEquals(8, calls.get());
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= 4);
+        assertEquals(200, lastProgress.getItemsWritten());
+    }
+
+    @Test
+    public void testThrottledBatchIsRetriedThenReported() {
+        final AmazonServiceException ase = new AmazonServiceException("Throttled");
+        ase.setErrorCode("ProvisionedThroughputExceededException");
+        EasyMock.expect(mockClient.batchWriteItem(anyObject(BatchWriteItemRequest.class)))
+                .andThrow(ase).times(BatchWriteTask.MAX_THROTTLED_RETRIES + 1);
+        EasyMock.replay(mockClient);
+
+        List<FailedBatch> failed = new BatchWriteTask(mockClient, 1, listener, 1)
+                .execute(table(items(3)));
+
+        EasyMock.verify(mockClient);
+        assertEquals(1, failed.size());
+        assertSame(ase, failed.get(0).getException());
+        assertEquals(3, failed.get(0).getUnprocessedItems().get(TABLE).size());
+        assertEquals(3, lastProgress.getItemsFailed());
+        assertEquals(BatchWriteTask.MAX_THROTTLED_RETRIES + 1,
+                lastProgress.getRequestsThrottled());
+    }
+
+    private BatchWriteItemRequest record() {
+        BatchWriteItemRequest request =
+                (BatchWriteItemRequest) EasyMock.getCurrentArguments()[0];
+        requests.add(request);
+        return request;
+    }
+
+    private static List<WriteRequest> items(int count) {
+        List<WriteRequest> items = new ArrayList<WriteRequest>();
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+            item.put("id", new AttributeValue().withS("item" + i));
+            items.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
+        }
+        return items;
+    }
+
+    private static Map<String, List<WriteRequest>> table(List<WriteRequest> items) {
+        Map<String, List<WriteRequest>> requestItems =
+                new LinkedHashMap<String, List<WriteRequest>>();
+        requestItems.put(TABLE, new ArrayList<WriteRequest>(items));
+        return requestItems;
+    }
+}
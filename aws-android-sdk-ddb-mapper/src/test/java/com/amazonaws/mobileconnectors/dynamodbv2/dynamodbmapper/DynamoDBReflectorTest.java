@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class DynamoDBReflectorTest {
+
+    @Test
+    public void testKeysAndAttributeNames() throws Exception {
+        DynamoDBReflector reflector = new DynamoDBReflector();
+
+        assertEquals("key", reflector.getPrimaryHashKeyName(RangeKeyClass.class));
+        assertEquals("rangeKey", reflector.getPrimaryRangeKeyName(RangeKeyClass.class));
+        assertTrue(reflector.hasPrimaryRangeKey(RangeKeyClass.class));
+        assertEquals(2, reflector.getPrimaryKeyGetters(RangeKeyClass.class).size());
+        assertTrue(reflector.isVersionAttributeGetter(
+                RangeKeyClass.class.getMethod("getVersion")));
+        assertEquals("integerSetAttribute", reflector.getAttributeName(
+                RangeKeyClass.class.getMethod("getIntegerAttribute")));
+
+        assertNull(reflector.getPrimaryRangeKeyName(StringAttributeClass.class));
+        assertFalse(reflector.hasPrimaryRangeKey(StringAttributeClass.class));
+        assertEquals(1, reflector.getPrimaryKeyGetters(StringAttributeClass.class).size());
+        assertEquals("originalName", reflector.getAttributeName(
+                StringAttributeClass.class.getMethod("getRenamedAttribute")));
+    }
+
+    @Test
+    public void testModelIsImmutable() {
+        DynamoDBReflector reflector = new DynamoDBReflector();
+        Collection<Method> getters = reflector.getRelevantGetters(StringAttributeClass.class);
+        try {
+            getters.clear();
+            fail("The relevant getters should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertSame(getters, reflector.getRelevantGetters(StringAttributeClass.class));
+    }
+
+    @Test
+    public void testMissingSetterThrowsEachTime() throws Exception {
+        DynamoDBReflector reflector = new DynamoDBReflector();
+        Method getter = ReadOnlyClass.class.getMethod("getValue");
+        for (int i = 0; i < 2; i++) {
+            try {
+                reflector.getSetter(getter);
+                fail("Expected a DynamoDBMappingException");
+            } catch (DynamoDBMappingException e) {
+                assertTrue(e.getMessage().contains("setValue"));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final DynamoDBReflector reflector = new DynamoDBReflector();
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Collection<Method>>> futures =
+                    new ArrayList<Future<Collection<Method>>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Collection<Method>>() {
+                    @Override
+                    public Collection<Method> call() throws Exception {
+                        start.await();
+                        Collection<Method> getters = null;
+                        for (int j = 0; j < 1000; j++) {
+                            getters = reflector.getRelevantGetters(RangeKeyClass.class);
+                            for (Method getter : getters) {
+                                reflector.getAttributeName(getter);
+                                reflector.getSetter(getter);
+                                reflector.isVersionAttributeGetter(getter);
+                                reflector.isAssignableKey(getter);
+                            }
+                            reflector.getPrimaryHashKeyGetter(RangeKeyClass.class);
+                        }
+                        return getters;
+                    }
+                }));
+            }
+            start.countDown();
+
+            // Every thread sees the one model that was published.
+            Collection<Method> first = futures.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<Collection<Method>> future : futures) {
+                assertSame(first, future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAccessorSchema() throws Exception {
+        DynamoDBReflector reflector = new DynamoDBReflector();
+        Method nameGetter = SchemaPojo.class.getMethod("getName");
+        Method countGetter = SchemaPojo.class.getMethod("getCount");
+        SchemaPojo pojo = new SchemaPojo();
+        SchemaPojoDynamoDBSchema.accesses = 0;
+
+        reflector.setValue(nameGetter, pojo, "name");
+        assertEquals("name", reflector.getValue(nameGetter, pojo));
+        assertEquals(2, SchemaPojoDynamoDBSchema.accesses);
+
+        // Properties without an accessor fall back to reflection.
+        reflector.setValue(countGetter, pojo, 5);
+        assertEquals(5, reflector.getValue(countGetter, pojo));
+        assertEquals(2, SchemaPojoDynamoDBSchema.accesses);
+    }
+
+    @Test
+    public void testReflectionAccess() throws Exception {
+        DynamoDBReflector reflector = new DynamoDBReflector();
+        Method getter = StringAttributeClass.class.getMethod("getStringAttribute");
+        StringAttributeClass object = new StringAttributeClass();
+
+        reflector.setValue(getter, object, "value");
+        assertEquals("value", object.getStringAttribute());
+        assertEquals("value", reflector.getValue(getter, object));
+
+        try {
+            reflector.setValue(ReadOnlyClass.class.getMethod("getValue"),
+                    new ReadOnlyClass(), "value");
+            fail("Expected a DynamoDBMappingException");
+        } catch (DynamoDBMappingException e) {
+            assertTrue(e.getMessage().contains("setValue"));
+        }
+    }
+
+    @DynamoDBTable(tableName = "schema")
+    public static class SchemaPojo {
+        private String name;
+        private int count;
+
+        @DynamoDBHashKey
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+
+    public static class SchemaPojoDynamoDBSchema implements DynamoDBAccessorSchema<SchemaPojo> {
+        static int accesses;
+
+        @Override
+        public DynamoDBPropertyAccessor<SchemaPojo> getAccessor(String getterName) {
+            if (!"getName".equals(getterName)) {
+                return null;
+            }
+            return new DynamoDBPropertyAccessor<SchemaPojo>() {
+                @Override
+                public Object get(SchemaPojo object) {
+                    accesses++;
+                    return object.getName();
+                }
+
+                @Override
+                public void set(SchemaPojo object, Object value) {
+                    accesses++;
+                    object.setName((String) value);
+                }
+            };
+        }
+    }
+
+    @DynamoDBTable(tableName = "read-only")
+    public static class ReadOnlyClass {
+        @DynamoDBHashKey
+        public String getValue() {
+            return "value";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2011-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+public class PaginatedListTest {
+
+    /**
+     * Serves fixed pages, taking the given time to fetch each one.
+     */
+    private static class FakePaginatedList extends PaginatedList<Integer> {
+
+        private final List<List<Integer>> pages;
+        private final long fetchMillis;
+        private int nextPage = 1;
+        private int failuresLeft;
+        private volatile int pagesFetched = 1;
+
+        FakePaginatedList(List<List<Integer>> pages, long fetchMillis,
+                PaginationLoadingStrategy strategy, int prefetchPageCount) {
+            super(null, Integer.class, null, strategy, prefetchPageCount);
+            this.pages = pages;
+            this.fetchMillis = fetchMillis;
+            allResults.addAll(pages.get(0));
+        }
+
+        @Override
+        protected boolean atEndOfResults() {
+            return nextPage >= pages.size();
+        }
+
+        @Override
+        protected synchronized List<Integer> fetchNextPage() {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new AmazonServiceException("Throttled");
+            }
+            sleep(fetchMillis);
+            pagesFetched++;
+            return new ArrayList<Integer>(pages.get(nextPage++));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<List<Integer>> pages(int count, int pageSize) {
+        List<List<Integer>> pages = new ArrayList<List<Integer>>();
+        for (int i = 0; i < count; i++) {
+            List<Integer> page = new ArrayList<Integer>();
+            for (int j = 0; j < pageSize; j++) {
+                page.add(i * pageSize + j);
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private static List<Integer> drain(Iterator<Integer> iterator) {
+        List<Integer> items = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            items.add(iterator.next());
+        }
+        return items;
+    }
+
+    @Test
+    public void testPrefetchIteratesAllPagesInOrder() {
+        List<List<Integer>> pages = new ArrayList<List<Integer>>();
+        pages.add(Arrays.asList(1, 2));
+        pages.add(Collections.<Integer> emptyList());
+        pages.add(Arrays.asList(3));
+        pages.add(Collections.<Integer> emptyList());
+        pages.add(Arrays.asList(4, 5, 6));
+        pages.add(Collections.<Integer> emptyList());
+        FakePaginatedList list = new FakePaginatedList(pages, 0,
+                PaginationLoadingStrategy.ITERATION_PREFETCH, 2);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), drain(list.iterator()));
+        assertEquals(6, list.pagesFetched);
+
+        try {
+            list.iterator();
+            fail("Expected the list to be iterated only once");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            list.size();
+            fail("Expected size() to be unsupported");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testPrefetchKeepsBoundedWindow() {
+        FakePaginatedList list = new FakePaginatedList(pages(10, 5), 0,
+                PaginationLoadingStrategy.ITERATION_PREFETCH, 3);
+
+        Iterator<Integer> iterator = list.iterator();
+        int consumed = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            consumed++;
+            if (consumed % 5 == 0) {
+                // give the prefetcher time to fill the window
+                sleep(20);
+                int pagesConsumed = consumed / 5;
+                assertTrue("Fetched " + list.pagesFetched + " pages after consuming "
+                        + pagesConsumed, list.pagesFetched <= pagesConsumed + 3);
+                assertTrue(list.allResults.size() <= 5);
+            }
+        }
+        assertEquals(50, consumed);
+        assertEquals(10, list.pagesFetched);
+    }
+
+    @Test
+    public void testPrefetchFailureIsThrownAndRetried() {
+        FakePaginatedList list = new FakePaginatedList(pages(3, 2), 0,
+                PaginationLoadingStrategy.ITERATION_PREFETCH, 2);
+        list.failuresLeft = 1;
+
+        Iterator<Integer> iterator = list.iterator();
+        assertEquals(Integer.valueOf(0), iterator.next());
+        assertEquals(Integer.valueOf(1), iterator.next());
+        try {
+            iterator.hasNext();
+            fail("Expected the failed fetch to be thrown");
+        } catch (AmazonServiceException expected) {
+        }
+
+        assertEquals(Arrays.asList(2, 3, 4, 5), drain(iterator));
+        assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * Compares the time taken to iterate over the same pages when each page
+     * takes as long to fetch as to process.
+     */
+    @Test
+    public void testPrefetchOverlapsFetchingWithProcessing() {
+        long lazy = timeIteration(PaginationLoadingStrategy.LAZY_LOADING);
+        long iterationOnly = timeIteration(PaginationLoadingStrategy.ITERATION_ONLY);
+        long prefetch = timeIteration(PaginationLoadingStrategy.ITERATION_PREFETCH);
+        System.out.println("Iterated 20 pages in " + lazy + " ms with LAZY_LOADING, "
+                + iterationOnly + " ms with ITERATION_ONLY and "
+                + prefetch + " ms with ITERATION_PREFETCH");
+
+        assertTrue(prefetch < lazy);
+        assertTrue(prefetch < iterationOnly);
+    }
+
+    private long timeIteration(PaginationLoadingStrategy strategy) {
+        FakePaginatedList list = new FakePaginatedList(pages(20, 10), 10, strategy, 2);
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (Integer item : list) {
+            count++;
+            if (item % 10 == 9) {
+                // processing a page takes as long as fetching one
+                sleep(10);
+            }
+        }
+        assertEquals(200, count);
+        return System.currentTimeMillis() - start;
+    }
+}
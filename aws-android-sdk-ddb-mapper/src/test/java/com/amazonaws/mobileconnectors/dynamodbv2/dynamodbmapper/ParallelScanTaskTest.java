@@ -16,11 +16,16 @@
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
 
@@ -29,10 +34,19 @@ import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ParallelScanTaskTest {
 
@@ -192,4 +206,183 @@ public class ParallelScanTaskTest {
 
         assertTrue(testTask.isAllSegmentScanFinished());
     }
+
+    /**
+     * Returns a client serving the given number of pages on every segment.
+     * EasyMock serializes the calls to a mock, so this needs a fake.
+     */
+    private AmazonDynamoDB fakeClient(final int pagesPerSegment, final int failingSegment,
+            final List<ScanRequest> requests) {
+        return (AmazonDynamoDB) Proxy.newProxyInstance(AmazonDynamoDB.class.getClassLoader(),
+                new Class<?>[] {
+                    AmazonDynamoDB.class
+                }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!"scan".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        ScanRequest request = (ScanRequest) args[0];
+                        requests.add(request);
+                        int segment = request.getSegment();
+                        if (segment == failingSegment) {
+                            throw new AmazonServiceException("Segment failed");
+                        }
+                        int page = request.getExclusiveStartKey() == null ? 0 : Integer
+                                .parseInt(request.getExclusiveStartKey().get("page").getN());
+                        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+                        item.put("id", new AttributeValue().withS(segment + "-" + page));
+                        ScanResult result = new ScanResult()
+                                .withItems(Collections.singletonList(item))
+                                .withCount(1)
+                                .withScannedCount(2)
+                                .withConsumedCapacity(new ConsumedCapacity()
+                                        .withTableName(TABLE).withCapacityUnits(5.0));
+                        if (page + 1 < pagesPerSegment) {
+                            result.setLastEvaluatedKey(Collections.singletonMap("page",
+                                    new AttributeValue().withN(Integer.toString(page + 1))));
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private static List<ScanRequest> segmentRequests(int totalSegments) {
+        List<ScanRequest> list = new ArrayList<ScanRequest>();
+        for (int segment = 0; segment < totalSegments; segment++) {
+            list.add(new ScanRequest().withTableName(TABLE)
+                    .withSegment(segment).withTotalSegments(totalSegments));
+        }
+        return list;
+    }
+
+    private static List<String> scanAll(ParallelScanTask task) {
+        List<String> ids = new ArrayList<String>();
+        do {
+            for (ScanResult result : task.getNextBatchOfScanResults()) {
+                if (result != null) {
+                    for (Map<String, AttributeValue> item : result.getItems()) {
+                        ids.add(item.get("id").getS());
+                    }
+                }
+            }
+        } while (!task.isAllSegmentScanFinished());
+        return ids;
+    }
+
+    private static void waitForIdle(ParallelScanTask task) throws InterruptedException {
+        int pagesScanned = -1;
+        while (true) {
+            Thread.sleep(50);
+            int scanned = 0;
+            for (ParallelScanTask.SegmentProgress progress : task.getSegmentProgress()) {
+                scanned += progress.getPagesScanned();
+            }
+            if (scanned == pagesScanned) {
+                return;
+            }
+            pagesScanned = scanned;
+        }
+    }
+
+    @Test
+    public void testSharedExecutorIsNotShutDown() {
+        final AtomicInteger executed = new AtomicInteger();
+        ExecutorService shared = Executors.newFixedThreadPool(2);
+        try {
+            List<ScanRequest> requests = Collections.synchronizedList(new ArrayList<ScanRequest>());
+            ParallelScanTask task = new ParallelScanTask(fakeClient(3, -1, requests),
+                    segmentRequests(3), new CountingExecutor(shared, executed), 0, null, null);
+
+            List<String> ids = scanAll(task);
+
+            assertEquals(9, ids.size());
+            assertEquals(ids.subList(0, 3), Arrays.asList("0-0", "1-0", "2-0"));
+            assertEquals(9, executed.get());
+            assertNull(requests.get(0).getReturnConsumedCapacity());
+            assertFalse(shared.isShutdown());
+
+            for (ParallelScanTask.SegmentProgress progress : task.getSegmentProgress()) {
+                assertEquals(3, progress.getPagesScanned());
+                assertEquals(6, progress.getItemsScanned());
+                assertEquals(3, progress.getItemsReturned());
+                assertEquals(15.0, progress.getConsumedCapacity(), 0.0);
+                assertTrue(progress.isCompleted());
+            }
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReadAheadIsBoundedPerSegmentAndInTotal() throws Exception {
+        List<ScanRequest> requests = Collections.synchronizedList(new ArrayList<ScanRequest>());
+        ParallelScanTask task = new ParallelScanTask(fakeClient(6, -1, requests),
+                segmentRequests(4), null, 2, 3, null);
+
+        task.getNextBatchOfScanResults();
+        waitForIdle(task);
+
+        int buffered = 0;
+        for (ParallelScanTask.SegmentProgress progress : task.getSegmentProgress()) {
+            assertTrue(progress.getPagesBuffered() <= 2);
+            buffered += progress.getPagesBuffered();
+        }
+        assertEquals(3, buffered);
+        assertEquals(4 + 3, requests.size());
+
+        List<String> ids = scanAll(task);
+        assertEquals(24 - 4, ids.size());
+        assertEquals(24, requests.size());
+    }
+
+    @Test
+    public void testCapacityPerSecondPacesRequests() {
+        List<ScanRequest> requests = Collections.synchronizedList(new ArrayList<ScanRequest>());
+        ParallelScanTask task = new ParallelScanTask(fakeClient(5, -1, requests),
+                segmentRequests(2), null, 1, null, 100.0);
+
+        long start = System.currentTimeMillis();
+        assertEquals(10, scanAll(task).size());
+        long elapsed = System.currentTimeMillis() - start;
+
+        // 50 units at 100 per second, less the first two pages sent at once
+        assertTrue("Scanned in " + elapsed + " ms", elapsed >= 350);
+        for (ScanRequest request : requests) {
+            assertEquals(ReturnConsumedCapacity.TOTAL.toString(),
+                    request.getReturnConsumedCapacity());
+        }
+    }
+
+    @Test
+    public void testSegmentFailureIsThrown() {
+        List<ScanRequest> requests = Collections.synchronizedList(new ArrayList<ScanRequest>());
+        ParallelScanTask task = new ParallelScanTask(fakeClient(2, 1, requests),
+                segmentRequests(2), null, 1, null, null);
+
+        try {
+            task.getNextBatchOfScanResults();
+            fail("Expected the failure of segment 1");
+        } catch (AmazonServiceException expected) {
+            assertEquals("Segment failed", expected.getErrorMessage());
+        }
+        assertTrue(task.getSegmentProgress().get(1).isFailed());
+        assertFalse(task.isAllSegmentScanFinished());
+    }
+
+    private static final class CountingExecutor implements Executor {
+        private final Executor executor;
+        private final AtomicInteger executed;
+
+        CountingExecutor(Executor executor, AtomicInteger executed) {
+            this.executor = executor;
+            this.executed = executed;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executed.incrementAndGet();
+            executor.execute(command);
+        }
+    }
 }
@@ -22,9 +22,11 @@ import android.util.Log;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.BinaryRecordAdapter;
 import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.FileRecordStore;
 import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.FileRecordStore.RecordIterator;
 import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.JSONRecordAdapter;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.SegmentedFileRecordStore;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.retry.PredefinedRetryPolicies;
@@ -42,10 +44,21 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The KinesisRecorder is a high level client meant for storing
@@ -86,6 +99,13 @@ public class KinesisRecorder {
      **/
     private JSONRecordAdapter adapter;
 
+    /**
+     * The store and adapter of the requests when they're stored in binary
+     * form, null otherwise
+     **/
+    private SegmentedFileRecordStore binaryRecordStore;
+    private BinaryRecordAdapter binaryAdapter;
+
     /**
      * The low-level AmazonKinesisClient used to send requests to Amazon Kinesis
      **/
@@ -157,7 +177,16 @@ public class KinesisRecorder {
         client.setRegion(Region.getRegion(region));
 
         try {
-            this.recordStore = new FileRecordStore(directory, this.config);
+            if (this.config.isBinaryRecordFormat()) {
+                this.binaryAdapter = new BinaryRecordAdapter(directory);
+                this.binaryRecordStore = new SegmentedFileRecordStore(directory, this.config);
+                this.binaryRecordStore.importJsonRecords(binaryAdapter);
+                this.recordStore = binaryRecordStore;
+            } else {
+                this.recordStore = this.config.isSegmentedStorage()
+                        ? new SegmentedFileRecordStore(directory, this.config)
+                        : new FileRecordStore(directory, this.config);
+            }
         } catch (IOException e) {
             throw new AmazonClientException("Unable to initialize KinesisRecorder", e);
         }
@@ -183,7 +212,11 @@ public class KinesisRecorder {
                 .withStreamName(streamName)
                 .withPartitionKey(UUID.randomUUID().toString());
         try {
-            recordStore.put(adapter.translateFromRecord(putRequest).toString());
+            if (binaryRecordStore != null) {
+                binaryRecordStore.put(binaryAdapter.translateFromRecord(putRequest));
+            } else {
+                recordStore.put(adapter.translateFromRecord(putRequest).toString());
+            }
         } catch (IOException e) {
             throw new AmazonClientException("Error saving record", e);
         }
@@ -204,6 +237,14 @@ public class KinesisRecorder {
      *             to be valid, it will be kept.
      */
     public synchronized void submitAllRecords() {
+        if (config.getMaxConcurrentSubmissions() > 1) {
+            submitAllRecordsConcurrently();
+            return;
+        }
+        if (binaryRecordStore != null) {
+            submitAllBinaryRecords();
+            return;
+        }
         RecordIterator iterator = recordStore.iterator();
         LinkedList<PutRecordsRequestEntry> entries =
                 new LinkedList<PutRecordsRequestEntry>();
@@ -253,6 +294,246 @@ public class KinesisRecorder {
         }
     }
 
+    /**
+     * Submits all requests saved in binary form, as
+     * {@link #submitAllRecords()} does for those saved as JSON.
+     */
+    private void submitAllBinaryRecords() {
+        SegmentedFileRecordStore.SegmentIterator iterator = binaryRecordStore.iterator();
+        LinkedList<PutRecordsRequestEntry> entries =
+                new LinkedList<PutRecordsRequestEntry>();
+        String stream = null;
+        PutRecordRequest record = null;
+        while (iterator.hasNext()) {
+            // first fill up list
+            try {
+                if (record == null) {
+                    record = binaryAdapter.translateToRecord(iterator.peekRecord());
+                }
+                if (entries.size() == 0) {
+                    stream = record.getStreamName();
+                }
+                if (belongsInBatch(record, stream, entries)) {
+                    entries.add(new PutRecordsRequestEntry()
+                            .withData(record.getData())
+                            .withPartitionKey(record.getPartitionKey()));
+                    // set to null so we know we have to get the next one
+                    record = null;
+                    iterator.nextRecord();
+                } else {
+                    // note this modifies entries and iterator
+                    try {
+                        submitAndUpdate(stream, entries, iterator);
+                    } catch (IOException e) {
+                        throw new AmazonClientException("Error submitting events", e);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Record in record store was malformed, record will be dropped", e);
+                record = null;
+                iterator.nextRecord();
+            }
+        }
+        if (entries.size() > 0) {
+            // note this modifies entries and iterator
+            try {
+                submitAndUpdate(stream, entries, iterator);
+            } catch (IOException e) {
+                throw new AmazonClientException("Error submitting events", e);
+            }
+        }
+    }
+
+    /**
+     * Submits all requests saved with up to
+     * {@link KinesisRecorderConfig#getMaxConcurrentSubmissions()} PutRecords
+     * requests in flight. Records are batched per stream as they're read, and
+     * a full batch is submitted as soon as a request may be sent, so reading
+     * goes on while earlier batches are in flight. Like
+     * {@link #submitAllRecords()}, this makes a single pass over the store:
+     * the entries which may be retried are saved again at the end, so they're
+     * sent by the next call. Records are only removed from the store once the
+     * requests holding them, and every record read before them, have
+     * completed; this happens whenever no batch is partly filled and as many
+     * requests as may be in flight were submitted since the last removal,
+     * and at the end. The first failure of a request stops the submission:
+     * the batches not sent yet are saved again and the failure is thrown
+     * once the requests in flight have completed.
+     */
+    private void submitAllRecordsConcurrently() {
+        int maxInFlight = config.getMaxConcurrentSubmissions();
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight);
+        CompletionService<Void> completionService =
+                new ExecutorCompletionService<Void>(executor);
+        Map<String, List<PutRecordsRequestEntry>> batches =
+                new LinkedHashMap<String, List<PutRecordsRequestEntry>>();
+        List<PutRecordRequest> retained =
+                Collections.synchronizedList(new ArrayList<PutRecordRequest>());
+        int inFlight = 0;
+        AmazonClientException failure = null;
+        try {
+            boolean unremovedRecords = false;
+            int unremovedSubmissions = 0;
+            RecordIterator iterator = recordStore.iterator();
+            while (failure == null && iterator.hasNext()) {
+                PutRecordRequest record;
+                unremovedRecords = true;
+                try {
+                    record = nextRecord(iterator);
+                } catch (JSONException e) {
+                    Log.e(TAG,
+                            "Record in record store was improperly formatted JSON, record will be dropped",
+                            e);
+                    continue;
+                } catch (IOException e) {
+                    Log.e(TAG, "Record in record store was malformed, record will be dropped", e);
+                    continue;
+                }
+                String stream = record.getStreamName();
+                List<PutRecordsRequestEntry> batch = batches.get(stream);
+                if (batch == null) {
+                    batch = new ArrayList<PutRecordsRequestEntry>(PUT_RECORDS_MAX_RECORDS);
+                    batches.put(stream, batch);
+                }
+                batch.add(new PutRecordsRequestEntry()
+                        .withData(record.getData())
+                        .withPartitionKey(record.getPartitionKey()));
+                if (batch.size() < PUT_RECORDS_MAX_RECORDS) {
+                    continue;
+                }
+                if (inFlight == maxInFlight) {
+                    inFlight--;
+                    failure = awaitSubmission(completionService);
+                }
+                if (failure == null) {
+                    batches.remove(stream);
+                    completionService.submit(newSubmission(stream, batch, retained));
+                    inFlight++;
+                    unremovedSubmissions++;
+                    // the records of the other streams' batches are read too,
+                    // so nothing is removed while those are being filled
+                    if (batches.isEmpty() && unremovedSubmissions >= maxInFlight) {
+                        failure = awaitSubmissions(completionService, inFlight);
+                        inFlight = 0;
+                        if (failure == null) {
+                            iterator.removeReadRecords();
+                            unremovedRecords = false;
+                            unremovedSubmissions = 0;
+                        }
+                    }
+                }
+            }
+            Iterator<Map.Entry<String, List<PutRecordsRequestEntry>>> remaining =
+                    batches.entrySet().iterator();
+            while (failure == null && remaining.hasNext()) {
+                if (inFlight == maxInFlight) {
+                    inFlight--;
+                    failure = awaitSubmission(completionService);
+                    if (failure != null) {
+                        break;
+                    }
+                }
+                Map.Entry<String, List<PutRecordsRequestEntry>> batch = remaining.next();
+                remaining.remove();
+                completionService.submit(newSubmission(batch.getKey(), batch.getValue(),
+                        retained));
+                inFlight++;
+            }
+            AmazonClientException e = awaitSubmissions(completionService, inFlight);
+            inFlight = 0;
+            if (failure == null) {
+                failure = e;
+            }
+            // entries which won't be sent are saved again before their
+            // records are removed
+            for (Map.Entry<String, List<PutRecordsRequestEntry>> batch : batches.entrySet()) {
+                saveEntries(batch.getKey(), batch.getValue());
+            }
+            batches.clear();
+            synchronized (retained) {
+                for (PutRecordRequest record : retained) {
+                    saveRecord(record.getData().array(), record.getStreamName());
+                }
+            }
+            if (unremovedRecords) {
+                iterator.removeReadRecords();
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException("Error submitting events", e);
+        } finally {
+            executor.shutdown();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Callable<Void> newSubmission(final String stream,
+            final List<PutRecordsRequestEntry> entries, final List<PutRecordRequest> retained) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                submit(stream, entries, retained);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Waits for the given number of submissions in flight to complete.
+     *
+     * @return the exception the first failed one failed with, null if they
+     *         all succeeded
+     */
+    private AmazonClientException awaitSubmissions(CompletionService<Void> completionService,
+            int count) {
+        AmazonClientException failure = null;
+        for (int i = 0; i < count; i++) {
+            AmazonClientException e = awaitSubmission(completionService);
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Waits for the next submission in flight to complete.
+     *
+     * @return the exception it failed with, null if it succeeded
+     */
+    private AmazonClientException awaitSubmission(CompletionService<Void> completionService) {
+        try {
+            completionService.take().get();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new AmazonClientException("Interrupted while submitting events", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AmazonClientException) {
+                return (AmazonClientException) cause;
+            }
+            return new AmazonClientException("Error submitting events", cause);
+        }
+    }
+
+    /**
+     * Reads the next record from the store, whichever form it's saved in.
+     */
+    private PutRecordRequest nextRecord(RecordIterator iterator)
+            throws JSONException, IOException {
+        if (binaryRecordStore != null) {
+            byte[] record = ((SegmentedFileRecordStore.SegmentIterator) iterator).nextRecord();
+            return binaryAdapter.translateToRecord(record);
+        }
+        JSONObject json = new JSONObject(iterator.next());
+        return new PutRecordRequest()
+                .withStreamName(JSONRecordAdapter.getStreamName(json))
+                .withPartitionKey(JSONRecordAdapter.getPartitionKey(json))
+                .withData(JSONRecordAdapter.getData(json));
+    }
+
     /**
      * Removes all requests saved to disk in the directory provided this
      * KinesisRecorder
@@ -331,6 +612,15 @@ public class KinesisRecorder {
         return fromSameStream && hasSpace;
     }
 
+    /*
+     * returns true if the record can be included in batch
+     */
+    boolean belongsInBatch(PutRecordRequest record, String stream,
+            Collection<PutRecordsRequestEntry> entries) {
+        return record.getStreamName().equals(stream)
+                && entries.size() + 1 <= PUT_RECORDS_MAX_RECORDS;
+    }
+
     /*
      * Returns true iff the exception is recoverable and thus should be retried
      */
@@ -357,11 +647,38 @@ public class KinesisRecorder {
         saveRecord(entry.getData().array(), stream);
     }
 
+    private void retainAll(String stream, Collection<PutRecordsRequestEntry> entries,
+            List<PutRecordRequest> retained) throws IOException {
+        for (PutRecordsRequestEntry entry : entries) {
+            retain(stream, entry, retained);
+        }
+    }
+
+    private void retain(String stream, PutRecordsRequestEntry entry,
+            List<PutRecordRequest> retained) throws IOException {
+        if (retained == null) {
+            saveEntry(stream, entry);
+        } else {
+            retained.add(new PutRecordRequest()
+                    .withStreamName(stream)
+                    .withData(entry.getData()));
+        }
+    }
+
     /*
      * Makes and submits PutRecordsRequest using the given entries and stream
      */
     void submit(String stream,
             List<PutRecordsRequestEntry> entries) throws IOException {
+        submit(stream, entries, null);
+    }
+
+    /*
+     * Submits the entries as above, adding the ones to keep to retained
+     * instead of saving them if it isn't null
+     */
+    private void submit(String stream, List<PutRecordsRequestEntry> entries,
+            List<PutRecordRequest> retained) throws IOException {
         PutRecordsRequest request = new PutRecordsRequest()
                 .withStreamName(stream)
                 .withRecords(entries);
@@ -374,7 +691,7 @@ public class KinesisRecorder {
                 // save the ones that can be retried
                 if (entry.getErrorCode() != null
                         && isRecoverable(entry.getErrorCode())) {
-                    saveEntry(stream, entries.get(i));
+                    retain(stream, entries.get(i), retained);
                 }
             }
         } catch (AmazonClientException e) {
@@ -382,7 +699,7 @@ public class KinesisRecorder {
                 Log.w(TAG,
                         "Error occured while sending request, request appears to be valid stopping submission but retaining records",
                         e);
-                saveEntries(stream, entries);
+                retainAll(stream, entries, retained);
             } else {
                 if (e instanceof AmazonServiceException) {
                     if (!isRecoverable(((AmazonServiceException) e).getErrorCode()))
@@ -397,7 +714,7 @@ public class KinesisRecorder {
                         // otherissues such as invalid credentials may be the
                         // cause
                         // We should keep the records
-                        saveEntries(stream, entries);
+                        retainAll(stream, entries, retained);
                         Log.e(TAG,
                                 "ServiceException in submit all, the values of the data inside the requests appears valid.  The request will be kept",
                                 e);
@@ -24,6 +24,11 @@ import com.amazonaws.ClientConfiguration;
 public class KinesisRecorderConfig {
 
     private long maxStorageSize = 1024 * 1024 * 5L;
+    private boolean segmentedStorage = false;
+    private long segmentSize = 256 * 1024L;
+    private boolean syncOnSave = false;
+    private boolean binaryRecordFormat = false;
+    private int maxConcurrentSubmissions = 1;
     private ClientConfiguration clientConfiguration;
 
     /**
@@ -56,6 +61,11 @@ public class KinesisRecorderConfig {
      */
     public KinesisRecorderConfig(KinesisRecorderConfig other) {
         this.maxStorageSize = other.getMaxStorageSize();
+        this.segmentedStorage = other.isSegmentedStorage();
+        this.segmentSize = other.getSegmentSize();
+        this.syncOnSave = other.isSyncOnSave();
+        this.binaryRecordFormat = other.isBinaryRecordFormat();
+        this.maxConcurrentSubmissions = other.getMaxConcurrentSubmissions();
         this.clientConfiguration = new ClientConfiguration(other.getClientConfiguration());
     }
 
@@ -79,6 +89,122 @@ public class KinesisRecorderConfig {
         return this.maxStorageSize;
     }
 
+    /**
+     * Sets whether KinesisRecorder stores requests in a log of segment files
+     * instead of a single file. Removing the requests which have been
+     * submitted then only deletes the segments read to their end, rather than
+     * copying the remaining requests to a new file, which keeps submitting a
+     * large backlog fast. Requests stored in the single file are moved to the
+     * log. Default is false.
+     *
+     * @param segmentedStorage
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withSegmentedStorage(boolean segmentedStorage) {
+        this.segmentedStorage = segmentedStorage;
+        return this;
+    }
+
+    /**
+     * @return Whether KinesisRecorder stores requests in a log of segment
+     *         files.
+     */
+    public boolean isSegmentedStorage() {
+        return segmentedStorage;
+    }
+
+    /**
+     * Sets the size in bytes at which a new segment file is started when
+     * segmented storage is enabled. Default is 256KiB.
+     *
+     * @param segmentSize
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withSegmentSize(long segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * @return The size in bytes at which a new segment file is started.
+     */
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets whether saving a request waits until it has been synced to the
+     * disk, so it survives a power loss, when segmented storage is enabled.
+     * Requests saved concurrently share a single sync. Default is false.
+     *
+     * @param syncOnSave
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withSyncOnSave(boolean syncOnSave) {
+        this.syncOnSave = syncOnSave;
+        return this;
+    }
+
+    /**
+     * @return Whether saving a request waits until it has been synced to the
+     *         disk.
+     */
+    public boolean isSyncOnSave() {
+        return syncOnSave;
+    }
+
+    /**
+     * Sets whether KinesisRecorder stores requests in a compact binary format
+     * rather than as JSON with Base64 encoded data. Binary records are kept
+     * in a log of segment files, as with segmented storage, and the requests
+     * stored as JSON are converted when the recorder is created. Default is
+     * false.
+     *
+     * @param binaryRecordFormat
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withBinaryRecordFormat(boolean binaryRecordFormat) {
+        this.binaryRecordFormat = binaryRecordFormat;
+        return this;
+    }
+
+    /**
+     * @return Whether KinesisRecorder stores requests in a binary format.
+     */
+    public boolean isBinaryRecordFormat() {
+        return binaryRecordFormat;
+    }
+
+    /**
+     * Sets how many PutRecords requests KinesisRecorder may have in flight
+     * at once when submitting the requests it stored. With more than one,
+     * requests are batched per stream as they're read, rather than one
+     * stream at a time, and the batches are submitted concurrently while the
+     * next ones are read. Default is 1, which submits the batches one after
+     * the other.
+     *
+     * @param maxConcurrentSubmissions
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withMaxConcurrentSubmissions(int maxConcurrentSubmissions) {
+        if (maxConcurrentSubmissions < 1) {
+            throw new IllegalArgumentException("maxConcurrentSubmissions must be at least 1");
+        }
+        this.maxConcurrentSubmissions = maxConcurrentSubmissions;
+        return this;
+    }
+
+    /**
+     * @return The number of PutRecords requests KinesisRecorder may have in
+     *         flight at once.
+     */
+    public int getMaxConcurrentSubmissions() {
+        return maxConcurrentSubmissions;
+    }
+
     /**
      * Returns the client configuration the Kinesis Recorder will use when
      * making requests to Amazon Kinesis
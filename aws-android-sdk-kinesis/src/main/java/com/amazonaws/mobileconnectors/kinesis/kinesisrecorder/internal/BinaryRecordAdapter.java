@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.PutRecordRequest;
+import com.amazonaws.util.StringUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts PutRecordRequests to and from a compact binary form, which stores
+ * the data as is rather than Base64 encoded. The stream names are replaced by
+ * their index in a dictionary, which is kept in a file next to the records
+ * and only ever grows. A record is laid out as
+ *
+ * <pre>
+ * flags                  1 byte, telling which optional fields follow
+ * stream name index      varint
+ * partition key          varint length, UTF-8 bytes
+ * explicit hash key      varint length, UTF-8 bytes (optional)
+ * sequence number        varint length, UTF-8 bytes (optional)
+ * data                   varint length, bytes
+ * </pre>
+ *
+ * Integrity of the records is left to the store, which frames them with
+ * their length and a CRC.
+ */
+public class BinaryRecordAdapter {
+    private static final int EXPLICIT_HASH_KEY_FLAG = 1;
+    private static final int SEQUENCE_NUMBER_FLAG = 1 << 1;
+
+    private final File streamNamesFile;
+    private final List<String> streamNames = new ArrayList<String>();
+    private final Map<String, Integer> streamIndexes = new HashMap<String, Integer>();
+
+    /**
+     * Creates the adapter, loading the dictionary of stream names kept in the
+     * given directory.
+     *
+     * @param recorderDirectory The directory the KinesisRecorder stores
+     *            requests in
+     * @throws IOException
+     */
+    public BinaryRecordAdapter(File recorderDirectory) throws IOException {
+        File directory = new FileManager(recorderDirectory)
+                .createDirectory(Constants.BINARY_RECORDS_DIRECTORY);
+        if (directory == null) {
+            throw new IOException("Failed to create directory "
+                    + Constants.BINARY_RECORDS_DIRECTORY);
+        }
+        this.streamNamesFile = new File(directory, Constants.STREAM_NAMES_FILE_NAME);
+        if (streamNamesFile.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(streamNamesFile), StringUtils.UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // A name cut short by a crash was never referenced, as
+                    // it's synced before any record using it is saved.
+                    streamIndexes.put(line, streamNames.size());
+                    streamNames.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @param source the PutRecordRequest that will be stored
+     * @return the binary representation of the request
+     * @throws IOException if the stream name can't be added to the dictionary
+     */
+    public byte[] translateFromRecord(PutRecordRequest source) throws IOException {
+        if (source.getData() == null || source.getPartitionKey() == null
+                || source.getPartitionKey().isEmpty()
+                || source.getStreamName() == null || source.getStreamName().isEmpty()) {
+            throw new AmazonClientException(
+                    "RecordRequests must specify a partition key, stream name, and data");
+        }
+        if (!source.getData().hasArray()) {
+            throw new AmazonClientException("ByteBuffer must be based on array for proper storage");
+        }
+        int streamIndex = getStreamIndex(source.getStreamName());
+        byte[] partitionKey = source.getPartitionKey().getBytes(StringUtils.UTF8);
+        byte[] explicitHashKey = source.getExplicitHashKey() == null ? null
+                : source.getExplicitHashKey().getBytes(StringUtils.UTF8);
+        byte[] sequenceNumber = source.getSequenceNumberForOrdering() == null ? null
+                : source.getSequenceNumberForOrdering().getBytes(StringUtils.UTF8);
+        byte[] data = source.getData().array();
+
+        int flags = 0;
+        int size = 1 + varintSize(streamIndex) + fieldSize(partitionKey) + fieldSize(data);
+        if (explicitHashKey != null) {
+            flags |= EXPLICIT_HASH_KEY_FLAG;
+            size += fieldSize(explicitHashKey);
+        }
+        if (sequenceNumber != null) {
+            flags |= SEQUENCE_NUMBER_FLAG;
+            size += fieldSize(sequenceNumber);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.put((byte) flags);
+        putVarint(record, streamIndex);
+        putField(record, partitionKey);
+        if (explicitHashKey != null) {
+            putField(record, explicitHashKey);
+        }
+        if (sequenceNumber != null) {
+            putField(record, sequenceNumber);
+        }
+        putField(record, data);
+        return record.array();
+    }
+
+    /**
+     * @param record a record made via {@link #translateFromRecord}
+     * @return the request the record was made from
+     * @throws IOException if the record is malformed
+     */
+    public PutRecordRequest translateToRecord(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        try {
+            int flags = buffer.get();
+            int streamIndex = getVarint(buffer);
+            PutRecordRequest request = new PutRecordRequest()
+                    .withStreamName(getStreamName(streamIndex))
+                    .withPartitionKey(getString(buffer));
+            if ((flags & EXPLICIT_HASH_KEY_FLAG) != 0) {
+                request.setExplicitHashKey(getString(buffer));
+            }
+            if ((flags & SEQUENCE_NUMBER_FLAG) != 0) {
+                request.setSequenceNumberForOrdering(getString(buffer));
+            }
+            request.setData(ByteBuffer.wrap(getField(buffer)));
+            if (buffer.hasRemaining()) {
+                throw new IOException("Malformed record: trailing bytes");
+            }
+            return request;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException or a negative length
+            throw new IOException("Malformed record", e);
+        }
+    }
+
+    /**
+     * Converts a record stored as JSON by {@link JSONRecordAdapter}.
+     *
+     * @param json the JSON representation of the request
+     * @return the binary representation of the request
+     * @throws JSONException if the JSON is malformed
+     * @throws IOException if the stream name can't be added to the dictionary
+     */
+    public byte[] translateFromJson(String json) throws JSONException, IOException {
+        JSONObject jsonObject = new JSONObject(json);
+        PutRecordRequest request = new PutRecordRequest()
+                .withStreamName(JSONRecordAdapter.getStreamName(jsonObject))
+                .withPartitionKey(JSONRecordAdapter.getPartitionKey(jsonObject))
+                .withData(JSONRecordAdapter.getData(jsonObject));
+        request.setExplicitHashKey(jsonObject.optString(
+                JSONRecordAdapter.EXPLICIT_HASH_FIELD, null));
+        request.setSequenceNumberForOrdering(jsonObject.optString(
+                JSONRecordAdapter.SEQUENCE_NUMBER_FIELD, null));
+        return translateFromRecord(request);
+    }
+
+    /**
+     * Returns the index of the given stream name, adding it to the dictionary
+     * if needed. A new name is synced to the disk before it's used.
+     */
+    private synchronized int getStreamIndex(String streamName) throws IOException {
+        Integer index = streamIndexes.get(streamName);
+        if (index != null) {
+            return index;
+        }
+        if (streamName.indexOf('\n') >= 0 || streamName.indexOf('\r') >= 0) {
+            throw new AmazonClientException("Invalid stream name: " + streamName);
+        }
+        FileOutputStream out = new FileOutputStream(streamNamesFile, true);
+        try {
+            out.write((streamName + "\n").getBytes(StringUtils.UTF8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        index = streamNames.size();
+        streamNames.add(streamName);
+        streamIndexes.put(streamName, index);
+        return index;
+    }
+
+    private synchronized String getStreamName(int index) throws IOException {
+        if (index < 0 || index >= streamNames.size()) {
+            throw new IOException("Malformed record: unknown stream " + index);
+        }
+        return streamNames.get(index);
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed record: varint too long");
+    }
+
+    private static int fieldSize(byte[] field) {
+        return varintSize(field.length) + field.length;
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] field) {
+        putVarint(buffer, field.length);
+        buffer.put(field);
+    }
+
+    private static byte[] getField(ByteBuffer buffer) throws IOException {
+        byte[] field = new byte[getVarint(buffer)];
+        buffer.get(field);
+        return field;
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = getVarint(buffer);
+        String value = new String(buffer.array(), buffer.position(), length, StringUtils.UTF8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
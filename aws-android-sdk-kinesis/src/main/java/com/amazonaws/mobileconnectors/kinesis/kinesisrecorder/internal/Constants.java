@@ -15,9 +15,14 @@
 
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal;
 
+import java.io.File;
+
 public class Constants {
     public static final String RECORDS_DIRECTORY = "KinesisRecorder";
     public static final String RECORDS_FILE_NAME = "KinesisRecords";
+    public static final String BINARY_RECORDS_DIRECTORY = RECORDS_DIRECTORY + File.separator
+            + "binary";
+    public static final String STREAM_NAMES_FILE_NAME = "streams";
     /*
      * with only 100, we guarantee that we are below both the record and size
      * limit of Kinesis
@@ -66,6 +66,16 @@ public class FileRecordStore {
         tryCreateRecordsFile();
     }
 
+    /**
+     * Constructor for stores which keep the records in their own files, and
+     * so override {@link #put(String)} and {@link #iterator()}.
+     *
+     * @param config
+     */
+    protected FileRecordStore(KinesisRecorderConfig config) {
+        this.config = config;
+    }
+
     public boolean put(final String record) throws IOException {
         boolean success = false;
         BufferedWriter writer = null;
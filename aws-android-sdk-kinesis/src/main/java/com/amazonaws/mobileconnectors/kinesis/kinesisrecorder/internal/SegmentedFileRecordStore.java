@@ -0,0 +1,980 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal;
+
+import android.util.Log;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.KinesisRecorderConfig;
+import com.amazonaws.util.StringUtils;
+
+import org.json.JSONException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link FileRecordStore} which appends records to a log made of segment
+ * files of a fixed size. The position of the first unread record is kept in a
+ * checkpoint file, so removing the records which have been submitted only
+ * rewrites the checkpoint and deletes the segments read to their end, instead
+ * of copying the remaining records to a new file.
+ * <p>
+ * Records are stored one per line, as the single file of
+ * {@link FileRecordStore} does, and the records found in that file are moved
+ * to the log when the store is opened. Optionally, saving a record returns
+ * only once the record has been synced to the disk; concurrent saves share a
+ * single sync.
+ * <p>
+ * When configured with {@link KinesisRecorderConfig#isBinaryRecordFormat()},
+ * the store keeps binary records, saved with {@link #put(byte[])} and read
+ * with {@link SegmentIterator#nextRecord()}, in a log of its own. Each record
+ * is framed by its length, as a varint, and followed by its CRC32, so a
+ * record torn or damaged on the disk is detected rather than misread.
+ */
+public class SegmentedFileRecordStore extends FileRecordStore {
+    private static final String TAG = "SegmentedFileRecordStore";
+
+    static final String SEGMENTS_DIRECTORY = Constants.RECORDS_DIRECTORY + File.separator
+            + "segments";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String CHECKPOINT_FILE_NAME = "checkpoint";
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int CRC_SIZE = 4;
+    /** Most bytes a varint frame length takes */
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private final ReentrantLock accessLock = new ReentrantLock();
+    /** Held while syncing, so saves waiting for a sync share the next one */
+    private final Object syncLock = new Object();
+
+    private final File recorderDirectory;
+    private final KinesisRecorderConfig config;
+    private final FileManager fileManager;
+    private final File segmentsDirectory;
+    private final boolean binary;
+    private final long maxStorageSize;
+    private final long segmentSize;
+    private final boolean syncOnSave;
+
+    /** Ids of the segments on disk, oldest first; records go to the last one */
+    private final LinkedList<Long> segments = new LinkedList<Long>();
+    private FileOutputStream out;
+    private long activeSegmentSize;
+    /** Size of all the segments, including the records read off the first */
+    private long storedBytes;
+
+    /** Position of the first unread record */
+    private long checkpointSegment;
+    private long checkpointOffset;
+
+    /** Number of records appended, and of those known to be on the disk */
+    private long appendCount;
+    private volatile long syncedCount;
+
+    /**
+     * Opens the log in the given directory, creating it if needed.
+     *
+     * @param recorderDirectory The directory (which the FileRecordStore is only
+     *            used for the KinesisRecorder) to use to store requests in
+     * @param config
+     * @throws IOException
+     */
+    public SegmentedFileRecordStore(final File recorderDirectory, KinesisRecorderConfig config)
+            throws IOException {
+        super(config);
+        this.recorderDirectory = recorderDirectory;
+        this.config = config;
+        this.fileManager = new FileManager(recorderDirectory);
+        this.maxStorageSize = config.getMaxStorageSize();
+        this.segmentSize = config.getSegmentSize();
+        this.syncOnSave = config.isSyncOnSave();
+        this.binary = config.isBinaryRecordFormat();
+        String directory = binary ? Constants.BINARY_RECORDS_DIRECTORY : SEGMENTS_DIRECTORY;
+        this.segmentsDirectory = fileManager.createDirectory(directory);
+        if (segmentsDirectory == null) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+        open();
+        if (!binary) {
+            importRecordsFile();
+        }
+    }
+
+    @Override
+    public boolean put(final String record) throws IOException {
+        if (binary) {
+            throw new IllegalStateException("This store keeps binary records");
+        }
+        return save((record + "\n").getBytes(StringUtils.UTF8));
+    }
+
+    /**
+     * Saves a binary record.
+     *
+     * @param record the record, as made by {@link BinaryRecordAdapter}
+     * @return false if the record doesn't fit the storage limit
+     * @throws IOException
+     */
+    public boolean put(final byte[] record) throws IOException {
+        if (!binary) {
+            throw new IllegalStateException("This store keeps text records");
+        }
+        return save(frame(record));
+    }
+
+    @Override
+    public SegmentIterator iterator() {
+        return new SegmentIterator();
+    }
+
+    /**
+     * Converts the records stored as JSON, in the single file of
+     * {@link FileRecordStore} or in a log of text segments, and moves them to
+     * this binary log. Records which don't fit the storage limit are left
+     * where they are, to be moved next time.
+     *
+     * @param adapter the adapter the binary records are made with
+     * @throws IOException
+     */
+    public void importJsonRecords(BinaryRecordAdapter adapter) throws IOException {
+        if (!binary) {
+            throw new IllegalStateException("This store keeps text records");
+        }
+        File recordsFile = new File(fileManager.getDirectory(Constants.RECORDS_DIRECTORY),
+                Constants.RECORDS_FILE_NAME);
+        if (!fileManager.getDirectory(SEGMENTS_DIRECTORY).exists() && !recordsFile.exists()) {
+            return;
+        }
+        // the text log takes in the records of the single file on its own
+        SegmentedFileRecordStore jsonStore = new SegmentedFileRecordStore(recorderDirectory,
+                new KinesisRecorderConfig(config).withBinaryRecordFormat(false));
+        SegmentIterator iterator = jsonStore.iterator();
+        boolean full = false;
+        try {
+            while (iterator.hasNext()) {
+                byte[] record;
+                try {
+                    record = frame(adapter.translateFromJson(iterator.peek()));
+                } catch (JSONException e) {
+                    Log.e(TAG, "Record in record store was improperly formatted JSON, "
+                            + "record will be dropped", e);
+                    iterator.next();
+                    continue;
+                } catch (AmazonClientException e) {
+                    Log.e(TAG, "Record in record store was incomplete, record will be dropped",
+                            e);
+                    iterator.next();
+                    continue;
+                }
+                if (!tryAppend(record)) {
+                    full = true;
+                    break;
+                }
+                iterator.next();
+            }
+            if (syncOnSave) {
+                syncAll();
+            }
+        } finally {
+            if (full) {
+                iterator.removeReadRecords();
+                jsonStore.close();
+            } else {
+                jsonStore.destroy();
+            }
+        }
+    }
+
+    private boolean save(byte[] bytes) throws IOException {
+        long count;
+        accessLock.lock();
+        try {
+            if (!tryAppend(bytes)) {
+                return false;
+            }
+            count = appendCount;
+        } finally {
+            accessLock.unlock();
+        }
+        if (syncOnSave) {
+            sync(count);
+        }
+        return true;
+    }
+
+    private boolean tryAppend(byte[] bytes) throws IOException {
+        accessLock.lock();
+        try {
+            if (storedBytes + bytes.length > maxStorageSize) {
+                return false;
+            }
+            append(bytes);
+            return true;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * Frames a binary record with its length and CRC.
+     */
+    private static byte[] frame(byte[] record) {
+        ByteBuffer frame = ByteBuffer.allocate(BinaryRecordAdapter.varintSize(record.length)
+                + record.length + CRC_SIZE);
+        BinaryRecordAdapter.putVarint(frame, record.length);
+        frame.put(record);
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        frame.putInt((int) crc.getValue());
+        return frame.array();
+    }
+
+    /**
+     * Returns the number of bytes of the segments, including the records of
+     * the first segment which have already been read and removed.
+     */
+    long getStoredBytes() {
+        accessLock.lock();
+        try {
+            return storedBytes;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segment files.
+     */
+    int getSegmentCount() {
+        accessLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        List<Long> ids = new ArrayList<Long>();
+        File[] files = segmentsDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        ids.add(Long.parseLong(name.substring(0,
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        Log.w(TAG, "Ignoring unexpected file " + file);
+                    }
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        readCheckpoint();
+        for (Long id : ids) {
+            if (id < checkpointSegment) {
+                deleteSegment(id);
+            } else {
+                segments.add(id);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.add(checkpointSegment);
+        } else if (segments.getFirst() > checkpointSegment) {
+            checkpointSegment = segments.getFirst();
+            checkpointOffset = 0;
+        }
+
+        for (Long id : segments) {
+            storedBytes += segmentFile(id).length();
+        }
+        File active = segmentFile(segments.getLast());
+        storedBytes -= active.length();
+        activeSegmentSize = binary ? truncateIncompleteFrame(active)
+                : truncateIncompleteRecord(active);
+        storedBytes += activeSegmentSize;
+        if (checkpointSegment == segments.getLast()
+                && checkpointOffset > activeSegmentSize) {
+            checkpointOffset = activeSegmentSize;
+        }
+        out = new FileOutputStream(active, true);
+    }
+
+    /**
+     * Cuts off a record left incomplete by a crash while it was written.
+     *
+     * @return the size of the file
+     */
+    private static long truncateIncompleteRecord(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long length = raf.length();
+            long end = length;
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            while (end > 0) {
+                int n = (int) Math.min(buffer.length, end);
+                raf.seek(end - n);
+                raf.readFully(buffer, 0, n);
+                int i = n - 1;
+                while (i >= 0 && buffer[i] != '\n') {
+                    i--;
+                }
+                if (i >= 0) {
+                    end = end - n + i + 1;
+                    break;
+                }
+                end -= n;
+            }
+            if (end < length) {
+                raf.setLength(end);
+            }
+            return end;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Cuts off the frames after the last whole and intact one, which a crash
+     * may have left torn.
+     *
+     * @return the size of the file
+     */
+    private static long truncateIncompleteFrame(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long length = file.length();
+        long end = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), READ_BUFFER_SIZE));
+        try {
+            byte[] record = new byte[256];
+            CRC32 crc = new CRC32();
+            while (end < length) {
+                int recordLength = 0;
+                int consumed = 0;
+                int b;
+                do {
+                    b = in.readUnsignedByte();
+                    recordLength |= (b & 0x7f) << (7 * consumed);
+                    consumed++;
+                } while ((b & 0x80) != 0 && consumed < MAX_VARINT_SIZE);
+                if ((b & 0x80) != 0 || recordLength < 0
+                        || end + consumed + recordLength + CRC_SIZE > length) {
+                    break;
+                }
+                if (record.length < recordLength) {
+                    record = new byte[recordLength];
+                }
+                in.readFully(record, 0, recordLength);
+                int storedCrc = in.readInt();
+                crc.reset();
+                crc.update(record, 0, recordLength);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                end += consumed + recordLength + CRC_SIZE;
+            }
+        } catch (EOFException e) {
+            // the last frame is incomplete
+        } finally {
+            in.close();
+        }
+        if (end < length) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(end);
+            } finally {
+                raf.close();
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Moves the records of the single file used by {@link FileRecordStore}
+     * to the log.
+     */
+    private void importRecordsFile() throws IOException {
+        File recordsFile = new File(fileManager.getDirectory(Constants.RECORDS_DIRECTORY),
+                Constants.RECORDS_FILE_NAME);
+        if (!recordsFile.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                fileManager.newInputStream(recordsFile), StringUtils.UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    append((line + "\n").getBytes(StringUtils.UTF8));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (syncOnSave) {
+            out.getFD().sync();
+        }
+        if (!recordsFile.delete()) {
+            throw new IOException("Failed to delete " + recordsFile);
+        }
+    }
+
+    /**
+     * Appends a record, starting a new segment if it doesn't fit the current
+     * one. Only called with the access lock held.
+     */
+    private void append(byte[] bytes) throws IOException {
+        if (activeSegmentSize > 0 && activeSegmentSize + bytes.length > segmentSize) {
+            roll();
+        }
+        out.write(bytes);
+        activeSegmentSize += bytes.length;
+        storedBytes += bytes.length;
+        appendCount++;
+    }
+
+    /**
+     * Starts a new segment. Only called with the access lock held.
+     */
+    private void roll() throws IOException {
+        if (syncOnSave) {
+            out.getFD().sync();
+            syncedCount = appendCount;
+        }
+        out.close();
+        long id = segments.getLast() + 1;
+        segments.add(id);
+        out = new FileOutputStream(segmentFile(id), true);
+        activeSegmentSize = 0;
+    }
+
+    /**
+     * Syncs everything appended so far.
+     */
+    private void syncAll() throws IOException {
+        accessLock.lock();
+        try {
+            out.getFD().sync();
+            syncedCount = appendCount;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the given number of appended records are on the disk. The
+     * caller which gets to sync first syncs on behalf of all the records
+     * appended so far.
+     */
+    private void sync(long count) throws IOException {
+        synchronized (syncLock) {
+            while (syncedCount < count) {
+                long target;
+                FileChannel channel;
+                accessLock.lock();
+                try {
+                    target = appendCount;
+                    channel = out.getChannel();
+                } finally {
+                    accessLock.unlock();
+                }
+                try {
+                    channel.force(false);
+                } catch (ClosedChannelException e) {
+                    // the segment was synced when the next one was started
+                    continue;
+                }
+                accessLock.lock();
+                try {
+                    if (target > syncedCount) {
+                        syncedCount = target;
+                    }
+                } finally {
+                    accessLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the checkpoint to the given position and deletes the segments
+     * before it. Only called with the access lock held.
+     */
+    private void moveCheckpoint(long segment, long offset) throws IOException {
+        if (segment < checkpointSegment
+                || (segment == checkpointSegment && offset < checkpointOffset)) {
+            // another iterator has removed more records already
+            segment = checkpointSegment;
+            offset = checkpointOffset;
+        }
+        long active = segments.getLast();
+        while (segment < active && offset >= segmentFile(segment).length()) {
+            segment++;
+            offset = 0;
+        }
+        if (segment == active && offset > 0 && offset == activeSegmentSize) {
+            // Everything has been read, so the space can be given back now
+            // rather than when the segment is full.
+            roll();
+            segment = segments.getLast();
+            offset = 0;
+        }
+        writeCheckpoint(segment, offset);
+        while (segments.getFirst() < segment) {
+            long id = segments.removeFirst();
+            storedBytes -= segmentFile(id).length();
+            deleteSegment(id);
+        }
+    }
+
+    private void readCheckpoint() throws IOException {
+        checkpointSegment = 1;
+        checkpointOffset = 0;
+        File file = new File(segmentsDirectory, CHECKPOINT_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                fileManager.newInputStream(file), StringUtils.UTF8));
+        try {
+            String line = reader.readLine();
+            String[] parts = line == null ? new String[0] : line.trim().split(" ");
+            if (parts.length != 2) {
+                throw new IOException("Malformed checkpoint: " + line);
+            }
+            checkpointSegment = Long.parseLong(parts[0]);
+            checkpointOffset = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed checkpoint", e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Replaces the checkpoint file with one holding the given position.
+     */
+    private void writeCheckpoint(long segment, long offset) throws IOException {
+        File file = new File(segmentsDirectory, CHECKPOINT_FILE_NAME);
+        File tempFile = new File(segmentsDirectory, CHECKPOINT_FILE_NAME + ".tmp");
+        FileOutputStream stream = new FileOutputStream(tempFile);
+        try {
+            stream.write((segment + " " + offset + "\n").getBytes(StringUtils.UTF8));
+            if (syncOnSave) {
+                stream.getFD().sync();
+            }
+        } finally {
+            stream.close();
+        }
+        if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+            throw new IOException("Failed to persist the checkpoint");
+        }
+        checkpointSegment = segment;
+        checkpointOffset = offset;
+    }
+
+    private void deleteAll() throws IOException {
+        out.close();
+        long next = segments.getLast() + 1;
+        for (Long id : segments) {
+            deleteSegment(id);
+        }
+        segments.clear();
+        segments.add(next);
+        out = new FileOutputStream(segmentFile(next), true);
+        activeSegmentSize = 0;
+        storedBytes = 0;
+        syncedCount = appendCount;
+        writeCheckpoint(next, 0);
+    }
+
+    /**
+     * Closes the segment records are appended to.
+     */
+    private void close() throws IOException {
+        accessLock.lock();
+        try {
+            out.close();
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the log and deletes all its files.
+     */
+    private void destroy() throws IOException {
+        accessLock.lock();
+        try {
+            out.close();
+            for (Long id : segments) {
+                deleteSegment(id);
+            }
+            segments.clear();
+            File[] files = segmentsDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        Log.e(TAG, "Failed to delete " + file);
+                    }
+                }
+            }
+            if (!segmentsDirectory.delete()) {
+                Log.e(TAG, "Failed to delete " + segmentsDirectory);
+            }
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    private void deleteSegment(long id) {
+        File file = segmentFile(id);
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "Failed to delete " + file);
+        }
+    }
+
+    private File segmentFile(long id) {
+        return new File(segmentsDirectory, String.format(Locale.US, "%019d", id)
+                + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Reads the records from the checkpoint on, following the segments as
+     * they're written. Binary records are read with {@link #nextRecord()}
+     * and {@link #peekRecord()}, text records with either those or
+     * {@link #next()} and {@link #peek()}.
+     */
+    public class SegmentIterator extends RecordIterator {
+        /** Position after the last record returned by next() */
+        private long readSegment = checkpointSegment;
+        private long readOffset = checkpointOffset;
+
+        /** Record read ahead by hasNext(), and the position after it */
+        private byte[] pending;
+        private long pendingSegment;
+        private long pendingOffset;
+
+        /** Position of the stream, which only ever stops between records */
+        private InputStream in;
+        private long inSegment = checkpointSegment;
+        private long inOffset = checkpointOffset;
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        private int bufferPosition;
+        private int bufferLimit;
+        private byte[] record = new byte[256];
+        private final byte[] crcBytes = new byte[CRC_SIZE];
+        private final CRC32 crc = new CRC32();
+
+        SegmentIterator() {
+        }
+
+        @Override
+        public boolean hasNext() {
+            accessLock.lock();
+            try {
+                if (pending == null) {
+                    readRecord();
+                }
+                return pending != null;
+            } catch (IOException e) {
+                throw new AmazonClientException("IO Error", e);
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        @Override
+        public String next() {
+            return toText(nextRecord());
+        }
+
+        @Override
+        public String peek() {
+            return toText(peekRecord());
+        }
+
+        /**
+         * Returns the next record, as {@link #next()} does, but as it's
+         * stored.
+         */
+        public byte[] nextRecord() {
+            accessLock.lock();
+            try {
+                if (pending == null) {
+                    readRecord();
+                    if (pending == null) {
+                        return null;
+                    }
+                }
+                byte[] next = pending;
+                pending = null;
+                readSegment = pendingSegment;
+                readOffset = pendingOffset;
+                linesRead++;
+                return next;
+            } catch (IOException e) {
+                throw new AmazonClientException("IO Error", e);
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Returns the next record without moving past it, as {@link #peek()}
+         * does, but as it's stored.
+         */
+        public byte[] peekRecord() {
+            accessLock.lock();
+            try {
+                hasNext();
+                return pending;
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        @Override
+        public void removeReadRecords() throws IOException {
+            accessLock.lock();
+            try {
+                moveCheckpoint(readSegment, readOffset);
+                rewind();
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        @Override
+        public void removeAllRecords() throws IOException {
+            accessLock.lock();
+            try {
+                deleteAll();
+                rewind();
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        private String toText(byte[] bytes) {
+            if (binary) {
+                throw new IllegalStateException("This store keeps binary records");
+            }
+            return bytes == null ? null : new String(bytes, StringUtils.UTF8);
+        }
+
+        /**
+         * Continues from the checkpoint, like a new iterator would.
+         */
+        private void rewind() throws IOException {
+            closeStream();
+            pending = null;
+            linesRead = 0;
+            readSegment = inSegment = checkpointSegment;
+            readOffset = inOffset = checkpointOffset;
+        }
+
+        /**
+         * Reads the next record into {@link #pending}, leaving it null at the
+         * end of the log.
+         */
+        private void readRecord() throws IOException {
+            if (inSegment < segments.getFirst()) {
+                // the records were removed through another iterator
+                closeStream();
+                inSegment = checkpointSegment;
+                inOffset = checkpointOffset;
+            }
+            while (true) {
+                if (in == null) {
+                    in = new FileInputStream(segmentFile(inSegment));
+                    long skipped = 0;
+                    while (skipped < inOffset) {
+                        long n = in.skip(inOffset - skipped);
+                        if (n <= 0) {
+                            break;
+                        }
+                        skipped += n;
+                    }
+                    bufferPosition = bufferLimit = 0;
+                }
+                int length = binary ? readFrame() : readLine();
+                if (length >= 0) {
+                    pending = Arrays.copyOf(record, length);
+                    pendingSegment = inSegment;
+                    pendingOffset = inOffset;
+                    return;
+                }
+                if (inSegment == segments.getLast()) {
+                    return;
+                }
+                closeStream();
+                inSegment++;
+                inOffset = 0;
+            }
+        }
+
+        /**
+         * Reads a line into {@link #record} and moves the stream offset past
+         * it.
+         *
+         * @return the length of the line without the line feed, or -1 if
+         *         there's no complete line left in the segment
+         */
+        private int readLine() throws IOException {
+            int length = 0;
+            while (true) {
+                if (bufferPosition == bufferLimit && !fillBuffer()) {
+                    return incomplete(length);
+                }
+                byte b = buffer[bufferPosition++];
+                if (b == '\n') {
+                    inOffset += length + 1;
+                    return length;
+                }
+                if (length == record.length) {
+                    record = Arrays.copyOf(record, record.length * 2);
+                }
+                record[length++] = b;
+            }
+        }
+
+        /**
+         * Reads a framed binary record into {@link #record} and moves the
+         * stream offset past it. A damaged record makes the rest of its
+         * segment unreadable, so that is skipped.
+         *
+         * @return the length of the record, or -1 if there's no complete
+         *         record left in the segment
+         */
+        private int readFrame() throws IOException {
+            int length = 0;
+            int consumed = 0;
+            int b;
+            do {
+                if (bufferPosition == bufferLimit && !fillBuffer()) {
+                    return incomplete(consumed);
+                }
+                b = buffer[bufferPosition++] & 0xff;
+                length |= (b & 0x7f) << (7 * consumed);
+                consumed++;
+            } while ((b & 0x80) != 0 && consumed < MAX_VARINT_SIZE);
+            if ((b & 0x80) != 0 || length < 0) {
+                return skipCorruptSegment();
+            }
+            if (bufferLimit - bufferPosition < length + CRC_SIZE
+                    && inOffset + consumed + length + CRC_SIZE > segmentFile(inSegment).length()) {
+                // don't trust a length running past the end of the segment
+                return incomplete(consumed);
+            }
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            if (!readFully(record, length) || !readFully(crcBytes, CRC_SIZE)) {
+                return incomplete(consumed);
+            }
+            crc.reset();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != ByteBuffer.wrap(crcBytes).getInt()) {
+                return skipCorruptSegment();
+            }
+            inOffset += consumed + length + CRC_SIZE;
+            return length;
+        }
+
+        private boolean readFully(byte[] bytes, int length) throws IOException {
+            int copied = 0;
+            while (copied < length) {
+                if (bufferPosition == bufferLimit && !fillBuffer()) {
+                    return false;
+                }
+                int n = Math.min(length - copied, bufferLimit - bufferPosition);
+                System.arraycopy(buffer, bufferPosition, bytes, copied, n);
+                bufferPosition += n;
+                copied += n;
+            }
+            return true;
+        }
+
+        private boolean fillBuffer() throws IOException {
+            int read = in.read(buffer);
+            if (read <= 0) {
+                return false;
+            }
+            bufferPosition = 0;
+            bufferLimit = read;
+            return true;
+        }
+
+        /**
+         * Handles the end of the segment being reached after the given
+         * number of bytes of a record.
+         *
+         * @return -1
+         */
+        private int incomplete(int length) throws IOException {
+            if (length > 0) {
+                // Records are written whole under the lock, so this is only a
+                // record read partially: start over from its beginning next
+                // time.
+                closeStream();
+            }
+            return -1;
+        }
+
+        private int skipCorruptSegment() throws IOException {
+            File file = segmentFile(inSegment);
+            Log.e(TAG, "Dropping the damaged records at the end of " + file);
+            closeStream();
+            inOffset = file.length();
+            return -1;
+        }
+
+        private void closeStream() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+}
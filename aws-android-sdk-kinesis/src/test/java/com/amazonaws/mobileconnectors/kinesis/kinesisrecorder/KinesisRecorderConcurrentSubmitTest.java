@@ -0,0 +1,278 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.Constants;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.SegmentedFileRecordStore;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.kinesis.AmazonKinesisClient;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests submitting with several PutRecords requests in flight. The records
+ * are stored in binary form, which doesn't need the Android JSON classes.
+ */
+public class KinesisRecorderConcurrentSubmitTest {
+
+    private static final AWSCredentialsProvider CREDENTIALS_PROVIDER = new StaticCredentialsProvider(
+            new AnonymousAWSCredentials());
+    private static final String[] STREAMS = {
+            "StreamA", "StreamB", "StreamC"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeKinesisClient client;
+    private KinesisRecorder recorder;
+
+    @Before
+    public void setup() {
+        recorder = new KinesisRecorder(folder.getRoot(), Regions.US_EAST_1,
+                CREDENTIALS_PROVIDER, new KinesisRecorderConfig()
+                        .withBinaryRecordFormat(true)
+                        .withMaxStorageSize(64 * 1024 * 1024)
+                        .withMaxConcurrentSubmissions(4));
+        client = new FakeKinesisClient();
+        recorder.client = client;
+    }
+
+    @Test
+    public void testSubmitsEveryRecordOnce() {
+        saveRecords(1000);
+        recorder.submitAllRecords();
+
+        assertEquals(expectedRecords(1000), client.received);
+        for (PutRecordsRequest request : client.requests) {
+            assertTrue(request.getRecords().size() <= Constants.PUT_RECORDS_MAX_RECORDS);
+        }
+        assertTrue("requests in flight: " + client.maxInFlight, client.maxInFlight.get() > 1);
+        assertFalse(recorder.recordStore.iterator().hasNext());
+    }
+
+    @Test
+    public void testRequeuesOnlyFailedEntries() {
+        client.failEvery = 10;
+        saveRecords(1000);
+        recorder.submitAllRecords();
+
+        // the failed entries were saved again, to be sent by the next call
+        assertEquals(1000, client.submitted.get());
+        assertEquals(client.failed.get(), countRecords());
+        for (int calls = 0; recorder.recordStore.iterator().hasNext(); calls++) {
+            assertTrue(calls < 10);
+            recorder.submitAllRecords();
+        }
+        assertEquals(expectedRecords(1000), client.received);
+        assertEquals(1000 + client.failed.get(), client.submitted.get());
+    }
+
+    @Test
+    public void testThrottledEntriesAreSentOncePerCall() {
+        client.failEvery = 1;
+        saveRecords(1000);
+        recorder.submitAllRecords();
+        assertEquals(1000, client.submitted.get());
+        assertEquals(1000, countRecords());
+
+        recorder.submitAllRecords();
+        assertEquals(2000, client.submitted.get());
+        assertEquals(1000, countRecords());
+    }
+
+    @Test
+    public void testKeepsRecordsOfBatchesNotSubmitted() {
+        for (int i = 0; i < 10; i++) {
+            recorder.saveRecord(String.valueOf(i).getBytes(StringUtils.UTF8), STREAMS[1]);
+        }
+        for (int i = 0; i < Constants.PUT_RECORDS_MAX_RECORDS; i++) {
+            recorder.saveRecord(String.valueOf(i).getBytes(StringUtils.UTF8), STREAMS[0]);
+        }
+        final AtomicInteger requestCount = new AtomicInteger();
+        final CountDownLatch secondRequest = new CountDownLatch(1);
+        client.onRequest = new Runnable() {
+            @Override
+            public void run() {
+                if (requestCount.incrementAndGet() == 1) {
+                    // the first request is held until both batches are in
+                    // flight, so nothing may be removed yet
+                    try {
+                        assertTrue(secondRequest.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new AmazonClientException("Interrupted", e);
+                    }
+                    storedWhileSending.set(countRecords());
+                } else {
+                    secondRequest.countDown();
+                }
+            }
+        };
+        recorder.submitAllRecords();
+
+        assertEquals(10 + Constants.PUT_RECORDS_MAX_RECORDS, storedWhileSending.get());
+        assertEquals(Constants.PUT_RECORDS_MAX_RECORDS, client.received.get(STREAMS[0]).size());
+        assertEquals(10, client.received.get(STREAMS[1]).size());
+        assertFalse(recorder.recordStore.iterator().hasNext());
+    }
+
+    @Test
+    public void testFailureKeepsRecordsNotSent() {
+        client.failRequestsAfter = 3;
+        saveRecords(2000);
+        try {
+            recorder.submitAllRecords();
+            fail("Expected AmazonClientException");
+        } catch (AmazonClientException e) {
+            // expected
+        }
+        assertTrue(client.received.get(STREAMS[0]).size() < 2000 / STREAMS.length);
+
+        // only the records of the failed requests are lost
+        client.failRequestsAfter = Integer.MAX_VALUE;
+        recorder.submitAllRecords();
+        for (String stream : STREAMS) {
+            client.received.get(stream).addAll(client.dropped.get(stream));
+        }
+        assertEquals(expectedRecords(2000), client.received);
+        assertFalse(recorder.recordStore.iterator().hasNext());
+    }
+
+    private final AtomicInteger storedWhileSending = new AtomicInteger();
+
+    private int countRecords() {
+        SegmentedFileRecordStore.SegmentIterator iterator =
+                (SegmentedFileRecordStore.SegmentIterator) recorder.recordStore.iterator();
+        int count = 0;
+        while (iterator.nextRecord() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    private void saveRecords(int count) {
+        for (int i = 0; i < count; i++) {
+            recorder.saveRecord(String.valueOf(i).getBytes(StringUtils.UTF8),
+                    STREAMS[i % STREAMS.length]);
+        }
+    }
+
+    private static Map<String, Set<String>> expectedRecords(int count) {
+        Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+        for (String stream : STREAMS) {
+            expected.put(stream, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+        }
+        for (int i = 0; i < count; i++) {
+            expected.get(STREAMS[i % STREAMS.length]).add(String.valueOf(i));
+        }
+        return expected;
+    }
+
+    private static String data(PutRecordsRequestEntry entry) {
+        byte[] data = new byte[entry.getData().remaining()];
+        entry.getData().duplicate().get(data);
+        return new String(data, StringUtils.UTF8);
+    }
+
+    private static class FakeKinesisClient extends AmazonKinesisClient {
+        final Map<String, Set<String>> received = expectedRecords(0);
+        final Map<String, Set<String>> dropped = expectedRecords(0);
+        final List<PutRecordsRequest> requests =
+                Collections.synchronizedList(new ArrayList<PutRecordsRequest>());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger submitted = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        volatile int failEvery;
+        volatile int failRequestsAfter = Integer.MAX_VALUE;
+        volatile Runnable onRequest;
+
+        FakeKinesisClient() {
+            super(new AnonymousAWSCredentials());
+        }
+
+        @Override
+        public PutRecordsResult putRecords(PutRecordsRequest request) {
+            int current = inFlight.incrementAndGet();
+            try {
+                while (true) {
+                    int max = maxInFlight.get();
+                    if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                        break;
+                    }
+                }
+                if (requests.size() >= failRequestsAfter) {
+                    // not handled by submit(), so the records are lost
+                    for (PutRecordsRequestEntry entry : request.getRecords()) {
+                        dropped.get(request.getStreamName()).add(data(entry));
+                    }
+                    throw new IllegalStateException("Unexpected failure");
+                }
+                requests.add(request);
+                if (onRequest != null) {
+                    onRequest.run();
+                }
+                Thread.sleep(5);
+                List<PutRecordsResultEntry> results = new ArrayList<PutRecordsResultEntry>();
+                for (PutRecordsRequestEntry entry : request.getRecords()) {
+                    int n = submitted.incrementAndGet();
+                    PutRecordsResultEntry result = new PutRecordsResultEntry();
+                    if (failEvery > 0 && n % failEvery == 0) {
+                        failed.incrementAndGet();
+                        result.setErrorCode("ProvisionedThroughputExceededException");
+                    } else {
+                        assertTrue(received.get(request.getStreamName()).add(data(entry)));
+                        result.setShardId("shardId-000000000000");
+                    }
+                    results.add(result);
+                }
+                return new PutRecordsResult().withRecords(results);
+            } catch (InterruptedException e) {
+                throw new AmazonClientException("Interrupted", e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.PutRecordRequest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class BinaryRecordAdapterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String stream = "TestStream";
+    private String partitionKey = "TestPartitionKey";
+    private String explicitHashKey = "TestHashKey";
+    private String sequenceNumberForOrdering = "1";
+
+    @Test
+    public void convertRequestAllElementsIntact() throws IOException {
+        BinaryRecordAdapter adapter = new BinaryRecordAdapter(folder.getRoot());
+        PutRecordRequest putRequest = new PutRecordRequest()
+                .withStreamName(stream).withPartitionKey(partitionKey)
+                .withExplicitHashKey(explicitHashKey)
+                .withData(ByteBuffer.wrap("TestData".getBytes()))
+                .withSequenceNumberForOrdering(sequenceNumberForOrdering);
+
+        PutRecordRequest result = adapter.translateToRecord(adapter.translateFromRecord(putRequest));
+        assertEquals(stream, result.getStreamName());
+        assertEquals(partitionKey, result.getPartitionKey());
+        assertEquals(explicitHashKey, result.getExplicitHashKey());
+        assertEquals(sequenceNumberForOrdering, result.getSequenceNumberForOrdering());
+        assertArrayEquals("TestData".getBytes(), result.getData().array());
+    }
+
+    @Test
+    public void optionalFieldsOmitted() throws IOException {
+        BinaryRecordAdapter adapter = new BinaryRecordAdapter(folder.getRoot());
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        byte[] record = adapter.translateFromRecord(new PutRecordRequest()
+                .withStreamName(stream).withPartitionKey(partitionKey)
+                .withData(ByteBuffer.wrap(data)));
+        // flags, stream index, two length prefixed fields
+        assertEquals(1 + 1 + 1 + partitionKey.length() + 2 + data.length, record.length);
+
+        PutRecordRequest result = adapter.translateToRecord(record);
+        assertNull(result.getExplicitHashKey());
+        assertNull(result.getSequenceNumberForOrdering());
+        assertArrayEquals(data, result.getData().array());
+    }
+
+    @Test
+    public void streamNamesKeptAcrossInstances() throws IOException {
+        BinaryRecordAdapter adapter = new BinaryRecordAdapter(folder.getRoot());
+        byte[] first = adapter.translateFromRecord(request("StreamA"));
+        byte[] second = adapter.translateFromRecord(request("StreamB"));
+        byte[] third = adapter.translateFromRecord(request("StreamA"));
+        assertEquals(first[1], third[1]);
+        assertTrue(first[1] != second[1]);
+
+        BinaryRecordAdapter reopened = new BinaryRecordAdapter(folder.getRoot());
+        assertEquals("StreamA", reopened.translateToRecord(first).getStreamName());
+        assertEquals("StreamB", reopened.translateToRecord(second).getStreamName());
+        assertEquals(2, new File(folder.getRoot(), Constants.BINARY_RECORDS_DIRECTORY
+                + File.separator + Constants.STREAM_NAMES_FILE_NAME).length()
+                / "StreamA\n".length());
+    }
+
+    @Test
+    public void malformedRecords() throws IOException {
+        BinaryRecordAdapter adapter = new BinaryRecordAdapter(folder.getRoot());
+        byte[] record = adapter.translateFromRecord(request(stream));
+
+        assertMalformed(adapter, Arrays.copyOf(record, record.length - 1));
+        assertMalformed(adapter, Arrays.copyOf(record, record.length + 1));
+        byte[] unknownStream = record.clone();
+        unknownStream[1] = 5;
+        assertMalformed(adapter, unknownStream);
+        assertMalformed(adapter, new byte[] {
+                0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff
+        });
+    }
+
+    @Test
+    public void incompleteRequestRejected() throws IOException {
+        BinaryRecordAdapter adapter = new BinaryRecordAdapter(folder.getRoot());
+        try {
+            adapter.translateFromRecord(new PutRecordRequest().withStreamName(stream)
+                    .withData(ByteBuffer.wrap("TestData".getBytes())));
+            fail("Expected AmazonClientException");
+        } catch (AmazonClientException e) {
+            // expected
+        }
+    }
+
+    private PutRecordRequest request(String streamName) {
+        return new PutRecordRequest().withStreamName(streamName).withPartitionKey(partitionKey)
+                .withData(ByteBuffer.wrap("TestData".getBytes()));
+    }
+
+    private static void assertMalformed(BinaryRecordAdapter adapter, byte[] record) {
+        try {
+            adapter.translateToRecord(record);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.KinesisRecorderConfig;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.FileRecordStore.RecordIterator;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.internal.SegmentedFileRecordStore.SegmentIterator;
+import com.amazonaws.services.kinesis.model.PutRecordRequest;
+import com.amazonaws.util.Base64;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SegmentedFileRecordStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private KinesisRecorderConfig config = new KinesisRecorderConfig()
+            .withSegmentedStorage(true)
+            .withSegmentSize(1024);
+
+    @Test
+    public void testReadRemoveAndReopen() throws IOException {
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(store.put(record(i)));
+        }
+
+        RecordIterator iterator = store.iterator();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(record(i), iterator.peek());
+            assertEquals(record(i), iterator.next());
+        }
+        iterator.removeReadRecords();
+        assertEquals(record(4), iterator.next());
+
+        // what wasn't removed is read again, from a new store too
+        store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        assertEquals(range(4, 10), readAll(store.iterator()));
+    }
+
+    @Test
+    public void testSegmentsDeletedAsTheyAreDrained() throws IOException {
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        for (int i = 0; i < 200; i++) {
+            store.put(record(i));
+        }
+        int segments = store.getSegmentCount();
+        assertTrue("rolled over " + segments + " segments", segments > 5);
+
+        RecordIterator iterator = store.iterator();
+        for (int i = 0; i < 100; i++) {
+            iterator.next();
+        }
+        iterator.removeReadRecords();
+        assertTrue(store.getSegmentCount() < segments);
+        assertTrue(store.getSegmentCount() > 1);
+
+        assertEquals(range(100, 200), readAll(iterator));
+        iterator.removeReadRecords();
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(0, store.getStoredBytes());
+        assertFalse(iterator.hasNext());
+        assertFalse(store.iterator().hasNext());
+    }
+
+    @Test
+    public void testRecordsSavedWhileIterating() throws IOException {
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        store.put(record(0));
+        RecordIterator iterator = store.iterator();
+        assertEquals(record(0), iterator.next());
+        assertFalse(iterator.hasNext());
+        for (int i = 1; i < 50; i++) {
+            store.put(record(i));
+        }
+        assertEquals(range(1, 50), readAll(iterator));
+        assertNull(iterator.next());
+    }
+
+    @Test
+    public void testMaxStorageSize() throws IOException {
+        config.withMaxStorageSize(100);
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        String record = "0123456789012345678901234567890123456789";
+        assertTrue(store.put(record));
+        assertTrue(store.put(record));
+        assertFalse(store.put(record));
+
+        RecordIterator iterator = store.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.removeReadRecords();
+        assertTrue(store.put(record));
+    }
+
+    @Test
+    public void testRemoveAllRecords() throws IOException {
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        for (int i = 0; i < 100; i++) {
+            store.put(record(i));
+        }
+        RecordIterator iterator = store.iterator();
+        iterator.next();
+        iterator.removeAllRecords();
+        assertFalse(iterator.hasNext());
+        store.put(record(100));
+        assertEquals(range(100, 101), readAll(store.iterator()));
+        assertEquals(range(100, 101),
+                readAll(new SegmentedFileRecordStore(folder.getRoot(), config).iterator()));
+    }
+
+    @Test
+    public void testIncompleteRecordDroppedOnOpen() throws IOException {
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        store.put(record(0));
+        store.put(record(1));
+        File segment = new File(folder.getRoot(), SegmentedFileRecordStore.SEGMENTS_DIRECTORY
+                + File.separator + String.format("%019d", 1) + SegmentedFileRecordStore.SEGMENT_SUFFIX);
+        FileOutputStream out = new FileOutputStream(segment, true);
+        out.write("{\"partial".getBytes(StringUtils.UTF8));
+        out.close();
+
+        store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        store.put(record(2));
+        assertEquals(range(0, 3), readAll(store.iterator()));
+    }
+
+    @Test
+    public void testImportsRecordsFile() throws IOException {
+        FileRecordStore legacy = new FileRecordStore(folder.getRoot(), config);
+        legacy.put(record(0));
+        legacy.put(record(1));
+
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        store.put(record(2));
+        assertEquals(range(0, 3), readAll(store.iterator()));
+        assertFalse(new File(folder.getRoot(), Constants.RECORDS_DIRECTORY + File.separator
+                + Constants.RECORDS_FILE_NAME).exists());
+    }
+
+    @Test
+    public void testConcurrentSavesWithSync() throws Exception {
+        config.withSyncOnSave(true).withMaxStorageSize(10 * 1024 * 1024);
+        final SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(),
+                config);
+        final int threads = 4;
+        final int perThread = 250;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = base; i < base + perThread; i++) {
+                            store.put(record(i));
+                        }
+                    } catch (Exception e) {
+                        failure.set(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        List<String> records = readAll(store.iterator());
+        Collections.sort(records);
+        List<String> expected = range(0, threads * perThread);
+        Collections.sort(expected);
+        assertEquals(expected, records);
+    }
+
+    /**
+     * Saves and then drains a large backlog the way KinesisRecorder submits
+     * it, in batches of {@link Constants#PUT_RECORDS_MAX_RECORDS}.
+     */
+    @Test
+    public void testSaveAndDrainThroughput() throws IOException {
+        int count = 100000;
+        config.withMaxStorageSize(1024 * 1024 * 1024L).withSegmentSize(256 * 1024);
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            assertTrue(store.put(record(i)));
+        }
+        System.out.println("Saved " + count + " records in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+
+        start = System.nanoTime();
+        RecordIterator iterator = store.iterator();
+        int drained = 0;
+        while (iterator.hasNext()) {
+            for (int i = 0; i < Constants.PUT_RECORDS_MAX_RECORDS && iterator.hasNext(); i++) {
+                iterator.next();
+                drained++;
+            }
+            iterator.removeReadRecords();
+        }
+        System.out.println("Drained " + count + " records in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+        assertEquals(count, drained);
+        assertEquals(0, store.getStoredBytes());
+    }
+
+    @Test
+    public void testBinaryRecords() throws IOException {
+        config.withBinaryRecordFormat(true);
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(store.put(binaryRecord(i)));
+        }
+        assertTrue(store.getSegmentCount() > 1);
+
+        SegmentIterator iterator = store.iterator();
+        for (int i = 0; i < 30; i++) {
+            assertArrayEquals(binaryRecord(i), iterator.peekRecord());
+            assertArrayEquals(binaryRecord(i), iterator.nextRecord());
+        }
+        iterator.removeReadRecords();
+
+        iterator = new SegmentedFileRecordStore(folder.getRoot(), config).iterator();
+        for (int i = 30; i < 100; i++) {
+            assertArrayEquals(binaryRecord(i), iterator.nextRecord());
+        }
+        assertFalse(iterator.hasNext());
+        assertNull(iterator.nextRecord());
+    }
+
+    @Test
+    public void testTornBinaryRecordDroppedOnOpen() throws IOException {
+        config.withBinaryRecordFormat(true);
+        SegmentedFileRecordStore store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        store.put(binaryRecord(0));
+        store.put(binaryRecord(1));
+        File segment = new File(folder.getRoot(), Constants.BINARY_RECORDS_DIRECTORY
+                + File.separator + String.format("%019d", 1) + SegmentedFileRecordStore.SEGMENT_SUFFIX);
+        long length = segment.length();
+        store.put(binaryRecord(2));
+        // the last record loses its CRC, as if the device had lost power
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.setLength(segment.length() - 2);
+        raf.close();
+
+        store = new SegmentedFileRecordStore(folder.getRoot(), config);
+        assertEquals(length, segment.length());
+        store.put(binaryRecord(3));
+        SegmentIterator iterator = store.iterator();
+        assertArrayEquals(binaryRecord(0), iterator.nextRecord());
+        assertArrayEquals(binaryRecord(1), iterator.nextRecord());
+        assertArrayEquals(binaryRecord(3), iterator.nextRecord());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBinaryStoreRejectsText() throws IOException {
+        config.withBinaryRecordFormat(true);
+        new SegmentedFileRecordStore(folder.getRoot(), config).put(record(0));
+    }
+
+    /**
+     * Compares the bytes on disk and the throughput of records stored as
+     * JSON with Base64 encoded data and of the same records in binary form.
+     */
+    @Test
+    public void testBinaryAndJsonRecordSizes() throws IOException {
+        int count = 20000;
+        byte[] data = new byte[512];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        config.withMaxStorageSize(1024 * 1024 * 1024L).withSegmentSize(256 * 1024);
+        KinesisRecorderConfig binaryConfig = new KinesisRecorderConfig(config)
+                .withBinaryRecordFormat(true);
+        SegmentedFileRecordStore jsonStore = new SegmentedFileRecordStore(
+                folder.newFolder("json"), config);
+        SegmentedFileRecordStore binaryStore = new SegmentedFileRecordStore(
+                folder.newFolder("binary"), binaryConfig);
+        BinaryRecordAdapter adapter = new BinaryRecordAdapter(folder.newFolder("binary-adapter"));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            // the layout of JSONRecordAdapter, whose Base64 breaks lines
+            String encoded = Base64.encodeAsString(data).replaceAll("(.{76})", "$1\\\\n");
+            jsonStore.put("{\"Data\":\"" + encoded + "\\n\",\"StreamName\":\"TestStream\","
+                    + "\"PartitionKey\":\"" + UUID.randomUUID() + "\"}");
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            binaryStore.put(adapter.translateFromRecord(new PutRecordRequest()
+                    .withData(ByteBuffer.wrap(data)).withStreamName("TestStream")
+                    .withPartitionKey(UUID.randomUUID().toString())));
+        }
+        SegmentIterator iterator = binaryStore.iterator();
+        while (iterator.hasNext()) {
+            assertEquals(data.length, adapter.translateToRecord(iterator.nextRecord())
+                    .getData().remaining());
+        }
+        long binaryNanos = System.nanoTime() - start;
+
+        long jsonBytes = jsonStore.getStoredBytes();
+        long binaryBytes = binaryStore.getStoredBytes();
+        System.out.println("JSON records: " + jsonBytes / count + " bytes each, saved in "
+                + jsonNanos / 1000000 + "ms; binary records: " + binaryBytes / count
+                + " bytes each, saved and read in " + binaryNanos / 1000000 + "ms");
+        assertTrue(binaryBytes < jsonBytes * 3 / 4);
+    }
+
+    private static byte[] binaryRecord(int i) {
+        byte[] record = new byte[50 + i];
+        for (int j = 0; j < record.length; j++) {
+            record[j] = (byte) (i + j);
+        }
+        return record;
+    }
+
+    private static String record(int i) {
+        return "{\"data\":\"ZGF0YQ==\",\"partitionKey\":\"" + i + "\",\"streamName\":\"stream\"}";
+    }
+
+    private static List<String> range(int from, int to) {
+        List<String> records = new ArrayList<String>();
+        for (int i = from; i < to; i++) {
+            records.add(record(i));
+        }
+        return records;
+    }
+
+    private static List<String> readAll(RecordIterator iterator) {
+        List<String> records = new ArrayList<String>();
+        while (iterator.hasNext()) {
+            records.add(iterator.next());
+        }
+        return records;
+    }
+}
@@ -64,6 +64,12 @@ public final class PersistableDownload extends PersistableTransfer {
      */
     private final String file;
 
+    /**
+     * Saved state of the MD5 digest of the data written to the file so far,
+     * so the file doesn't have to be read again when the download resumes.
+     */
+    private final String digestState;
+
     @Deprecated
     public PersistableDownload() {
         this(null, null, null, null, null, false, null);
@@ -77,6 +83,18 @@ public final class PersistableDownload extends PersistableTransfer {
             ResponseHeaderOverrides responseHeaders,
             boolean isRequesterPays,
             String file) {
+        this(bucketName, key, versionId, range, responseHeaders, isRequesterPays, file, null);
+    }
+
+    public PersistableDownload(
+            String bucketName,
+            String key,
+            String versionId,
+            long[] range,
+            ResponseHeaderOverrides responseHeaders,
+            boolean isRequesterPays,
+            String file,
+            String digestState) {
         this.bucketName = bucketName;
         this.key = key;
         this.versionId = versionId;
@@ -84,6 +102,7 @@ public final class PersistableDownload extends PersistableTransfer {
         this.responseHeaders = responseHeaders;
         this.isRequesterPays = isRequesterPays;
         this.file = file;
+        this.digestState = digestState;
     }
 
     /**
@@ -136,6 +155,13 @@ public final class PersistableDownload extends PersistableTransfer {
         return file;
     }
 
+    /**
+     * Returns the saved state of the MD5 digest of the file, or null.
+     */
+    String getDigestState() {
+        return digestState;
+    }
+
     String getPauseType() {
         return pauseType;
     }
@@ -169,6 +195,9 @@ public final class PersistableDownload extends PersistableTransfer {
                         .name("contentEncoding").value(responseHeaders.getContentEncoding())
                         .endObject();
             }
+            if (digestState != null) {
+                writer.name("digestState").value(digestState);
+            }
             writer.endObject().close();
         } catch (IOException e) {
             throw new IllegalStateException(e);
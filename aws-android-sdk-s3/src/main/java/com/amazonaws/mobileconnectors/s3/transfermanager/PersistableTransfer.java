@@ -78,6 +78,7 @@ public abstract class PersistableTransfer {
         long[] range = null;
         ResponseHeaderOverrides responseHeaders = null;
         boolean isRequesterPays = false;
+        String digestState = null;
 
         AwsJsonReader reader = JsonUtils
                 .getJsonReader(new BufferedReader(new InputStreamReader(in)));
@@ -136,6 +137,8 @@ public abstract class PersistableTransfer {
                     reader.endObject();
                 } else if (name.equals("isRequesterPays")) {
                     isRequesterPays = Boolean.parseBoolean(reader.nextString());
+                } else if (name.equals("digestState")) {
+                    digestState = reader.nextString();
                 } else {
                     reader.skipValue();
                 }
@@ -147,7 +150,7 @@ public abstract class PersistableTransfer {
 
         if (PersistableDownload.TYPE.equals(type)) {
             return (T) new PersistableDownload(bucketName, key, versionId, range, responseHeaders,
-                    isRequesterPays, file);
+                    isRequesterPays, file, digestState);
         } else if (PersistableUpload.TYPE.equals(type)) {
             return (T) new PersistableUpload(bucketName, key, file, multipartUploadId, partSize,
                     mutlipartUploadThreshold);
@@ -35,6 +35,7 @@ import com.amazonaws.mobileconnectors.s3.transfermanager.internal.CopyImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.CopyMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.DownloadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.DownloadMonitor;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipartDownloadCallable;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileDownloadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileTransferMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileUploadImpl;
@@ -50,6 +51,7 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.AmazonS3EncryptionClient;
 import com.amazonaws.services.s3.internal.Mimetypes;
+import com.amazonaws.services.s3.internal.ResumableMD5Digest;
 import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
@@ -557,7 +559,7 @@ public class TransferManager {
      *             processing the request.
      */
     public Download download(final GetObjectRequest getObjectRequest, final File file) {
-        return doDownload(getObjectRequest, file, null, null, OVERWRITE_MODE);
+        return doDownload(getObjectRequest, file, null, null, OVERWRITE_MODE, null);
     }
 
     /**
@@ -584,7 +586,7 @@ public class TransferManager {
     public Download download(final GetObjectRequest getObjectRequest,
             final File file, final S3ProgressListener progressListener) {
         return doDownload(getObjectRequest, file, null, progressListener,
-                OVERWRITE_MODE);
+                OVERWRITE_MODE, null);
     }
 
     /**
@@ -596,7 +598,7 @@ public class TransferManager {
     private Download doDownload(final GetObjectRequest getObjectRequest,
             final File file, final TransferStateChangeListener stateListener,
             final S3ProgressListener s3progressListener,
-            final boolean resumeExistingDownload) {
+            final boolean resumeExistingDownload, final String digestState) {
 
         appendSingleObjectUserAgent(getObjectRequest);
 
@@ -643,10 +645,21 @@ public class TransferManager {
         }
         final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
 
+        // Don't perform the integrity check if the stream data is wrapped in
+        // a decryption stream, or if we're only looking at a range of the
+        // data, since otherwise the checksum won't match up. The range set
+        // below to resume a download doesn't count, the digest carried over
+        // covers what was downloaded before.
+        ResumableMD5Digest digest = null;
+        if (!ServiceUtils.skipContentMd5IntegrityCheck(getObjectRequest)
+                && !(s3 instanceof AmazonS3EncryptionClient)) {
+            digest = restoreDigest(digestState);
+        }
+
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description,
                 transferProgress, listenerChain, null, stateListener,
-                getObjectRequest, file);
+                getObjectRequest, file, digest);
 
         long startingByte = 0;
         long lastByte = objectMetadata.getContentLength() - 1;
@@ -677,16 +690,86 @@ public class TransferManager {
         }
 
         final CountDownLatch latch = new CountDownLatch(1);
-        Future<?> future = submitDownloadTask(getObjectRequest, file,
-                resumeExistingDownload, latch, download);
+        Future<?> future;
+        if (!resumeExistingDownload
+                && TransferManagerUtils.isDownloadParallelizable(getObjectRequest,
+                        s3 instanceof AmazonS3EncryptionClient)
+                && TransferManagerUtils.shouldUseMultipartDownload(totalBytesToDownload,
+                        configuration)) {
+            future = submitMultipartDownloadTask(getObjectRequest, file, objectMetadata,
+                    latch, download);
+        } else {
+            future = submitDownloadTask(getObjectRequest, file,
+                    resumeExistingDownload, digest, latch, download);
+        }
         download.setMonitor(new DownloadMonitor(download, future));
         latch.countDown();
         return download;
     }
 
+    /**
+     * Submits a download which fetches ranges of the object in parallel, each
+     * written at its position in the file.
+     */
+    private Future<?> submitMultipartDownloadTask(
+            final GetObjectRequest getObjectRequest, final File file,
+            final ObjectMetadata objectMetadata,
+            final CountDownLatch latch,
+            final DownloadImpl download) {
+        // The ranges are written out of order, so the content can only be
+        // checked once the whole file is there.
+        final boolean performIntegrityCheck = !ServiceUtils
+                .skipContentMd5IntegrityCheck(getObjectRequest);
+        final MultipartDownloadCallable multipartDownload = new MultipartDownloadCallable(s3,
+                threadPool, getObjectRequest, file, objectMetadata, configuration,
+                performIntegrityCheck);
+        Future<?> future = threadPool.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                try {
+                    latch.await();
+                    download.setState(TransferState.InProgress);
+                    // The ranges are fetched as separate objects, none of
+                    // which stands for the download
+                    download.setObjectMetadata(objectMetadata);
+
+                    multipartDownload.call();
+                    download.setState(TransferState.Completed);
+                    return true;
+                } catch (Throwable t) {
+                    // Downloads aren't allowed to move from canceled to failed
+                    if (download.getState() != TransferState.Canceled) {
+                        download.setState(TransferState.Failed);
+                    }
+                    if (t instanceof Exception)
+                        throw (Exception) t;
+                    else
+                        throw (Error) t;
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the digest restored from the given saved state, or a new one if
+     * there's no usable state.
+     */
+    private static ResumableMD5Digest restoreDigest(String digestState) {
+        if (digestState != null) {
+            try {
+                return ResumableMD5Digest.fromState(digestState);
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring invalid digest state of the paused download", e);
+            }
+        }
+        return new ResumableMD5Digest();
+    }
+
     private Future<?> submitDownloadTask(
             final GetObjectRequest getObjectRequest, final File file,
             final boolean resumeExistingDownload,
+            final ResumableMD5Digest digest,
             final CountDownLatch latch,
             final DownloadImpl download) {
         Future<?> future = threadPool.submit(new Callable<Object>() {
@@ -707,19 +790,9 @@ public class TransferManager {
 
                                 @Override
                                 public boolean needIntegrityCheck() {
-                                    // Don't perform the integrity check if the
-                                    // stream data is wrapped
-                                    // in a decryption stream, or if we're only
-                                    // looking at a range of
-                                    // the data, since otherwise the checksum
-                                    // won't match up.
-                                    boolean performIntegrityCheck = true;
-                                    if (ServiceUtils.skipContentMd5IntegrityCheck(getObjectRequest)
-                                            || s3 instanceof AmazonS3EncryptionClient)
-                                        performIntegrityCheck = false;
-                                    return performIntegrityCheck;
+                                    return digest != null;
                                 }
-                            }, resumeExistingDownload);
+                            }, resumeExistingDownload, digest);
 
                     if (s3Object == null) {
                         download.setState(TransferState.Canceled);
@@ -846,7 +919,7 @@ public class TransferManager {
                             .withGeneralProgressListener(
                             listener),
                     f,
-                    transferListener, null, false));
+                    transferListener, null, false, null));
         }
 
         if (downloads.isEmpty()) {
@@ -1398,7 +1471,7 @@ public class TransferManager {
         request.setResponseHeaders(persistableDownload.getResponseHeaders());
 
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
-                APPEND_MODE);
+                APPEND_MODE, persistableDownload.getDigestState());
     }
 
     /**
@@ -47,6 +47,15 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default minimum part size for ranged download parts. */
+    private static final long DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE = 5 * MB;
+
+    /** Default size threshold for when to use parallel ranged downloads. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD = 16 * MB;
+
+    /** Default number of ranges of a single download fetched at once. */
+    private static final int DEFAULT_DOWNLOAD_PART_CONCURRENCY = 4;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -85,6 +94,24 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The minimum size in bytes of each range fetched by a parallel download.
+     */
+    private long minimumDownloadPartSize = DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The size threshold, in bytes, for when to download an object as several
+     * ranges fetched in parallel, each written at its position in the file.
+     * Smaller objects are downloaded with a single connection.
+     */
+    private long multipartDownloadThreshold = DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD;
+
+    /**
+     * The number of ranges of a single download fetched at the same time. A
+     * value of 1 disables parallel downloads.
+     */
+    private int downloadPartConcurrency = DEFAULT_DOWNLOAD_PART_CONCURRENCY;
+
     /**
      * Returns the minimum part size for upload parts. Decreasing the minimum
      * part size causes multipart uploads to be split into a larger number of
@@ -192,4 +219,73 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
+
+    /**
+     * Returns the minimum size in bytes of each range fetched by a parallel
+     * download.
+     *
+     * @return The minimum part size for download parts.
+     */
+    public long getMinimumDownloadPartSize() {
+        return minimumDownloadPartSize;
+    }
+
+    /**
+     * Sets the minimum size in bytes of each range fetched by a parallel
+     * download. Smaller parts are more evenly spread over the connections,
+     * at the cost of a request per part.
+     *
+     * @param minimumDownloadPartSize The minimum part size for download parts.
+     */
+    public void setMinimumDownloadPartSize(long minimumDownloadPartSize) {
+        this.minimumDownloadPartSize = minimumDownloadPartSize;
+    }
+
+    /**
+     * Returns the size threshold in bytes for when to download an object as
+     * several ranges fetched in parallel. Smaller objects are downloaded with a
+     * single connection.
+     *
+     * @return The size threshold in bytes for when to use parallel downloads.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to download an object as
+     * several ranges fetched in parallel. Smaller objects are downloaded with a
+     * single connection.
+     *
+     * @param multipartDownloadThreshold The size threshold in bytes for when to
+     *            use parallel downloads.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    /**
+     * Returns the number of ranges of a single download fetched at the same
+     * time.
+     *
+     * @return The number of concurrent part requests of a download.
+     */
+    public int getDownloadPartConcurrency() {
+        return downloadPartConcurrency;
+    }
+
+    /**
+     * Sets the number of ranges of a single download fetched at the same time.
+     * The ranges share the thread pool of the {@link TransferManager}. A value
+     * of 1 disables parallel downloads.
+     *
+     * @param downloadPartConcurrency The number of concurrent part requests of
+     *            a download.
+     */
+    public void setDownloadPartConcurrency(int downloadPartConcurrency) {
+        if (downloadPartConcurrency < 1) {
+            throw new IllegalArgumentException("Download part concurrency must be at least 1");
+        }
+        this.downloadPartConcurrency = downloadPartConcurrency;
+    }
 }
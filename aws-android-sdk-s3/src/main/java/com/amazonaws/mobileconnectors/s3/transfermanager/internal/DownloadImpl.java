@@ -21,6 +21,7 @@ import com.amazonaws.mobileconnectors.s3.transfermanager.Download;
 import com.amazonaws.mobileconnectors.s3.transfermanager.PersistableDownload;
 import com.amazonaws.mobileconnectors.s3.transfermanager.TransferProgress;
 import com.amazonaws.mobileconnectors.s3.transfermanager.exception.PauseException;
+import com.amazonaws.services.s3.internal.ResumableMD5Digest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
@@ -32,18 +33,46 @@ public class DownloadImpl extends AbstractTransfer implements Download {
 
     S3Object s3Object;
 
+    /**
+     * Metadata of an object downloaded in ranges, which has no S3Object.
+     */
+    private ObjectMetadata objectMetadata;
+
     /**
      * Information to resume if the download is paused.
      */
     private final PersistableDownload persistableDownload;
 
+    /**
+     * Digest of the data written to the file, whose state is saved on pause;
+     * null if the download isn't verified.
+     */
+    private final ResumableMD5Digest digest;
+
+    private final GetObjectRequest getObjectRequest;
+    /** The range of the original request, which a resumed download changes */
+    private final long[] range;
+    private final File file;
+
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
             GetObjectRequest getObjectRequest, File file) {
+        this(description, transferProgress, progressListenerChain, s3Object, listener,
+                getObjectRequest, file, null);
+    }
+
+    public DownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, S3Object s3Object,
+            TransferStateChangeListener listener,
+            GetObjectRequest getObjectRequest, File file, ResumableMD5Digest digest) {
         super(description, transferProgress, progressListenerChain, listener);
         this.s3Object = s3Object;
-        this.persistableDownload = captureDownloadState(getObjectRequest, file);
+        this.digest = digest;
+        this.getObjectRequest = getObjectRequest;
+        this.range = getObjectRequest.getRange();
+        this.file = file;
+        this.persistableDownload = captureDownloadState(getObjectRequest, range, file, null);
         S3ProgressPublisher.publishTransferPersistable(progressListenerChain,
                 persistableDownload);
     }
@@ -55,7 +84,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     @Override
     public ObjectMetadata getObjectMetadata() {
-        return s3Object.getObjectMetadata();
+        return s3Object != null ? s3Object.getObjectMetadata() : objectMetadata;
     }
 
     /**
@@ -65,7 +94,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     @Override
     public String getBucketName() {
-        return s3Object.getBucketName();
+        return s3Object != null ? s3Object.getBucketName() : getObjectRequest.getBucketName();
     }
 
     /**
@@ -75,7 +104,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     @Override
     public String getKey() {
-        return s3Object.getKey();
+        return s3Object != null ? s3Object.getKey() : getObjectRequest.getKey();
     }
 
     /**
@@ -115,6 +144,14 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         this.s3Object = s3Object;
     }
 
+    /**
+     * Set the metadata of an object downloaded in ranges, whose content is
+     * not read through a single S3 object.
+     */
+    public synchronized void setObjectMetadata(ObjectMetadata objectMetadata) {
+        this.objectMetadata = objectMetadata;
+    }
+
     /**
      * This method is also responsible for firing COMPLETED signal to the
      * listeners.
@@ -133,14 +170,16 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      * captured (for security reason).
      */
     private PersistableDownload captureDownloadState(
-            final GetObjectRequest getObjectRequest, final File file) {
+            final GetObjectRequest getObjectRequest, final long[] range, final File file,
+            final String digestState) {
         if (getObjectRequest.getSSECustomerKey() == null) {
             return new PersistableDownload(
                     getObjectRequest.getBucketName(),
                     getObjectRequest.getKey(), getObjectRequest.getVersionId(),
-                    getObjectRequest.getRange(),
+                    range,
                     getObjectRequest.getResponseHeaders(),
-                    getObjectRequest.isRequesterPays(), file.getAbsolutePath());
+                    getObjectRequest.isRequesterPays(), file.getAbsolutePath(),
+                    digestState);
         }
         return null;
     }
@@ -159,6 +198,9 @@ public class DownloadImpl extends AbstractTransfer implements Download {
             throw new PauseException(TransferManagerUtils.determinePauseStatus(
                     currentState, forceCancel));
         }
+        if (digest != null) {
+            return captureDownloadState(getObjectRequest, range, file, digest.getState());
+        }
         return persistableDownload;
     }
 }
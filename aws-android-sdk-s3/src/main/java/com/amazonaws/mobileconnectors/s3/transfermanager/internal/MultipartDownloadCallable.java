@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.s3.transfermanager.TransferManager;
+import com.amazonaws.mobileconnectors.s3.transfermanager.TransferManagerConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads an object as several ranges fetched in parallel, each written at
+ * its position in the destination file.
+ * <p>
+ * The calling thread fetches ranges itself, along with up to
+ * <code>concurrency - 1</code> helpers submitted to the thread pool, so the
+ * download makes progress even when every thread of the pool is busy. Helpers
+ * which only start once all the ranges are claimed return immediately.
+ * </p>
+ * <p>
+ * If the download stops before completion, the file is truncated to the
+ * ranges completed from its start, which is where
+ * {@link TransferManager#resumeDownload} continues appending.
+ * </p>
+ */
+public class MultipartDownloadCallable implements Callable<Boolean> {
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final GetObjectRequest getObjectRequest;
+    private final File file;
+    private final long contentLength;
+    private final String eTag;
+    private final long partSize;
+    private final int partCount;
+    private final int concurrency;
+    private final boolean performIntegrityCheck;
+
+    /** The next range to be claimed by a worker */
+    private final AtomicInteger nextPart = new AtomicInteger();
+
+    /* The following fields are guarded by this */
+    private final boolean[] completedParts;
+    private final Set<S3Object> inFlight = new HashSet<S3Object>();
+    private int activeWorkers;
+    private boolean finished;
+    private boolean stopped;
+    private RuntimeException failure;
+
+    public MultipartDownloadCallable(AmazonS3 s3, ExecutorService threadPool,
+            GetObjectRequest getObjectRequest, File file, ObjectMetadata objectMetadata,
+            TransferManagerConfiguration configuration, boolean performIntegrityCheck) {
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.getObjectRequest = getObjectRequest;
+        this.file = file;
+        this.contentLength = objectMetadata.getContentLength();
+        this.eTag = objectMetadata.getETag();
+        this.partSize = TransferManagerUtils.calculateOptimalPartSizeForDownload(contentLength,
+                configuration);
+        this.partCount = (int) ((contentLength + partSize - 1) / partSize);
+        this.concurrency = Math.min(configuration.getDownloadPartConcurrency(), partCount);
+        this.performIntegrityCheck = performIntegrityCheck;
+        this.completedParts = new boolean[partCount];
+    }
+
+    @Override
+    public Boolean call() throws Exception {
+        boolean completed = false;
+        try {
+            allocateFile();
+            for (int i = 1; i < concurrency; i++) {
+                threadPool.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        if (register()) {
+                            try {
+                                downloadParts();
+                            } finally {
+                                unregister();
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            downloadParts();
+            awaitWorkers();
+
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (stopped) {
+                    throw new InterruptedException("The download was interrupted");
+                }
+            }
+            if (performIntegrityCheck) {
+                try {
+                    ServiceUtils.verifyDownloadedFile(file, eTag);
+                } catch (AmazonClientException e) {
+                    // Nothing in the file can be trusted
+                    synchronized (this) {
+                        completedParts[0] = false;
+                    }
+                    throw e;
+                }
+            }
+            completed = true;
+            return true;
+        } finally {
+            if (!completed) {
+                stop(null);
+                awaitWorkersUninterruptibly();
+                truncateToCompletedParts();
+            }
+        }
+    }
+
+    /**
+     * Claims and downloads ranges until there are none left or the download
+     * is stopped.
+     */
+    private void downloadParts() {
+        while (!Thread.currentThread().isInterrupted() && !isStopped()) {
+            int part = nextPart.getAndIncrement();
+            if (part >= partCount) {
+                return;
+            }
+            long start = part * partSize;
+            long last = Math.min(start + partSize, contentLength) - 1;
+            S3Object s3Object = null;
+            try {
+                s3Object = s3.getObject(createPartRequest(start, last));
+                if (s3Object == null) {
+                    throw new AmazonClientException("The object "
+                            + getObjectRequest.getKey() + " changed during the download");
+                }
+                if (!track(s3Object)) {
+                    s3Object.getObjectContent().abort();
+                    return;
+                }
+                long written = ServiceUtils.downloadObjectRangeToFile(s3Object, file, start);
+                if (written != last - start + 1) {
+                    throw new AmazonClientException("Expected " + (last - start + 1)
+                            + " bytes for the range starting at " + start + " but received "
+                            + written);
+                }
+                synchronized (this) {
+                    completedParts[part] = true;
+                }
+            } catch (RuntimeException e) {
+                stop(e);
+                return;
+            } finally {
+                untrack(s3Object);
+            }
+        }
+        stop(null);
+    }
+
+    private GetObjectRequest createPartRequest(long start, long last) {
+        GetObjectRequest request = new GetObjectRequest(getObjectRequest.getBucketName(),
+                getObjectRequest.getKey(), getObjectRequest.getVersionId());
+        request.setRange(start, last);
+        // Every range has to come from the same version of the object
+        if (eTag != null) {
+            request.withMatchingETagConstraint(eTag);
+        }
+        request.setResponseHeaders(getObjectRequest.getResponseHeaders());
+        request.setRequesterPays(getObjectRequest.isRequesterPays());
+        request.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
+        request.setGeneralProgressListener(getObjectRequest.getGeneralProgressListener());
+        return TransferManager.appendMultipartUserAgent(request);
+    }
+
+    private void allocateFile() throws IOException {
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(contentLength);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Cuts the file after the last range completed from its start.
+     */
+    private void truncateToCompletedParts() throws IOException {
+        long length = 0;
+        synchronized (this) {
+            for (int i = 0; i < partCount && completedParts[i]; i++) {
+                length = Math.min(length + partSize, contentLength);
+            }
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private synchronized boolean register() {
+        if (finished) {
+            return false;
+        }
+        activeWorkers++;
+        return true;
+    }
+
+    private synchronized void unregister() {
+        activeWorkers--;
+        notifyAll();
+    }
+
+    private synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    private synchronized boolean track(S3Object s3Object) {
+        if (stopped) {
+            return false;
+        }
+        inFlight.add(s3Object);
+        return true;
+    }
+
+    private synchronized void untrack(S3Object s3Object) {
+        if (s3Object != null) {
+            inFlight.remove(s3Object);
+        }
+    }
+
+    /**
+     * Stops all the workers, aborting the ranges in flight. Only the first
+     * failure is kept.
+     */
+    private synchronized void stop(RuntimeException e) {
+        if (e != null && failure == null && !stopped) {
+            failure = e;
+        }
+        stopped = true;
+        for (S3Object s3Object : inFlight) {
+            s3Object.getObjectContent().abort();
+        }
+        inFlight.clear();
+    }
+
+    private synchronized void awaitWorkers() throws InterruptedException {
+        finished = true;
+        while (activeWorkers > 0) {
+            wait();
+        }
+    }
+
+    private synchronized void awaitWorkersUninterruptibly() {
+        finished = true;
+        boolean interrupted = false;
+        while (activeWorkers > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -21,9 +21,11 @@ import com.amazonaws.mobileconnectors.s3.transfermanager.PauseStatus;
 import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
 import com.amazonaws.mobileconnectors.s3.transfermanager.TransferManagerConfiguration;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 
 import java.io.File;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -164,6 +166,64 @@ public class TransferManagerUtils {
                 configuration.getMultipartCopyPartSize());
     }
 
+    /**
+     * Returns true if the specified download request can be split into ranges
+     * fetched in parallel.
+     *
+     * @param getObjectRequest The request to check.
+     * @param isUsingEncryption True if the download is decrypted on the
+     *            client, otherwise false.
+     * @return True if this request can use parallel ranged downloads.
+     */
+    public static boolean isDownloadParallelizable(final GetObjectRequest getObjectRequest,
+            final boolean isUsingEncryption) {
+        // Decrypting a range depends on the content that precedes it.
+        if (isUsingEncryption)
+            return false;
+
+        // A requested range is downloaded as is, and constraints are only
+        // checked by a single request.
+        return getObjectRequest.getRange() == null
+                && isEmpty(getObjectRequest.getMatchingETagConstraints())
+                && isEmpty(getObjectRequest.getNonmatchingETagConstraints())
+                && getObjectRequest.getModifiedSinceConstraint() == null
+                && getObjectRequest.getUnmodifiedSinceConstraint() == null;
+    }
+
+    private static boolean isEmpty(List<String> list) {
+        return list == null || list.isEmpty();
+    }
+
+    /**
+     * Returns true if an object of the specified size should be downloaded as
+     * several ranges fetched in parallel.
+     *
+     * @param contentLength The size of the object to download.
+     * @param configuration Configuration settings controlling how transfer
+     *            manager processes requests.
+     * @return True if the object should be downloaded in parallel parts.
+     */
+    public static boolean shouldUseMultipartDownload(long contentLength,
+            TransferManagerConfiguration configuration) {
+        return configuration.getDownloadPartConcurrency() > 1
+                && contentLength > configuration.getMultipartDownloadThreshold();
+    }
+
+    /**
+     * Calculates the size of each range of a parallel download, keeping the
+     * number of ranges below the maximum number of parts of an upload.
+     *
+     * @param contentLength The size of the object to download.
+     * @param configuration Configuration containing the minimum part size.
+     * @return The size of each range of the download.
+     */
+    public static long calculateOptimalPartSizeForDownload(long contentLength,
+            TransferManagerConfiguration configuration) {
+        double optimalPartSize = (double) contentLength / (double) MAXIMUM_UPLOAD_PARTS;
+        optimalPartSize = Math.ceil(optimalPartSize);
+        return (long) Math.max(optimalPartSize, configuration.getMinimumDownloadPartSize());
+    }
+
     /**
      * Determines the pause status based on the current state of transfer.
      */
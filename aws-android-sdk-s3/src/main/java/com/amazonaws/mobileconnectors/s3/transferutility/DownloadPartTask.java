@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import android.util.Log;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads a range of an object and writes it at its position in the file.
+ * The bytes written are recorded in the part record, so an interrupted range
+ * is resumed where it stopped.
+ */
+class DownloadPartTask implements Callable<Boolean> {
+
+    private final static String TAG = "DownloadPartTask";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TransferRecord part;
+    private final String eTag;
+    private final TransferProgress transferProgress;
+    private final AmazonS3 s3;
+    private final TransferDBUtil dbUtil;
+
+    /**
+     * @param part The part record of the range to download
+     * @param eTag The ETag of the object the other ranges come from
+     * @param transferProgress The progress of the whole download
+     * @param s3 Low-level S3 client
+     * @param dbUtil The database the progress is recorded in
+     */
+    public DownloadPartTask(TransferRecord part, String eTag, TransferProgress transferProgress,
+            AmazonS3 s3, TransferDBUtil dbUtil) {
+        this.part = part;
+        this.eTag = eTag;
+        this.transferProgress = transferProgress;
+        this.s3 = s3;
+        this.dbUtil = dbUtil;
+    }
+
+    /**
+     * @return The number of bytes of the range left to download.
+     */
+    long getBytesToTransfer() {
+        return part.bytesTotal - part.bytesCurrent;
+    }
+
+    /*
+     * Runs part download task and returns whether successfully downloaded.
+     */
+    @Override
+    public Boolean call() throws Exception {
+        dbUtil.updateState(part.id, TransferState.IN_PROGRESS);
+        long bytesWritten = part.bytesCurrent;
+        if (bytesWritten < part.bytesTotal) {
+            GetObjectRequest request = new GetObjectRequest(part.bucketName, part.key);
+            request.setRange(part.rangeStart + bytesWritten, part.rangeLast);
+            if (eTag != null) {
+                request.withMatchingETagConstraint(eTag);
+            }
+            TransferUtility.appendMultipartTransferServiceUserAgentString(request);
+            request.setGeneralProgressListener(new TransferProgressUpdatingListener(
+                    transferProgress) {
+                @Override
+                public void progressChanged(ProgressEvent progressEvent) {
+                    super.progressChanged(progressEvent);
+                    dbUtil.updateBytesTransferred(part.mainUploadId,
+                            transferProgress.getBytesTransferred(),
+                            false);
+                }
+            });
+
+            S3Object s3Object = null;
+            RandomAccessFile file = null;
+            try {
+                s3Object = s3.getObject(request);
+                if (s3Object == null) {
+                    throw new AmazonClientException("The object changed during the download");
+                }
+                file = new RandomAccessFile(part.file, "rw");
+                FileChannel channel = file.getChannel();
+                InputStream content = s3Object.getObjectContent();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = content.read(buffer)) != -1) {
+                    ByteBuffer source = ByteBuffer.wrap(buffer, 0, bytesRead);
+                    while (source.hasRemaining()) {
+                        bytesWritten += channel.write(source, part.rangeStart + bytesWritten);
+                    }
+                    dbUtil.updateBytesTransferred(part.id, bytesWritten, false);
+                }
+                if (bytesWritten != part.bytesTotal) {
+                    throw new IOException("Expected " + part.bytesTotal + " bytes for part "
+                            + part.partNumber + " but received " + bytesWritten);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Encountered error downloading part", e);
+                if (s3Object != null) {
+                    s3Object.getObjectContent().abort();
+                }
+                // Keeps what is already on disk for the resume
+                dbUtil.updateBytesTransferred(part.id, bytesWritten, true);
+                dbUtil.updateState(part.id, TransferState.FAILED);
+                return false;
+            } finally {
+                if (file != null) {
+                    try {
+                        file.close();
+                    } catch (IOException e) {
+                        // ignored
+                    }
+                }
+                if (s3Object != null) {
+                    try {
+                        s3Object.close();
+                    } catch (IOException e) {
+                        // ignored
+                    }
+                }
+            }
+        }
+        dbUtil.updateBytesTransferred(part.id, bytesWritten, true);
+        dbUtil.updateState(part.id, TransferState.PART_COMPLETED);
+        return true;
+    }
+}
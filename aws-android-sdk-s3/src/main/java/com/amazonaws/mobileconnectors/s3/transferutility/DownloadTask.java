@@ -15,15 +15,29 @@
 
 package com.amazonaws.mobileconnectors.s3.transferutility;
 
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.util.Log;
+
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Performs download operation and returns a Boolean value indicating whether
@@ -31,10 +45,13 @@ import java.util.concurrent.Callable;
  */
 class DownloadTask implements Callable<Boolean> {
 
+    private final static String TAG = "DownloadTask";
+
     private final AmazonS3 s3;
     private final TransferRecord download;
     private final TransferProgress transferProgress;
     TransferDBUtil dbUtil;
+    private final TransferThreadPool threadPool;
 
     /**
      * Constructs a DownloadTask with the given download info and S3 client.
@@ -42,12 +59,22 @@ class DownloadTask implements Callable<Boolean> {
      * @param DownloadInfo A TransferRecord object storing all the information
      *            of the download
      * @param s3 Low-level S3 client
+     * @param threadPool The thread pool running the ranges of the download
      */
-    public DownloadTask(TransferRecord DownloadInfo, AmazonS3 s3, TransferDBUtil dbUtil) {
+    public DownloadTask(TransferRecord DownloadInfo, AmazonS3 s3, TransferDBUtil dbUtil,
+            TransferThreadPool threadPool) {
         this.download = DownloadInfo;
         this.s3 = s3;
         this.transferProgress = new TransferProgress();
         this.dbUtil = dbUtil;
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * @return The size of the object, or -1 if it isn't known yet.
+     */
+    long getBytesTotal() {
+        return download.bytesTotal > 0 ? download.bytesTotal : -1;
     }
 
     /*
@@ -93,6 +120,17 @@ class DownloadTask implements Callable<Boolean> {
         transferProgress.setTotalBytesToTransfer(totalBytesOfFile);
         dbUtil.updateBytesTotalForDownload(download.id, totalBytesOfFile);
 
+        if (download.isMultipart == 1) {
+            if (totalBytesOfFile > download.partSize) {
+                return downloadMultipartAndWaitForCompletion(file, objectMetadata);
+            }
+            // The object fits in a part now, ranges of an earlier attempt
+            // can't be resumed.
+            if (dbUtil.deletePartRecords(download.id) > 0) {
+                file.delete();
+            }
+        }
+
         // Checks if it's a resumed download.
         if (download.bytesCurrent > 0) {
             if (file.exists()) {
@@ -141,6 +179,170 @@ class DownloadTask implements Callable<Boolean> {
         }
     }
 
+    /**
+     * Downloads the object as ranges fetched in parallel, each written at its
+     * position in the file. The ranges are recorded as part records, so a
+     * resumed download only fetches what is missing as long as the object
+     * hasn't changed.
+     *
+     * @param file The file to download to.
+     * @param objectMetadata The metadata of the object.
+     * @return Whether the file has been downloaded successfully.
+     */
+    private Boolean downloadMultipartAndWaitForCompletion(File file,
+            ObjectMetadata objectMetadata) {
+        long totalBytesOfFile = objectMetadata.getContentLength();
+        String eTag = objectMetadata.getETag();
+        List<TransferRecord> parts = queryParts();
+        if (!canResume(parts, file, totalBytesOfFile, eTag)) {
+            dbUtil.deletePartRecords(download.id);
+            try {
+                createParts(file, totalBytesOfFile, eTag);
+            } catch (IOException e) {
+                Log.e(TAG, "Error creating the parts of the download", e);
+                writeFailureInfo();
+                return false;
+            }
+            parts = queryParts();
+        }
+
+        long bytesAlreadyTransferred = 0;
+        List<TransferRecord> remainingParts = new ArrayList<TransferRecord>();
+        for (TransferRecord part : parts) {
+            bytesAlreadyTransferred += part.bytesCurrent;
+            if (!TransferState.PART_COMPLETED.equals(part.state)) {
+                remainingParts.add(part);
+            }
+        }
+        dbUtil.updateBytesTransferred(download.id, bytesAlreadyTransferred, true);
+        transferProgress.updateProgress(bytesAlreadyTransferred);
+
+        /*
+         * Starts with partConcurrency ranges in flight and lets the controller
+         * adjust it, the part thread pool is shared with the other transfers.
+         */
+        int concurrency = Math.max(1, download.partConcurrency);
+        PartConcurrencyController controller = new PartConcurrencyController(transferProgress,
+                concurrency, Math.max(concurrency, threadPool.getMaxConcurrentParts()),
+                threadPool.isAdaptivePartConcurrency());
+        LinkedList<Future<Boolean>> futures = new LinkedList<Future<Boolean>>();
+        boolean isSuccess = true;
+        try {
+            for (TransferRecord part : remainingParts) {
+                while (isSuccess && futures.size() >= controller.getConcurrency()) {
+                    isSuccess = futures.removeFirst().get() && isSuccess;
+                    controller.onPartCompleted();
+                }
+                if (!isSuccess) {
+                    break;
+                }
+                futures.add(threadPool.submitTask(new DownloadPartTask(part, eTag,
+                        transferProgress, s3, dbUtil)));
+            }
+            for (Future<Boolean> f : futures) {
+                boolean b = f.get();
+                isSuccess = isSuccess && b;
+            }
+        } catch (InterruptedException e) {
+            /*
+             * It's not a failure, it may be caused by a pause operation from
+             * applications. The parts keep their progress.
+             */
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            dbUtil.flushBytesTransferred();
+            return false;
+        } catch (ExecutionException e) {
+            isSuccess = false;
+        }
+        if (!isSuccess) {
+            writeFailureInfo();
+            return false;
+        }
+
+        try {
+            ServiceUtils.verifyDownloadedFile(file, eTag);
+        } catch (AmazonClientException e) {
+            Log.e(TAG, e.getMessage());
+            // Starts over next time
+            dbUtil.deletePartRecords(download.id);
+            writeFailureInfo();
+            return false;
+        }
+        writeSuccessInfo(totalBytesOfFile);
+        dbUtil.deletePartRecords(download.id);
+        return true;
+    }
+
+    /**
+     * Checks whether the recorded ranges still describe the object and the
+     * file they were written to.
+     */
+    private boolean canResume(List<TransferRecord> parts, File file, long totalBytesOfFile,
+            String eTag) {
+        if (parts.isEmpty() || eTag == null || !eTag.equals(download.eTag)
+                || !file.exists() || file.length() != totalBytesOfFile) {
+            return false;
+        }
+        long bytesInParts = 0;
+        for (TransferRecord part : parts) {
+            bytesInParts += part.bytesTotal;
+        }
+        return bytesInParts == totalBytesOfFile;
+    }
+
+    /**
+     * Records the ranges of the download and allocates the file they are
+     * written to.
+     */
+    private void createParts(File file, long totalBytesOfFile, String eTag) throws IOException {
+        double minimumPartSize = Math.ceil((double) totalBytesOfFile
+                / (double) MAXIMUM_UPLOAD_PARTS);
+        long partSize = (long) Math.max(minimumPartSize, download.partSize);
+        int partCount = (int) ((totalBytesOfFile + partSize - 1) / partSize);
+        ContentValues[] valuesArray = new ContentValues[partCount];
+        for (int i = 0; i < partCount; i++) {
+            long rangeStart = i * partSize;
+            long rangeLast = Math.min(rangeStart + partSize, totalBytesOfFile) - 1;
+            valuesArray[i] = dbUtil.generateContentValuesForDownloadPart(download.bucketName,
+                    download.key, file, i + 1, rangeStart, rangeLast);
+        }
+
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(totalBytesOfFile);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (dbUtil.bulkInsertPartRecords(download.id, valuesArray) != partCount) {
+            throw new IOException("Failed to record the parts of the download");
+        }
+        dbUtil.updateETag(download.id, eTag);
+        download.eTag = eTag;
+    }
+
+    /**
+     * @return The part records of the download, ordered by part number.
+     */
+    private List<TransferRecord> queryParts() {
+        List<TransferRecord> parts = new ArrayList<TransferRecord>();
+        Cursor c = dbUtil.queryPartsOfDownload(download.id);
+        while (c.moveToNext()) {
+            TransferRecord part = new TransferRecord(c.getInt(c
+                    .getColumnIndexOrThrow(TransferTable.COLUMN_ID)), s3);
+            part.updateFromDB(c);
+            parts.add(part);
+        }
+        c.close();
+        return parts;
+    }
+
     /**
      * Updates the download record with success state and total bytes.
      *
@@ -152,9 +354,11 @@ class DownloadTask implements Callable<Boolean> {
     }
 
     /**
-     * Updates the download record with failure state.
+     * Updates the download record with failure state, after writing the
+     * progress not written yet.
      */
     private void writeFailureInfo() {
+        dbUtil.flushBytesTransferred();
         dbUtil.updateState(download.id, TransferState.FAILED);
     }
 }
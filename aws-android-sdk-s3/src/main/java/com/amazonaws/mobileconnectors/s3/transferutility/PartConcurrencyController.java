@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+/**
+ * Adjusts the number of parts of a transfer in flight to the throughput they
+ * achieve. Each time a part completes, the throughput since the previous
+ * sample is measured from the progress of the transfer. The concurrency keeps
+ * moving in the same direction while the throughput improves, stays put while
+ * it holds, and turns around when it drops, always between one and the
+ * maximum.
+ */
+class PartConcurrencyController {
+
+    /** Samples shorter than this are too noisy to compare */
+    static final long MIN_SAMPLE_MILLIS = 1000;
+
+    /** Relative change of throughput considered significant */
+    private static final double TOLERANCE = 0.1;
+
+    private final TransferProgress transferProgress;
+    private final int maxConcurrency;
+    private final boolean isAdaptive;
+
+    private int concurrency;
+    private int direction;
+    private long lastBytes;
+    private long lastMillis;
+    private double lastThroughput = -1;
+
+    /**
+     * @param transferProgress The progress of the whole transfer
+     * @param initialConcurrency The number of parts in flight to start with
+     * @param maxConcurrency The largest number of parts in flight
+     * @param isAdaptive Whether the concurrency changes at all
+     */
+    PartConcurrencyController(TransferProgress transferProgress, int initialConcurrency,
+            int maxConcurrency, boolean isAdaptive) {
+        this(transferProgress, initialConcurrency, maxConcurrency, isAdaptive,
+                System.currentTimeMillis());
+    }
+
+    PartConcurrencyController(TransferProgress transferProgress, int initialConcurrency,
+            int maxConcurrency, boolean isAdaptive, long startMillis) {
+        this.transferProgress = transferProgress;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.isAdaptive = isAdaptive;
+        this.concurrency = Math.max(1, Math.min(initialConcurrency, this.maxConcurrency));
+        // probe towards the side there is room on
+        this.direction = concurrency < this.maxConcurrency ? 1 : -1;
+        this.lastBytes = transferProgress.getBytesTransferred();
+        this.lastMillis = startMillis;
+    }
+
+    /**
+     * @return The number of parts to keep in flight.
+     */
+    synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Called when a part of the transfer completes.
+     */
+    void onPartCompleted() {
+        onPartCompleted(System.currentTimeMillis());
+    }
+
+    synchronized void onPartCompleted(long nowMillis) {
+        if (!isAdaptive) {
+            return;
+        }
+        long elapsed = nowMillis - lastMillis;
+        if (elapsed < MIN_SAMPLE_MILLIS) {
+            return;
+        }
+        long bytes = transferProgress.getBytesTransferred();
+        double throughput = (bytes - lastBytes) * 1000.0 / elapsed;
+        lastBytes = bytes;
+        lastMillis = nowMillis;
+
+        if (lastThroughput >= 0) {
+            if (throughput < lastThroughput * (1 - TOLERANCE)) {
+                // the last step made things worse
+                direction = -direction;
+            } else if (throughput <= lastThroughput * (1 + TOLERANCE)) {
+                lastThroughput = throughput;
+                return;
+            }
+        }
+        lastThroughput = throughput;
+
+        int next = concurrency + direction;
+        if (next < 1 || next > maxConcurrency) {
+            // nothing left to try that way
+            direction = -direction;
+            next = concurrency + direction;
+        }
+        concurrency = Math.max(1, Math.min(next, maxConcurrency));
+    }
+}
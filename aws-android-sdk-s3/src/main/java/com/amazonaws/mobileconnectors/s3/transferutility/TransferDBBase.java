@@ -25,6 +25,10 @@ import android.net.Uri;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Provides methods to access database through which applications can interact
  * with transfer tasks.
@@ -194,6 +198,40 @@ class TransferDBBase {
         return rowsUpdated;
     }
 
+    /**
+     * Updates the current bytes of several records in a single transaction.
+     *
+     * @param bytesById The current bytes by record id.
+     * @return Number of rows updated, 0 if the transaction failed.
+     */
+    public synchronized int updateBytesCurrent(Map<Integer, Long> bytesById) {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        List<Integer> updatedIds = new ArrayList<Integer>();
+        ContentValues values = new ContentValues();
+        try {
+            db.beginTransaction();
+            for (Map.Entry<Integer, Long> entry : bytesById.entrySet()) {
+                values.put(TransferTable.COLUMN_BYTES_CURRENT, entry.getValue());
+                if (db.update(TransferTable.TABLE_TRANSFER, values,
+                        TransferTable.COLUMN_ID + "=" + entry.getKey(), null) > 0) {
+                    updatedIds.add(entry.getKey());
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TransferDBBase.class.getSimpleName(),
+                    "updateBytesCurrent error : " + e.getMessage());
+            updatedIds.clear();
+        } finally {
+            db.endTransaction();
+        }
+        for (int id : updatedIds) {
+            context.getContentResolver().notifyChange(
+                    Uri.parse(contentUri + "/" + id), null);
+        }
+        return updatedIds.size();
+    }
+
     /**
      * Deletes a record in the table.
      *
@@ -210,6 +248,11 @@ class TransferDBBase {
             case TRANSFERS:
                 rowsDeleted = db.delete(TransferTable.TABLE_TRANSFER, selection, selectionArgs);
                 break;
+            case TRANSFER_PART:
+                rowsDeleted = db.delete(TransferTable.TABLE_TRANSFER,
+                        TransferTable.COLUMN_MAIN_UPLOAD_ID + "=" + uri.getLastPathSegment(),
+                        null);
+                break;
             case TRANSFER_ID:
                 String id = uri.getLastPathSegment();
                 if (TextUtils.isEmpty(selection)) {
@@ -229,25 +272,43 @@ class TransferDBBase {
     }
 
     /**
-     * @param uri The Uri of a table.
+     * @param uri The Uri of a table, or of the parts of a transfer.
      * @param valuesArray A array of values to insert.
-     * @return Number of rows inserted.
+     * @return The id of the main record inserted into the table, or the
+     *         number of part records inserted.
      */
     public int bulkInsert(Uri uri, ContentValues[] valuesArray) {
         int uriType = uriMatcher.match(uri);
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
-        int mainUploadId = 0;
+        int result = 0;
         switch (uriType) {
             case TRANSFERS:
                 try {
                     db.beginTransaction();
-                    mainUploadId = (int) db.insertOrThrow(TransferTable.TABLE_TRANSFER, null,
+                    result = (int) db.insertOrThrow(TransferTable.TABLE_TRANSFER, null,
                             valuesArray[0]);
                     for (int i = 1; i < valuesArray.length; i++) {
-                        valuesArray[i].put(TransferTable.COLUMN_MAIN_UPLOAD_ID, mainUploadId);
+                        valuesArray[i].put(TransferTable.COLUMN_MAIN_UPLOAD_ID, result);
+                        db.insertOrThrow(TransferTable.TABLE_TRANSFER, null, valuesArray[i]);
+                    }
+                    db.setTransactionSuccessful();
+                } catch (Exception e) {
+                    Log.e(TransferDBBase.class.getSimpleName(),
+                            "bulkInsert error : " + e.getMessage());
+                } finally {
+                    db.endTransaction();
+                }
+                break;
+            case TRANSFER_PART:
+                try {
+                    db.beginTransaction();
+                    for (int i = 0; i < valuesArray.length; i++) {
+                        valuesArray[i].put(TransferTable.COLUMN_MAIN_UPLOAD_ID,
+                                Integer.parseInt(uri.getLastPathSegment()));
                         db.insertOrThrow(TransferTable.TABLE_TRANSFER, null, valuesArray[i]);
                     }
                     db.setTransactionSuccessful();
+                    result = valuesArray.length;
                 } catch (Exception e) {
                     Log.e(TransferDBBase.class.getSimpleName(),
                             "bulkInsert error : " + e.getMessage());
@@ -259,6 +320,6 @@ class TransferDBBase {
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
         context.getContentResolver().notifyChange(uri, null);
-        return mainUploadId;
+        return result;
     }
 }
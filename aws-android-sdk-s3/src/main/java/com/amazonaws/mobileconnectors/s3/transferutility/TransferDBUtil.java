@@ -42,16 +42,9 @@ class TransferDBUtil {
     private static TransferDBBase transferDBBase;
 
     /**
-     * mapLastBytes is used to store the last updated bytes of each transfer
-     * record
+     * progressWriter coalesces the progress updates of the transfer records
      */
-    private final Map<Integer, Long> mapLastBytes;
-
-    /**
-     * mapLastUploadTime is used to store the last updated time of each transfer
-     * record
-     */
-    private final Map<Integer, Long> mapLastUploadTime;
+    private final TransferProgressWriter progressWriter;
 
     /**
      * Constructs a TransferDBUtil with the given Context.
@@ -62,8 +55,12 @@ class TransferDBUtil {
         if (transferDBBase == null) {
             transferDBBase = new TransferDBBase(context);
         }
-        mapLastBytes = new HashMap<Integer, Long>();
-        mapLastUploadTime = new HashMap<Integer, Long>();
+        progressWriter = new TransferProgressWriter(new TransferProgressWriter.Store() {
+            @Override
+            public int writeBytesCurrent(Map<Integer, Long> bytesById) {
+                return transferDBBase.updateBytesCurrent(bytesById);
+            }
+        });
     }
 
     /**
@@ -129,6 +126,38 @@ class TransferDBUtil {
                 new ObjectMetadata());
     }
 
+    /**
+     * Inserts a download record into database, the object of which is
+     * downloaded in ranges fetched in parallel if it's larger than a part.
+     *
+     * @param bucket The name of the bucket to download from.
+     * @param key The key of the object to download.
+     * @param file The file to download to.
+     * @param partSize The size of each range.
+     * @param partConcurrency The number of ranges fetched at the same time.
+     * @return An Uri of the record inserted.
+     */
+    public Uri insertMultipartDownloadRecord(String bucket, String key, File file,
+            long partSize, int partConcurrency) {
+        ContentValues values = generateContentValuesForSinglePartTransfer(TransferType.DOWNLOAD,
+                bucket, key, file, new ObjectMetadata());
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        values.put(TransferTable.COLUMN_PART_SIZE, partSize);
+        values.put(TransferTable.COLUMN_PART_CONCURRENCY, partConcurrency);
+        return transferDBBase.insert(transferDBBase.getContentUri(), values);
+    }
+
+    /**
+     * Inserts the part records of a download in a single transaction.
+     *
+     * @param mainDownloadId The id of the download the parts belong to.
+     * @param valuesArray An array of part values to insert.
+     * @return Number of part records inserted, 0 if the insertion failed.
+     */
+    public int bulkInsertPartRecords(int mainDownloadId, ContentValues[] valuesArray) {
+        return transferDBBase.bulkInsert(getPartUri(mainDownloadId), valuesArray);
+    }
+
     /**
      * Inserts multiple records at a time.
      *
@@ -141,10 +170,11 @@ class TransferDBUtil {
 
     /**
      * Updates the current bytes of a transfer record, but calling this method
-     * may not cause the actual update. If last updated time is less than 1
-     * second from now, or change of bytes is less than 10*1024, the update
-     * request will be discarded. If forceUpdate is set to true, then it will
-     * update the DB despite the limitation above.
+     * may not cause the actual update. The latest bytes of each record are
+     * kept and written in batches, see {@link TransferProgressWriter}. If
+     * forceUpdate is set to true, the bytes and everything else pending are
+     * written now, which is how the offset to resume from is recorded. Parts
+     * of a transfer call it from several threads.
      *
      * @param id The id of the transfer
      * @param bytes The bytes currently transferred
@@ -152,19 +182,25 @@ class TransferDBUtil {
      * @return Number of rows updated.
      */
     public int updateBytesTransferred(int id, long bytes, boolean forceUpdate) {
-        long timeInMillis = System.currentTimeMillis();
-        if (forceUpdate
-                || !mapLastBytes.containsKey(id)
-                || !mapLastUploadTime.containsKey(id)
-                || (bytes - mapLastBytes.get(id) > 10 * 1024 && timeInMillis
-                        - mapLastUploadTime.get(id) > 1000)) {
-            ContentValues values = new ContentValues();
-            values.put(TransferTable.COLUMN_BYTES_CURRENT, bytes);
-            mapLastBytes.put(id, bytes);
-            mapLastUploadTime.put(id, timeInMillis);
-            return transferDBBase.update(getRecordUri(id), values, null, null);
-        }
-        return 0;
+        return progressWriter.update(id, bytes, forceUpdate);
+    }
+
+    /**
+     * Writes the progress updates not written yet.
+     *
+     * @return Number of rows updated.
+     */
+    public int flushBytesTransferred() {
+        return progressWriter.flush();
+    }
+
+    /**
+     * @return A summary of the progress updates reported and written.
+     */
+    public String getProgressWriteStatistics() {
+        return "progress updates: " + progressWriter.getUpdatesRequested()
+                + ", rows written: " + progressWriter.getRowsWritten()
+                + ", transactions: " + progressWriter.getFlushCount();
     }
 
     /**
@@ -447,6 +483,17 @@ class TransferDBUtil {
         return bytesTotal;
     }
 
+    /**
+     * Queries the part records of a download in parts.
+     *
+     * @param mainDownloadId The id of the download.
+     * @return A Cursor pointing to the part records.
+     */
+    public Cursor queryPartsOfDownload(int mainDownloadId) {
+        return transferDBBase.query(getPartUri(mainDownloadId), null, null, null,
+                TransferTable.COLUMN_PART_NUM);
+    }
+
     /**
      * Deletes the record with the given id.
      *
@@ -457,6 +504,16 @@ class TransferDBUtil {
         return transferDBBase.delete(getRecordUri(id), null, null);
     }
 
+    /**
+     * Deletes the part records of the transfer with the given id.
+     *
+     * @param mainDownloadId The id of the transfer.
+     * @return Number of rows deleted.
+     */
+    public int deletePartRecords(int mainDownloadId) {
+        return transferDBBase.delete(getPartUri(mainDownloadId), null, null);
+    }
+
     /**
      * Queries all the PartETags of completed parts from the multipart upload
      * specified by the mainUploadId. The list of PartETags is used to complete
@@ -558,6 +615,36 @@ class TransferDBUtil {
         return values;
     }
 
+    /**
+     * Generates a ContentValues object to insert into the database for a range
+     * of a download in parts.
+     *
+     * @param bucket The name of the bucket to download from.
+     * @param key The key of the object to download.
+     * @param file The file to download to.
+     * @param partNumber The part number of this range.
+     * @param rangeStart The position of the first byte of the range.
+     * @param rangeLast The position of the last byte of the range.
+     * @return The ContentValues object generated.
+     */
+    public ContentValues generateContentValuesForDownloadPart(String bucket, String key,
+            File file, int partNumber, long rangeStart, long rangeLast) {
+        ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_TYPE, TransferType.DOWNLOAD.toString());
+        values.put(TransferTable.COLUMN_STATE, TransferState.WAITING.toString());
+        values.put(TransferTable.COLUMN_BUCKET_NAME, bucket);
+        values.put(TransferTable.COLUMN_KEY, key);
+        values.put(TransferTable.COLUMN_FILE, file.getAbsolutePath());
+        values.put(TransferTable.COLUMN_BYTES_CURRENT, 0l);
+        values.put(TransferTable.COLUMN_BYTES_TOTAL, rangeLast - rangeStart + 1);
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        values.put(TransferTable.COLUMN_PART_NUM, partNumber);
+        values.put(TransferTable.COLUMN_DATA_RANGE_START, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_LAST, rangeLast);
+        values.put(TransferTable.COLUMN_IS_ENCRYPTED, 0);
+        return values;
+    }
+
     /**
      * Adds mappings to a ContentValues object for the data in the passed in
      * ObjectMetadata
@@ -636,7 +723,7 @@ class TransferDBUtil {
     }
 
     /**
-     * Gets the Uri of part records of a multipart upload.
+     * Gets the Uri of part records of a multipart upload or download.
      *
      * @param mainUploadId The main upload id of the transfer.
      * @return The Uri of the part upload records that have the given
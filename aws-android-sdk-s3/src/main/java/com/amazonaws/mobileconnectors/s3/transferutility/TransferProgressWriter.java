@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coalesces the progress of the transfers before it is written to the
+ * database. Progress listeners report the bytes transferred on nearly every
+ * buffer, for the transfer and for each of its parts. Only the latest value of
+ * each record is kept, and the pending values of all the records are written
+ * together in a single transaction when {@link #FLUSH_INTERVAL_MILLIS} has
+ * passed since the last write, or sooner once {@link #FLUSH_BYTES_THRESHOLD}
+ * bytes were transferred, but never more often than every
+ * {@link #MIN_FLUSH_INTERVAL_MILLIS}. Forced updates, which record the offset
+ * a transfer resumes from, are written right away along with everything
+ * pending.
+ */
+class TransferProgressWriter {
+
+    /** Longest time the progress in the database lags behind */
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    /** Shortest time between two writes that aren't forced */
+    static final long MIN_FLUSH_INTERVAL_MILLIS = 250;
+
+    /** Bytes transferred after which the progress is written early */
+    static final long FLUSH_BYTES_THRESHOLD = 5 * 1024 * 1024;
+
+    /**
+     * Where the progress is written to.
+     */
+    interface Store {
+        /**
+         * Writes the current bytes of the given records in a single
+         * transaction.
+         *
+         * @param bytesById The current bytes by record id.
+         * @return The number of rows updated.
+         */
+        int writeBytesCurrent(Map<Integer, Long> bytesById);
+    }
+
+    private final Store store;
+    private Map<Integer, Long> pending = new HashMap<Integer, Long>();
+    private final Map<Integer, Long> lastWritten = new HashMap<Integer, Long>();
+    private long bytesSinceFlush;
+    private long lastFlushMillis;
+
+    /** Statistics of the write amplification */
+    private long updatesRequested;
+    private long rowsWritten;
+    private long flushCount;
+
+    TransferProgressWriter(Store store) {
+        this.store = store;
+    }
+
+    /**
+     * Records the current bytes of a transfer record, written to the
+     * database with the next flush.
+     *
+     * @param id The id of the record.
+     * @param bytes The bytes currently transferred.
+     * @param forceUpdate Whether to write everything pending now.
+     * @return Number of rows written by this call.
+     */
+    int update(int id, long bytes, boolean forceUpdate) {
+        return update(id, bytes, forceUpdate, System.currentTimeMillis());
+    }
+
+    synchronized int update(int id, long bytes, boolean forceUpdate, long nowMillis) {
+        updatesRequested++;
+        Long previous = pending.containsKey(id) ? pending.get(id) : lastWritten.get(id);
+        if (previous != null) {
+            if (!forceUpdate && previous == bytes) {
+                return 0;
+            }
+            bytesSinceFlush += Math.max(0, bytes - previous);
+        }
+        pending.put(id, bytes);
+
+        long elapsed = nowMillis - lastFlushMillis;
+        if (forceUpdate
+                || elapsed >= FLUSH_INTERVAL_MILLIS
+                || (bytesSinceFlush >= FLUSH_BYTES_THRESHOLD
+                        && elapsed >= MIN_FLUSH_INTERVAL_MILLIS)) {
+            return flush(nowMillis);
+        }
+        return 0;
+    }
+
+    /**
+     * Writes everything pending.
+     *
+     * @return Number of rows written.
+     */
+    int flush() {
+        return flush(System.currentTimeMillis());
+    }
+
+    synchronized int flush(long nowMillis) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, Long> toWrite = pending;
+        pending = new HashMap<Integer, Long>();
+        int rows = store.writeBytesCurrent(toWrite);
+        lastWritten.putAll(toWrite);
+        rowsWritten += rows;
+        flushCount++;
+        bytesSinceFlush = 0;
+        lastFlushMillis = nowMillis;
+        return rows;
+    }
+
+    /**
+     * @return The number of progress updates reported.
+     */
+    synchronized long getUpdatesRequested() {
+        return updatesRequested;
+    }
+
+    /**
+     * @return The number of rows written to the database.
+     */
+    synchronized long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * @return The number of transactions the rows were written in.
+     */
+    synchronized long getFlushCount() {
+        return flushCount;
+    }
+}
@@ -67,6 +67,13 @@ class TransferRecord {
     public String sseAlgorithm;
     public String md5;
 
+    /**
+     * For downloads in parts, the size of each range and the number of ranges
+     * fetched at the same time
+     */
+    public long partSize;
+    public int partConcurrency;
+
     private final AmazonS3 s3;
     private Future<?> submittedTask;
 
@@ -134,22 +141,29 @@ class TransferRecord {
         this.sseAlgorithm = c
                 .getString(c.getColumnIndexOrThrow(TransferTable.COLUMN_SSE_ALGORITHM));
         this.md5 = c.getString(c.getColumnIndexOrThrow(TransferTable.COLUMN_CONTENT_MD5));
+        this.partSize = c.getLong(c.getColumnIndexOrThrow(TransferTable.COLUMN_PART_SIZE));
+        this.partConcurrency = c.getInt(c
+                .getColumnIndexOrThrow(TransferTable.COLUMN_PART_CONCURRENCY));
     }
 
     /**
      * Checks the state of the transfer and starts a thread to run the transfer
      * task if possible.
      *
+     * @param threadPool The thread pool to run the task in.
+     * @param dbUtil The database the transfer is recorded in.
      * @return Whether the task is running.
      */
-    public boolean startIfReady(TransferDBUtil dbUtil) {
+    public boolean startIfReady(TransferThreadPool threadPool, TransferDBUtil dbUtil) {
         boolean isReady = checkIsReadyToRun();
         boolean isActive = submittedTask != null && !submittedTask.isDone();
         if (isReady && !isActive) {
             if (type.equals(TransferType.DOWNLOAD)) {
-                submittedTask = TransferThreadPool.submitTask(new DownloadTask(this, s3, dbUtil));
+                submittedTask = threadPool.submitTask(new DownloadTask(this, s3, dbUtil,
+                        threadPool));
             } else {
-                submittedTask = TransferThreadPool.submitTask(new UploadTask(this, s3, dbUtil));
+                submittedTask = threadPool.submitTask(new UploadTask(this, s3, dbUtil,
+                        threadPool));
             }
         }
         return isReady || isActive;
@@ -171,7 +185,7 @@ class TransferRecord {
             return true;
         } else if (state.equals(TransferState.PENDING_CANCEL)) {
             cancelTask();
-            if (isMultipart == 1) {
+            if (isMultipart == 1 && type.equals(TransferType.UPLOAD)) {
                 try {
                     s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key,
                             multipartId));
@@ -77,6 +77,12 @@ public class TransferService extends Service {
     private int startId;
     private TransferDBUtil dbUtil;
 
+    /*
+     * threadPool runs the transfers and their parts, with the limits of the
+     * configuration of the TransferUtility that last started the Service.
+     */
+    private TransferThreadPool threadPool;
+
     @Override
     public IBinder onBind(Intent intent) {
         throw new UnsupportedOperationException("Can't bind to TransferSerivce");
@@ -89,6 +95,7 @@ public class TransferService extends Service {
         Log.d(TAG, "Starting Transfer Service");
 
         transfers = new HashMap<Integer, TransferRecord>();
+        threadPool = new TransferThreadPool(new TransferUtilityConfiguration());
 
         handlerThread = new HandlerThread(TAG + "-AWSTransferUpdateHandlerThread");
         handlerThread.start();
@@ -137,6 +144,7 @@ public class TransferService extends Service {
             Log.w(TAG, "TransferService can't get s3 client, it will stop.");
             stopSelf();
         }
+        threadPool.configure(TransferUtility.getConfigurationFromIntent(intent));
 
         enqueueUpdate();
         /*
@@ -150,8 +158,10 @@ public class TransferService extends Service {
         getContentResolver().unregisterContentObserver(observer);
         unregisterReceiver(networkInfoReceive);
         handlerThread.quit();
+        dbUtil.flushBytesTransferred();
+        Log.d(TAG, "Stopping Transfer Service, " + dbUtil.getProgressWriteStatistics());
         dbUtil.setAllRunningRecordsToPausedBeforeShutdownService();
-        TransferThreadPool.closeThreadPool();
+        threadPool.shutdown();
         super.onDestroy();
     }
 
@@ -207,7 +217,7 @@ public class TransferService extends Service {
             } else {
                 transfer = addNewTransfer(cursor);
             }
-            boolean isTransferActive = transfer.startIfReady(dbUtil);
+            boolean isTransferActive = transfer.startIfReady(threadPool, dbUtil);
             transfer.pauseOrCancelIfRequested(dbUtil);
             isActive |= isTransferActive;
         }
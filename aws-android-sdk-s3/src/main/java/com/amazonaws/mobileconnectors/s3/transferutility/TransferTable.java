@@ -182,6 +182,20 @@ class TransferTable {
      */
     public static final String COLUMN_USER_METADATA = "user_metadata";
 
+    /**
+     * ============ Below added for parallel ranged downloads ============
+     */
+
+    /**
+     * For a download in parts, the size of each range
+     */
+    public static final String COLUMN_PART_SIZE = "part_size";
+
+    /**
+     * For a download in parts, the number of ranges fetched at the same time
+     */
+    public static final String COLUMN_PART_CONCURRENCY = "part_concurrency";
+
     /*
      * Database creation SQL statement
      */
@@ -219,7 +233,9 @@ class TransferTable {
             + COLUMN_HTTP_EXPIRES_DATE + " integer, "
             + COLUMN_SSE_ALGORITHM + " text, "
             + COLUMN_CONTENT_MD5 + " text, "
-            + COLUMN_USER_METADATA + " text"
+            + COLUMN_USER_METADATA + " text, "
+            + COLUMN_PART_SIZE + " bigint, "
+            + COLUMN_PART_CONCURRENCY + " integer"
             + ");";
 
     /**
@@ -243,6 +259,9 @@ class TransferTable {
         if (oldVersion < 2) {
             addVersion2Columns(database);
         }
+        if (oldVersion < 3) {
+            addVersion3Columns(database);
+        }
     }
 
     /**
@@ -265,4 +284,16 @@ class TransferTable {
         database.execSQL(addSSEAlgorithm);
         database.execSQL(addContentMD5);
     }
+
+    /**
+     * Adds columns that were introduced in version 3 to the database
+     */
+    private static void addVersion3Columns(SQLiteDatabase database) {
+        String addPartSize = "ALTER TABLE " + TABLE_TRANSFER +
+                " ADD COLUMN " + COLUMN_PART_SIZE + " bigint;";
+        String addPartConcurrency = "ALTER TABLE " + TABLE_TRANSFER +
+                " ADD COLUMN " + COLUMN_PART_CONCURRENCY + " integer;";
+        database.execSQL(addPartSize);
+        database.execSQL(addPartConcurrency);
+    }
 }
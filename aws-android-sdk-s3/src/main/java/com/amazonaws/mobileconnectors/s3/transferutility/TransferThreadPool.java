@@ -15,58 +15,206 @@
 
 package com.amazonaws.mobileconnectors.s3.transferutility;
 
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Schedules the tasks of the transfers run by {@link TransferService}. Whole
+ * transfers and their parts run on separate executors, so a transfer waiting
+ * for its parts never holds up the parts. Small transfers waiting to run are
+ * started before larger ones, and parts wait until the parts in flight leave
+ * room in the byte budget. The limits come from the
+ * {@link TransferUtilityConfiguration} and can be changed while transfers run.
+ */
 class TransferThreadPool {
 
-    private static final int MAX_CONCURRENT_MAIN_THREADS_ALLOWED = 2;
-    private static final int MAX_CONCURRENT_PART_THREADS_ALLOWED = 5;
-    private static ExecutorService executorMainTask;
-    private static ExecutorService executorPartTask;
+    private final ThreadPoolExecutor executorMainTask;
+    private final ThreadPoolExecutor executorPartTask;
+    /** Keeps transfers of the same priority in the order they were submitted */
+    private final AtomicLong sequence = new AtomicLong();
 
-    private synchronized static void init() {
-        if (executorMainTask == null) {
-            executorMainTask = buildExecutor(MAX_CONCURRENT_MAIN_THREADS_ALLOWED);
-        }
-        if (executorPartTask == null) {
-            executorPartTask = buildExecutor(MAX_CONCURRENT_PART_THREADS_ALLOWED);
+    private final Object budgetLock = new Object();
+    private long inFlightBytes;
+
+    private volatile long maxInFlightBytes;
+    private volatile long smallTransferThreshold;
+    private volatile boolean adaptivePartConcurrency;
+
+    TransferThreadPool(TransferUtilityConfiguration configuration) {
+        executorMainTask = buildExecutor(configuration.getMaxConcurrentTransfers(),
+                new PriorityBlockingQueue<Runnable>());
+        executorPartTask = buildExecutor(configuration.getMaxConcurrentParts(),
+                new LinkedBlockingQueue<Runnable>());
+        configure(configuration);
+    }
+
+    /**
+     * Applies the limits of the given configuration. Running tasks are not
+     * affected, but the next ones are scheduled with the new limits.
+     */
+    synchronized void configure(TransferUtilityConfiguration configuration) {
+        resize(executorMainTask, configuration.getMaxConcurrentTransfers());
+        resize(executorPartTask, configuration.getMaxConcurrentParts());
+        smallTransferThreshold = configuration.getSmallTransferThreshold();
+        adaptivePartConcurrency = configuration.isAdaptivePartConcurrency();
+        synchronized (budgetLock) {
+            maxInFlightBytes = configuration.getMaxInFlightBytes();
+            budgetLock.notifyAll();
         }
     }
 
-    public static Future<Boolean> submitTask(Callable<Boolean> c) {
-        init();
+    /**
+     * Submits a transfer or a part of a transfer.
+     */
+    Future<Boolean> submitTask(Callable<Boolean> c) {
         if (c instanceof UploadPartTask) {
-            return executorPartTask.submit(c);
+            return submitPartTask(c, ((UploadPartTask) c).getBytesToTransfer());
+        } else if (c instanceof DownloadPartTask) {
+            return submitPartTask(c, ((DownloadPartTask) c).getBytesToTransfer());
+        } else if (c instanceof UploadTask) {
+            return submitMainTask(c, ((UploadTask) c).getBytesTotal());
+        } else if (c instanceof DownloadTask) {
+            return submitMainTask(c, ((DownloadTask) c).getBytesTotal());
         } else {
-            return executorMainTask.submit(c);
+            return submitMainTask(c, -1);
+        }
+    }
+
+    /**
+     * Submits a transfer of the given size, or -1 if unknown. Transfers of
+     * unknown size are not considered small.
+     */
+    Future<Boolean> submitMainTask(Callable<Boolean> c, long bytesTotal) {
+        boolean isSmall = bytesTotal >= 0 && bytesTotal <= smallTransferThreshold;
+        PrioritizedTask task = new PrioritizedTask(c, isSmall, sequence.getAndIncrement());
+        executorMainTask.execute(task);
+        return task;
+    }
+
+    /**
+     * Submits a part that transfers the given number of bytes. It runs once
+     * the parts in flight leave room for it in the byte budget.
+     */
+    Future<Boolean> submitPartTask(final Callable<Boolean> c, final long bytes) {
+        return executorPartTask.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                long reserved = reserveBytes(bytes);
+                try {
+                    return c.call();
+                } finally {
+                    releaseBytes(reserved);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The number of parts run at the same time.
+     */
+    int getMaxConcurrentParts() {
+        return executorPartTask.getMaximumPoolSize();
+    }
+
+    /**
+     * @return Whether transfers adjust the number of their parts in flight to
+     *         the throughput they achieve.
+     */
+    boolean isAdaptivePartConcurrency() {
+        return adaptivePartConcurrency;
+    }
+
+    /**
+     * @return The number of bytes reserved by the parts in flight.
+     */
+    long getInFlightBytes() {
+        synchronized (budgetLock) {
+            return inFlightBytes;
         }
     }
 
-    public static void closeThreadPool() {
-        if (executorMainTask != null) {
-            executorMainTask.shutdown();
-            executorMainTask = null;
+    void shutdown() {
+        executorMainTask.shutdown();
+        executorPartTask.shutdown();
+    }
+
+    /**
+     * Waits until the given number of bytes fits in the budget and reserves
+     * them. A part larger than the whole budget waits for the budget to be
+     * free and reserves all of it.
+     *
+     * @return The number of bytes reserved.
+     */
+    private long reserveBytes(long bytes) throws InterruptedException {
+        synchronized (budgetLock) {
+            long reserved = Math.max(0, Math.min(bytes, maxInFlightBytes));
+            while (inFlightBytes > 0 && inFlightBytes + reserved > maxInFlightBytes) {
+                budgetLock.wait();
+            }
+            inFlightBytes += reserved;
+            return reserved;
         }
-        if (executorPartTask != null) {
-            executorPartTask.shutdown();
-            executorPartTask = null;
+    }
+
+    private void releaseBytes(long reserved) {
+        synchronized (budgetLock) {
+            inFlightBytes -= reserved;
+            budgetLock.notifyAll();
         }
     }
 
-    private static ExecutorService buildExecutor(int maxThreadsAllowed) {
+    private static void resize(ThreadPoolExecutor executor, int maxThreadsAllowed) {
+        // the core size can't exceed the maximum size at any point
+        if (maxThreadsAllowed < executor.getCorePoolSize()) {
+            executor.setCorePoolSize(maxThreadsAllowed);
+            executor.setMaximumPoolSize(maxThreadsAllowed);
+        } else {
+            executor.setMaximumPoolSize(maxThreadsAllowed);
+            executor.setCorePoolSize(maxThreadsAllowed);
+        }
+    }
+
+    private static ThreadPoolExecutor buildExecutor(int maxThreadsAllowed,
+            BlockingQueue<Runnable> queue) {
         /*
          * Create a bounded thread pool for executing transfers; it creates
          * threads as needed (up to maximum) and reclaims them when finished.
          */
         final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreadsAllowed,
-                maxThreadsAllowed, 10, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>());
+                maxThreadsAllowed, 10, TimeUnit.SECONDS, queue);
         executor.allowCoreThreadTimeOut(true);
         return executor;
     }
+
+    /**
+     * A transfer waiting to run, ordered small transfers first and then in
+     * the order of submission.
+     */
+    private static class PrioritizedTask extends FutureTask<Boolean> implements
+            Comparable<PrioritizedTask> {
+        private final boolean isSmall;
+        private final long sequenceNumber;
+
+        PrioritizedTask(Callable<Boolean> callable, boolean isSmall, long sequenceNumber) {
+            super(callable);
+            this.isSmall = isSmall;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (isSmall != other.isSmall) {
+                return isSmall ? -1 : 1;
+            }
+            return sequenceNumber < other.sequenceNumber ? -1
+                    : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+        }
+    }
 }
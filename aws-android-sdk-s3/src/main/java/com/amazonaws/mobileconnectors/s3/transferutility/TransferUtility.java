@@ -85,11 +85,17 @@ import java.util.UUID;
 public class TransferUtility {
 
     static final String KEY_FOR_S3_WEAK_REFERENCE = "keyForS3WeakReference";
+    static final String KEY_MAX_CONCURRENT_TRANSFERS = "maxConcurrentTransfers";
+    static final String KEY_MAX_CONCURRENT_PARTS = "maxConcurrentParts";
+    static final String KEY_SMALL_TRANSFER_THRESHOLD = "smallTransferThreshold";
+    static final String KEY_MAX_IN_FLIGHT_BYTES = "maxInFlightBytes";
+    static final String KEY_ADAPTIVE_PART_CONCURRENCY = "adaptivePartConcurrency";
 
     private final AmazonS3 s3;
     private final Context appContext;
     private final String s3WeakReferenceMapKey;
     private final TransferDBUtil dbUtil;
+    private final TransferUtilityConfiguration configuration;
 
     /**
      * Default minimum part size for upload parts. Anything below this will use
@@ -104,19 +110,73 @@ public class TransferUtility {
      *
      * @param s3 The client to use when making requests to Amazon S3
      * @param context The current context
-     * @param configuration Configuration parameters for this TransferUtility
      */
     public TransferUtility(AmazonS3 s3, Context context) {
+        this(s3, context, new TransferUtilityConfiguration());
+    }
+
+    /**
+     * Constructs a new TransferUtility specifying the client to use and
+     * initializes configuration of TransferUtility and a key for S3 client weak
+     * reference.
+     *
+     * @param s3 The client to use when making requests to Amazon S3
+     * @param context The current context
+     * @param configuration Configuration parameters for this TransferUtility
+     */
+    public TransferUtility(AmazonS3 s3, Context context,
+            TransferUtilityConfiguration configuration) {
         this.s3 = s3;
+        this.configuration = configuration;
         this.s3WeakReferenceMapKey = UUID.randomUUID().toString();
         S3ClientWeakReference.put(s3WeakReferenceMapKey, s3);
         this.appContext = context.getApplicationContext();
         this.dbUtil = new TransferDBUtil(appContext);
     }
 
+    /**
+     * Starts the TransferService, passing it the S3 client and the scheduling
+     * options of the configuration.
+     */
+    private void startTransferService() {
+        Intent intent = new Intent(appContext, TransferService.class);
+        intent.putExtra(KEY_FOR_S3_WEAK_REFERENCE, s3WeakReferenceMapKey);
+        intent.putExtra(KEY_MAX_CONCURRENT_TRANSFERS, configuration.getMaxConcurrentTransfers());
+        intent.putExtra(KEY_MAX_CONCURRENT_PARTS, configuration.getMaxConcurrentParts());
+        intent.putExtra(KEY_SMALL_TRANSFER_THRESHOLD, configuration.getSmallTransferThreshold());
+        intent.putExtra(KEY_MAX_IN_FLIGHT_BYTES, configuration.getMaxInFlightBytes());
+        intent.putExtra(KEY_ADAPTIVE_PART_CONCURRENCY,
+                configuration.isAdaptivePartConcurrency());
+        appContext.startService(intent);
+    }
+
+    /**
+     * Reads the scheduling options passed to the TransferService, falling
+     * back to the defaults for the missing ones.
+     *
+     * @param intent The intent the TransferService was started with.
+     * @return A configuration with the scheduling options of the intent.
+     */
+    static TransferUtilityConfiguration getConfigurationFromIntent(Intent intent) {
+        TransferUtilityConfiguration configuration = new TransferUtilityConfiguration();
+        configuration.setMaxConcurrentTransfers(intent.getIntExtra(
+                KEY_MAX_CONCURRENT_TRANSFERS, configuration.getMaxConcurrentTransfers()));
+        configuration.setMaxConcurrentParts(intent.getIntExtra(
+                KEY_MAX_CONCURRENT_PARTS, configuration.getMaxConcurrentParts()));
+        configuration.setSmallTransferThreshold(intent.getLongExtra(
+                KEY_SMALL_TRANSFER_THRESHOLD, configuration.getSmallTransferThreshold()));
+        configuration.setMaxInFlightBytes(intent.getLongExtra(
+                KEY_MAX_IN_FLIGHT_BYTES, configuration.getMaxInFlightBytes()));
+        configuration.setAdaptivePartConcurrency(intent.getBooleanExtra(
+                KEY_ADAPTIVE_PART_CONCURRENCY, configuration.isAdaptivePartConcurrency()));
+        return configuration;
+    }
+
     /**
      * Starts downloading the S3 object specified by the bucket and the key to
-     * the file.
+     * the file. Objects larger than the download part size of the
+     * {@link TransferUtilityConfiguration} are fetched as several ranges in
+     * parallel.
      *
      * @param bucket The name of the bucket containing the object to download.
      * @param key The key under which the object to download is stored.
@@ -124,11 +184,16 @@ public class TransferUtility {
      * @return A TransferObserver used to track download progress and state
      */
     public TransferObserver download(String bucket, String key, File file) {
-        Intent intent = new Intent(appContext, TransferService.class);
-        intent.putExtra(KEY_FOR_S3_WEAK_REFERENCE, s3WeakReferenceMapKey);
-        appContext.startService(intent);
-        Uri uri = dbUtil.insertSingleTransferRecord(TransferType.DOWNLOAD,
-                bucket, key, file);
+        startTransferService();
+        Uri uri = null;
+        if (configuration.getDownloadPartConcurrency() > 1) {
+            uri = dbUtil.insertMultipartDownloadRecord(bucket, key, file,
+                    configuration.getDownloadPartSize(),
+                    configuration.getDownloadPartConcurrency());
+        } else {
+            uri = dbUtil.insertSingleTransferRecord(TransferType.DOWNLOAD,
+                    bucket, key, file);
+        }
         int recordId = Integer.parseInt(uri.getLastPathSegment());
         return new TransferObserver(recordId, appContext, 0);
     }
@@ -158,9 +223,7 @@ public class TransferUtility {
      * @return A TransferObserver used to track upload progress and state
      */
     public TransferObserver upload(String bucket, String key, File file, ObjectMetadata metadata) {
-        Intent intent = new Intent(appContext, TransferService.class);
-        intent.putExtra(KEY_FOR_S3_WEAK_REFERENCE, s3WeakReferenceMapKey);
-        appContext.startService(intent);
+        startTransferService();
         int recordId = 0;
         if (shouldUploadInMultipart(file)) {
             recordId = createMultipartUploadRecords(bucket, key, file, metadata);
@@ -319,9 +382,7 @@ public class TransferUtility {
      *         ID does not represent a paused transfer
      */
     public TransferObserver resume(int id) {
-        Intent intent = new Intent(appContext, TransferService.class);
-        intent.putExtra(KEY_FOR_S3_WEAK_REFERENCE, s3WeakReferenceMapKey);
-        appContext.startService(intent);
+        startTransferService();
         Cursor c = dbUtil.queryTransferById(id);
         if (c == null) {
             return null;
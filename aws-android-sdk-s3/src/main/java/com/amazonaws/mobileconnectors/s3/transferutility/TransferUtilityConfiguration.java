@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static com.amazonaws.services.s3.internal.Constants.MB;
+
+/**
+ * Configuration options for how {@link TransferUtility} transfers files. The
+ * download part options are recorded with each transfer when it is created, so
+ * changing them doesn't affect transfers already started. The scheduling
+ * options are applied to the {@link TransferService} each time the
+ * TransferUtility starts or resumes a transfer.
+ */
+public class TransferUtilityConfiguration {
+
+    /** Default size of each range of a download in parts. */
+    private static final long DEFAULT_DOWNLOAD_PART_SIZE = 5 * MB;
+
+    /** Default number of ranges of a download fetched at the same time. */
+    private static final int DEFAULT_DOWNLOAD_PART_CONCURRENCY = 3;
+
+    /** Default number of transfers run at the same time. */
+    private static final int DEFAULT_MAX_CONCURRENT_TRANSFERS = 2;
+
+    /** Default number of parts, of all transfers, run at the same time. */
+    private static final int DEFAULT_MAX_CONCURRENT_PARTS = 5;
+
+    /** Default size up to which transfers are started ahead of larger ones. */
+    private static final long DEFAULT_SMALL_TRANSFER_THRESHOLD = 5 * MB;
+
+    /** Default number of bytes of all parts in flight at the same time. */
+    private static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64 * MB;
+
+    /**
+     * The size of each range of a download in parts. Objects larger than one
+     * part are downloaded as several ranges fetched in parallel, each written
+     * at its position in the file, and resumed range by range.
+     */
+    private long downloadPartSize = DEFAULT_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The number of ranges of a single download fetched at the same time. A
+     * value of 1 downloads objects with a single request.
+     */
+    private int downloadPartConcurrency = DEFAULT_DOWNLOAD_PART_CONCURRENCY;
+
+    /**
+     * The number of transfers run at the same time. Small transfers waiting
+     * to run start first, see {@link #smallTransferThreshold}.
+     */
+    private int maxConcurrentTransfers = DEFAULT_MAX_CONCURRENT_TRANSFERS;
+
+    /**
+     * The number of parts, of all the transfers in parts, run at the same
+     * time.
+     */
+    private int maxConcurrentParts = DEFAULT_MAX_CONCURRENT_PARTS;
+
+    /**
+     * Transfers of at most this many bytes are started before larger ones
+     * waiting to run, so a few large transfers don't hold up small ones.
+     */
+    private long smallTransferThreshold = DEFAULT_SMALL_TRANSFER_THRESHOLD;
+
+    /**
+     * The number of bytes of all the parts in flight at the same time. A part
+     * waits until the parts in flight leave room for it.
+     */
+    private long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+
+    /**
+     * Whether the number of parts of a transfer in flight is adjusted to the
+     * throughput they achieve, between one and {@link #maxConcurrentParts}.
+     */
+    private boolean adaptivePartConcurrency = true;
+
+    /**
+     * Returns the size of each range of a download in parts.
+     *
+     * @return The size in bytes of each range of a download.
+     */
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    /**
+     * Sets the size of each range of a download in parts. Objects larger than
+     * one part are downloaded in parallel ranges.
+     *
+     * @param downloadPartSize The size in bytes of each range of a download.
+     */
+    public void setDownloadPartSize(long downloadPartSize) {
+        if (downloadPartSize < 1) {
+            throw new IllegalArgumentException("Download part size must be positive");
+        }
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    /**
+     * Returns the number of ranges of a single download fetched at the same
+     * time.
+     *
+     * @return The number of concurrent range requests of a download.
+     */
+    public int getDownloadPartConcurrency() {
+        return downloadPartConcurrency;
+    }
+
+    /**
+     * Sets the number of ranges of a single download fetched at the same time.
+     * A value of 1 downloads objects with a single request.
+     *
+     * @param downloadPartConcurrency The number of concurrent range requests
+     *            of a download.
+     */
+    public void setDownloadPartConcurrency(int downloadPartConcurrency) {
+        if (downloadPartConcurrency < 1) {
+            throw new IllegalArgumentException("Download part concurrency must be at least 1");
+        }
+        this.downloadPartConcurrency = downloadPartConcurrency;
+    }
+
+    /**
+     * Returns the number of transfers run at the same time.
+     *
+     * @return The maximum number of concurrent transfers.
+     */
+    public int getMaxConcurrentTransfers() {
+        return maxConcurrentTransfers;
+    }
+
+    /**
+     * Sets the number of transfers run at the same time. The other transfers
+     * wait, smaller ones first.
+     *
+     * @param maxConcurrentTransfers The maximum number of concurrent
+     *            transfers.
+     */
+    public void setMaxConcurrentTransfers(int maxConcurrentTransfers) {
+        if (maxConcurrentTransfers < 1) {
+            throw new IllegalArgumentException("Max concurrent transfers must be at least 1");
+        }
+        this.maxConcurrentTransfers = maxConcurrentTransfers;
+    }
+
+    /**
+     * Returns the number of parts, of all the transfers in parts, run at the
+     * same time.
+     *
+     * @return The maximum number of concurrent parts.
+     */
+    public int getMaxConcurrentParts() {
+        return maxConcurrentParts;
+    }
+
+    /**
+     * Sets the number of parts, of all the transfers in parts, run at the
+     * same time.
+     *
+     * @param maxConcurrentParts The maximum number of concurrent parts.
+     */
+    public void setMaxConcurrentParts(int maxConcurrentParts) {
+        if (maxConcurrentParts < 1) {
+            throw new IllegalArgumentException("Max concurrent parts must be at least 1");
+        }
+        this.maxConcurrentParts = maxConcurrentParts;
+    }
+
+    /**
+     * Returns the size up to which transfers are started before larger ones.
+     *
+     * @return The size in bytes of a small transfer.
+     */
+    public long getSmallTransferThreshold() {
+        return smallTransferThreshold;
+    }
+
+    /**
+     * Sets the size up to which transfers are started before larger ones
+     * waiting to run. A value of 0 starts transfers in the order they were
+     * submitted.
+     *
+     * @param smallTransferThreshold The size in bytes of a small transfer.
+     */
+    public void setSmallTransferThreshold(long smallTransferThreshold) {
+        if (smallTransferThreshold < 0) {
+            throw new IllegalArgumentException("Small transfer threshold can't be negative");
+        }
+        this.smallTransferThreshold = smallTransferThreshold;
+    }
+
+    /**
+     * Returns the number of bytes of all the parts in flight at the same time.
+     *
+     * @return The maximum number of bytes in flight.
+     */
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /**
+     * Sets the number of bytes of all the parts in flight at the same time. A
+     * part larger than this runs on its own.
+     *
+     * @param maxInFlightBytes The maximum number of bytes in flight.
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        if (maxInFlightBytes < 1) {
+            throw new IllegalArgumentException("Max in flight bytes must be positive");
+        }
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    /**
+     * Returns whether the number of parts of a transfer in flight is adjusted
+     * to the throughput they achieve.
+     *
+     * @return True if the part concurrency is adaptive.
+     */
+    public boolean isAdaptivePartConcurrency() {
+        return adaptivePartConcurrency;
+    }
+
+    /**
+     * Sets whether the number of parts of a transfer in flight is adjusted to
+     * the throughput they achieve. Otherwise downloads keep the download part
+     * concurrency and uploads use as many parts as allowed.
+     *
+     * @param adaptivePartConcurrency Whether the part concurrency is adaptive.
+     */
+    public void setAdaptivePartConcurrency(boolean adaptivePartConcurrency) {
+        this.adaptivePartConcurrency = adaptivePartConcurrency;
+    }
+}
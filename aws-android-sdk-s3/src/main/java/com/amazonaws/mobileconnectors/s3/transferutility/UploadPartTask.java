@@ -41,6 +41,13 @@ class UploadPartTask implements Callable<Boolean> {
         this.dbUtil = dbUtil;
     }
 
+    /**
+     * @return The number of bytes the part uploads.
+     */
+    long getBytesToTransfer() {
+        return request.getPartSize();
+    }
+
     /*
      * Runs part upload task and returns whether successfully uploaded.
      */
@@ -30,8 +30,8 @@ import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -45,14 +45,24 @@ class UploadTask implements Callable<Boolean> {
     private final TransferRecord upload;
     private final TransferProgress transferProgress;
     private final TransferDBUtil dbUtil;
+    private final TransferThreadPool threadPool;
 
-    public UploadTask(TransferRecord uploadInfo, AmazonS3 s3, TransferDBUtil dbUtil) {
+    public UploadTask(TransferRecord uploadInfo, AmazonS3 s3, TransferDBUtil dbUtil,
+            TransferThreadPool threadPool) {
         this.upload = uploadInfo;
         this.s3 = s3;
         this.dbUtil = dbUtil;
+        this.threadPool = threadPool;
         transferProgress = new TransferProgress();
     }
 
+    /**
+     * @return The size of the file to upload.
+     */
+    long getBytesTotal() {
+        return upload.bytesTotal;
+    }
+
     /*
      * Runs upload task and returns whether successfully uploaded.
      */
@@ -89,7 +99,7 @@ class UploadTask implements Callable<Boolean> {
                 upload.multipartId = initiateMultipartUpload(putObjectRequest);
             } catch (AmazonClientException ase) {
                 Log.e(TAG, "Error initiating multipart upload", ase);
-                dbUtil.updateState(upload.id, TransferState.FAILED);
+                writeFailureInfo();
                 return false;
             }
             dbUtil.updateMultipartId(upload.id, upload.multipartId);
@@ -106,18 +116,32 @@ class UploadTask implements Callable<Boolean> {
 
         List<UploadPartRequest> requestList = dbUtil.getNonCompletedPartRequestsFromDB(upload.id,
                 upload.multipartId);
-        ArrayList<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
-        for (UploadPartRequest request : requestList) {
-            TransferUtility.appendMultipartTransferServiceUserAgentString(request);
-            futures.add(TransferThreadPool.submitTask(new UploadPartTask(request, transferProgress,
-                    s3, dbUtil)));
-        }
+        /*
+         * Keeps as many parts in flight as the controller allows, starting
+         * with as many as the part thread pool runs.
+         */
+        PartConcurrencyController controller = new PartConcurrencyController(transferProgress,
+                threadPool.getMaxConcurrentParts(), threadPool.getMaxConcurrentParts(),
+                threadPool.isAdaptivePartConcurrency());
+        LinkedList<Future<Boolean>> futures = new LinkedList<Future<Boolean>>();
         boolean isSuccess = true;
         try {
             /*
              * Future.get() will block the current thread until the method
              * returns.
              */
+            for (UploadPartRequest request : requestList) {
+                while (isSuccess && futures.size() >= controller.getConcurrency()) {
+                    isSuccess = futures.removeFirst().get() && isSuccess;
+                    controller.onPartCompleted();
+                }
+                if (!isSuccess) {
+                    break;
+                }
+                TransferUtility.appendMultipartTransferServiceUserAgentString(request);
+                futures.add(threadPool.submitTask(new UploadPartTask(request,
+                        transferProgress, s3, dbUtil)));
+            }
             for (Future<Boolean> f : futures) {
                 boolean b = f.get();
                 isSuccess = isSuccess && b;
@@ -131,6 +155,7 @@ class UploadTask implements Callable<Boolean> {
             for (Future<?> f : futures) {
                 f.cancel(true);
             }
+            dbUtil.flushBytesTransferred();
             return false;
         }
 
@@ -141,7 +166,7 @@ class UploadTask implements Callable<Boolean> {
                 dbUtil.updateBytesTransferred(upload.id, upload.bytesTotal, true);
                 dbUtil.updateState(upload.id, TransferState.COMPLETED);
             } else {
-                dbUtil.updateState(upload.id, TransferState.FAILED);
+                writeFailureInfo();
                 isSuccess = false;
             }
         }
@@ -177,11 +202,20 @@ class UploadTask implements Callable<Boolean> {
             return true;
         } catch (Exception e) {
             Log.e(UploadTask.class.getSimpleName(), e.getMessage());
-            dbUtil.updateState(upload.id, TransferState.FAILED);
+            writeFailureInfo();
             return false;
         }
     }
 
+    /**
+     * Updates the upload record with failure state, after writing the
+     * progress not written yet.
+     */
+    private void writeFailureInfo() {
+        dbUtil.flushBytesTransferred();
+        dbUtil.updateState(upload.id, TransferState.FAILED);
+    }
+
     private CompleteMultipartUploadResult completeMultiPartUpload(int mainUploadId, String bucket,
             String key, String multipartId) {
         List<PartETag> partETags = dbUtil.queryPartETagsOfUpload(mainUploadId);
@@ -1497,7 +1497,10 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
-            if (calculateMD5 && !skipContentMd5Check) {
+            // In a single pass upload, the MD5 is calculated while the file is
+            // sent and checked against the returned ETag, as for a stream.
+            if (calculateMD5 && !skipContentMd5Check
+                    && !clientOptions.isSinglePassFileUpload()) {
                 try {
                     String contentMd5_b64 = Md5Utils.md5AsBase64(file);
                     metadata.setContentMD5(contentMd5_b64);
@@ -23,14 +23,21 @@ public class S3ClientOptions {
     /** The default setting for use of path-style access */
     public static final boolean DEFAULT_PATH_STYLE_ACCESS = false;
 
+    /** The default setting for single pass file uploads */
+    public static final boolean DEFAULT_SINGLE_PASS_FILE_UPLOAD = false;
+
     /** Flag for use of path-style access */
     private boolean pathStyleAccess = DEFAULT_PATH_STYLE_ACCESS;
 
+    /** Flag for calculating the MD5 of uploaded files while they're sent */
+    private boolean singlePassFileUpload = DEFAULT_SINGLE_PASS_FILE_UPLOAD;
+
     public S3ClientOptions() {
     }
 
     public S3ClientOptions(S3ClientOptions other) {
         this.pathStyleAccess = other.pathStyleAccess;
+        this.singlePassFileUpload = other.singlePassFileUpload;
     }
 
     /**
@@ -102,4 +109,57 @@ public class S3ClientOptions {
         return this;
     }
 
+    /**
+     * <p>
+     * Returns whether the client reads a file uploaded with
+     * {@link AmazonS3#putObject} only once.
+     * </p>
+     * <p>
+     * By default, the client reads the whole file to calculate its MD5 digest
+     * and send it as the Content-MD5 header, then reads the file again to
+     * upload it. When this flag is set, the digest is instead calculated while
+     * the file is sent and checked against the ETag returned by Amazon S3, as
+     * is done for uploads from a stream, which halves the disk I/O of large
+     * uploads. Amazon S3 then can't reject a corrupted upload itself; the
+     * client reports it after the upload instead, unless the request is
+     * signed with Signature Version 4, whose signed chunks protect the data
+     * in transit.
+     * </p>
+     *
+     * @return True if the client reads uploaded files only once
+     */
+    public boolean isSinglePassFileUpload() {
+        return singlePassFileUpload;
+    }
+
+    /**
+     * <p>
+     * Configures the client to calculate the MD5 digest of a file uploaded
+     * with {@link AmazonS3#putObject} while sending it, rather than reading
+     * the file beforehand to send the digest as the Content-MD5 header.
+     * </p>
+     *
+     * @param singlePassFileUpload True to read uploaded files only once.
+     * @see #isSinglePassFileUpload()
+     */
+    public void setSinglePassFileUpload(boolean singlePassFileUpload) {
+        this.singlePassFileUpload = singlePassFileUpload;
+    }
+
+    /**
+     * <p>
+     * Configures the client to calculate the MD5 digest of a file uploaded
+     * with {@link AmazonS3#putObject} while sending it, rather than reading
+     * the file beforehand to send the digest as the Content-MD5 header.
+     * </p>
+     *
+     * @param singlePassFileUpload True to read uploaded files only once.
+     * @return The updated S3ClientOptions object with the new single pass
+     *         file upload setting.
+     * @see #isSinglePassFileUpload()
+     */
+    public S3ClientOptions withSinglePassFileUpload(boolean singlePassFileUpload) {
+        setSinglePassFileUpload(singlePassFileUpload);
+        return this;
+    }
 }
@@ -18,6 +18,7 @@
 
 package com.amazonaws.services.s3.internal;
 
+import com.amazonaws.internal.FileBackedInputStream;
 import com.amazonaws.internal.SdkInputStream;
 
 import org.apache.commons.logging.Log;
@@ -28,12 +29,16 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * A repeatable input stream for files. This input stream can be repeated an
  * unlimited number of times, without any limitation on when a repeat can occur.
+ * The content can be sent straight from the file by HTTP clients, see
+ * {@link FileBackedInputStream}.
  */
-public class RepeatableFileInputStream extends SdkInputStream {
+public class RepeatableFileInputStream extends SdkInputStream
+        implements FileBackedInputStream {
     private static final Log log = LogFactory.getLog(RepeatableFileInputStream.class);
 
     private final File file;
@@ -147,6 +152,14 @@ public class RepeatableFileInputStream extends SdkInputStream {
         return count;
     }
 
+    @Override
+    public FileChannel getFileChannel() {
+        abortIfNeeded();
+        // The channel shares its position with the current stream, which is
+        // replaced on reset.
+        return fis.getChannel();
+    }
+
     @Override
     public InputStream getWrappedInputStream() {
         return fis;
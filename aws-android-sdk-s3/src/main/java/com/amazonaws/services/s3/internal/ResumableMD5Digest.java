@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * An MD5 digest whose intermediate state can be saved and restored later.
+ * {@link java.security.MessageDigest} doesn't expose its state, so a download
+ * that is paused and resumed in another process would have to read back what
+ * was already written to compute the hash of the whole file. With this
+ * digest the state is saved along with the rest of the download instead.
+ * <p>
+ * The state can be saved by another thread while the digest is being
+ * updated; it always covers exactly {@link #getLength()} bytes.
+ */
+public class ResumableMD5Digest {
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int STATE_SIZE = 16;
+    private static final int LENGTH_SIZE = 8;
+
+    private static final int[] SHIFTS = {
+            7, 12, 17, 22, 5, 9, 14, 20, 4, 11, 16, 23, 6, 10, 15, 21
+    };
+
+    private static final int[] CONSTANTS = new int[BLOCK_SIZE];
+
+    static {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            CONSTANTS[i] = (int) (long) (Math.abs(StrictMath.sin(i + 1)) * 4294967296.0);
+        }
+    }
+
+    private final int[] state = new int[4];
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final int[] words = new int[16];
+    /** The number of bytes digested so far */
+    private long length;
+
+    public ResumableMD5Digest() {
+        reset();
+    }
+
+    /**
+     * Restores a digest from the state returned by {@link #getState()}.
+     *
+     * @param savedState the saved state.
+     * @return a digest that continues where the saved one stopped.
+     * @throws IllegalArgumentException if the state is malformed.
+     */
+    public static ResumableMD5Digest fromState(String savedState) {
+        byte[] bytes;
+        try {
+            bytes = BinaryUtils.fromHex(savedState);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid MD5 digest state", e);
+        }
+        if (bytes.length < STATE_SIZE + LENGTH_SIZE) {
+            throw new IllegalArgumentException("Invalid MD5 digest state");
+        }
+        ResumableMD5Digest digest = new ResumableMD5Digest();
+        for (int i = 0; i < 4; i++) {
+            digest.state[i] = readInt(bytes, i * 4);
+        }
+        long length = 0;
+        for (int i = LENGTH_SIZE - 1; i >= 0; i--) {
+            length = (length << 8) | (bytes[STATE_SIZE + i] & 0xff);
+        }
+        int buffered = bytes.length - STATE_SIZE - LENGTH_SIZE;
+        if (length < 0 || buffered != (int) (length % BLOCK_SIZE)) {
+            throw new IllegalArgumentException("Invalid MD5 digest state");
+        }
+        System.arraycopy(bytes, STATE_SIZE + LENGTH_SIZE, digest.block, 0, buffered);
+        digest.length = length;
+        return digest;
+    }
+
+    /**
+     * Returns the state of this digest as a string that can be passed to
+     * {@link #fromState(String)}.
+     */
+    public synchronized String getState() {
+        int buffered = (int) (length % BLOCK_SIZE);
+        byte[] bytes = new byte[STATE_SIZE + LENGTH_SIZE + buffered];
+        for (int i = 0; i < 4; i++) {
+            writeInt(state[i], bytes, i * 4);
+        }
+        for (int i = 0; i < LENGTH_SIZE; i++) {
+            bytes[STATE_SIZE + i] = (byte) (length >>> (8 * i));
+        }
+        System.arraycopy(block, 0, bytes, STATE_SIZE + LENGTH_SIZE, buffered);
+        return BinaryUtils.toHex(bytes);
+    }
+
+    /**
+     * Returns the number of bytes digested so far.
+     */
+    public synchronized long getLength() {
+        return length;
+    }
+
+    /**
+     * Resets the digest to its initial state.
+     */
+    public synchronized void reset() {
+        state[0] = 0x67452301;
+        state[1] = 0xefcdab89;
+        state[2] = 0x98badcfe;
+        state[3] = 0x10325476;
+        length = 0;
+    }
+
+    public synchronized void update(byte[] input, int offset, int len) {
+        int buffered = (int) (length % BLOCK_SIZE);
+        length += len;
+        if (buffered > 0) {
+            int fill = Math.min(len, BLOCK_SIZE - buffered);
+            System.arraycopy(input, offset, block, buffered, fill);
+            offset += fill;
+            len -= fill;
+            if (buffered + fill < BLOCK_SIZE) {
+                return;
+            }
+            transform(block, 0);
+        }
+        while (len >= BLOCK_SIZE) {
+            transform(input, offset);
+            offset += BLOCK_SIZE;
+            len -= BLOCK_SIZE;
+        }
+        System.arraycopy(input, offset, block, 0, len);
+    }
+
+    /**
+     * Returns the MD5 hash of the bytes digested so far. Unlike
+     * {@link java.security.MessageDigest#digest()} it doesn't reset the
+     * digest, which can be updated further.
+     */
+    public synchronized byte[] digest() {
+        ResumableMD5Digest copy = new ResumableMD5Digest();
+        System.arraycopy(state, 0, copy.state, 0, state.length);
+        System.arraycopy(block, 0, copy.block, 0, block.length);
+        copy.length = length;
+
+        long bitLength = length << 3;
+        int buffered = (int) (length % BLOCK_SIZE);
+        int padding = buffered < 56 ? 56 - buffered : 120 - buffered;
+        byte[] trailer = new byte[padding + LENGTH_SIZE];
+        trailer[0] = (byte) 0x80;
+        for (int i = 0; i < LENGTH_SIZE; i++) {
+            trailer[padding + i] = (byte) (bitLength >>> (8 * i));
+        }
+        copy.update(trailer, 0, trailer.length);
+
+        byte[] hash = new byte[STATE_SIZE];
+        for (int i = 0; i < 4; i++) {
+            writeInt(copy.state[i], hash, i * 4);
+        }
+        return hash;
+    }
+
+    private void transform(byte[] input, int offset) {
+        for (int i = 0; i < 16; i++) {
+            words[i] = readInt(input, offset + i * 4);
+        }
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            int f;
+            int g;
+            if (i < 16) {
+                f = (b & c) | (~b & d);
+                g = i;
+            } else if (i < 32) {
+                f = (d & b) | (~d & c);
+                g = (5 * i + 1) & 15;
+            } else if (i < 48) {
+                f = b ^ c ^ d;
+                g = (3 * i + 5) & 15;
+            } else {
+                f = c ^ (b | ~d);
+                g = (7 * i) & 15;
+            }
+            int temp = d;
+            d = c;
+            c = b;
+            b += Integer.rotateLeft(a + f + CONSTANTS[i] + words[g],
+                    SHIFTS[(i >> 4) * 4 + (i & 3)]);
+            a = temp;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    private static void writeInt(int value, byte[] bytes, int offset) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
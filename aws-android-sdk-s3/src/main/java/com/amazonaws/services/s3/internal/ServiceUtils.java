@@ -36,15 +36,17 @@ import com.amazonaws.util.Md5Utils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -233,6 +235,29 @@ public class ServiceUtils {
     public static void downloadObjectToFile(S3Object s3Object,
             File destinationFile, boolean performIntegrityCheck,
             boolean appendData) {
+        downloadObjectToFile(s3Object, destinationFile, performIntegrityCheck, appendData, null);
+    }
+
+    /**
+     * Downloads an S3Object, as returned from
+     * {@link AmazonS3Client#getObject(com.amazonaws.services.s3.model.GetObjectRequest)}
+     * , to the specified file. The MD5 hash of the file is computed while the
+     * data is written, with the given digest if any so that its state can be
+     * saved by the caller. When appending, the digest is brought up to date
+     * with the part of the file it doesn't cover yet, which is the whole file
+     * if no digest is given.
+     *
+     * @param s3Object The S3Object containing a reference to an InputStream
+     *            containing the object's data.
+     * @param destinationFile The file to store the object's data in.
+     * @param performIntegrityCheck Boolean valuable to indicate whether to
+     *            perform integrity check
+     * @param appendData appends the data to end of the file.
+     * @param digest The digest of the file, or null.
+     */
+    public static void downloadObjectToFile(S3Object s3Object,
+            File destinationFile, boolean performIntegrityCheck,
+            boolean appendData, ResumableMD5Digest digest) {
 
         // attempt to create the parent if it doesn't exist
         File parentDirectory = destinationFile.getParentFile();
@@ -240,14 +265,31 @@ public class ServiceUtils {
             parentDirectory.mkdirs();
         }
 
+        // Multipart Uploads don't have an MD5 calculated on the service side
+        String eTag = s3Object.getObjectMetadata().getETag();
+        boolean canVerify = eTag != null && !ServiceUtils.isMultipartUploadETag(eTag);
+        if (digest == null && performIntegrityCheck && canVerify) {
+            digest = new ResumableMD5Digest();
+        }
+
         OutputStream outputStream = null;
         try {
-            outputStream = new BufferedOutputStream(new FileOutputStream(
-                    destinationFile, appendData));
-            byte[] buffer = new byte[1024 * 10];
+            if (digest != null) {
+                if (appendData) {
+                    catchUpDigest(digest, destinationFile);
+                } else {
+                    digest.reset();
+                }
+            }
+            outputStream = new FileOutputStream(destinationFile, appendData);
+            byte[] buffer = new byte[1024 * 64];
             int bytesRead;
             while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
                 outputStream.write(buffer, 0, bytesRead);
+                // only what made it to the file is digested
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
+                }
             }
         } catch (IOException e) {
             s3Object.getObjectContent().abort();
@@ -264,24 +306,127 @@ public class ServiceUtils {
             }
         }
 
+        if (performIntegrityCheck && canVerify && digest != null) {
+            byte[] serverSideHash = null;
+            try {
+                serverSideHash = BinaryUtils.fromHex(eTag);
+            } catch (Exception e) {
+                log.warn("Unable to decode ETag to validate download: " + e.getMessage(), e);
+            }
+            if (serverSideHash != null && !Arrays.equals(digest.digest(), serverSideHash)) {
+                throw new AmazonClientException("Unable to verify integrity of data download.  " +
+                        "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                        "The data stored in '" + destinationFile.getAbsolutePath()
+                        + "' may be corrupt.");
+            }
+        }
+    }
+
+    /**
+     * Digests the data of the file past the length the digest already covers,
+     * starting over if the file is shorter than that.
+     */
+    private static void catchUpDigest(ResumableMD5Digest digest, File file) throws IOException {
+        long fileLength = file.length();
+        if (digest.getLength() > fileLength) {
+            digest.reset();
+        }
+        if (digest.getLength() == fileLength) {
+            return;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.seek(digest.getLength());
+            byte[] buffer = new byte[1024 * 64];
+            int bytesRead;
+            while ((bytesRead = randomAccessFile.read(buffer)) > -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Downloads the content of a ranged S3Object into the specified file,
+     * writing it at the given position without touching the rest of the file.
+     * Several ranges of the same object may be written to the file
+     * concurrently. No integrity check is performed, see
+     * {@link #verifyDownloadedFile(File, String)} to check the whole file once
+     * all the ranges are written.
+     *
+     * @param s3Object The S3Object containing a reference to an InputStream
+     *            containing the object's data.
+     * @param destinationFile The file to store the object's data in.
+     * @param position The position in the file the data is written at.
+     * @return The number of bytes written.
+     */
+    public static long downloadObjectRangeToFile(S3Object s3Object,
+            File destinationFile, long position) {
+
+        // attempt to create the parent if it doesn't exist
+        File parentDirectory = destinationFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        long bytesWritten = 0;
+        try {
+            randomAccessFile = new RandomAccessFile(destinationFile, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+            byte[] buffer = new byte[1024 * 64];
+            int bytesRead;
+            while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
+                ByteBuffer source = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (source.hasRemaining()) {
+                    bytesWritten += channel.write(source, position + bytesWritten);
+                }
+            }
+        } catch (IOException e) {
+            s3Object.getObjectContent().abort();
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } finally {
+            try {
+                randomAccessFile.close();
+            } catch (Exception e) {
+            }
+            try {
+                s3Object.getObjectContent().close();
+            } catch (Exception e) {
+            }
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Verifies the content of a downloaded file against the ETag of the object
+     * it was downloaded from. Objects uploaded in parts don't have an MD5 ETag
+     * and can't be verified.
+     *
+     * @param file The downloaded file.
+     * @param eTag The ETag of the object.
+     * @throws AmazonClientException If the content of the file doesn't match
+     *             the ETag.
+     */
+    public static void verifyDownloadedFile(File file, String eTag) {
+        if (eTag == null || ServiceUtils.isMultipartUploadETag(eTag)) {
+            return;
+        }
         byte[] clientSideHash = null;
         byte[] serverSideHash = null;
         try {
-            // Multipart Uploads don't have an MD5 calculated on the service
-            // side
-            if (ServiceUtils.isMultipartUploadETag(s3Object.getObjectMetadata().getETag()) == false) {
-                clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(destinationFile));
-                serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
-            }
+            clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(file));
+            serverSideHash = BinaryUtils.fromHex(eTag);
         } catch (Exception e) {
             log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+            return;
         }
-
-        if (performIntegrityCheck && clientSideHash != null && serverSideHash != null
-                && !Arrays.equals(clientSideHash, serverSideHash)) {
+        if (!Arrays.equals(clientSideHash, serverSideHash)) {
             throw new AmazonClientException("Unable to verify integrity of data download.  " +
                     "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
-                    "The data stored in '" + destinationFile.getAbsolutePath()
+                    "The data stored in '" + file.getAbsolutePath()
                     + "' may be corrupt.");
         }
     }
@@ -325,10 +470,32 @@ public class ServiceUtils {
      */
     public static S3Object retryableDownloadS3ObjectToFile(File file,
             RetryableS3DownloadTask retryableS3DownloadTask, boolean appendData) {
+        return retryableDownloadS3ObjectToFile(file, retryableS3DownloadTask, appendData, null);
+    }
+
+    /**
+     * Gets an object stored in S3 and downloads it into the specified file,
+     * like {@link #retryableDownloadS3ObjectToFile(File, RetryableS3DownloadTask, boolean)}
+     * , computing its MD5 hash with the given digest.
+     *
+     * @param file The file to store the object's data in.
+     * @param retryableS3DownloadTask The task getting the object.
+     * @param appendData appends the data to end of the file.
+     * @param digest The digest of the file, or null.
+     */
+    public static S3Object retryableDownloadS3ObjectToFile(File file,
+            RetryableS3DownloadTask retryableS3DownloadTask, boolean appendData,
+            ResumableMD5Digest digest) {
         boolean hasRetried = false;
-        boolean needRetry;
+        boolean needRetry = false;
         S3Object s3Object;
+        // A retry appends the same data again, so what the failed attempt
+        // appended has to go first.
+        long appendPosition = appendData ? file.length() : 0;
         do {
+            if (needRetry && appendData) {
+                truncateFile(file, appendPosition);
+            }
             needRetry = false;
             s3Object = retryableS3DownloadTask.getS3ObjectStream();
             if (s3Object == null)
@@ -337,7 +504,7 @@ public class ServiceUtils {
             try {
                 ServiceUtils.downloadObjectToFile(s3Object, file,
                         retryableS3DownloadTask.needIntegrityCheck(),
-                        appendData);
+                        appendData, digest);
             } catch (AmazonClientException ace) {
                 if (!ace.isRetryable())
                     throw ace;
@@ -371,6 +538,24 @@ public class ServiceUtils {
         return s3Object;
     }
 
+    private static void truncateFile(File file, long length) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            if (randomAccessFile.length() > length) {
+                randomAccessFile.setLength(length);
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to discard the data of the failed download: " + e.getMessage(), e);
+        } finally {
+            try {
+                randomAccessFile.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+
     /**
      * Returns whether the specified request should skip MD5 check on the
      * requested object content.
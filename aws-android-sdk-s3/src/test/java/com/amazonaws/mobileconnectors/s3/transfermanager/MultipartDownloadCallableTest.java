@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipartDownloadCallable;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests downloading an object as parallel ranges with
+ * {@link MultipartDownloadCallable}, against a client which serves the ranges
+ * from memory.
+ */
+public class MultipartDownloadCallableTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] content;
+    private String eTag;
+    private FakeS3Client s3;
+    private ExecutorService threadPool;
+    private TransferManagerConfiguration configuration;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[10 * PART_SIZE + 123];
+        new Random(7).nextBytes(content);
+        eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(content));
+        s3 = new FakeS3Client();
+        threadPool = Executors.newFixedThreadPool(4);
+        configuration = new TransferManagerConfiguration();
+        configuration.setMinimumDownloadPartSize(PART_SIZE);
+        configuration.setDownloadPartConcurrency(4);
+        file = new File(folder.getRoot(), "download/object");
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void testDownloadsAllRangesInParallel() throws Exception {
+        s3.delayMillis = 20;
+        assertTrue(newDownload(true).call());
+
+        assertArrayEquals(content, readFile());
+        assertEquals(11, s3.requests.get());
+        assertTrue("ranges should overlap", s3.maxInFlight.get() > 1);
+    }
+
+    @Test
+    public void testProgressesWhenThreadPoolIsBusy() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            threadPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        // exits
+                    }
+                }
+            });
+        }
+        try {
+            assertTrue(newDownload(true).call());
+        } finally {
+            blocked.countDown();
+        }
+
+        assertArrayEquals(content, readFile());
+        assertEquals(1, s3.maxInFlight.get());
+    }
+
+    @Test
+    public void testFailureTruncatesToCompletedRanges() throws Exception {
+        configuration.setDownloadPartConcurrency(1);
+        s3.failingRangeStart = 3 * PART_SIZE;
+        try {
+            newDownload(true).call();
+            fail("The download should fail");
+        } catch (AmazonClientException e) {
+            // expected
+        }
+
+        // Resuming appends to what is left
+        byte[] written = readFile();
+        assertEquals(3 * PART_SIZE, written.length);
+        for (int i = 0; i < written.length; i++) {
+            assertEquals(content[i], written[i]);
+        }
+    }
+
+    @Test
+    public void testChangedObjectFails() throws Exception {
+        configuration.setDownloadPartConcurrency(1);
+        s3.changedRangeStart = 5 * PART_SIZE;
+        try {
+            newDownload(true).call();
+            fail("The download should fail");
+        } catch (AmazonClientException e) {
+            assertTrue(e.getMessage().contains("changed"));
+        }
+        assertEquals(5 * PART_SIZE, file.length());
+    }
+
+    @Test
+    public void testCorruptedContentFailsIntegrityCheck() throws Exception {
+        s3.corruptedRangeStart = 2 * PART_SIZE;
+        try {
+            newDownload(true).call();
+            fail("The download should fail");
+        } catch (AmazonClientException e) {
+            assertTrue(e.getMessage().contains("integrity"));
+        }
+        assertEquals(0, file.length());
+
+        // Without the check the download goes through
+        assertTrue(newDownload(false).call());
+        assertEquals(content.length, file.length());
+    }
+
+    private MultipartDownloadCallable newDownload(boolean performIntegrityCheck) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.setHeader(Headers.ETAG, eTag);
+        return new MultipartDownloadCallable(s3, threadPool,
+                new GetObjectRequest("bucket", "key"), file, metadata, configuration,
+                performIntegrityCheck);
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Serves ranges of {@link #content}, optionally failing, corrupting or
+     * pretending the object changed at a given range.
+     */
+    private class FakeS3Client extends AmazonS3Client {
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile long delayMillis;
+        volatile long failingRangeStart = -1;
+        volatile long changedRangeStart = -1;
+        volatile long corruptedRangeStart = -1;
+
+        FakeS3Client() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            requests.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            try {
+                while (current > maxInFlight.get()) {
+                    maxInFlight.compareAndSet(maxInFlight.get(), current);
+                }
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            long start = request.getRange()[0];
+            long last = request.getRange()[1];
+            assertTrue(request.getMatchingETagConstraints().contains(eTag));
+            if (start == failingRangeStart) {
+                throw new AmazonClientException("Unable to reach Amazon S3");
+            }
+            if (start == changedRangeStart) {
+                return null;
+            }
+            byte[] range = new byte[(int) (last - start + 1)];
+            System.arraycopy(content, (int) start, range, 0, range.length);
+            if (start == corruptedRangeStart) {
+                range[0] ^= 1;
+            }
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName(request.getBucketName());
+            s3Object.setKey(request.getKey());
+            s3Object.setObjectContent(new ByteArrayInputStream(range));
+            return s3Object;
+        }
+    }
+}
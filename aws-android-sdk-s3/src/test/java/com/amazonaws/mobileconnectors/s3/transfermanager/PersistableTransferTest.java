@@ -57,7 +57,7 @@ public class PersistableTransferTest {
         responseHeaders.setExpires("expires");
 
         PersistableDownload target = new PersistableDownload("bucketName", "key", "versionId",
-                range, responseHeaders, true, "file");
+                range, responseHeaders, true, "file", "digestState");
         assertEquals("type", PersistableDownload.TYPE, target.getPauseType());
 
         String json = target.serialize();
@@ -71,6 +71,7 @@ public class PersistableTransferTest {
         assertTrue(target.getRange()[1] == download.getRange()[1]);
         assertTrue("isRequesterPays", target.isRequesterPays() == download.isRequesterPays());
         assertEquals("file", target.getFile(), download.getFile());
+        assertEquals("digestState", target.getDigestState(), download.getDigestState());
 
         assertEquals("cacheControl", responseHeaders.getCacheControl(),
                 download.getResponseHeaders().getCacheControl());
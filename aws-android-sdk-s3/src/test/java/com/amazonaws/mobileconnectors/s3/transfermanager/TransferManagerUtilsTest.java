@@ -15,10 +15,13 @@
 
 package com.amazonaws.mobileconnectors.s3.transfermanager;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.TransferManagerUtils;
 import com.amazonaws.services.s3.internal.Constants;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 
@@ -46,4 +49,43 @@ public class TransferManagerUtilsTest {
 
         assertTrue(totalParts <= Constants.MAXIMUM_UPLOAD_PARTS);
     }
+
+    @Test
+    public void testIsDownloadParallelizable() {
+        assertTrue(TransferManagerUtils.isDownloadParallelizable(
+                new GetObjectRequest("bucketName", "key"), false));
+        assertFalse(TransferManagerUtils.isDownloadParallelizable(
+                new GetObjectRequest("bucketName", "key"), true));
+        assertFalse(TransferManagerUtils.isDownloadParallelizable(
+                new GetObjectRequest("bucketName", "key").withRange(0, 10), false));
+        assertFalse(TransferManagerUtils.isDownloadParallelizable(
+                new GetObjectRequest("bucketName", "key").withMatchingETagConstraint("etag"),
+                false));
+    }
+
+    @Test
+    public void testShouldUseMultipartDownload() {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        assertFalse(TransferManagerUtils.shouldUseMultipartDownload(Constants.MB,
+                configuration));
+        assertTrue(TransferManagerUtils.shouldUseMultipartDownload(Constants.GB,
+                configuration));
+
+        configuration.setDownloadPartConcurrency(1);
+        assertFalse(TransferManagerUtils.shouldUseMultipartDownload(Constants.GB,
+                configuration));
+    }
+
+    @Test
+    public void testCalculateOptimalPartSizeForDownload() {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        assertEquals(configuration.getMinimumDownloadPartSize(),
+                TransferManagerUtils.calculateOptimalPartSizeForDownload(Constants.GB,
+                        configuration));
+
+        long contentLength = 120 * Constants.GB;
+        long partSize = TransferManagerUtils.calculateOptimalPartSizeForDownload(
+                contentLength, configuration);
+        assertTrue((double) contentLength / partSize <= Constants.MAXIMUM_UPLOAD_PARTS);
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.mobileconnectors.s3.transfermanager.TransferProgress;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import org.junit.Test;
+
+import java.io.File;
+
+public class DownloadImplTest {
+
+    @Test
+    public void testRangedDownloadWithoutS3Object() {
+        DownloadImpl download = new DownloadImpl("download", new TransferProgress(), null, null,
+                null, new GetObjectRequest("bucket", "key"), new File("file"));
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(1000);
+        download.setObjectMetadata(metadata);
+
+        assertEquals("bucket", download.getBucketName());
+        assertEquals("key", download.getKey());
+        assertSame(metadata, download.getObjectMetadata());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PartConcurrencyControllerTest {
+
+    private static final long SECOND = PartConcurrencyController.MIN_SAMPLE_MILLIS;
+
+    @Test
+    public void testClimbsWhileThroughputImproves() {
+        TransferProgress progress = new TransferProgress();
+        PartConcurrencyController controller = new PartConcurrencyController(progress, 2, 5,
+                true, 0);
+        long now = 0;
+        // throughput grows with the concurrency
+        for (int i = 0; i < 3; i++) {
+            progress.updateProgress(controller.getConcurrency() * 1000);
+            now += SECOND;
+            controller.onPartCompleted(now);
+        }
+        assertEquals(5, controller.getConcurrency());
+    }
+
+    @Test
+    public void testBacksOffWhenThroughputDrops() {
+        TransferProgress progress = new TransferProgress();
+        PartConcurrencyController controller = new PartConcurrencyController(progress, 3, 5,
+                true, 0);
+        progress.updateProgress(3000);
+        controller.onPartCompleted(SECOND);
+        assertEquals(4, controller.getConcurrency());
+
+        // the extra part slowed things down
+        progress.updateProgress(2000);
+        controller.onPartCompleted(2 * SECOND);
+        assertEquals(3, controller.getConcurrency());
+
+        // steady throughput keeps the concurrency
+        progress.updateProgress(2000);
+        controller.onPartCompleted(3 * SECOND);
+        assertEquals(3, controller.getConcurrency());
+    }
+
+    @Test
+    public void testIgnoresShortSamples() {
+        TransferProgress progress = new TransferProgress();
+        PartConcurrencyController controller = new PartConcurrencyController(progress, 2, 5,
+                true, 0);
+        progress.updateProgress(1000);
+        controller.onPartCompleted(SECOND / 2);
+        assertEquals(2, controller.getConcurrency());
+    }
+
+    @Test
+    public void testFixedConcurrency() {
+        TransferProgress progress = new TransferProgress();
+        PartConcurrencyController controller = new PartConcurrencyController(progress, 8, 5,
+                false, 0);
+        assertEquals(5, controller.getConcurrency());
+        progress.updateProgress(1000);
+        controller.onPartCompleted(SECOND);
+        assertEquals(5, controller.getConcurrency());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TransferProgressWriterTest {
+
+    private final List<Map<Integer, Long>> transactions = new ArrayList<Map<Integer, Long>>();
+    private final Map<Integer, Long> database = new HashMap<Integer, Long>();
+    private TransferProgressWriter writer;
+
+    @Before
+    public void setUp() {
+        writer = new TransferProgressWriter(new TransferProgressWriter.Store() {
+            @Override
+            public int writeBytesCurrent(Map<Integer, Long> bytesById) {
+                transactions.add(new HashMap<Integer, Long>(bytesById));
+                database.putAll(bytesById);
+                return bytesById.size();
+            }
+        });
+    }
+
+    @Test
+    public void testCoalescesUpdatesOfSeveralRecords() {
+        // a download in 4 parts, each reporting 8KB buffers at 1MB/s
+        long now = 10000;
+        long[] partBytes = new long[4];
+        long total = 0;
+        for (int i = 0; i < 4000; i++) {
+            int part = i % 4;
+            partBytes[part] += 8 * 1024;
+            total += 8 * 1024;
+            now += 2;
+            writer.update(part + 1, partBytes[part], false, now);
+            writer.update(100, total, false, now);
+        }
+        // the parts end on a forced update, recording where they stopped
+        for (int part = 0; part < 4; part++) {
+            writer.update(part + 1, partBytes[part], true, now);
+        }
+
+        long requested = writer.getUpdatesRequested();
+        long transactionCount = writer.getFlushCount();
+        assertEquals(8004, requested);
+        assertEquals(transactions.size(), transactionCount);
+        // the progress of 8 seconds is written every second, or every 5MB
+        // but at most every 250ms
+        assertTrue("transactions: " + transactionCount, transactionCount <= 8 * 4 + 4);
+        assertTrue("rows: " + writer.getRowsWritten(),
+                writer.getRowsWritten() <= transactionCount * 5);
+        assertTrue(requested / transactionCount > 50);
+
+        for (int part = 0; part < 4; part++) {
+            assertEquals(Long.valueOf(partBytes[part]), database.get(part + 1));
+        }
+    }
+
+    @Test
+    public void testWritesAfterInterval() {
+        writer.update(1, 10, false, 1000);
+        assertEquals(1, transactions.size());
+        writer.update(1, 20, false, 1500);
+        assertEquals(1, transactions.size());
+        writer.update(1, 30, false, 2000 + TransferProgressWriter.FLUSH_INTERVAL_MILLIS);
+        assertEquals(2, transactions.size());
+        assertEquals(Long.valueOf(30), database.get(1));
+    }
+
+    @Test
+    public void testForcedUpdateWritesEverythingPending() {
+        writer.update(1, 10, false, 1000);
+        writer.update(1, 20, false, 1001);
+        writer.update(2, 5, false, 1002);
+        writer.update(3, 7, true, 1003);
+        assertEquals(2, transactions.size());
+        Map<Integer, Long> last = transactions.get(1);
+        assertEquals(3, last.size());
+        assertEquals(Long.valueOf(20), last.get(1));
+        assertEquals(Long.valueOf(5), last.get(2));
+        assertEquals(Long.valueOf(7), last.get(3));
+    }
+
+    @Test
+    public void testFlush() {
+        writer.update(1, 10, false, 1000);
+        writer.update(1, 20, false, 1001);
+        assertEquals(1, writer.flush(1002));
+        assertEquals(Long.valueOf(20), database.get(1));
+        assertEquals(0, writer.flush(1003));
+        // unchanged bytes aren't written again
+        writer.update(1, 20, false, 5000);
+        assertEquals(2, writer.getFlushCount());
+    }
+}
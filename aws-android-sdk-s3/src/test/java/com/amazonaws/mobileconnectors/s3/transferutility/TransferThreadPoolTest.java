@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransferThreadPoolTest {
+
+    private TransferUtilityConfiguration configuration;
+    private TransferThreadPool threadPool;
+
+    @Before
+    public void setUp() {
+        configuration = new TransferUtilityConfiguration();
+        configuration.setMaxConcurrentTransfers(1);
+        configuration.setMaxConcurrentParts(4);
+        configuration.setSmallTransferThreshold(100);
+        configuration.setMaxInFlightBytes(1000);
+        threadPool = new TransferThreadPool(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdown();
+    }
+
+    @Test
+    public void testSmallTransfersStartFirst() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> blocker = threadPool.submitMainTask(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                release.await();
+                return true;
+            }
+        }, 0);
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        futures.add(threadPool.submitMainTask(record(order, "large"), 5000));
+        futures.add(threadPool.submitMainTask(record(order, "unknown"), -1));
+        futures.add(threadPool.submitMainTask(record(order, "small1"), 50));
+        futures.add(threadPool.submitMainTask(record(order, "small2"), 100));
+        release.countDown();
+        blocker.get();
+        for (Future<Boolean> f : futures) {
+            f.get();
+        }
+        assertEquals("[small1, small2, large, unknown]", order.toString());
+    }
+
+    @Test
+    public void testPartsStayWithinByteBudget() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Callable<Boolean> part = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                int now = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), now));
+                }
+                Thread.sleep(50);
+                running.decrementAndGet();
+                return true;
+            }
+        };
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 8; i++) {
+            // two parts fill the budget although four threads are available
+            futures.add(threadPool.submitPartTask(part, 500));
+        }
+        for (Future<Boolean> f : futures) {
+            assertTrue(f.get());
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, threadPool.getInFlightBytes());
+    }
+
+    @Test
+    public void testPartLargerThanBudgetRunsAlone() throws Exception {
+        Future<Boolean> f = threadPool.submitPartTask(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return threadPool.getInFlightBytes() == 1000;
+            }
+        }, 5000);
+        assertTrue(f.get());
+    }
+
+    @Test
+    public void testConfigure() {
+        assertEquals(4, threadPool.getMaxConcurrentParts());
+        configuration.setMaxConcurrentParts(2);
+        configuration.setAdaptivePartConcurrency(false);
+        threadPool.configure(configuration);
+        assertEquals(2, threadPool.getMaxConcurrentParts());
+        assertEquals(false, threadPool.isAdaptivePartConcurrency());
+    }
+
+    private static Callable<Boolean> record(final List<String> order, final String name) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                order.add(name);
+                return true;
+            }
+        };
+    }
+}
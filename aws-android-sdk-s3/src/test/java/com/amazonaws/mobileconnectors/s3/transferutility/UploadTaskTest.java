@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.io.File;
+
+public class UploadTaskTest {
+
+    private File file;
+    private AmazonS3 s3;
+    private TransferDBUtil dbUtil;
+    private TransferRecord upload;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("upload", ".txt");
+        s3 = mock(AmazonS3.class);
+        dbUtil = mock(TransferDBUtil.class);
+        upload = new TransferRecord(1, s3);
+        upload.bucketName = "bucket";
+        upload.key = "key";
+        upload.file = file.getAbsolutePath();
+        upload.headerContentType = "text/plain";
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testFailedUploadWritesProgressFirst() throws Exception {
+        when(s3.putObject(any(PutObjectRequest.class)))
+                .thenThrow(new AmazonClientException("failed"));
+
+        assertFalse(new UploadTask(upload, s3, dbUtil, null).call());
+
+        InOrder order = inOrder(dbUtil);
+        order.verify(dbUtil).flushBytesTransferred();
+        order.verify(dbUtil).updateState(1, TransferState.FAILED);
+    }
+
+    @Test
+    public void testFailedMultipartUploadWritesProgressFirst() throws Exception {
+        upload.isMultipart = 1;
+        when(s3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class)))
+                .thenThrow(new AmazonClientException("failed"));
+
+        assertFalse(new UploadTask(upload, s3, dbUtil, null).call());
+
+        InOrder order = inOrder(dbUtil);
+        order.verify(dbUtil).flushBytesTransferred();
+        order.verify(dbUtil).updateState(1, TransferState.FAILED);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests uploading a file with {@link AmazonS3Client#putObject}, against a
+ * local server which answers with the MD5 of what it received as the ETag.
+ */
+public class PutObjectFileUploadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeS3Server server;
+    private AmazonS3Client s3;
+    private File file;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeS3Server();
+        server.start();
+        s3 = new AmazonS3Client(new BasicAWSCredentials("access", "secret"),
+                new ClientConfiguration().withMaxErrorRetry(0));
+        s3.setEndpoint("http://127.0.0.1:" + server.getPort());
+
+        data = new byte[256 * 1024 + 17];
+        new Random(42).nextBytes(data);
+        file = folder.newFile("upload.bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testContentMd5SentByDefault() {
+        s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        PutObjectResult result = s3.putObject("bucket", "key", file);
+
+        String md5 = BinaryUtils.toBase64(Md5Utils.computeMD5Hash(data));
+        assertEquals(md5, server.headers.get("content-md5"));
+        assertEquals(md5, result.getContentMd5());
+        assertArrayEquals(data, server.body);
+    }
+
+    @Test
+    public void testSinglePassUploadVerifiesETag() {
+        s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true)
+                .withSinglePassFileUpload(true));
+        PutObjectResult result = s3.putObject("bucket", "key", file);
+
+        assertNull(server.headers.get("content-md5"));
+        assertEquals(String.valueOf(data.length), server.headers.get("content-length"));
+        assertArrayEquals(data, server.body);
+        assertEquals(BinaryUtils.toBase64(Md5Utils.computeMD5Hash(data)),
+                result.getContentMd5());
+    }
+
+    @Test
+    public void testSinglePassUploadDetectsMismatch() {
+        s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true)
+                .withSinglePassFileUpload(true));
+        server.corruptETag = true;
+        try {
+            s3.putObject("bucket", "key", file);
+            fail("Expected AmazonClientException");
+        } catch (AmazonClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unable to verify integrity"));
+        }
+    }
+
+    /**
+     * Serves a single PUT request at a time.
+     */
+    private static class FakeS3Server extends Thread {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        volatile Map<String, String> headers;
+        volatile byte[] body;
+        volatile boolean corruptETag;
+
+        FakeS3Server() throws IOException {
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    try {
+                        handle(socket);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void handle(Socket socket) throws IOException {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            Map<String, String> requestHeaders = new HashMap<String, String>();
+            readLine(in);
+            String line;
+            while ((line = readLine(in)).length() > 0) {
+                int colon = line.indexOf(':');
+                requestHeaders.put(line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH),
+                        line.substring(colon + 1).trim());
+            }
+            if ("100-continue".equalsIgnoreCase(requestHeaders.get("expect"))) {
+                out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StringUtils.UTF8));
+                out.flush();
+            }
+            byte[] content = new byte[Integer.parseInt(requestHeaders.get("content-length"))];
+            in.readFully(content);
+            headers = requestHeaders;
+            body = content;
+
+            byte[] md5 = Md5Utils.computeMD5Hash(content);
+            if (corruptETag) {
+                md5[0]++;
+            }
+            out.write(("HTTP/1.1 200 OK\r\n"
+                    + "ETag: \"" + BinaryUtils.toHex(md5) + "\"\r\n"
+                    + "Content-Length: 0\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StringUtils.UTF8));
+            out.flush();
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return new String(line.toByteArray(), StringUtils.UTF8);
+        }
+    }
+}
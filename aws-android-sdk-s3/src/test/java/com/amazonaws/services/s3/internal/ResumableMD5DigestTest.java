@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.BinaryUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class ResumableMD5DigestTest {
+
+    @Test
+    public void testMatchesMessageDigest() throws Exception {
+        Random random = new Random(42);
+        int[] lengths = {
+                0, 1, 55, 56, 63, 64, 65, 119, 120, 128, 1000, 100000
+        };
+        for (int length : lengths) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            ResumableMD5Digest digest = new ResumableMD5Digest();
+            // feed it in uneven pieces
+            int offset = 0;
+            while (offset < length) {
+                int len = Math.min(length - offset, 1 + random.nextInt(150));
+                digest.update(data, offset, len);
+                offset += len;
+            }
+            assertArrayEquals("length " + length, md5(data), digest.digest());
+            assertEquals(length, digest.getLength());
+        }
+    }
+
+    @Test
+    public void testResumeFromSavedState() throws Exception {
+        byte[] data = new byte[10000];
+        new Random(7).nextBytes(data);
+        ResumableMD5Digest digest = new ResumableMD5Digest();
+        digest.update(data, 0, 4321);
+        // digesting doesn't prevent further updates
+        digest.digest();
+
+        ResumableMD5Digest restored = ResumableMD5Digest.fromState(digest.getState());
+        assertEquals(4321, restored.getLength());
+        restored.update(data, 4321, data.length - 4321);
+        assertArrayEquals(md5(data), restored.digest());
+    }
+
+    @Test
+    public void testInvalidState() {
+        String[] states = {
+                "", "not hex", "0123456789abcdef",
+                // claims 1 byte is buffered but has none
+                new ResumableMD5Digest().getState().substring(0, 32) + "0100000000000000"
+        };
+        for (String state : states) {
+            try {
+                ResumableMD5Digest.fromState(state);
+                fail("Invalid state accepted: " + state);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testDownloadAppendedToFile() throws Exception {
+        byte[] data = new byte[5000];
+        new Random(3).nextBytes(data);
+        File file = File.createTempFile("ResumableMD5DigestTest", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data, 0, 3000);
+        out.close();
+
+        // the digest only covers part of what is already in the file
+        ResumableMD5Digest digest = new ResumableMD5Digest();
+        digest.update(data, 0, 1000);
+        ServiceUtils.downloadObjectToFile(object(data, 3000, BinaryUtils.toHex(md5(data))),
+                file, true, ServiceUtils.APPEND_MODE, digest);
+        assertEquals(data.length, file.length());
+        assertEquals(data.length, digest.getLength());
+
+        try {
+            ServiceUtils.downloadObjectToFile(object(data, 0, BinaryUtils.toHex(new byte[16])),
+                    file, true, ServiceUtils.OVERWRITE_MODE, null);
+            fail("Corrupted download accepted");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    private static S3Object object(byte[] data, int offset, String eTag) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setHeader(Headers.ETAG, eTag);
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectMetadata(metadata);
+        s3Object.setObjectContent(new ByteArrayInputStream(data, offset, data.length - offset));
+        return s3Object;
+    }
+
+    private static byte[] md5(byte[] data) throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5").digest(data);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -57,6 +57,11 @@ public class QueueBufferConfig {
     /** 5 batches */
     public static final int MAX_INFLIGHT_OUTBOUND_BATCHES_DEFAULT = 5;
 
+    private int maxOpenOutboundBatches = MAX_OPEN_OUTBOUND_BATCHES_DEFAULT;
+
+    /** 1 batch */
+    public static final int MAX_OPEN_OUTBOUND_BATCHES_DEFAULT = 1;
+
     /**
      * The maximum number of concurrent receive message batches. The greater
      * this number, the faster the queue will be pulling messages from the SQS
@@ -159,6 +164,7 @@ public class QueueBufferConfig {
         maxBatchSizeBytes = other.maxBatchSizeBytes;
         maxDoneReceiveBatches = other.maxDoneReceiveBatches;
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
+        maxOpenOutboundBatches = other.maxOpenOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
     }
@@ -168,7 +174,8 @@ public class QueueBufferConfig {
         return "QueueBufferConfig [maxBatchSize=" + maxBatchSize
                 + ", maxBatchOpenMs=" + maxBatchOpenMs + ", longPoll="
                 + longPoll + ", maxInflightOutboundBatches="
-                + maxInflightOutboundBatches + ", maxInflightReceiveBatches="
+                + maxInflightOutboundBatches + ", maxOpenOutboundBatches="
+                + maxOpenOutboundBatches + ", maxInflightReceiveBatches="
                 + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes="
                 + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
@@ -252,6 +259,26 @@ public class QueueBufferConfig {
         return this;
     }
 
+    public int getMaxOpenOutboundBatches() {
+        return maxOpenOutboundBatches;
+    }
+
+    /**
+     * The maximum number of batches held open at the same time for each type
+     * of outbound request. Concurrent callers are spread over the open
+     * batches, so the greater the number, the less they contend with each
+     * other (at the expense of sending smaller batches). Open batches count
+     * towards {@code maxInflightOutboundBatches}.
+     */
+    public void setMaxOpenOutboundBatches(int maxOpenOutboundBatches) {
+        this.maxOpenOutboundBatches = maxOpenOutboundBatches;
+    }
+
+    public QueueBufferConfig withMaxOpenOutboundBatches(int maxOpenOutboundBatches) {
+        this.maxOpenOutboundBatches = maxOpenOutboundBatches;
+        return this;
+    }
+
     /**
      * The maximum number of concurrent receive message batches. The greater
      * this number, the faster the queue will be pulling messages from the SQS
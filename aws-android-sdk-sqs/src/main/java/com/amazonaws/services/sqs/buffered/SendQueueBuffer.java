@@ -41,18 +41,26 @@ import org.apache.commons.logging.LogFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class is responsible for buffering outgoing SQS requests, i.e. requests
  * to send a message, delete a message and change the visibility of the message. <br>
  * When a request arrives, the buffer adds the message to a message batch of an
  * appropriate type (creating such a batch if there currently isn't one
- * outstanding). When the outstanding batch becomes full, or when a configurable
- * timeout expires, the buffer makes a call to SQS to execute the current batch. <br>
+ * outstanding). Up to {@code maxOpenOutboundBatches} batches of each type are
+ * open at the same time, and concurrent callers are spread over them. When an
+ * outstanding batch becomes full, or when a configurable timeout expires, the
+ * buffer makes a call to SQS to execute the batch. <br>
+ * Callers reserve a slot in a batch with a compare-and-set rather than a lock.
  * Internally, the batch objects maintain a list of futures corresponding to the
  * requests added to them. When a batch completes, it loads the results into the
  * futures and marks the futures as complete.
@@ -60,6 +68,16 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class SendQueueBuffer {
     private static Log log = LogFactory.getLog(SendQueueBuffer.class);
 
+    /*
+     * The state of a batch packs whether it is closed, the number of slots
+     * reserved, and the number of bytes reserved into a single long, so that
+     * a slot is reserved with one compare-and-set.
+     */
+    private static final long CLOSED = 1L << 62;
+    private static final int COUNT_SHIFT = 40;
+    private static final long COUNT_MASK = (1L << 22) - 1;
+    private static final long BYTES_MASK = (1L << COUNT_SHIFT) - 1;
+
     // Interface to support event notifications with a parameter.
     private interface Listener<T> {
         void invoke(T o);
@@ -82,54 +100,25 @@ public class SendQueueBuffer {
     private final Executor executor;
 
     /**
-     * Object used to serialize sendMessage calls.
-     */
-    private final Object sendMessageLock = new Object();
-
-    /**
-     * Object used to serialize deleteMessage calls.
-     */
-    private final Object deleteMessageLock = new Object();
-
-    /**
-     * Object used to serialize changeMessageVisibility calls.
-     */
-    private final Object changeMessageVisibilityLock = new Object();
-
-    /**
-     * Current batching task for sendMessage. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code sendMessageLock}.
+     * The open batches of sendMessage calls.
      */
-    private final SendMessageBatchTask[] openSendMessageBatchTask = new SendMessageBatchTask[1];
+    private final OutboundBatcher<SendMessageRequest, SendMessageResult> sendMessageBatcher;
 
     /**
-     * Current batching task for deleteMessage. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code deleteMessageLock}.
+     * The open batches of deleteMessage calls.
      */
-    private final DeleteMessageBatchTask[] openDeleteMessageBatchTask = new DeleteMessageBatchTask[1];
+    private final OutboundBatcher<DeleteMessageRequest, Void> deleteMessageBatcher;
 
     /**
-     * Current batching task for changeMessageVisibility. Using a size 1 array
-     * to allow "passing by reference". Synchronized by
-     * {@code changeMessageVisibilityLock}.
+     * The open batches of changeMessageVisibility calls.
      */
-    private final ChangeMessageVisibilityBatchTask[] openChangeMessageVisibilityBatchTask = new ChangeMessageVisibilityBatchTask[1];
+    private final OutboundBatcher<ChangeMessageVisibilityRequest, Void> changeMessageVisibilityBatcher;
 
     /**
-     * Permits controlling the number of in flight SendMessage batches.
+     * Closes the open batches of all types once {@code maxBatchOpenMs}
+     * elapses.
      */
-    private final Semaphore inflightSendMessageBatches;
-
-    /**
-     * Permits controlling the number of in flight DeleteMessage batches.
-     */
-    private final Semaphore inflightDeleteMessageBatches;
-
-    /**
-     * Permits controlling the number of in flight ChangeMessageVisibility
-     * batches.
-     */
-    private final Semaphore inflightChangeMessageVisibilityBatches;
+    private final BatchTimer batchTimer = new BatchTimer();
 
     SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig,
             String url) {
@@ -141,9 +130,14 @@ public class SendQueueBuffer {
 
         // must allow at least one outbound batch.
         maxBatch = maxBatch > 0 ? maxBatch : 1;
-        this.inflightSendMessageBatches = new Semaphore(maxBatch);
-        this.inflightDeleteMessageBatches = new Semaphore(maxBatch);
-        this.inflightChangeMessageVisibilityBatches = new Semaphore(maxBatch);
+        int maxOpen = config.getMaxOpenOutboundBatches();
+        maxOpen = maxOpen > 0 ? maxOpen : 1;
+        this.sendMessageBatcher = new OutboundBatcher<SendMessageRequest, SendMessageResult>(
+                maxOpen, maxBatch);
+        this.deleteMessageBatcher = new OutboundBatcher<DeleteMessageRequest, Void>(
+                maxOpen, maxBatch);
+        this.changeMessageVisibilityBatcher = new OutboundBatcher<ChangeMessageVisibilityRequest, Void>(
+                maxOpen, maxBatch);
     }
 
     public QueueBufferConfig getConfig() {
@@ -158,8 +152,7 @@ public class SendQueueBuffer {
             QueueBufferCallback<SendMessageRequest, SendMessageResult> callback)
     {
         QueueBufferFuture<SendMessageRequest, SendMessageResult> result =
-                submitOutboundRequest(sendMessageLock, openSendMessageBatchTask, request,
-                        inflightSendMessageBatches, callback);
+                submitOutboundRequest(sendMessageBatcher, request, callback);
         return result;
     }
 
@@ -168,11 +161,7 @@ public class SendQueueBuffer {
      */
     public QueueBufferFuture<DeleteMessageRequest, Void> deleteMessage(
             DeleteMessageRequest request, QueueBufferCallback<DeleteMessageRequest, Void> callback) {
-        return submitOutboundRequest(deleteMessageLock,
-                openDeleteMessageBatchTask,
-                request,
-                inflightDeleteMessageBatches,
-                callback);
+        return submitOutboundRequest(deleteMessageBatcher, request, callback);
     }
 
     /**
@@ -181,12 +170,7 @@ public class SendQueueBuffer {
     public QueueBufferFuture<ChangeMessageVisibilityRequest, Void> changeMessageVisibility(
             ChangeMessageVisibilityRequest request,
             QueueBufferCallback<ChangeMessageVisibilityRequest, Void> callback) {
-        return submitOutboundRequest(
-                changeMessageVisibilityLock,
-                openChangeMessageVisibilityBatchTask,
-                request,
-                inflightChangeMessageVisibilityBatches,
-                callback);
+        return submitOutboundRequest(changeMessageVisibilityBatcher, request, callback);
     }
 
     /**
@@ -217,24 +201,9 @@ public class SendQueueBuffer {
     public void flush() {
 
         try {
-            synchronized (sendMessageLock) {
-                inflightSendMessageBatches
-                        .acquire(config.getMaxInflightOutboundBatches());
-                inflightSendMessageBatches
-                        .release(config.getMaxInflightOutboundBatches());
-            }
-            synchronized (deleteMessageLock) {
-                inflightDeleteMessageBatches
-                        .acquire(config.getMaxInflightOutboundBatches());
-                inflightDeleteMessageBatches
-                        .release(config.getMaxInflightOutboundBatches());
-            }
-            synchronized (changeMessageVisibilityLock) {
-                inflightChangeMessageVisibilityBatches
-                        .acquire(config.getMaxInflightOutboundBatches());
-                inflightChangeMessageVisibilityBatches
-                        .release(config.getMaxInflightOutboundBatches());
-            }
+            sendMessageBatcher.flush();
+            deleteMessageBatcher.flush();
+            changeMessageVisibilityBatcher.flush();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -245,75 +214,170 @@ public class SendQueueBuffer {
      * this buffer.
      * <p>
      *
-     * @param operationLock the lock synchronizing calls for the call type (
-     *            {@code sendMessage}, {@code deleteMessage},
-     *            {@code changeMessageVisibility} )
-     * @param openOutboundBatchTask the open batch task for this call type
+     * @param batcher the open batches for this call type ( {@code sendMessage}
+     *            , {@code deleteMessage}, {@code changeMessageVisibility} )
      * @param request the request to submit
-     * @param inflightOperationBatches the permits controlling the batches for
-     *            this type of request
      * @return never null
      * @throws AmazonClientException (see the various outbound calls for
      *             details)
      */
-    @SuppressWarnings("unchecked")
-    <OBT extends OutboundBatchTask<R, Result>, R extends AmazonWebServiceRequest, Result> QueueBufferFuture<R, Result> submitOutboundRequest(
-            Object operationLock,
-            OBT[] openOutboundBatchTask,
+    <R extends AmazonWebServiceRequest, Result> QueueBufferFuture<R, Result> submitOutboundRequest(
+            OutboundBatcher<R, Result> batcher,
             R request,
-            final Semaphore inflightOperationBatches,
             QueueBufferCallback<R, Result> callback) {
-        /*
-         * Callers add requests to a single batch task (openOutboundBatchTask)
-         * until it is full or maxBatchOpenMs elapses. The total number of batch
-         * task in flight is controlled by the inflightOperationBatch semaphore
-         * capped at maxInflightOutboundBatches.
+        return batcher.submit(request, callback);
+    }
+
+    private static int countOf(long state) {
+        return (int) ((state >>> COUNT_SHIFT) & COUNT_MASK);
+    }
+
+    /**
+     * The batches open for one type of outbound request. Callers are spread
+     * over the open batches by thread, and a batch that is closed is replaced
+     * by the first caller to find it so. The total number of batches open or
+     * in flight is controlled by a semaphore capped at
+     * {@code maxInflightOutboundBatches}.
+     */
+    private class OutboundBatcher<R extends AmazonWebServiceRequest, Result> {
+        private final AtomicReferenceArray<OutboundBatchTask<R, Result>> openBatches;
+        private final int maxInflightBatches;
+
+        /**
+         * Permits controlling the number of open or in flight batches.
          */
-        QueueBufferFuture<R, Result> theFuture = null;
-        try {
-            synchronized (operationLock) {
-                if (openOutboundBatchTask[0] == null
-                        || ((theFuture = openOutboundBatchTask[0].addRequest(request, callback))) == null) {
-                    OBT obt = (OBT) newOutboundBatchTask(request);
-                    inflightOperationBatches.acquire();
-                    openOutboundBatchTask[0] = obt;
-                    // Register a listener for the event signaling that the
-                    // batch task has completed (successfully or not).
-                    openOutboundBatchTask[0].onCompleted = new Listener<OutboundBatchTask<R, Result>>() {
-                        @Override
-                        public void invoke(OutboundBatchTask<R, Result> task) {
-                            inflightOperationBatches.release();
-                        }
-                    };
-
-                    if (log.isTraceEnabled()) {
-                        log.trace("Queue " + qUrl + " created new batch for "
-                                + request.getClass().toString()
-                                + " " + inflightOperationBatches.availablePermits()
-                                + " free slots remain");
+        private final Semaphore inflightBatches;
+
+        /** The number of batches opened but still waiting for a permit */
+        private final AtomicInteger openingBatches = new AtomicInteger(0);
+
+        OutboundBatcher(int maxOpenBatches, int maxInflightBatches) {
+            this.openBatches = new AtomicReferenceArray<OutboundBatchTask<R, Result>>(
+                    maxOpenBatches);
+            this.maxInflightBatches = maxInflightBatches;
+            this.inflightBatches = new Semaphore(maxInflightBatches);
+        }
+
+        QueueBufferFuture<R, Result> submit(R request, QueueBufferCallback<R, Result> callback) {
+            int slot = (int) (Thread.currentThread().getId() % openBatches.length());
+            while (true) {
+                OutboundBatchTask<R, Result> batch = openBatches.get(slot);
+                if (batch != null) {
+                    QueueBufferFuture<R, Result> theFuture = batch.addRequest(request, callback);
+                    if (theFuture != null) {
+                        return theFuture;
                     }
+                    if (openBatches.get(slot) != batch) {
+                        // another caller already replaced the closed batch
+                        continue;
+                    }
+                }
 
-                    theFuture = openOutboundBatchTask[0].addRequest(request, callback);
-                    executor.execute(openOutboundBatchTask[0]);
-                    if (null == theFuture) {
-                        // this can happen only if the request itself is flawed,
-                        // so that it can't be added to any batch, even a brand
-                        // new one
-                        throw new AmazonClientException("Failed to schedule request " + request
-                                + " for execution");
+                final OutboundBatchTask<R, Result> obt = newOutboundBatchTask(request);
+                if (!obt.fitsEmptyBatch(request)) {
+                    // this can happen only if the request itself is flawed,
+                    // so that it can't be added to any batch, even a brand
+                    // new one
+                    throw new AmazonClientException("Failed to schedule request " + request
+                            + " for execution");
+                }
+                // Register a listener for the event signaling that the
+                // batch task has completed (successfully or not).
+                obt.onCompleted = new Listener<OutboundBatchTask<R, Result>>() {
+                    @Override
+                    public void invoke(OutboundBatchTask<R, Result> task) {
+                        inflightBatches.release();
                     }
+                };
+                openingBatches.incrementAndGet();
+                if (!openBatches.compareAndSet(slot, batch, obt)) {
+                    // another caller replaced the batch first
+                    openingBatches.decrementAndGet();
+                    continue;
+                }
+                batchTimer.add(obt);
+
+                /*
+                 * Only the caller that opened the batch waits for a permit.
+                 * Other callers may add to the batch meanwhile, but it isn't
+                 * sent before it is admitted.
+                 */
+                QueueBufferFuture<R, Result> theFuture = obt.addRequest(request, callback);
+                inflightBatches.acquireUninterruptibly();
+                obt.admit();
+                openingBatches.decrementAndGet();
+
+                if (log.isTraceEnabled()) {
+                    log.trace("Queue " + qUrl + " created new batch for "
+                            + request.getClass().toString()
+                            + " " + inflightBatches.availablePermits()
+                            + " free slots remain");
+                }
+
+                if (theFuture != null) {
+                    return theFuture;
                 }
             }
+        }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            AmazonClientException toThrow = new AmazonClientException(
-                    "Interrupted while waiting for lock.");
-            toThrow.initCause(e);
-            throw toThrow;
+        /**
+         * Closes the open batches and waits for all batches to complete.
+         */
+        void flush() throws InterruptedException {
+            do {
+                for (int i = 0; i < openBatches.length(); i++) {
+                    OutboundBatchTask<R, Result> batch = openBatches.get(i);
+                    if (batch != null) {
+                        batch.close();
+                    }
+                }
+                inflightBatches.acquire(maxInflightBatches);
+                inflightBatches.release(maxInflightBatches);
+                // batches opened meanwhile may hold requests added before
+            } while (openingBatches.get() > 0);
         }
+    }
 
-        return theFuture;
+    /**
+     * Closes the open batches once {@code maxBatchOpenMs} elapses. All batches
+     * are held open for the same time, so they expire in the order they were
+     * opened, and a single queue of batches ordered by deadline serves as the
+     * timer. The timer task only runs while batches are open.
+     */
+    private class BatchTimer implements Runnable {
+        private final ConcurrentLinkedQueue<OutboundBatchTask<?, ?>> openBatches =
+                new ConcurrentLinkedQueue<OutboundBatchTask<?, ?>>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        void add(OutboundBatchTask<?, ?> batch) {
+            openBatches.add(batch);
+            if (running.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                OutboundBatchTask<?, ?> batch = openBatches.peek();
+                if (batch == null) {
+                    running.set(false);
+                    // a batch added meanwhile may have found the timer running
+                    if (openBatches.isEmpty() || !running.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                long toWait = batch.deadlineNanos - System.nanoTime();
+                if (toWait > 0 && !batch.isClosed()
+                        && !Thread.currentThread().isInterrupted()) {
+                    LockSupport.parkNanos(this, toWait);
+                    continue;
+                }
+                openBatches.poll();
+                batch.close();
+            }
+        }
     }
 
     /**
@@ -322,6 +386,8 @@ public class SendQueueBuffer {
      * The batch task is constructed open and accepts requests until full, or
      * until {@code maxBatchOpenMs} elapses. At that point, the batch closes and
      * the collected requests are assembled into a single batch request to SQS.
+     * The task is run once the batch is closed, holds an in flight permit,
+     * and every request that reserved a slot has been stored in it.
      * Specialized for each type of outbound request.
      * <p>
      * Instances of this class (and subclasses) are thread-safe.
@@ -332,14 +398,35 @@ public class SendQueueBuffer {
      */
     private abstract class OutboundBatchTask<R extends AmazonWebServiceRequest, Result> implements
             Runnable {
-        final List<R> requests;
-        final ArrayList<QueueBufferFuture<R, Result>> futures;
-        AtomicBoolean open = new AtomicBoolean(true);
+        /** Whether the batch is closed, and the slots and bytes reserved */
+        private final AtomicLong state = new AtomicLong(0);
+
+        /** The number of reserved slots whose request has been stored */
+        private final AtomicInteger filled = new AtomicInteger(0);
+
+        /** Whether the batch holds one of the in flight permits */
+        private volatile boolean admitted = false;
+
+        private final AtomicBoolean dispatched = new AtomicBoolean(false);
+
+        private final AtomicReferenceArray<R> slotRequests;
+        private final AtomicReferenceArray<QueueBufferFuture<R, Result>> slotFutures;
+
+        final long deadlineNanos;
+
+        /** The requests of the closed batch, assembled when the task runs */
+        List<R> requests;
+        List<QueueBufferFuture<R, Result>> futures;
+
         volatile Listener<OutboundBatchTask<R, Result>> onCompleted = null;
 
         OutboundBatchTask() {
-            requests = new ArrayList<R>(config.getMaxBatchSize());
-            futures = new ArrayList<QueueBufferFuture<R, Result>>(config.getMaxBatchSize());
+            slotRequests = new AtomicReferenceArray<R>(config.getMaxBatchSize());
+            slotFutures = new AtomicReferenceArray<QueueBufferFuture<R, Result>>(
+                    config.getMaxBatchSize());
+            deadlineNanos = System.nanoTime()
+                    + TimeUnit.NANOSECONDS.convert(config.getMaxBatchOpenMs() + 1,
+                            TimeUnit.MILLISECONDS);
         }
 
         /**
@@ -348,62 +435,99 @@ public class SendQueueBuffer {
          * @return the future that can be used to get the results of the
          *         execution, or null if the addition failed.
          */
-        synchronized QueueBufferFuture<R, Result> addRequest(R request,
+        QueueBufferFuture<R, Result> addRequest(R request,
                 QueueBufferCallback<R, Result> callback) {
-            if (!open.get())
-                return null;
-
-            QueueBufferFuture<R, Result> theFuture = addIfAllowed(request, callback);
+            long weight = weightOf(request);
+            while (true) {
+                long current = state.get();
+                if ((current & CLOSED) != 0)
+                    return null;
+
+                int count = countOf(current);
+                long bytes = current & BYTES_MASK;
+                if (!isOkToAdd(count, bytes, weight)) {
+                    // if the addition did not work, we can close the request
+                    close();
+                    return null;
+                }
 
-            // if the addition did not work, or this addition made us full,
-            // we can close the request
-            if ((null == theFuture) || isFull()) {
-                open.set(false);
+                long next = current + (1L << COUNT_SHIFT) + weight;
+                // the batch request is as full as it will ever be. no need to
+                // wait for the timeout, we can run it now.
+                if (isFull(count + 1, bytes + weight))
+                    next |= CLOSED;
+
+                if (state.compareAndSet(current, next)) {
+                    QueueBufferFuture<R, Result> theFuture =
+                            new QueueBufferFuture<R, Result>(callback);
+                    slotRequests.set(count, request);
+                    slotFutures.set(count, theFuture);
+                    filled.incrementAndGet();
+                    dispatchIfComplete();
+                    return theFuture;
+                }
             }
+        }
 
-            // the batch request is as full as it will ever be. no need to wait
-            // for the timeout, we can run it now.
-            if (!open.get())
-                notify();
+        /**
+         * Closes the batch, so that it is run as soon as the requests already
+         * added to it are stored.
+         */
+        void close() {
+            while (true) {
+                long current = state.get();
+                if ((current & CLOSED) != 0)
+                    return;
+                if (state.compareAndSet(current, current | CLOSED)) {
+                    dispatchIfComplete();
+                    return;
+                }
+            }
+        }
 
-            return theFuture;
+        boolean isClosed() {
+            return (state.get() & CLOSED) != 0;
         }
 
         /**
-         * Adds the request to the batch if capacity allows it.
-         *
-         * @param request
-         * @return the future that will be signaled when the request is
-         *         completed and can be used to retrieve the result. Can be null
-         *         if the addition could not be done
+         * @return whether the request fits in a new, empty batch
          */
-        synchronized QueueBufferFuture<R, Result> addIfAllowed(R request,
-                QueueBufferCallback<R, Result> callback) {
-            if (isOkToAdd(request)) {
-                requests.add(request);
+        boolean fitsEmptyBatch(R request) {
+            return isOkToAdd(0, 0, weightOf(request));
+        }
 
-                QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(callback);
+        /**
+         * Lets the batch be sent once it holds an in flight permit.
+         */
+        void admit() {
+            admitted = true;
+            dispatchIfComplete();
+        }
 
-                futures.add(theFuture);
-                onRequestAdded(request);
-                return theFuture;
-            } else
-                return null;
+        private void dispatchIfComplete() {
+            long current = state.get();
+            if (admitted && (current & CLOSED) != 0 && filled.get() == countOf(current)
+                    && dispatched.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
         }
 
-        protected synchronized boolean isOkToAdd(R request) {
-            return requests.size() < config.getMaxBatchSize();
+        /**
+         * @return the number of bytes the request takes up in the batch
+         */
+        protected long weightOf(R request) {
+            return 0;
         }
 
-        protected synchronized void onRequestAdded(R request) {
-            // to be overridden by subclasses
+        protected boolean isOkToAdd(int count, long bytes, long weight) {
+            return count < config.getMaxBatchSize();
         }
 
         /**
          * @return whether the buffer is filled to capacity
          */
-        synchronized boolean isFull() {
-            return requests.size() >= config.getMaxBatchSize();
+        boolean isFull(int count, long bytes) {
+            return count >= config.getMaxBatchSize();
         }
 
         /**
@@ -412,24 +536,16 @@ public class SendQueueBuffer {
         abstract void process();
 
         @Override
-        public synchronized void run() {
+        public void run() {
             try {
-                long deadlineMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(),
-                        TimeUnit.NANOSECONDS) +
-                        config.getMaxBatchOpenMs() + 1;
-                long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-                while (open.get() && (t < deadlineMs)) {
-                    t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                    // zero means "wait forever", can't have that.
-                    long toWait = Math.max(1, deadlineMs - t);
-                    wait(toWait);
+                int count = countOf(state.get());
+                requests = new ArrayList<R>(count);
+                futures = new ArrayList<QueueBufferFuture<R, Result>>(count);
+                for (int i = 0; i < count; i++) {
+                    requests.add(slotRequests.get(i));
+                    futures.add(slotFutures.get(i));
                 }
-
-                open.set(false);
                 process();
-            } catch (InterruptedException e) {
-                failAll(e);
             } catch (AmazonClientException e) {
                 failAll(e);
             } catch (RuntimeException e) {
@@ -456,27 +572,24 @@ public class SendQueueBuffer {
 
     private class SendMessageBatchTask extends
             OutboundBatchTask<SendMessageRequest, SendMessageResult> {
-        int batchSizeBytes = 0;
 
         @Override
-        protected synchronized boolean isOkToAdd(SendMessageRequest request) {
-            return (requests.size() < config.getMaxBatchSize())
-                    &&
-                    ((request.getMessageBody().getBytes().length + batchSizeBytes) < config
-                            .getMaxBatchSizeBytes());
+        protected long weightOf(SendMessageRequest request) {
+            return request.getMessageBody().getBytes().length;
         }
 
         @Override
-        protected void onRequestAdded(SendMessageRequest request) {
-            batchSizeBytes += request.getMessageBody().getBytes().length;
+        protected boolean isOkToAdd(int count, long bytes, long weight) {
+            return (count < config.getMaxBatchSize())
+                    &&
+                    ((weight + bytes) < config.getMaxBatchSizeBytes());
         }
 
         @Override
-        synchronized boolean isFull() {
-            return (requests.size() >= config.getMaxBatchSize()) ||
-                    (batchSizeBytes >= config.getMaxBatchSizeBytes());
+        boolean isFull(int count, long bytes) {
+            return (count >= config.getMaxBatchSize()) ||
+                    (bytes >= config.getMaxBatchSizeBytes());
         }
-
         @Override
         void process() {
             if (requests.isEmpty())
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SendQueueBufferTest {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123/queue";
+
+    private ExecutorService executor;
+    private AmazonSQS sqs;
+
+    /** The entries of every batch request, in the order they were received */
+    private final List<List<String>> sentBatches =
+            Collections.synchronizedList(new ArrayList<List<String>>());
+    private final List<List<String>> deletedBatches =
+            Collections.synchronizedList(new ArrayList<List<String>>());
+
+    @Before
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        sqs = mock(AmazonSQS.class);
+        when(sqs.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(
+                new Answer<SendMessageBatchResult>() {
+                    @Override
+                    public SendMessageBatchResult answer(InvocationOnMock invocation)
+                            throws Exception {
+                        SendMessageBatchRequest request =
+                                (SendMessageBatchRequest) invocation.getArguments()[0];
+                        List<String> bodies = new ArrayList<String>();
+                        List<SendMessageBatchResultEntry> results =
+                                new ArrayList<SendMessageBatchResultEntry>();
+                        for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                            bodies.add(entry.getMessageBody());
+                            // the message id echoes the body
+                            results.add(new SendMessageBatchResultEntry()
+                                    .withId(entry.getId())
+                                    .withMessageId(entry.getMessageBody()));
+                        }
+                        sentBatches.add(bodies);
+                        Thread.sleep(1);
+                        return new SendMessageBatchResult()
+                                .withSuccessful(results)
+                                .withFailed(new ArrayList<BatchResultErrorEntry>());
+                    }
+                });
+        when(sqs.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(
+                new Answer<DeleteMessageBatchResult>() {
+                    @Override
+                    public DeleteMessageBatchResult answer(InvocationOnMock invocation) {
+                        DeleteMessageBatchRequest request =
+                                (DeleteMessageBatchRequest) invocation.getArguments()[0];
+                        List<String> handles = new ArrayList<String>();
+                        List<DeleteMessageBatchResultEntry> results =
+                                new ArrayList<DeleteMessageBatchResultEntry>();
+                        for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+                            handles.add(entry.getReceiptHandle());
+                            results.add(new DeleteMessageBatchResultEntry()
+                                    .withId(entry.getId()));
+                        }
+                        deletedBatches.add(handles);
+                        return new DeleteMessageBatchResult()
+                                .withSuccessful(results)
+                                .withFailed(new ArrayList<BatchResultErrorEntry>());
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private SendQueueBuffer newBuffer(QueueBufferConfig config) {
+        return new SendQueueBuffer(sqs, executor, config, QUEUE_URL);
+    }
+
+    /**
+     * Sends messages from several threads at once, each thread sending the
+     * bodies "thread-index".
+     *
+     * @return the futures of all the messages
+     */
+    private List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> sendConcurrently(
+            final SendQueueBuffer buffer, int threads, final int messagesPerThread)
+            throws InterruptedException {
+        final List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> futures =
+                Collections.synchronizedList(
+                        new ArrayList<QueueBufferFuture<SendMessageRequest, SendMessageResult>>());
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        futures.add(buffer.sendMessage(
+                                new SendMessageRequest(QUEUE_URL, thread + "-" + i), null));
+                    }
+                }
+            };
+            producer.start();
+            producers.add(producer);
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        return futures;
+    }
+
+    private int sentMessageCount() {
+        int count = 0;
+        synchronized (sentBatches) {
+            for (List<String> batch : sentBatches) {
+                count += batch.size();
+            }
+        }
+        return count;
+    }
+
+    private static String body(int length) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            body.append('x');
+        }
+        return body.toString();
+    }
+
+    @Test
+    public void testConcurrentProducersLoseAndDuplicateNothing() throws Exception {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig()
+                .withMaxOpenOutboundBatches(4)
+                .withMaxBatchOpenMs(50));
+
+        List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> futures =
+                sendConcurrently(buffer, 8, 500);
+        buffer.flush();
+
+        assertEquals(4000, futures.size());
+        Set<String> ids = new HashSet<String>();
+        for (QueueBufferFuture<SendMessageRequest, SendMessageResult> future : futures) {
+            assertTrue(future.isDone());
+            ids.add(future.get().getMessageId());
+        }
+        assertEquals(4000, ids.size());
+
+        Set<String> sent = new HashSet<String>();
+        synchronized (sentBatches) {
+            for (List<String> batch : sentBatches) {
+                assertTrue(batch.size() <= QueueBufferConfig.MAX_BATCH_SIZE_DEFAULT);
+                sent.addAll(batch);
+            }
+        }
+        assertEquals(4000, sentMessageCount());
+        assertEquals(ids, sent);
+    }
+
+    @Test
+    public void testBatchIsSentOnceFull() throws Exception {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig()
+                .withMaxBatchSize(10)
+                .withMaxBatchOpenMs(60000));
+
+        List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> futures =
+                new ArrayList<QueueBufferFuture<SendMessageRequest, SendMessageResult>>();
+        for (int i = 0; i < 11; i++) {
+            futures.add(buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "m" + i), null));
+        }
+
+        // the first ten are sent without waiting for the batch to time out
+        for (int i = 0; i < 10; i++) {
+            assertEquals("m" + i, futures.get(i).get(5, TimeUnit.SECONDS).getMessageId());
+        }
+        assertFalse(futures.get(10).isDone());
+        assertEquals(1, sentBatches.size());
+        assertEquals(10, sentBatches.get(0).size());
+
+        buffer.flush();
+        assertTrue(futures.get(10).isDone());
+        assertEquals(2, sentBatches.size());
+    }
+
+    @Test
+    public void testBatchIsSentOnceItReachesByteLimit() throws Exception {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig()
+                .withMaxBatchSizeBytes(100)
+                .withMaxBatchOpenMs(60000));
+
+        // two 40 byte messages fit in a batch, a third one doesn't
+        List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> futures =
+                new ArrayList<QueueBufferFuture<SendMessageRequest, SendMessageResult>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(buffer.sendMessage(new SendMessageRequest(QUEUE_URL, body(40)), null));
+        }
+
+        futures.get(0).get(5, TimeUnit.SECONDS);
+        futures.get(1).get(5, TimeUnit.SECONDS);
+        assertFalse(futures.get(2).isDone());
+        assertEquals(1, sentBatches.size());
+        assertEquals(2, sentBatches.get(0).size());
+
+        buffer.flush();
+        assertTrue(futures.get(2).isDone());
+        assertEquals(1, sentBatches.get(1).size());
+    }
+
+    @Test
+    public void testMessageLargerThanBatchIsRejected() {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig().withMaxBatchSizeBytes(100));
+        try {
+            buffer.sendMessage(new SendMessageRequest(QUEUE_URL, body(100)), null);
+            fail("Expected AmazonClientException");
+        } catch (AmazonClientException e) {
+            // expected
+        }
+        assertTrue(sentBatches.isEmpty());
+    }
+
+    @Test
+    public void testOpenBatchIsSentWhenItTimesOut() throws Exception {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig().withMaxBatchOpenMs(100));
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            QueueBufferFuture<SendMessageRequest, SendMessageResult> future =
+                    buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "late" + round), null);
+            assertEquals("late" + round, future.get(5, TimeUnit.SECONDS).getMessageId());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+            assertEquals(round + 1, sentBatches.size());
+            // the timer stops once no batch is open, and starts again
+            Thread.sleep(200);
+        }
+    }
+
+    @Test
+    public void testFlushSendsEveryOpenBatch() throws Exception {
+        final SendQueueBuffer buffer = newBuffer(new QueueBufferConfig()
+                .withMaxOpenOutboundBatches(4)
+                .withMaxBatchOpenMs(60000));
+
+        // callers are spread over the open batches by thread id
+        final List<QueueBufferFuture<?, ?>> futures =
+                Collections.synchronizedList(new ArrayList<QueueBufferFuture<?, ?>>());
+        Set<Long> openBatches = new HashSet<Long>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    futures.add(buffer.sendMessage(
+                            new SendMessageRequest(QUEUE_URL, "m" + thread), null));
+                    futures.add(buffer.deleteMessage(
+                            new DeleteMessageRequest(QUEUE_URL, "h" + thread), null));
+                }
+            };
+            openBatches.add(producer.getId() % 4);
+            producer.start();
+            producer.join();
+        }
+        assertTrue(openBatches.size() > 1);
+        assertTrue(sentBatches.isEmpty());
+
+        buffer.flush();
+        for (QueueBufferFuture<?, ?> future : futures) {
+            assertTrue(future.isDone());
+            future.get();
+        }
+        assertEquals(openBatches.size(), sentBatches.size());
+        assertEquals(8, sentMessageCount());
+        assertEquals(openBatches.size(), deletedBatches.size());
+    }
+
+    @Test
+    public void testSingleOpenBatchFillsBatchesInTurn() throws Exception {
+        SendQueueBuffer buffer = newBuffer(new QueueBufferConfig()
+                .withMaxBatchOpenMs(60000));
+        assertEquals(1, buffer.getConfig().getMaxOpenOutboundBatches());
+
+        List<QueueBufferFuture<SendMessageRequest, SendMessageResult>> futures =
+                sendConcurrently(buffer, 5, 19);
+        buffer.flush();
+
+        // every batch is full except the one the flush closed
+        assertEquals(95, futures.size());
+        assertEquals(10, sentBatches.size());
+        int full = 0;
+        for (List<String> batch : sentBatches) {
+            if (batch.size() == 10) {
+                full++;
+            } else {
+                assertEquals(5, batch.size());
+            }
+        }
+        assertEquals(9, full);
+        assertEquals(95, sentMessageCount());
+    }
+}